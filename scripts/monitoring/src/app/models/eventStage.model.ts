@@ -20,5 +20,7 @@
 export class EventStage {
 	constructor(public operation: string = '',
 				public startTime: string = '',
-				public endTime: string = '') { }
+				public endTime: string = '',
+				public traceId: string = '',
+				public spanId: string = '') { }
 }
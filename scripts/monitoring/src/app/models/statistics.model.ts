@@ -23,6 +23,7 @@ import { Event } from "./event.model";
 import { DataObject } from "./dataObject.model";
 import { FedRequest } from "./fedRequest.model";
 import { HeavyHitter } from "./heavyHitter.model";
+import { Latency } from "./latency.model";
 
 export class Statistics {
 	constructor(public utilization: Utilization[] = [],
@@ -30,5 +31,6 @@ export class Statistics {
 				public events: Event[] = [],
 				public dataObjects: DataObject[] = [],
 				public requests: FedRequest[] = [],
-				public heavyHitters: HeavyHitter[] = []) { }
+				public heavyHitters: HeavyHitter[] = [],
+				public latencies: Latency[] = []) { }
 }
@@ -262,10 +262,110 @@ public class ConfigurationManager{
 		return getDMLConfig().getBooleanValue(DMLConfig.USE_SSL_FEDERATED_COMMUNICATION);
 	}
 	
+	public static int getFederatedParRequests(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_PAR_REQ);
+	}
+
+	public static String getFederatedTenantWeights(){
+		return getDMLConfig().getTextValue(DMLConfig.FEDERATED_TENANT_WEIGHTS);
+	}
+
+	public static long getFederatedTenantQuota(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_TENANT_QUOTA);
+	}
+
+	public static int getFederatedConnPoolSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_CONN_POOL);
+	}
+
+	public static int getFederatedMultiplexChannels(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_MULTIPLEX);
+	}
+
+	public static int getFederatedChunkSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_CHUNK_SIZE);
+	}
+
+	public static boolean isFederatedTcpNoDelay(){
+		return getDMLConfig().getBooleanValue(DMLConfig.FEDERATED_TCP_NODELAY);
+	}
+
+	public static int getFederatedSendBufferSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_SO_SNDBUF);
+	}
+
+	public static int getFederatedReceiveBufferSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_SO_RCVBUF);
+	}
+
+	public static int getFederatedWriteBufferLowWaterMark(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_WRITE_BUFFER_LOW);
+	}
+
+	public static int getFederatedWriteBufferHighWaterMark(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_WRITE_BUFFER_HIGH);
+	}
+
+	public static boolean isFederatedLazyExecution(){
+		return getDMLConfig().getBooleanValue(DMLConfig.FEDERATED_LAZY);
+	}
+
+	public static int getFederatedFragmentSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_FRAGMENT);
+	}
+
+	public static int getFederatedContentStoreSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_BCAST_STORE);
+	}
+
+	public static int getFederatedInstCacheSize(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_INST_CACHE);
+	}
+
+	public static int getFederatedInflightRequests(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_INFLIGHT);
+	}
+
+	public static long getFederatedInflightBytes(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_INFLIGHT_BYTES);
+	}
+
+	public static int getFederatedReductionFanout(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_REDUCTION);
+	}
+
+	public static int getFederatedProfileRefresh(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_PROFILE);
+	}
+
+	public static String getFederatedProfileCache(){
+		return getDMLConfig().getTextValue(DMLConfig.FEDERATED_PROFILE_CACHE);
+	}
+
+	public static String getFederatedWan(){
+		return getDMLConfig().getTextValue(DMLConfig.FEDERATED_WAN);
+	}
+
+	public static String getFederatedTrace(){
+		return getDMLConfig().getTextValue(DMLConfig.FEDERATED_TRACE);
+	}
+
+	public static String getFederatedShmDir(){
+		return getDMLConfig().getTextValue(DMLConfig.FEDERATED_SHM_DIR);
+	}
+
+	public static int getFederatedShmThreshold(){
+		return getDMLConfig().getIntValue(DMLConfig.FEDERATED_SHM_THRESHOLD);
+	}
+
 	public static boolean isFederatedReadCacheEnabled(){
 		return getDMLConfig().getBooleanValue(DMLConfig.FEDERATED_READCACHE);
 	}
 
+	public static double getFederatedReadCacheBudget(){
+		return getDMLConfig().getDoubleValue(DMLConfig.FEDERATED_READCACHE_BUDGET);
+	}
+
 	public static boolean isPrefetchEnabled() {
 		return (getDMLConfig().getBooleanValue(DMLConfig.ASYNC_PREFETCH)
 			|| OptimizerUtils.ASYNC_PREFETCH);
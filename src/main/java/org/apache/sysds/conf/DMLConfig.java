@@ -124,8 +124,35 @@ public class DMLConfig
 	public static final String FEDERATED_PLANNER = "sysds.federated.planner";
 	public static final String FEDERATED_PAR_INST = "sysds.federated.par_inst";
 	public static final String FEDERATED_PAR_CONN = "sysds.federated.par_conn";
+	public static final String FEDERATED_PAR_REQ = "sysds.federated.par_req"; // max concurrently executed request batches per worker
+	public static final String FEDERATED_TENANT_WEIGHTS = "sysds.federated.tenant_weights"; // comma-separated host=weight pairs for fair sharing of the worker pool
+	public static final String FEDERATED_TENANT_QUOTA = "sysds.federated.tenant_quota"; // MB, max data per coordinator on a worker, <=0 for unbounded
+	public static final String FEDERATED_CONN_POOL = "sysds.federated.conn_pool"; // max pooled channels per site, <=0 disables pooling
+	public static final String FEDERATED_MULTIPLEX = "sysds.federated.multiplex"; // shared channels per site, <=0 disables multiplexing
+	public static final String FEDERATED_TRANSPORT = "sysds.federated.transport"; // auto, epoll, nio
+	public static final String FEDERATED_TCP_NODELAY = "sysds.federated.tcp_nodelay";
+	public static final String FEDERATED_SO_SNDBUF = "sysds.federated.so_sndbuf"; // KB, <=0 for OS default
+	public static final String FEDERATED_SO_RCVBUF = "sysds.federated.so_rcvbuf"; // KB, <=0 for OS default
+	public static final String FEDERATED_WRITE_BUFFER_LOW = "sysds.federated.write_buffer_low"; // KB, <=0 for netty default
+	public static final String FEDERATED_WRITE_BUFFER_HIGH = "sysds.federated.write_buffer_high"; // KB, <=0 for netty default
+	public static final String FEDERATED_CHUNK_SIZE = "sysds.federated.chunk_size"; // MB, larger blocks are sent in chunks, <=0 disables chunking
+	public static final String FEDERATED_LAZY = "sysds.federated.lazy"; // defer and coalesce requests until results are needed
+	public static final String FEDERATED_FRAGMENT = "sysds.federated.fragment"; // max deferred instructions per program fragment, <=1 disables fragments
+	public static final String FEDERATED_BCAST_STORE = "sysds.federated.bcast_store"; // MB, content-addressed broadcasts per worker, <=0 disables deduplication
+	public static final String FEDERATED_INST_CACHE = "sysds.federated.inst_cache"; // max cached instruction templates per worker, <=0 disables caching
+	public static final String FEDERATED_INFLIGHT = "sysds.federated.inflight"; // max in-flight request batches per site, <=0 for unbounded
+	public static final String FEDERATED_INFLIGHT_BYTES = "sysds.federated.inflight_bytes"; // MB, max in-flight request bytes per site, <=0 for unbounded
+	public static final String FEDERATED_REDUCTION = "sysds.federated.reduction"; // fan-out of worker-to-worker reductions of aggregates, 1 for a chain, <=0 disables
+	public static final String FEDERATED_PROFILE = "sysds.federated.profile"; // seconds between refreshes of measured site profiles, <=0 disables profiling
+	public static final String FEDERATED_PROFILE_CACHE = "sysds.federated.profile_cache"; // file of persisted site profiles, empty for none
+	public static final String FEDERATED_WAN = "sysds.federated.wan"; // emulated [host[:port]=]latency/jitter/bandwidth/pacing links, empty for none
+	public static final String FEDERATED_TRACE = "sysds.federated.trace"; // path prefix of exported trace files, empty disables tracing
+	public static final String FEDERATED_SHM_DIR = "sysds.federated.shm_dir"; // directory of shared memory segments for colocated sites, empty disables
+	public static final String FEDERATED_SHM_THRESHOLD = "sysds.federated.shm_threshold"; // KB, min serialized size of blocks exchanged via shared memory
+	public static final String FEDERATED_LOCAL = "sysds.federated.local"; // none, serialized, reference (in-JVM transport to workers of the same process)
 	public static final String FEDERATED_READCACHE = "sysds.federated.readcache";
-	public static final String FEDERATED_COMPRESSION = "sysds.federated.compression";
+	public static final String FEDERATED_READCACHE_BUDGET = "sysds.federated.readcache.budget"; // fraction of the buffer pool limit for cached reads
+	public static final String FEDERATED_COMPRESSION = "sysds.federated.compression"; // none, zlib, snappy, fastlz, lz4, lzf, or adaptive per message
 	public static final String PRIVACY_CONSTRAINT_MOCK = "sysds.federated.priv_mock";
 	/** Trigger frequency of the collecting and parsing statistics process on registered workers for monitoring in seconds */
 	public static final String FEDERATED_MONITOR_FREQUENCY = "sysds.federated.monitorFreq";
@@ -204,8 +231,35 @@ public class DMLConfig
 		_defaultVals.put(FEDERATED_TIMEOUT,      "-1");
 		_defaultVals.put(FEDERATED_PLANNER,      FederatedPlanner.RUNTIME.name());
 		_defaultVals.put(FEDERATED_PAR_CONN,     "-1"); // vcores
+		_defaultVals.put(FEDERATED_PAR_REQ,      "-1"); // vcores
 		_defaultVals.put(FEDERATED_PAR_INST,     "-1"); // vcores
+		_defaultVals.put(FEDERATED_TENANT_WEIGHTS, "");
+		_defaultVals.put(FEDERATED_TENANT_QUOTA, "0");
+		_defaultVals.put(FEDERATED_CONN_POOL,    "16");
+		_defaultVals.put(FEDERATED_MULTIPLEX,    "0");
+		_defaultVals.put(FEDERATED_CHUNK_SIZE,   "256");
+		_defaultVals.put(FEDERATED_TRANSPORT,    "auto");
+		_defaultVals.put(FEDERATED_TCP_NODELAY,  "true");
+		_defaultVals.put(FEDERATED_SO_SNDBUF,    "-1");
+		_defaultVals.put(FEDERATED_SO_RCVBUF,    "-1");
+		_defaultVals.put(FEDERATED_WRITE_BUFFER_LOW,  "-1");
+		_defaultVals.put(FEDERATED_WRITE_BUFFER_HIGH, "-1");
+		_defaultVals.put(FEDERATED_LAZY,         "false");
+		_defaultVals.put(FEDERATED_FRAGMENT,     "64");
+		_defaultVals.put(FEDERATED_BCAST_STORE,  "0");
+		_defaultVals.put(FEDERATED_INST_CACHE,   "1024");
+		_defaultVals.put(FEDERATED_INFLIGHT,     "0");
+		_defaultVals.put(FEDERATED_INFLIGHT_BYTES, "0");
+		_defaultVals.put(FEDERATED_REDUCTION,    "0");
+		_defaultVals.put(FEDERATED_PROFILE,      "0");
+		_defaultVals.put(FEDERATED_PROFILE_CACHE, "");
+		_defaultVals.put(FEDERATED_WAN,          "");
+		_defaultVals.put(FEDERATED_TRACE,        "");
+		_defaultVals.put(FEDERATED_SHM_DIR,      "");
+		_defaultVals.put(FEDERATED_SHM_THRESHOLD, "1024");
+		_defaultVals.put(FEDERATED_LOCAL,        "none");
 		_defaultVals.put(FEDERATED_READCACHE,    "true"); // vcores
+		_defaultVals.put(FEDERATED_READCACHE_BUDGET, "0.5");
 		_defaultVals.put(FEDERATED_MONITOR_FREQUENCY, "3");
 		_defaultVals.put(FEDERATED_COMPRESSION, "none");
 		_defaultVals.put(PRIVACY_CONSTRAINT_MOCK, null);
@@ -34,6 +34,7 @@ public class FTypes
 				case COMPILE_FED_HEURISTIC:
 					return new FederatedPlannerFedHeuristic();
 				case COMPILE_COST_BASED:
+					return new FederatedPlannerCostBased();
 				case NONE:
 				case RUNTIME:
 				default:
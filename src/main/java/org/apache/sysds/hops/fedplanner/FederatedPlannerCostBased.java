@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.hops.fedplanner;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sysds.common.Types.ExecType;
+import org.apache.sysds.common.Types.OpOpData;
+import org.apache.sysds.hops.DataOp;
+import org.apache.sysds.hops.Hop;
+import org.apache.sysds.hops.LiteralOp;
+import org.apache.sysds.hops.OptimizerUtils;
+import org.apache.sysds.hops.cost.ComputeCost;
+import org.apache.sysds.hops.fedplanner.FTypes.FType;
+import org.apache.sysds.hops.rewrite.HopRewriteUtils;
+import org.apache.sysds.parser.DataExpression;
+import org.apache.sysds.parser.FunctionStatementBlock;
+import org.apache.sysds.runtime.controlprogram.LocalVariableMap;
+import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles.SiteProfile;
+import org.apache.sysds.runtime.controlprogram.federated.FederationMap;
+import org.apache.sysds.runtime.instructions.cp.Data;
+import org.apache.sysds.runtime.instructions.fed.FEDInstruction.FederatedOutput;
+import org.apache.sysds.runtime.instructions.fed.InitFEDInstruction;
+
+/**
+ * Cost-based federated planner, which selects per hop between federated operations with federated output (FOUT),
+ * federated operations with local output (LOUT), and local operations (which fetch their federated inputs), based on
+ * the estimated runtime. The cost model combines the compute costs of operations ({@link ComputeCost}), which are
+ * distributed across the federated sites for federated operations, with the transfer costs of broadcasted local
+ * inputs, collected local outputs (incl. the partial aggregates of all sites), and fetched federated inputs, as well
+ * as the latency of federated requests.
+ *
+ * The plan selection is a dynamic program over the hop DAG, which computes bottom-up the minimal costs of every hop
+ * for both output placements, and selects the placements top-down from the roots. Shared hops are costed per
+ * consumer, and their placement is resolved once after all consumers selected their plans, by the minimal costs
+ * including the transfers for consumers that requested the other placement. Federated operations are only forced if
+ * at least one input has a federated placement after this resolution. Transfers and request latencies are estimated
+ * per federated site from the site profiles, where known.
+ */
+public class FederatedPlannerCostBased extends FederatedPlannerFedAll {
+	/** Compute throughput per site in FLOP/s */
+	private static final double COMPUTE_BANDWIDTH = 2d * 1024 * 1024 * 1024;
+	/** Default network bandwidth in bytes/s (1 Gbit/s) */
+	private static final double DEFAULT_BANDWIDTH = 125d * 1000 * 1000;
+	/** Default round-trip time of federated requests in s */
+	private static final double DEFAULT_LATENCY = 1e-3;
+	/** Number of sites of federated variables without known federation map */
+	private static final int DEFAULT_NUM_SITES = 2;
+	/** Max number of inputs with enumerated placements, other inputs use their cheapest placement */
+	private static final int MAX_ENUM_INPUTS = 4;
+
+	// output placements
+	private static final int LOUT = 0;
+	private static final int FOUT = 1;
+
+	// sites of the coordinator-local hops
+	private static final InetSocketAddress[] LOCAL_SITES = new InetSocketAddress[1];
+
+	// sites of federated variables across hop DAGs (null for unknown addresses)
+	private final Map<String, InetSocketAddress[]> _fedVarSites = new HashMap<>();
+
+	@Override
+	public void rewriteFunctionDynamic(FunctionStatementBlock function, LocalVariableMap funcArgs) {
+		for(Map.Entry<String, Data> e : funcArgs.entrySet())
+			if(e.getValue() instanceof CacheableData<?> && ((CacheableData<?>) e.getValue()).isFederated())
+				setFederatedSites(e.getKey(), ((CacheableData<?>) e.getValue()).getFedMapping());
+		super.rewriteFunctionDynamic(function, funcArgs);
+	}
+
+	/**
+	 * Set the federated sites of a federated variable according to its federation map.
+	 *
+	 * @param varName name of the federated variable
+	 * @param fedMap  federation map of the variable
+	 */
+	protected void setFederatedSites(String varName, FederationMap fedMap) {
+		_fedVarSites.put(varName, Arrays.stream(fedMap.getFederatedData()).map(FederatedData::getAddress)
+			.toArray(InetSocketAddress[]::new));
+	}
+
+	@Override
+	protected void rewriteHopDag(List<Hop> roots, Map<Long, FType> fedHops, Map<String, FType> fedVars) {
+		// bottom-up costing of both output placements of all hops
+		Map<Long, HopCosts> memo = new HashMap<>();
+		for(Hop root : roots)
+			rCostHop(root, memo, fedVars);
+
+		// top-down selection of the placements, where every hop is resolved after all its consumers
+		List<Hop> order = new ArrayList<>();
+		Set<Long> visited = new HashSet<>();
+		for(Hop root : roots)
+			rOrderHop(root, order, visited);
+		Map<Long, List<Integer>> requests = new HashMap<>();
+		for(Hop root : roots)
+			requests.computeIfAbsent(root.getHopID(), k -> new ArrayList<>()).add(memo.get(root.getHopID()).getBest());
+		Map<Long, Integer> placements = new HashMap<>();
+		for(int i = order.size() - 1; i >= 0; i--) {
+			Hop hop = order.get(i);
+			HopCosts costs = memo.get(hop.getHopID());
+			int placement = resolvePlacement(hop, costs, requests.get(hop.getHopID()));
+			placements.put(hop.getHopID(), placement);
+			for(int j = 0; j < hop.getInput().size(); j++)
+				requests.computeIfAbsent(hop.getInput(j).getHopID(), k -> new ArrayList<>())
+					.add(costs.inputs[placement][j]);
+		}
+
+		// bottom-up forcing of federated operations with federated inputs
+		for(Hop hop : order)
+			selectHop(hop, placements.get(hop.getHopID()), memo.get(hop.getHopID()), fedHops);
+		for(Hop root : roots)
+			if(HopRewriteUtils.isData(root, OpOpData.TRANSIENTWRITE))
+				_fedVarSites.put(root.getName(), memo.get(root.getHopID()).sites);
+	}
+
+	/**
+	 * Get the estimated network bandwidth between the coordinator and a federated site, measured by site profiling if
+	 * available.
+	 *
+	 * @param site socket address of the federated site, null if unknown
+	 * @return bandwidth in bytes/s
+	 */
+	protected double getBandwidth(InetSocketAddress site) {
+		SiteProfile profile = FederatedSiteProfiles.get(site);
+		return (profile != null) ? Math.min(profile.getUploadBandwidth(), profile.getDownloadBandwidth()) :
+			FederatedSiteProfiles.getMeanBandwidth(DEFAULT_BANDWIDTH);
+	}
+
+	/**
+	 * Get the estimated round-trip time of federated requests to a federated site, measured by site profiling if
+	 * available.
+	 *
+	 * @param site socket address of the federated site, null if unknown
+	 * @return latency in s
+	 */
+	protected double getLatency(InetSocketAddress site) {
+		SiteProfile profile = FederatedSiteProfiles.get(site);
+		return (profile != null) ? profile.getLatency() : FederatedSiteProfiles.getMeanLatency(DEFAULT_LATENCY);
+	}
+
+	private HopCosts rCostHop(Hop hop, Map<Long, HopCosts> memo, Map<String, FType> fedVars) {
+		HopCosts ret = memo.get(hop.getHopID());
+		if(ret != null)
+			return ret;
+
+		// cost inputs first
+		HopCosts[] in = new HopCosts[hop.getInput().size()];
+		for(int i = 0; i < in.length; i++)
+			in[i] = rCostHop(hop.getInput(i), memo, fedVars);
+
+		ret = new HopCosts(in.length);
+		if(HopRewriteUtils.isData(hop, OpOpData.FEDERATED)) {
+			ret.update(FOUT, getInputCosts(in), deriveFType((DataOp) hop), false,
+				new int[in.length], getSites((DataOp) hop));
+		}
+		else if(HopRewriteUtils.isData(hop, OpOpData.TRANSIENTREAD) && fedVars.get(hop.getName()) != null) {
+			ret.update(FOUT, getInputCosts(in), fedVars.get(hop.getName()), false,
+				new int[in.length], _fedVarSites.getOrDefault(hop.getName(), new InetSocketAddress[DEFAULT_NUM_SITES]));
+		}
+		else
+			rEnumPlans(hop, in, new int[in.length], 0, restrictInputs(in), ret);
+
+		memo.put(hop.getHopID(), ret);
+		return ret;
+	}
+
+	private void rEnumPlans(Hop hop, HopCosts[] in, int[] placements, int pos, boolean restrict, HopCosts ret) {
+		if(pos == in.length) {
+			costPlan(hop, in, placements, ret);
+			return;
+		}
+		for(int p : restrict ? new int[] {in[pos].getBest()} : new int[] {LOUT, FOUT}) {
+			if(Double.isInfinite(in[pos].costs[p]))
+				continue;
+			placements[pos] = p;
+			rEnumPlans(hop, in, placements, pos + 1, restrict, ret);
+		}
+	}
+
+	private void costPlan(Hop hop, HopCosts[] in, int[] placements, HopCosts ret) {
+		FType[] ft = new FType[in.length];
+		double inCosts = 0;
+		InetSocketAddress[] sites = LOCAL_SITES;
+		for(int i = 0; i < in.length; i++) {
+			inCosts += in[i].costs[placements[i]];
+			ft[i] = (placements[i] == FOUT) ? in[i].fout : null;
+			if(ft[i] != null && in[i].sites.length > sites.length)
+				sites = in[i].sites;
+		}
+
+		if(Arrays.stream(ft).anyMatch(t -> t != null) && allowsFederated(hop, ft)) {
+			// federated operation: distributed compute and broadcast of local inputs
+			FType fout = getFederatedOut(hop, ft);
+			double costs = inCosts + getComputeTime(hop) / sites.length + (isFree(hop) ? 0 : getLatency(sites));
+			for(int i = 0; i < in.length; i++)
+				if(ft[i] == null && !hop.getInput(i).isScalar())
+					costs += getTransferTime(hop.getInput(i), sites, false);
+			// local outputs collect either partial aggregates of all sites or the partitions
+			ret.update(LOUT, costs + getTransferTime(hop, sites, fout != null), null, true, placements, sites);
+			if(fout != null)
+				ret.update(FOUT, costs, fout, true, placements, sites);
+		}
+
+		// local operation: local compute and fetch of federated inputs
+		double costs = inCosts + getComputeTime(hop);
+		for(int i = 0; i < in.length; i++)
+			if(ft[i] != null)
+				costs += getTransferTime(hop.getInput(i), in[i].sites, true);
+		ret.update(LOUT, costs, null, false, placements, LOCAL_SITES);
+	}
+
+	private static void rOrderHop(Hop hop, List<Hop> order, Set<Long> visited) {
+		if(!visited.add(hop.getHopID()))
+			return;
+		for(Hop in : hop.getInput())
+			rOrderHop(in, order, visited);
+		order.add(hop); // inputs before consumers
+	}
+
+	private int resolvePlacement(Hop hop, HopCosts costs, List<Integer> requests) {
+		// single placement for all consumers, where mismatching consumers broadcast or fetch the output
+		int ret = costs.getBest();
+		double min = Double.POSITIVE_INFINITY;
+		for(int placement : new int[] {FOUT, LOUT}) {
+			double total = costs.costs[placement];
+			for(int request : requests)
+				if(request != placement)
+					total += getTransferTime(hop, costs.sites, request == LOUT);
+			if(total < min) {
+				min = total;
+				ret = placement;
+			}
+		}
+		return ret;
+	}
+
+	private static void selectHop(Hop hop, int placement, HopCosts costs, Map<Long, FType> fedHops) {
+		if(costs.fed[placement] && !(hop instanceof DataOp && placement == LOUT)) {
+			if(hop.getInput().stream().anyMatch(in -> fedHops.get(in.getHopID()) != null)) {
+				hop.setForcedExecType(ExecType.FED);
+				hop.setFederatedOutput((placement == FOUT) ? FederatedOutput.FOUT : FederatedOutput.LOUT);
+			}
+			else
+				placement = LOUT; // all inputs were resolved to local placements by other consumers
+		}
+		fedHops.put(hop.getHopID(), (placement == FOUT) ? costs.fout : null);
+	}
+
+	private static InetSocketAddress[] getSites(DataOp fedInit) {
+		Hop ranges = fedInit.getInput(fedInit.getParameterIndex(DataExpression.FED_RANGES));
+		Hop addresses = fedInit.getInput(fedInit.getParameterIndex(DataExpression.FED_ADDRESSES));
+		InetSocketAddress[] ret = new InetSocketAddress[Math.max(ranges.getInput().size() / 2, 1)];
+		for(int i = 0; i < ret.length && i < addresses.getInput().size(); i++) {
+			if(!(addresses.getInput(i) instanceof LiteralOp))
+				continue;
+			try {
+				String[] url = InitFEDInstruction.parseURLNoFilePath(((LiteralOp) addresses.getInput(i)).getStringValue());
+				ret[i] = InetSocketAddress.createUnresolved(url[0], Integer.parseInt(url[1]));
+			}
+			catch(IllegalArgumentException ex) {
+				// unknown site, costed like an unprofiled site
+			}
+		}
+		return ret;
+	}
+
+	private static double getInputCosts(HopCosts[] in) {
+		return Arrays.stream(in).mapToDouble(c -> c.costs[c.getBest()]).sum();
+	}
+
+	private static boolean restrictInputs(HopCosts[] in) {
+		return Arrays.stream(in).filter(c -> !Double.isInfinite(c.costs[LOUT]) && !Double.isInfinite(c.costs[FOUT]))
+			.count() > MAX_ENUM_INPUTS;
+	}
+
+	private static boolean isFree(Hop hop) {
+		return hop instanceof DataOp || hop instanceof LiteralOp;
+	}
+
+	private static double getComputeTime(Hop hop) {
+		return isFree(hop) ? 0 : ComputeCost.getHOPComputeCost(hop) / COMPUTE_BANDWIDTH;
+	}
+
+	private double getLatency(InetSocketAddress[] sites) {
+		// requests to all sites are sent in parallel
+		return Arrays.stream(sites).mapToDouble(this::getLatency).max().orElse(0);
+	}
+
+	private double getTransferTime(Hop hop, InetSocketAddress[] sites, boolean partitioned) {
+		// transfers of the full output or its partitions between the coordinator and every site
+		double size = hop.isScalar() ? 8 : hop.dimsKnown() ? OptimizerUtils
+			.estimateSizeExactSparsity(hop.getDim1(), hop.getDim2(), hop.getSparsity()) : OptimizerUtils.DEFAULT_SIZE;
+		if(partitioned)
+			size /= sites.length;
+		double ret = 0;
+		for(InetSocketAddress site : sites)
+			ret += size / getBandwidth(site);
+		return ret;
+	}
+
+	/**
+	 * Minimal costs of a hop per output placement, with the placements of its inputs.
+	 */
+	private static class HopCosts {
+		private final double[] costs = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+		private final boolean[] fed = new boolean[2];
+		private final int[][] inputs;
+		private FType fout;
+		private InetSocketAddress[] sites = LOCAL_SITES;
+
+		private HopCosts(int numInputs) {
+			inputs = new int[2][numInputs];
+		}
+
+		private void update(int placement, double cost, FType ft, boolean federated, int[] placements,
+			InetSocketAddress[] siteAddresses) {
+			if(cost >= costs[placement])
+				return;
+			costs[placement] = cost;
+			fed[placement] = federated;
+			inputs[placement] = placements.clone();
+			if(placement == FOUT)
+				fout = ft;
+			if(siteAddresses.length > sites.length)
+				sites = siteAddresses;
+		}
+
+		private int getBest() {
+			// prefer federated outputs on ties, to avoid unnecessary transfers in subsequent DAGs
+			return (costs[FOUT] <= costs[LOUT]) ? FOUT : LOUT;
+		}
+	}
+}
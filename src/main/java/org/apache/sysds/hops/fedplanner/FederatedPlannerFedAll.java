@@ -21,6 +21,7 @@ package org.apache.sysds.hops.fedplanner;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.sysds.common.Types.ExecType;
@@ -116,8 +117,7 @@ public class FederatedPlannerFedAll extends AFederatedPlanner {
 			//process entire hop DAGs with memoization
 			Map<Long, FType> fedHops = new HashMap<>();
 			if( sb.getHops() != null )
-				for( Hop c : sb.getHops() )
-					rRewriteHop(c, fedHops, fedVars);
+				rewriteHopDag(sb.getHops(), fedHops, fedVars);
 			
 			//TODO handle function calls
 			
@@ -129,6 +129,19 @@ public class FederatedPlannerFedAll extends AFederatedPlanner {
 		}
 	}
 	
+	/**
+	 * Selects the federated execution plan of a hop DAG, and records the
+	 * federated output types of all hops (null for local outputs).
+	 * 
+	 * @param roots root hops of the DAG
+	 * @param fedHops map of hop ID mapped to FType
+	 * @param fedVars map of variable names mapped to FType of federated inputs
+	 */
+	protected void rewriteHopDag(List<Hop> roots, Map<Long, FType> fedHops, Map<String, FType> fedVars) {
+		for( Hop c : roots )
+			rRewriteHop(c, fedHops, fedVars);
+	}
+	
 	private void rRewriteHop(Hop hop, Map<Long, FType> memo, Map<String, FType> fedVars) {
 		if( memo.containsKey(hop.getHopID()) )
 			return; //already processed
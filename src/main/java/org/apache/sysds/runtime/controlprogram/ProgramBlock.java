@@ -40,6 +40,7 @@ import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject.UpdateType;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer;
 import org.apache.sysds.runtime.instructions.Instruction;
 import org.apache.sysds.runtime.instructions.cp.BooleanObject;
 import org.apache.sysds.runtime.instructions.cp.Data;
@@ -247,12 +248,21 @@ public abstract class ProgramBlock implements ParseInfo {
 			// pre-process instruction (inst patching, listeners, lineage)
 			Instruction tmp = currInst.preprocessInstruction(ec);
 
-			// try to reuse instruction result from lineage cache
-			if(!LineageCache.reuse(tmp, ec)) {
+			// try to reuse instruction result from lineage cache (traced within federated requests)
+			final FederatedTracer.Span lspan = ReuseCacheType.isNone() ? null : FederatedTracer.beginChild("lineage");
+			final boolean reused = LineageCache.reuse(tmp, ec);
+			FederatedTracer.end(lspan);
+			if(!reused) {
 				long et0 = (!ReuseCacheType.isNone() || DMLScript.LINEAGE_ESTIMATE) ? System.nanoTime() : 0;
 
-				// process actual instruction
-				tmp.processInstruction(ec);
+				// process actual instruction (traced with its federated requests)
+				final FederatedTracer.Span span = FederatedTracer.beginInstruction(tmp);
+				try {
+					tmp.processInstruction(ec);
+				}
+				finally {
+					FederatedTracer.end(span);
+				}
 
 				// cache result
 				LineageCache.putValue(tmp, ec, et0);
@@ -20,13 +20,18 @@
 package org.apache.sysds.runtime.controlprogram.federated;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.sysds.api.DMLScript;
 import org.apache.sysds.common.Types.ExecMode;
+import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContextFactory;
+import org.apache.sysds.runtime.instructions.cp.Data;
 
 public class ExecutionContextMap {
 	private ExecutionContext _main;
@@ -59,6 +64,20 @@ public class ExecutionContextMap {
 		_parEc.clear();
 	}
 
+	/**
+	 * Get the in-memory size of all data objects of the main and parfor execution contexts.
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getDataSize() {
+		final Set<Data> data = Collections.newSetFromMap(new IdentityHashMap<>());
+		_main.getVariables().entrySet().forEach(e -> data.add(e.getValue()));
+		for( ExecutionContext ec : _parEc.values() )
+			ec.getVariables().entrySet().forEach(e -> data.add(e.getValue()));
+		return data.stream().filter(d -> d instanceof CacheableData)
+			.mapToLong(d -> ((CacheableData<?>) d).getDataSize()).sum();
+	}
+
 	public synchronized void convertToSparkCtx() {
 		// set hybrid mode for global consistency
 		DMLScript.setGlobalExecMode(ExecMode.HYBRID);
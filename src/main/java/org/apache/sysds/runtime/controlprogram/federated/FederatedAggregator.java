@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.sysds.hops.OptimizerUtils;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.functionobjects.KahanPlus;
+import org.apache.sysds.runtime.instructions.cp.KahanObject;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.BinaryOperator;
+import org.apache.sysds.runtime.util.CommonThreadPool;
+
+/**
+ * Streaming aggregation of federated partial results in completion order. Instead of blocking on the responses in
+ * worker order, every partial result is folded into an accumulator as soon as its response completed, so a slow
+ * worker does not delay the combining of all other partial results, and the aggregator does not hold partial results
+ * beyond their folding. Matrix-sized partial results are folded by multiple threads into thread-local accumulators,
+ * which are combined once all responses arrived.
+ *
+ * The aggregation function needs to be commutative and associative, because the folding order depends on the order
+ * of completion. Hence, floating point aggregates like sums may differ in their last bits across runs. Scalar sums are
+ * folded with Kahan summation, which keeps this error independent of the number of partial results.
+ */
+public class FederatedAggregator {
+	/** Minimum number of cells of partial results for parallel folding */
+	public static final long PAR_NUMCELL_THRESHOLD = 64 * 1024;
+
+	// end-of-input marker for the folding tasks
+	private static final MatrixBlock EOF = new MatrixBlock(0, 0, true);
+
+	private FederatedAggregator() {
+		// private constructor
+	}
+
+	/**
+	 * Aggregate the matrix partial results of the given responses with a cell-wise binary operator.
+	 *
+	 * @param ffr responses with a matrix block as first data object
+	 * @param op  commutative and associative cell-wise operator (e.g., plus, min, max)
+	 * @return the aggregated matrix block
+	 */
+	public static MatrixBlock aggregate(Future<FederatedResponse>[] ffr, BinaryOperator op) {
+		return aggregate(ffr, op, (ix, obj) -> CompressedMatrixBlock.getUncompressed((MatrixBlock) obj));
+	}
+
+	/**
+	 * Aggregate the partial results of the given responses, which are mapped to matrix blocks, with a cell-wise binary
+	 * operator.
+	 *
+	 * @param ffr responses of partial results
+	 * @param op  commutative and associative cell-wise operator (e.g., plus, min, max)
+	 * @param map function to obtain the uncompressed matrix block of a response data object and its response index
+	 * @return the aggregated matrix block
+	 */
+	public static MatrixBlock aggregate(Future<FederatedResponse>[] ffr, BinaryOperator op,
+		BiFunction<Integer, Object, MatrixBlock> map) {
+		try {
+			final Completions c = new Completions(ffr);
+			// copy the first partial, because local partials might be referenced elsewhere
+			final MatrixBlock acc = new MatrixBlock();
+			acc.copy(c.nextMatrix(map));
+			final int k = Math.min(c.remaining() / 2, OptimizerUtils.getConstrainedNumThreads(-1));
+			if(k < 2 || acc.getLength() < PAR_NUMCELL_THRESHOLD) {
+				while(c.remaining() > 0)
+					acc.binaryOperationsInPlace(op, c.nextMatrix(map));
+				return acc;
+			}
+			return aggregateParallel(c, acc, op, map, k);
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed to aggregate federated partial results.", ex);
+		}
+	}
+
+	/**
+	 * Aggregate the scalar partial results of the given responses.
+	 *
+	 * @param ffr  responses of partial results
+	 * @param map  function to obtain the scalar value of a response data object
+	 * @param fold commutative and associative aggregation function
+	 * @param init initial value of the aggregate
+	 * @return the aggregated value
+	 */
+	public static double aggregate(Future<FederatedResponse>[] ffr, ToDoubleFunction<Object> map,
+		DoubleBinaryOperator fold, double init) {
+		try {
+			final Completions c = new Completions(ffr);
+			double ret = init;
+			while(c.remaining() > 0)
+				ret = fold.applyAsDouble(ret, map.applyAsDouble(c.next().getData()[0]));
+			return ret;
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed to aggregate federated partial results.", ex);
+		}
+	}
+
+	/**
+	 * Sum the scalar partial results of the given responses with Kahan summation.
+	 *
+	 * @param ffr responses of partial results
+	 * @param map function to obtain the scalar value of a response data object
+	 * @return the sum
+	 */
+	public static double aggregateSum(Future<FederatedResponse>[] ffr, ToDoubleFunction<Object> map) {
+		try {
+			final Completions c = new Completions(ffr);
+			final KahanObject sum = new KahanObject(0, 0);
+			final KahanPlus kplus = KahanPlus.getKahanPlusFnObject();
+			while(c.remaining() > 0)
+				kplus.execute2(sum, map.applyAsDouble(c.next().getData()[0]));
+			return sum._sum;
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed to aggregate federated partial results.", ex);
+		}
+	}
+
+	private static MatrixBlock aggregateParallel(Completions c, MatrixBlock acc, BinaryOperator op,
+		BiFunction<Integer, Object, MatrixBlock> map, int k) throws Exception {
+		final ExecutorService pool = CommonThreadPool.get(k);
+		final BlockingQueue<MatrixBlock> queue = new LinkedBlockingQueue<>();
+		try {
+			final List<Future<MatrixBlock>> tasks = new ArrayList<>(k);
+			for(int i = 0; i < k; i++)
+				tasks.add(pool.submit(() -> {
+					MatrixBlock local = null;
+					for(MatrixBlock mb = queue.take(); mb != EOF; mb = queue.take()) {
+						if(local == null) {
+							local = new MatrixBlock();
+							local.copy(mb);
+						}
+						else
+							local.binaryOperationsInPlace(op, mb);
+					}
+					return local;
+				}));
+			try {
+				while(c.remaining() > 0)
+					queue.add(c.nextMatrix(map));
+			}
+			finally {
+				for(int i = 0; i < k; i++)
+					queue.add(EOF);
+			}
+			for(Future<MatrixBlock> task : tasks) {
+				final MatrixBlock local = task.get();
+				if(local != null)
+					acc.binaryOperationsInPlace(op, local);
+			}
+			return acc;
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Responses of federated requests in the order of their completion. Netty and completable futures notify about
+	 * their completion, while all other futures are polled, and only waited for in order once no other responses are
+	 * outstanding.
+	 */
+	private static class Completions {
+		private final Future<FederatedResponse>[] _ffr;
+		private final BlockingQueue<Integer> _done = new LinkedBlockingQueue<>();
+		private final LinkedList<Integer> _polled = new LinkedList<>();
+		private int _notifying = 0;
+		private int _remaining;
+
+		public Completions(Future<FederatedResponse>[] ffr) {
+			_ffr = ffr;
+			_remaining = ffr.length;
+			for(int i = 0; i < ffr.length; i++) {
+				final Integer ix = i;
+				if(ffr[i] instanceof io.netty.util.concurrent.Future) {
+					_notifying++;
+					((io.netty.util.concurrent.Future<?>) ffr[i]).addListener(f -> _done.add(ix));
+				}
+				else if(ffr[i] instanceof CompletableFuture) {
+					_notifying++;
+					((CompletableFuture<?>) ffr[i]).whenComplete((r, e) -> _done.add(ix));
+				}
+				else
+					_polled.add(ix);
+			}
+		}
+
+		public int remaining() {
+			return _remaining;
+		}
+
+		public FederatedResponse next() throws Exception {
+			return _ffr[nextIndex()].get();
+		}
+
+		public MatrixBlock nextMatrix(BiFunction<Integer, Object, MatrixBlock> map) throws Exception {
+			final int ix = nextIndex();
+			return map.apply(ix, _ffr[ix].get().getData()[0]);
+		}
+
+		private int nextIndex() throws Exception {
+			if(_remaining <= 0)
+				throw new DMLRuntimeException("No remaining federated responses.");
+			Integer ix = null;
+			while(ix == null) {
+				ix = _done.poll();
+				if(ix != null)
+					_notifying--;
+				else
+					ix = pollCompleted();
+				if(ix == null) {
+					if(_notifying == 0)
+						ix = _polled.removeFirst(); // blocking get below
+					else if(_polled.isEmpty()) {
+						ix = _done.take();
+						_notifying--;
+					}
+					else if((ix = _done.poll(1, TimeUnit.MILLISECONDS)) != null)
+						_notifying--;
+				}
+			}
+			_remaining--;
+			return ix;
+		}
+
+		private Integer pollCompleted() {
+			for(Iterator<Integer> iter = _polled.iterator(); iter.hasNext();) {
+				final Integer ix = iter.next();
+				if(_ffr[ix].isDone()) {
+					iter.remove();
+					return ix;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport.LocalMode;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Pool of persistent channels from the coordinator to the federated workers, keyed by the socket address of the
+ * worker. A channel is leased exclusively for one batch of federated requests and returned to the pool once the
+ * response arrived, which avoids the TCP (and TLS) connection setup per federated request. Closed or broken channels
+ * are discarded on acquire and release, and replaced by new connections on demand.
+ */
+public class FederatedChannelPool {
+	private static final Log LOG = LogFactory.getLog(FederatedChannelPool.class.getName());
+
+	private final AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> _pools;
+	// pools of local channels to federated workers of this JVM
+	private final AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> _localPools;
+
+	/**
+	 * Create a new channel pool.
+	 *
+	 * @param group          event loop group used for all pooled channels
+	 * @param maxConnections maximum number of channels per federated site
+	 */
+	public FederatedChannelPool(EventLoopGroup group, int maxConnections) {
+		_pools = createPoolMap(group, maxConnections, false);
+		_localPools = createPoolMap(group, maxConnections, true);
+	}
+
+	private static AbstractChannelPoolMap<InetSocketAddress, FixedChannelPool> createPoolMap(EventLoopGroup group,
+		int maxConnections, boolean local) {
+		return new AbstractChannelPoolMap<>() {
+			@Override
+			protected FixedChannelPool newPool(InetSocketAddress address) {
+				final Bootstrap b = local ? FederatedTransport.createLocalBootstrap(group, address.getPort()) :
+					FederatedTransport.createBootstrap(group).remoteAddress(address);
+				final PoolHandler handler = new PoolHandler(address);
+				final FixedChannelPool pool = new FixedChannelPool(b, handler, ChannelHealthChecker.ACTIVE,
+					null, -1, maxConnections, Integer.MAX_VALUE, true, true);
+				handler.setPool(pool);
+				return pool;
+			}
+		};
+	}
+
+	/**
+	 * Send a batch of federated requests over a pooled channel to the given federated worker. The caller is blocked
+	 * until a channel is available (i.e., an idle channel is reused or a new connection is established), but not until
+	 * the response arrived.
+	 *
+	 * @param address socket address of the federated worker
+	 * @param request the requested operations
+	 * @return future of the federated response
+	 * @throws Exception if no connection could be established
+	 */
+	public Promise<FederatedResponse> execute(InetSocketAddress address, FederatedRequest... request)
+		throws Exception {
+		final FixedChannelPool pool = (FederatedTransport.getLocalMode(address) != LocalMode.NONE) ?
+			_localPools.get(address) : _pools.get(address);
+		final Channel ch = pool.acquire().sync().getNow();
+		final PooledRequestHandler handler = ch.pipeline().get(PooledRequestHandler.class);
+		final Promise<FederatedResponse> prom = ch.eventLoop().newPromise();
+		handler.setPromise(prom);
+		ch.writeAndFlush(request).addListener(f -> {
+			if(!f.isSuccess())
+				handler.fail(ch, f.cause());
+		});
+		return prom;
+	}
+
+	/**
+	 * Close all pooled channels of all federated sites.
+	 */
+	public void close() {
+		_pools.close();
+		_localPools.close();
+	}
+
+	private static class PoolHandler extends AbstractChannelPoolHandler {
+		private final InetSocketAddress _address;
+		private ChannelPool _pool;
+
+		public PoolHandler(InetSocketAddress address) {
+			_address = address;
+		}
+
+		public void setPool(ChannelPool pool) {
+			_pool = pool;
+		}
+
+		@Override
+		public void channelCreated(Channel ch) throws Exception {
+			if(LOG.isDebugEnabled())
+				LOG.debug("Created new pooled channel to federated worker " + _address);
+			FederatedData.initPipeline(ch, _address, new PooledRequestHandler(_pool));
+		}
+	}
+
+	/**
+	 * Persistent inbound handler of a pooled channel, which completes the promise of the currently leased request and
+	 * returns the channel to its pool afterwards.
+	 */
+	protected static class PooledRequestHandler extends ChannelInboundHandlerAdapter {
+		private final ChannelPool _pool;
+		private final AtomicReference<Promise<FederatedResponse>> _prom = new AtomicReference<>();
+
+		public PooledRequestHandler(ChannelPool pool) {
+			_pool = pool;
+		}
+
+		public void setPromise(Promise<FederatedResponse> prom) {
+			_prom.set(prom);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			final Promise<FederatedResponse> prom = release(ctx.channel());
+			if(prom != null)
+				prom.setSuccess((FederatedResponse) msg);
+			else
+				LOG.warn("Received federated response on idle channel " + ctx.channel());
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			fail(ctx.channel(), new DMLRuntimeException(
+				"Federated channel to " + ctx.channel().remoteAddress() + " closed before receiving a response."));
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			ctx.close();
+			fail(ctx.channel(), cause);
+		}
+
+		protected void fail(Channel ch, Throwable cause) {
+			final Promise<FederatedResponse> prom = release(ch);
+			if(prom != null)
+				prom.tryFailure(cause);
+		}
+
+		private Promise<FederatedResponse> release(Channel ch) {
+			// only the handler which takes the pending promise releases the lease
+			final Promise<FederatedResponse> prom = _prom.getAndSet(null);
+			if(prom != null)
+				_pool.release(ch);
+			return prom;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles.SiteProfile;
+
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Adaptive per-message compression of federated frames (federated compression strategy "adaptive"). Instead of one
+ * stream codec for the entire channel, the wire codec decides per frame if and how to compress, and carries the
+ * chosen codec in the frame header. The decision is based on a simple cost model, which compares the estimated
+ * transfer time of the uncompressed frame with the estimated compression and decompression time plus the transfer
+ * time of the compressed frame. The cost model uses the frame size, the density of the contained matrix blocks as a
+ * hint of the compression ratio, a running estimate of the link bandwidth to the remote host, and running estimates
+ * of the compression ratio and throughput of every codec.
+ *
+ * The link bandwidth is observed by the coordinator from the round trips of large request batches, i.e., the wire size
+ * of request and response over the time from sending the request to receiving the response, excluding the codec and
+ * worker times and the round-trip time of the site profile. Write completion times are not used, because writes
+ * complete once the data is handed to the socket buffer. Until a link is observed, the upload bandwidth of the site
+ * profile (if profiled, see {@link FederatedSiteProfiles}) or a default of 1Gb/s is assumed, which also applies to
+ * responses of federated workers.
+ *
+ * In order to keep the estimates of unused codecs up to date, every {@link #PROBE_INTERVAL}-th eligible frame is
+ * compressed with a codec in round-robin order, regardless of the cost model.
+ */
+public class FederatedCompressor {
+	/** Codecs of compressed frames, encoded by their ordinal in the frame header */
+	public enum Codec {
+		NONE, LZ4, ZLIB
+	}
+
+	/** Minimum size of frames to be considered for compression */
+	public static final int MIN_COMPRESS_SIZE = 16 * 1024;
+	/** Minimum size of frames to observe the link bandwidth */
+	public static final int MIN_OBSERVE_SIZE = 64 * 1024;
+	/** Number of eligible frames between probes of codecs */
+	public static final int PROBE_INTERVAL = 32;
+
+	// weight of new observations in the running estimates
+	private static final double ALPHA = 0.2;
+	// initial link bandwidth estimate of 1Gb/s, in bytes per nsec
+	private static final double DEFAULT_BANDWIDTH = 0.125;
+	// initial estimates of compression ratios, and compression throughput in bytes per nsec
+	private static final double[] DEFAULT_RATIO = {1.0, 0.6, 0.45};
+	private static final double[] DEFAULT_THROUGHPUT = {Double.POSITIVE_INFINITY, 0.5, 0.05};
+	// decompression throughput relative to the compression throughput
+	private static final double[] DECOMPRESS_SPEEDUP = {1.0, 4.0, 3.0};
+
+	private static final Codec[] CODECS = Codec.values();
+	private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+	// link bandwidth estimates per remote host, the codec estimates are local to this process
+	private static final Map<Object, Double> _bandwidth = new ConcurrentHashMap<>();
+	private static final double[] _ratio = DEFAULT_RATIO.clone();
+	private static final double[] _throughput = DEFAULT_THROUGHPUT.clone();
+	private static final AtomicLong _eligible = new AtomicLong();
+
+	private FederatedCompressor() {
+		// private constructor
+	}
+
+	/**
+	 * Indicates if adaptive per-message compression is configured.
+	 *
+	 * @return true if the federated compression strategy is "adaptive"
+	 */
+	public static boolean isAdaptive() {
+		return "adaptive".equalsIgnoreCase(
+			ConfigurationManager.getDMLConfig().getTextValue(DMLConfig.FEDERATED_COMPRESSION));
+	}
+
+	/**
+	 * Choose the codec for a frame of the given size.
+	 *
+	 * @param size    uncompressed frame size in bytes
+	 * @param density fraction of non-zero bytes of the frame (1 if unknown)
+	 * @param remote  remote address of the channel (null if unknown)
+	 * @return the chosen codec, NONE if the frame should not be compressed
+	 */
+	public static Codec choose(int size, double density, SocketAddress remote) {
+		if(size < MIN_COMPRESS_SIZE)
+			return Codec.NONE;
+		final long n = _eligible.incrementAndGet();
+		if(n % PROBE_INTERVAL == 0)
+			return CODECS[1 + (int) ((n / PROBE_INTERVAL) % (CODECS.length - 1))];
+
+		final double bandwidth = getBandwidth(remote);
+		synchronized(_ratio) {
+			Codec ret = Codec.NONE;
+			double minTime = size / bandwidth;
+			for(int i = 1; i < CODECS.length; i++) {
+				// zeros compress well, independent of the observed ratios
+				final double ratio = Math.min(_ratio[i], Math.max(density, 0.05) + 0.05);
+				final double time = size / _throughput[i] * (1 + 1 / DECOMPRESS_SPEEDUP[i])
+					+ size * ratio / bandwidth;
+				if(time < minTime) {
+					minTime = time;
+					ret = CODECS[i];
+				}
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Get the running estimate of the link bandwidth to the given remote address.
+	 *
+	 * @param remote remote address of the channel (null if unknown)
+	 * @return bandwidth in bytes per nsec
+	 */
+	public static double getBandwidth(SocketAddress remote) {
+		if(remote == null)
+			return DEFAULT_BANDWIDTH;
+		final Double observed = _bandwidth.get(getHost(remote));
+		return (observed != null) ? observed : getInitialBandwidth(remote);
+	}
+
+	/**
+	 * Update the running estimate of the link bandwidth to the given federated site with the round trip of a request
+	 * batch, where the round-trip time of the site profile (if profiled) is deducted from the network time.
+	 *
+	 * @param address socket address of the federated site
+	 * @param bytes   wire size of the request batch and the response
+	 * @param nanos   network time of the round trip in nsec, excluding the codec and worker times
+	 */
+	public static void observeRoundTrip(InetSocketAddress address, long bytes, long nanos) {
+		final SiteProfile profile = getProfile(address);
+		final long rtt = (profile != null) ? (long) (profile.getLatency() * 1e9) : 0;
+		// bounded like the probes of site profiles, to avoid infinite bandwidth on fast local links
+		observeTransfer(address, bytes, Math.max(nanos - rtt, 1000));
+	}
+
+	/**
+	 * Update the running estimate of the link bandwidth to the given remote address with an observed transfer.
+	 *
+	 * @param remote remote address of the channel (null if unknown)
+	 * @param bytes  number of transferred bytes
+	 * @param nanos  transfer time in nsec
+	 */
+	public static void observeTransfer(SocketAddress remote, long bytes, long nanos) {
+		if(remote == null || bytes < MIN_OBSERVE_SIZE || nanos <= 0)
+			return;
+		final double observed = (double) bytes / nanos;
+		final double initial = getInitialBandwidth(remote);
+		// atomic update, the responses of one remote host are received on different event loops
+		_bandwidth.compute(getHost(remote), (k, v) -> (1 - ALPHA) * ((v != null) ? v : initial) + ALPHA * observed);
+	}
+
+	private static double getInitialBandwidth(SocketAddress remote) {
+		final SiteProfile profile = getProfile(remote);
+		return (profile != null && profile.getUploadBandwidth() > 0) ?
+			profile.getUploadBandwidth() / 1e9 : DEFAULT_BANDWIDTH;
+	}
+
+	private static SiteProfile getProfile(SocketAddress remote) {
+		return (remote instanceof InetSocketAddress && FederatedSiteProfiles.isEnabled()) ?
+			FederatedSiteProfiles.get((InetSocketAddress) remote) : null;
+	}
+
+	private static Object getHost(SocketAddress remote) {
+		// connections from the same host share the link, independent of their (ephemeral) ports
+		return (remote instanceof InetSocketAddress && ((InetSocketAddress) remote).getAddress() != null) ?
+			((InetSocketAddress) remote).getAddress() : remote;
+	}
+
+	/**
+	 * Compress a range of the source buffer into the target buffer.
+	 *
+	 * @param codec codec of the compressed data
+	 * @param src   source buffer
+	 * @param index start index of the uncompressed data in the source buffer
+	 * @param len   length of the uncompressed data
+	 * @param dst   target buffer, written at its writer index
+	 * @return true if the compressed data is smaller than the uncompressed data
+	 */
+	public static boolean compress(Codec codec, ByteBuf src, int index, int len, ByteBuf dst) {
+		final long t0 = System.nanoTime();
+		final int start = dst.writerIndex();
+		final ByteBuffer in = src.nioBuffer(index, len);
+		switch(codec) {
+			case LZ4: {
+				final LZ4Compressor comp = LZ4.fastCompressor();
+				final int maxLen = comp.maxCompressedLength(len);
+				dst.ensureWritable(maxLen);
+				final ByteBuffer out = dst.nioBuffer(dst.writerIndex(), maxLen);
+				final int clen = comp.compress(in, in.position(), len, out, out.position(), maxLen);
+				dst.writerIndex(dst.writerIndex() + clen);
+				break;
+			}
+			case ZLIB: {
+				final Deflater def = new Deflater(Deflater.BEST_SPEED, true);
+				try {
+					def.setInput(in);
+					def.finish();
+					while(!def.finished()) {
+						dst.ensureWritable(len / 4 + 64);
+						final ByteBuffer out = dst.nioBuffer(dst.writerIndex(), dst.writableBytes());
+						dst.writerIndex(dst.writerIndex() + def.deflate(out));
+					}
+				}
+				finally {
+					def.end();
+				}
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Invalid federated compression codec: " + codec);
+		}
+		final long time = System.nanoTime() - t0;
+		final int clen = dst.writerIndex() - start;
+		synchronized(_ratio) {
+			final int i = codec.ordinal();
+			_ratio[i] = (1 - ALPHA) * _ratio[i] + ALPHA * Math.min((double) clen / len, 1);
+			_throughput[i] = (1 - ALPHA) * _throughput[i] + ALPHA * len / Math.max(time, 1);
+		}
+		FederatedStatistics.incFedCompression(codec, len, Math.min(clen, len), time);
+		return clen < len;
+	}
+
+	/**
+	 * Decompress the readable bytes of the source buffer into the target buffer.
+	 *
+	 * @param codec codec of the compressed data
+	 * @param src   source buffer with the compressed data
+	 * @param dst   target buffer, written at its writer index
+	 * @param len   length of the uncompressed data
+	 * @throws IOException if the compressed data is corrupted
+	 */
+	public static void decompress(Codec codec, ByteBuf src, ByteBuf dst, int len) throws IOException {
+		final long t0 = System.nanoTime();
+		final ByteBuffer in = src.nioBuffer();
+		dst.ensureWritable(len);
+		final ByteBuffer out = dst.nioBuffer(dst.writerIndex(), len);
+		int dlen;
+		switch(codec) {
+			case LZ4: {
+				final LZ4SafeDecompressor decomp = LZ4.safeDecompressor();
+				dlen = decomp.decompress(in, in.position(), in.remaining(), out, out.position(), len);
+				break;
+			}
+			case ZLIB: {
+				final Inflater inf = new Inflater(true);
+				try {
+					inf.setInput(in);
+					dlen = 0;
+					while(dlen < len && !inf.finished()) {
+						final int n = inf.inflate(out);
+						if(n == 0 && (inf.needsInput() || inf.needsDictionary()))
+							break;
+						dlen += n;
+					}
+				}
+				catch(DataFormatException ex) {
+					throw new IOException("Corrupted compressed federated frame.", ex);
+				}
+				finally {
+					inf.end();
+				}
+				break;
+			}
+			default:
+				throw new IOException("Invalid federated compression codec: " + codec);
+		}
+		if(dlen != len)
+			throw new IOException("Decompressed " + dlen + " bytes but expected " + len + " bytes.");
+		dst.writerIndex(dst.writerIndex() + len);
+		FederatedStatistics.incFedDecompression(codec, System.nanoTime() - t0);
+	}
+
+	/**
+	 * Reset the running estimates of the link bandwidth and the codecs.
+	 */
+	public static void reset() {
+		_bandwidth.clear();
+		synchronized(_ratio) {
+			System.arraycopy(DEFAULT_RATIO, 0, _ratio, 0, _ratio.length);
+			System.arraycopy(DEFAULT_THROUGHPUT, 0, _throughput, 0, _throughput.length);
+		}
+		_eligible.set(0);
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
+
+/**
+ * Content-addressed parameter of a PUT_VAR request, which carries the digest of a broadcast cache block and either the
+ * cache block itself or no data (i.e., a reference to content that is already stored at the federated worker).
+ */
+public class FederatedContent {
+	private final String _digest;
+	private final CacheBlock<?> _block;
+
+	public FederatedContent(String digest, CacheBlock<?> block) {
+		_digest = digest;
+		_block = block;
+	}
+
+	public String getDigest() {
+		return _digest;
+	}
+
+	public CacheBlock<?> getBlock() {
+		return _block;
+	}
+
+	public boolean isReference() {
+		return _block == null;
+	}
+
+	@Override
+	public String toString() {
+		return "FederatedContent[" + _digest + (isReference() ? "]" : ";" + _block.getClass().getSimpleName() + "]");
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Content-addressed deduplication of broadcasts, which avoids re-sending loop-invariant broadcast data (e.g., model
+ * vectors or constant matrices) to federated workers that already received the same content before.
+ *
+ * On the coordinator, large cache blocks of PUT_VAR requests are identified by a SHA-256 digest of their serialized
+ * representation. The coordinator tracks per connection to a federated worker (i.e., per worker address) which
+ * digests it already sent, and replaces these blocks by digest references. On the federated worker, received blocks
+ * are kept in a memory-bounded LRU store keyed by their digest, and references are resolved against this store before
+ * executing the requests. If the worker evicted a referenced block, it answers with a MISS response without executing
+ * any request, and the coordinator transparently re-sends the requests with the full blocks.
+ *
+ * The deduplication is disabled by default and enabled by a positive store budget. Each federated worker owns a
+ * store (instance of this class) via its lookup table, which is released once the worker removed the execution
+ * contexts of all its coordinators or shuts down. The static methods implement the coordinator side.
+ */
+public class FederatedContentStore {
+	private static final Log LOG = LogFactory.getLog(FederatedContentStore.class.getName());
+
+	/** Minimum serialized size of cache blocks to be deduplicated */
+	public static final long MIN_CONTENT_SIZE = 64 * 1024;
+	/** Maximum number of tracked digests per federated worker */
+	private static final int MAX_KNOWN_DIGESTS = 4096;
+
+	// coordinator: digests sent to the federated workers
+	private static final Map<InetSocketAddress, Set<String>> _known = new ConcurrentHashMap<>();
+
+	// federated worker: stored content blocks
+	private final LinkedHashMap<String, CacheBlock<?>> _store = new LinkedHashMap<>(16, 0.75f, true);
+	private final long _capacity;
+	private long _storeSize = 0;
+
+	/**
+	 * Create the content store of a federated worker.
+	 *
+	 * @param capacity max in-memory size of the stored blocks in bytes
+	 */
+	public FederatedContentStore(long capacity) {
+		_capacity = capacity;
+	}
+
+	/**
+	 * Indicates if content-addressed broadcasts are enabled.
+	 *
+	 * @return true if enabled
+	 */
+	public static boolean isEnabled() {
+		return ConfigurationManager.getFederatedContentStoreSize() > 0;
+	}
+
+	/**
+	 * Replace large cache blocks of PUT_VAR requests by content parameters, which are digest references for content
+	 * already sent to the given federated worker, and full content otherwise.
+	 *
+	 * @param address socket address of the federated worker
+	 * @param request the requested operations
+	 * @param full    true to send the full content in any case
+	 * @return the encoded requests, or the given requests if no content was encoded
+	 */
+	public static FederatedRequest[] encode(InetSocketAddress address, FederatedRequest[] request, boolean full) {
+		FederatedRequest[] ret = request;
+		for(int i = 0; i < request.length; i++) {
+			final FederatedRequest fr = request[i];
+			if(fr.getType() != RequestType.PUT_VAR || fr.getNumParams() != 1 || !(fr.getParam(0) instanceof CacheBlock))
+				continue;
+			final CacheBlock<?> cb = (CacheBlock<?>) fr.getParam(0);
+			final long size = cb.getExactSerializedSize();
+			if(size < MIN_CONTENT_SIZE)
+				continue;
+			if(fr.getContentDigest() == null)
+				fr.setContentDigest(digest(cb));
+			final String digest = fr.getContentDigest();
+
+			final Set<String> known = _known.computeIfAbsent(address, k -> createKnownSet());
+			final boolean ref = !full && known.contains(digest);
+			if(!ref)
+				known.add(digest);
+			else
+				FederatedStatistics.incFedContentRefs(size);
+
+			if(ret == request)
+				ret = request.clone();
+			final List<Object> data = new ArrayList<>();
+			data.add(new FederatedContent(digest, ref ? null : cb));
+			ret[i] = new FederatedRequest(fr.getType(), fr.getID(), fr.getTID(), fr.getPID(), data,
+				fr.getChecksums(), fr.getLineageTrace());
+		}
+		return ret;
+	}
+
+	/**
+	 * Wrap the future of encoded requests, so that the requests are re-sent with full content if the federated worker
+	 * does not store the referenced content anymore.
+	 *
+	 * @param address socket address of the federated worker
+	 * @param request the original requested operations
+	 * @param sent    future of the sent encoded requests
+	 * @return future of the federated response
+	 */
+	public static Future<FederatedResponse> resendOnMiss(InetSocketAddress address, FederatedRequest[] request,
+		Promise<FederatedResponse> sent) {
+		final CompletableFuture<FederatedResponse> ret = new CompletableFuture<>();
+		sent.addListener(f -> {
+			if(!f.isSuccess())
+				ret.completeExceptionally(f.cause());
+			else if(sent.getNow().getStatus() != ResponseType.MISS)
+				ret.complete(sent.getNow());
+			else {
+				// the worker evicted content (or restarted), re-send from outside the event loop
+				FederatedStatistics.incFedContentMisses();
+				_known.remove(address);
+				CompletableFuture.runAsync(() -> {
+					try {
+						ret.complete(FederatedData.executeFederatedOperation(address, 1, encode(address, request, true)).get());
+					}
+					catch(Exception ex) {
+						ret.completeExceptionally(ex);
+					}
+				});
+			}
+		});
+		return ret;
+	}
+
+	/**
+	 * Resolve the content parameters of received requests on the federated worker, i.e., store the received content,
+	 * and replace the content parameters by the stored or received cache blocks.
+	 *
+	 * @param requests the received requests
+	 * @return a MISS response if referenced content is not available, otherwise null
+	 */
+	public FederatedResponse resolve(FederatedRequest[] requests) {
+		List<String> missing = null;
+		for(FederatedRequest fr : requests) {
+			for(int i = 0; i < fr.getNumParams(); i++) {
+				if(!(fr.getParam(i) instanceof FederatedContent))
+					continue;
+				final FederatedContent fc = (FederatedContent) fr.getParam(i);
+				CacheBlock<?> cb = fc.getBlock();
+				if(cb != null)
+					put(fc.getDigest(), cb);
+				else
+					cb = get(fc.getDigest());
+				if(cb == null) {
+					missing = (missing != null) ? missing : new ArrayList<>();
+					missing.add(fc.getDigest());
+				}
+				else
+					fr.setParam(i, cb);
+			}
+		}
+		if(missing == null)
+			return null;
+		if(LOG.isDebugEnabled())
+			LOG.debug("Missing broadcast content " + missing);
+		return new FederatedResponse(ResponseType.MISS,
+			new FederatedWorkerHandlerException("Missing broadcast content " + missing));
+	}
+
+	/**
+	 * Get the number of cache blocks in the worker-side content store.
+	 *
+	 * @return number of stored blocks
+	 */
+	public synchronized int getNumStored() {
+		return _store.size();
+	}
+
+	/**
+	 * Get the in-memory size of the cache blocks in the worker-side content store.
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getStoreSize() {
+		return _storeSize;
+	}
+
+	/**
+	 * Clear the coordinator-side digests, which makes subsequent broadcasts send the full content.
+	 */
+	public static void clearKnown() {
+		_known.clear();
+	}
+
+	/**
+	 * Clear the worker-side content store, which makes subsequent references to the content miss.
+	 */
+	public synchronized void clear() {
+		_store.clear();
+		_storeSize = 0;
+	}
+
+	protected static String digest(CacheBlock<?> cb) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance("SHA-256");
+			try(DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), md))) {
+				cb.write(out);
+			}
+			final StringBuilder sb = new StringBuilder(cb.getClass().getSimpleName()).append('-');
+			for(byte b : md.digest())
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed to compute digest of broadcast content.", ex);
+		}
+	}
+
+	private synchronized void put(String digest, CacheBlock<?> cb) {
+		final long size = cb.getInMemorySize();
+		if(size > _capacity || _store.containsKey(digest))
+			return;
+		_store.put(digest, cb);
+		_storeSize += size;
+		// evict least recently used content
+		final var iter = _store.entrySet().iterator();
+		while(_storeSize > _capacity && iter.hasNext()) {
+			_storeSize -= iter.next().getValue().getInMemorySize();
+			iter.remove();
+		}
+	}
+
+	private synchronized CacheBlock<?> get(String digest) {
+		return _store.get(digest);
+	}
+
+	private static Set<String> createKnownSet() {
+		return Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > MAX_KNOWN_DIGESTS;
+			}
+		}));
+	}
+}
@@ -29,6 +29,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Future;
 
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -45,26 +46,34 @@ import org.apache.sysds.conf.DMLConfig;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport.LocalMode;
 import org.apache.sysds.runtime.controlprogram.paramserv.NetworkTrafficCounter;
 import org.apache.sysds.runtime.meta.MetaData;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.local.LocalChannel;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.util.concurrent.Promise;
 
-@SuppressWarnings("deprecation")
 public class FederatedData {
 	private static final Log LOG = LogFactory.getLog(FederatedData.class.getName());
 	private static final Set<InetSocketAddress> _allFedSites = new HashSet<>();
 
 	/** Thread pool specific for the federated requests */
-	private static EventLoopGroup workerGroup = null;
+	private static volatile EventLoopGroup workerGroup = null;
 
+	/** Pool of persistent channels to the federated workers (null if pooling is disabled) */
+	private static volatile FederatedChannelPool channelPool = null;
+
+	/** Multiplexed channels to the federated workers (null if multiplexing is disabled) */
+	private static volatile FederatedMultiplexer multiplexer = null;
+
+	/** Single multiplexed channel per federated worker for request batches that need to arrive in order */
+	private static volatile FederatedMultiplexer sequencer = null;
 
 
 	private final Types.DataType _dataType;
@@ -80,8 +89,10 @@ public class FederatedData {
 		_dataType = dataType;
 		_address = address;
 		_filepath = filepath;
-		if(_address != null)
+		if(_address != null) {
 			_allFedSites.add(_address);
+			FederatedSiteProfiles.register(_address);
+		}
 	}
 
 	public FederatedData(Types.DataType dataType, InetSocketAddress address, String filepath, long varID) {
@@ -174,6 +185,8 @@ public class FederatedData {
 	 */
 	public static Future<FederatedResponse> executeFederatedOperation(InetSocketAddress address,
 		FederatedRequest... request) {
+		if(ConfigurationManager.isFederatedLazyExecution())
+			return FederatedRequestCoalescer.execute(address, request);
 		return executeFederatedOperation(address, 1, request);
 	}
 
@@ -185,20 +198,103 @@ public class FederatedData {
 	 * @param request the requested operation
 	 * @return the response
 	 */
-	public synchronized static Future<FederatedResponse> executeFederatedOperation(InetSocketAddress address, int retry,
+	public static Future<FederatedResponse> executeFederatedOperation(InetSocketAddress address, int retry,
+		FederatedRequest... request) {
+		if(!FederatedContentStore.isEnabled() || FederatedTransport.getLocalMode(address) == LocalMode.REFERENCE)
+			return sendFederatedOperation(address, retry, false, request); // no broadcast dedup for shared references
+		// replace already sent broadcast content by digest references
+		final FederatedRequest[] encoded = FederatedContentStore.encode(address, request, false);
+		final Promise<FederatedResponse> ret = sendFederatedOperation(address, retry, false, encoded);
+		return (encoded == request) ? ret : FederatedContentStore.resendOnMiss(address, request, ret);
+	}
+
+	/**
+	 * Executes a federated operation on a federated worker over a single channel per worker, such that the worker
+	 * receives the request batches in the order of the calls, which the caller needs to serialize per worker. The
+	 * requests are sent without broadcast deduplication, because resending a request on a digest miss would overtake
+	 * subsequent requests.
+	 *
+	 * @param address socket address (incl host and port)
+	 * @param request the requested operation
+	 * @return the response
+	 */
+	static Future<FederatedResponse> executeOrderedFederatedOperation(InetSocketAddress address,
 		FederatedRequest... request) {
+		return sendFederatedOperation(address, 1, true, request);
+	}
+
+	private static Promise<FederatedResponse> sendFederatedOperation(InetSocketAddress address, int retry,
+		boolean ordered, FederatedRequest... request) {
+		// bound the in-flight request batches per federated site
+		if(FederatedInflightWindow.isEnabled())
+			return FederatedInflightWindow.get(address)
+				.execute(request, r -> transmitFederatedOperation(address, retry, ordered, r));
+		return transmitFederatedOperation(address, retry, ordered, request);
+	}
+
+	private static Promise<FederatedResponse> transmitFederatedOperation(InetSocketAddress address, int retry,
+		boolean ordered, FederatedRequest... request) {
+		final long t0 = System.nanoTime();
+		final Promise<FederatedResponse> ret = writeFederatedOperation(address, retry, ordered, request);
+		ret.addListener(f -> {
+			if(f.isSuccess() && f.getNow() != null)
+				incFedLatency(address, request, (FederatedResponse) f.getNow(), t0, System.nanoTime() - t0);
+		});
+		return ret;
+	}
+
+	/**
+	 * Record the stage latencies of an answered request batch, where the network time is derived from the total
+	 * latency and the stage times measured by the codecs and the federated worker.
+	 *
+	 * @param address  socket address of the federated site
+	 * @param request  the request batch
+	 * @param response the response of the federated worker
+	 * @param start    start time as System.nanoTime()
+	 * @param total    total latency in ns
+	 */
+	private static void incFedLatency(InetSocketAddress address, FederatedRequest[] request,
+		FederatedResponse response, long start, long total) {
+		final long serialize = FederatedWireCodec.getCodecTime(request);
+		final long[] worker = response.getWorkerTimes();
+		final long deserialize = response.getCodecTime() + ((worker != null) ? worker[0] : 0);
+		final long queue = (worker != null) ? worker[1] : 0;
+		final long execute = (worker != null) ? worker[2] : 0;
+		final long network = Math.max(total - serialize - deserialize - queue - execute, 0);
+		final String key = FederatedStatistics.getFedLatencyKey(request);
+		FederatedStatistics.incFedLatency(key, serialize, network, queue, execute, deserialize);
+		if(FederatedCompressor.isAdaptive())
+			FederatedCompressor.observeRoundTrip(address,
+				FederatedWireCodec.getWireSize(request) + FederatedWireCodec.getWireSize(response), network);
+
+		final TraceContext trace = (request.length > 0) ? request[0].getTraceContext() : null;
+		if(trace != null && FederatedTracer.isEnabled())
+			FederatedTracer.getCoordinator().record("request " + key, trace, start, total, "site", address.toString(),
+				"serialize_us", serialize / 1000, "network_us", network / 1000, "queue_us", queue / 1000,
+				"execute_us", execute / 1000, "deserialize_us", deserialize / 1000);
+	}
+
+	private static Promise<FederatedResponse> writeFederatedOperation(InetSocketAddress address, int retry,
+		boolean ordered, FederatedRequest... request) {
 		try {
-			final Bootstrap b = new Bootstrap();
 			if(workerGroup == null)
 				createWorkGroup();
-			b.group(workerGroup);
-			b.channel(NioSocketChannel.class);
+			if(ordered)
+				return sequencer.execute(address, request);
+			final FederatedMultiplexer mux = multiplexer;
+			if(mux != null)
+				return mux.execute(address, request);
+			final FederatedChannelPool pool = channelPool;
+			if(pool != null)
+				return pool.execute(address, request);
+
+			final Bootstrap b = FederatedTransport.createBootstrap(workerGroup, address);
 			final DataRequestHandler handler = new DataRequestHandler();
 			// Client Netty
 
 			b.handler(createChannel(address, handler));
 
-			ChannelFuture f = b.connect(address).sync();
+			ChannelFuture f = b.connect().sync();
 			Promise<FederatedResponse> promise = f.channel().eventLoop().newPromise();
 			handler.setPromise(promise);
 			f.channel().writeAndFlush(request);
@@ -216,7 +312,7 @@ public class FederatedData {
 					catch(Exception e2) {
 						throw new DMLRuntimeException(e);
 					}
-					return executeFederatedOperation(address, retry + 1, request);
+					return writeFederatedOperation(address, retry + 1, ordered, request);
 				}
 				else {
 					throw new DMLRuntimeException(e);
@@ -226,30 +322,60 @@ public class FederatedData {
 		}
 	}
 
-	private static ChannelInitializer<SocketChannel> createChannel(InetSocketAddress address,
+	private static ChannelInitializer<Channel> createChannel(InetSocketAddress address,
 		DataRequestHandler handler) {
-		final int timeout = ConfigurationManager.getFederatedTimeout();
-		final boolean ssl = ConfigurationManager.isFederatedSSL();
-
 		return new ChannelInitializer<>() {
 			@Override
-			protected void initChannel(SocketChannel ch) throws Exception {
-				final ChannelPipeline cp = ch.pipeline();
-				final Optional<ImmutablePair<ChannelInboundHandlerAdapter, ChannelOutboundHandlerAdapter>> compressionStrategy = FederationUtils.compressionStrategy();
-				cp.addLast("NetworkTrafficCounter", new NetworkTrafficCounter(FederatedStatistics::logServerTraffic));
-
-				if(ssl)
-					cp.addLast(FederatedSSLUtil.createSSLHandler(ch, address));
-				if(timeout > -1)
-					cp.addLast(new ReadTimeoutHandler(timeout));
+			protected void initChannel(Channel ch) throws Exception {
+				initPipeline(ch, address, handler);
+			}
+		};
+	}
 
-				compressionStrategy.ifPresent(strategy -> cp.addLast(strategy.left));
+	/**
+	 * Set up the coordinator-side pipeline of a channel to a federated worker. Local channels to workers of this JVM
+	 * have no SSL and WAN emulation, and local channels without serialization (reference mode) have no codecs at all.
+	 *
+	 * @param ch      the channel to the federated worker
+	 * @param address socket address of the federated worker
+	 * @param handler inbound handler receiving the federated responses
+	 * @throws Exception if the SSL handler cannot be created
+	 */
+	static void initPipeline(Channel ch, InetSocketAddress address, ChannelInboundHandlerAdapter handler)
+		throws Exception {
+		final int timeout = ConfigurationManager.getFederatedTimeout();
+		final ChannelPipeline cp = ch.pipeline();
+		if(ch instanceof LocalChannel) {
+			if(timeout > -1)
+				cp.addLast(new ReadTimeoutHandler(timeout));
+			// the pipeline must match the worker's local channel, independent of the configuration of this thread
+			if(FederatedTransport.getLocalWorkerMode(address.getPort()) != LocalMode.REFERENCE) {
 				cp.addLast(FederationUtils.decoder());
-				compressionStrategy.ifPresent(strategy -> cp.addLast(strategy.right));
+				cp.addLast(new ChunkedWriteHandler());
 				cp.addLast(new FederatedRequestEncoder());
-				cp.addLast(handler);
 			}
-		};
+			cp.addLast(handler);
+			return;
+		}
+
+		final boolean ssl = ConfigurationManager.isFederatedSSL();
+		final Optional<ImmutablePair<ChannelInboundHandlerAdapter, ChannelOutboundHandlerAdapter>> compressionStrategy = FederationUtils.compressionStrategy();
+		final FederatedWanEmulator wan = FederatedWanEmulator.create(address.getHostString(), address.getPort());
+		if(wan != null)
+			cp.addLast("WanEmulator", wan);
+		cp.addLast("NetworkTrafficCounter", new NetworkTrafficCounter(FederatedStatistics::logServerTraffic));
+
+		if(ssl)
+			cp.addLast(FederatedSSLUtil.createSSLHandler((SocketChannel) ch, address));
+		if(timeout > -1)
+			cp.addLast(new ReadTimeoutHandler(timeout));
+
+		compressionStrategy.ifPresent(strategy -> cp.addLast(strategy.left));
+		cp.addLast(FederationUtils.decoder());
+		compressionStrategy.ifPresent(strategy -> cp.addLast(strategy.right));
+		cp.addLast(new ChunkedWriteHandler());
+		cp.addLast(new FederatedRequestEncoder());
+		cp.addLast(handler);
 	}
 
 	public static void clearFederatedWorkers() {
@@ -280,15 +406,34 @@ public class FederatedData {
 		_allFedSites.clear();
 	}
 
-	public static void clearWorkGroup() {
+	public synchronized static void clearWorkGroup() {
+		if(multiplexer != null)
+			multiplexer.close();
+		multiplexer = null;
+		if(sequencer != null)
+			sequencer.close();
+		sequencer = null;
+		if(channelPool != null)
+			channelPool.close();
+		channelPool = null;
 		if(workerGroup != null)
 			workerGroup.shutdownGracefully();
 		workerGroup = null;
 	}
 
 	public synchronized static void createWorkGroup() {
-		if(workerGroup == null)
-			workerGroup = new NioEventLoopGroup(DMLConfig.DEFAULT_NUMBER_OF_FEDERATED_WORKER_THREADS);
+		if(workerGroup == null) {
+			final EventLoopGroup group = FederatedTransport
+				.createEventLoopGroup(DMLConfig.DEFAULT_NUMBER_OF_FEDERATED_WORKER_THREADS);
+			final int muxChannels = ConfigurationManager.getFederatedMultiplexChannels();
+			final int poolSize = ConfigurationManager.getFederatedConnPoolSize();
+			if(muxChannels > 0)
+				multiplexer = new FederatedMultiplexer(group, muxChannels);
+			else if(poolSize > 0)
+				channelPool = new FederatedChannelPool(group, poolSize);
+			sequencer = new FederatedMultiplexer(group, 1); // connects on first use
+			workerGroup = group; // publish last, after the transport is set up
+		}
 	}
 
 	private static class DataRequestHandler extends ChannelInboundHandlerAdapter {
@@ -323,29 +468,7 @@ public class FederatedData {
 		return sb.toString();
 	}
 
-	public static class FederatedRequestEncoder extends ObjectEncoder {
-		@Override
-		protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Serializable msg, boolean preferDirect)
-			throws Exception {
-			int initCapacity = 256; // default initial capacity
-			if(msg instanceof FederatedRequest[]) {
-				initCapacity = 0;
-				try {
-					for(FederatedRequest fr : (FederatedRequest[]) msg) {
-						int frSize = Math.toIntExact(fr.estimateSerializationBufferSize());
-						if(Integer.MAX_VALUE - initCapacity < frSize) // summed sizes exceed integer limits
-							throw new ArithmeticException("Overflow.");
-						initCapacity += frSize;
-					}
-				}
-				catch(ArithmeticException ae) { // size of federated request exceeds integer limits
-					initCapacity = Integer.MAX_VALUE;
-				}
-			}
-			if(preferDirect)
-				return ctx.alloc().ioBuffer(initCapacity);
-			else
-				return ctx.alloc().heapBuffer(initCapacity);
-		}
+	public static class FederatedRequestEncoder extends FederatedWireCodec.Encoder {
+		// request batches are framed and sized by the federated wire codec
 	}
 }
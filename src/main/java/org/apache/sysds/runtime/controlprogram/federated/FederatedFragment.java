@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.sysds.api.DMLScript;
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.lops.Lop;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.controlprogram.BasicProgramBlock;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.data.DenseBlock;
+import org.apache.sysds.runtime.data.SparseBlock;
+import org.apache.sysds.runtime.functionobjects.Multiply;
+import org.apache.sysds.runtime.instructions.Instruction;
+import org.apache.sysds.runtime.instructions.cp.BinaryMatrixScalarCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.CPOperand;
+import org.apache.sysds.runtime.instructions.cp.ComputationCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.UnaryMatrixCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.VariableCPInstruction;
+import org.apache.sysds.runtime.matrix.data.LibCommonsMath;
+import org.apache.sysds.runtime.matrix.data.LibMatrixAgg;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.MultiThreadedOperator;
+import org.apache.sysds.runtime.matrix.operators.Operator;
+import org.apache.sysds.runtime.matrix.operators.ScalarOperator;
+import org.apache.sysds.runtime.matrix.operators.UnaryOperator;
+import org.apache.sysds.runtime.util.CommonThreadPool;
+import org.apache.sysds.runtime.util.UtilFunctions;
+
+/**
+ * Program fragment of a federated worker, i.e., a sequence of instructions received in a single request. The
+ * fragment is compiled into a single program block, where chains of cell-wise matrix-scalar and unary operations
+ * (e.g., exp(X*2+1)) are fused into one instruction that computes the chain in a single pass over the input without
+ * materializing the intermediates.
+ *
+ * A chain is only fused if its intermediates are used exclusively by the next operation of the chain and removed
+ * within the fragment, and if only removals of already consumed intermediates are interleaved with the chain.
+ */
+public class FederatedFragment {
+	private static final long PAR_NUMCELL_THRESHOLD = 16 * 1024;
+
+	private FederatedFragment() {
+		// private constructor
+	}
+
+	/**
+	 * Create the execution plan of the given instructions as steps of instruction positions in order of execution,
+	 * where steps of multiple positions are fused chains of cell-wise operations.
+	 *
+	 * @param ins parsed instructions of the fragment
+	 * @return execution steps
+	 */
+	public static int[][] plan(Instruction[] ins) {
+		final int n = ins.length;
+		final List<Set<String>> refs = new ArrayList<>(n);
+		for(Instruction in : ins)
+			refs.add(getReferencedNames(in));
+
+		// find chains of cell-wise operations
+		final int[] last = new int[n]; // position of the last chain member, or -1 for members of longer chains
+		final List<List<Integer>> chains = new ArrayList<>(n);
+		for(int i = 0; i < n; i++) {
+			last[i] = i;
+			chains.add(null);
+		}
+		for(int i = 0; i < n; i++) {
+			if(last[i] != i || chains.get(i) != null || !isCellwise(ins[i]))
+				continue;
+			final List<Integer> chain = new ArrayList<>();
+			final Set<String> consumed = new HashSet<>();
+			chain.add(i);
+			int cur = i;
+			int next;
+			while((next = getChainSuccessor(ins, refs, cur, consumed)) >= 0) {
+				consumed.add(getOutput(ins[cur]));
+				chain.add(next);
+				cur = next;
+			}
+			if(chain.size() > 1) {
+				for(int j : chain)
+					last[j] = -1;
+				last[cur] = cur;
+				chains.set(cur, chain);
+			}
+		}
+
+		final List<int[]> steps = new ArrayList<>(n);
+		for(int i = 0; i < n; i++) {
+			if(last[i] < 0)
+				continue;
+			final List<Integer> chain = chains.get(i);
+			steps.add((chain == null) ? new int[] {i} : chain.stream().mapToInt(Integer::intValue).toArray());
+		}
+		return steps.toArray(new int[0][]);
+	}
+
+	/**
+	 * Compile the given instructions into a single program block according to the given plan.
+	 *
+	 * @param ins  parsed instructions of the fragment
+	 * @param plan execution steps of the instructions
+	 * @return program block of the fragment
+	 */
+	public static BasicProgramBlock compile(Instruction[] ins, int[][] plan) {
+		final BasicProgramBlock pb = new BasicProgramBlock(null);
+		final ArrayList<Instruction> list = pb.getInstructions();
+		list.clear();
+		for(int[] step : plan) {
+			// no fusion with lineage tracing, which requires the lineage of all intermediates
+			if(step.length == 1 || DMLScript.LINEAGE) {
+				for(int i : step)
+					list.add(ins[i]);
+				continue;
+			}
+			final ComputationCPInstruction[] chain = new ComputationCPInstruction[step.length];
+			for(int i = 0; i < step.length; i++)
+				chain[i] = (ComputationCPInstruction) ins[step[i]];
+			list.add(new FusedCellwiseInstruction(chain));
+		}
+		return pb;
+	}
+
+	/**
+	 * Indicates if the given instruction is a cell-wise operation over a single matrix input, which can be fused into
+	 * a chain of such operations.
+	 *
+	 * @param ins instruction
+	 * @return true if the instruction can be fused
+	 */
+	public static boolean isCellwise(Instruction ins) {
+		final Operator op = ins.getOperator();
+		if(ins.getClass() == BinaryMatrixScalarCPInstruction.class)
+			return op instanceof ScalarOperator;
+		if(ins.getClass() == UnaryMatrixCPInstruction.class)
+			return op instanceof UnaryOperator && !LibCommonsMath.isSupportedUnaryOperation(ins.getOpcode())
+				&& !LibMatrixAgg.isSupportedUnaryOperator((UnaryOperator) op);
+		return false;
+	}
+
+	private static int getChainSuccessor(Instruction[] ins, List<Set<String>> refs, int cur, Set<String> consumed) {
+		final String out = getOutput(ins[cur]);
+		// skip removals of consumed intermediates
+		int next = cur + 1;
+		while(next < ins.length && isRemoveVariable(ins[next]) && consumed.containsAll(refs.get(next)))
+			next++;
+		if(next >= ins.length || isRemoveVariable(ins[next]) || !isCellwise(ins[next])
+			|| !out.equals(getMatrixInput(ins[next]).getName()) || out.equals(getOutput(ins[next])))
+			return -1;
+		// the intermediate is used exclusively by the successor and removed afterwards
+		boolean removed = false;
+		for(int i = 0; i < ins.length; i++) {
+			if(i == cur || i == next || !refs.get(i).contains(out))
+				continue;
+			if(!isRemoveVariable(ins[i]) || i < next)
+				return -1;
+			removed = true;
+		}
+		return removed ? next : -1;
+	}
+
+	private static Set<String> getReferencedNames(Instruction ins) {
+		final Set<String> ret = new HashSet<>();
+		if(isRemoveVariable(ins)) {
+			for(CPOperand in : ((VariableCPInstruction) ins).getInputs())
+				ret.add(in.getName());
+		}
+		else if(isCellwise(ins)) {
+			final ComputationCPInstruction cins = (ComputationCPInstruction) ins;
+			for(CPOperand op : new CPOperand[] {cins.input1, cins.input2, cins.output})
+				if(op != null && !op.isLiteral())
+					ret.add(op.getName());
+		}
+		else {
+			// conservatively consider all operands of other instructions as variables
+			final String[] parts = ins.toString().split(Lop.OPERAND_DELIMITOR);
+			for(int i = 1; i < parts.length; i++)
+				ret.add(parts[i].split(Lop.VALUETYPE_PREFIX)[0]);
+		}
+		return ret;
+	}
+
+	private static boolean isRemoveVariable(Instruction ins) {
+		return ins instanceof VariableCPInstruction && ((VariableCPInstruction) ins).isRemoveVariableNoFile();
+	}
+
+	private static CPOperand getMatrixInput(Instruction ins) {
+		final ComputationCPInstruction cins = (ComputationCPInstruction) ins;
+		return (cins.input1.getDataType() == DataType.MATRIX) ? cins.input1 : cins.input2;
+	}
+
+	private static String getOutput(Instruction ins) {
+		return ((ComputationCPInstruction) ins).output.getName();
+	}
+
+	/**
+	 * Fused chain of cell-wise operations, where each operation consumes the output of its predecessor.
+	 */
+	public static class FusedCellwiseInstruction extends Instruction {
+		private final ComputationCPInstruction[] _chain;
+
+		private FusedCellwiseInstruction(ComputationCPInstruction[] chain) {
+			super(null);
+			_chain = chain;
+			instOpcode = "fedcell";
+			final StringBuilder sb = new StringBuilder();
+			for(ComputationCPInstruction ins : chain) {
+				if(sb.length() > 0)
+					sb.append(Lop.INSTRUCTION_DELIMITOR);
+				sb.append(ins.toString());
+			}
+			instString = sb.toString();
+		}
+
+		@Override
+		public IType getType() {
+			return IType.CONTROL_PROGRAM;
+		}
+
+		public int getNumOperations() {
+			return _chain.length;
+		}
+
+		@Override
+		public void processInstruction(ExecutionContext ec) {
+			final String in = getMatrixInput(_chain[0]).getName();
+			final String out = _chain[_chain.length - 1].output.getName();
+			final MatrixBlock inBlock = ec.getMatrixInput(in);
+			if(inBlock instanceof CompressedMatrixBlock) {
+				// compressed blocks provide their own kernels for cell-wise operations
+				ec.releaseMatrixInput(in);
+				processUnfused(ec);
+				return;
+			}
+
+			// bind the scalar operands of the chain
+			final Operator[] ops = new Operator[_chain.length];
+			int k = 1;
+			for(int i = 0; i < _chain.length; i++) {
+				ops[i] = _chain[i].getOperator();
+				if(ops[i] instanceof ScalarOperator) {
+					final CPOperand scalar = (_chain[i].input1.getDataType() == DataType.MATRIX) ?
+						_chain[i].input2 : _chain[i].input1;
+					ops[i] = ((ScalarOperator) ops[i]).setConstant(ec.getScalarInput(scalar).getDoubleValue());
+				}
+				k = Math.max(k, ((MultiThreadedOperator) ops[i]).getNumThreads());
+			}
+
+			final MatrixBlock ret;
+			try {
+				ret = execute(inBlock, ops, k);
+			}
+			finally {
+				ec.releaseMatrixInput(in);
+			}
+			FederatedStatistics.incFedFused(_chain.length);
+			ec.setMatrixOutput(out, ret);
+		}
+
+		private void processUnfused(ExecutionContext ec) {
+			for(int i = 0; i < _chain.length; i++) {
+				_chain[i].processInstruction(ec);
+				if(i > 0)
+					VariableCPInstruction.processRmvarInstruction(ec, _chain[i - 1].output.getName());
+			}
+		}
+
+		private static MatrixBlock execute(MatrixBlock in, Operator[] ops, int k) {
+			final int m = in.getNumRows();
+			final int n = in.getNumColumns();
+			final double val0 = applyZero(ops);
+			MatrixBlock ret;
+			if(in.isEmptyBlock(false))
+				ret = (val0 == 0) ? new MatrixBlock(m, n, true) : new MatrixBlock(m, n, val0);
+			else if(in.isInSparseFormat() && val0 == 0) {
+				// sparse-safe chain, which retains the sparsity structure
+				ret = new MatrixBlock(m, n, true, in.getNonZeros());
+				ret.allocateSparseRowsBlock();
+				final SparseBlock a = in.getSparseBlock();
+				final SparseBlock c = ret.getSparseBlock();
+				for(int i = 0; i < m; i++) {
+					if(a.isEmpty(i))
+						continue;
+					final int apos = a.pos(i);
+					final int alen = a.size(i);
+					final int[] aix = a.indexes(i);
+					final double[] avals = a.values(i);
+					for(int j = apos; j < apos + alen; j++) {
+						final double v = apply(ops, avals[j]);
+						if(v != 0)
+							c.append(i, aix[j], v);
+					}
+				}
+			}
+			else if(in.isInSparseFormat()) {
+				ret = new MatrixBlock(m, n, val0);
+				final SparseBlock a = in.getSparseBlock();
+				final DenseBlock c = ret.getDenseBlock();
+				for(int i = 0; i < m; i++) {
+					if(a.isEmpty(i))
+						continue;
+					final int apos = a.pos(i);
+					final int alen = a.size(i);
+					final int[] aix = a.indexes(i);
+					final double[] avals = a.values(i);
+					for(int j = apos; j < apos + alen; j++)
+						c.set(i, aix[j], apply(ops, avals[j]));
+				}
+			}
+			else {
+				ret = new MatrixBlock(m, n, false);
+				ret.allocateDenseBlock();
+				final DenseBlock a = in.getDenseBlock();
+				final DenseBlock c = ret.getDenseBlock();
+				if(k > 1 && (long) m * n > PAR_NUMCELL_THRESHOLD && m > 1)
+					executeDenseParallel(a, c, ops, m, n, k);
+				else
+					executeDense(a, c, ops, 0, m, n);
+			}
+			ret.recomputeNonZeros();
+			ret.examSparsity();
+			return ret;
+		}
+
+		private static void executeDenseParallel(DenseBlock a, DenseBlock c, Operator[] ops, int m, int n, int k) {
+			final ExecutorService pool = CommonThreadPool.get(k);
+			try {
+				final List<Future<?>> tasks = new ArrayList<>();
+				final List<Integer> blklens = UtilFunctions.getBalancedBlockSizesDefault(m, k, false);
+				for(int i = 0, lb = 0; i < blklens.size(); lb += blklens.get(i), i++) {
+					final int rl = lb;
+					final int ru = lb + blklens.get(i);
+					tasks.add(pool.submit(() -> executeDense(a, c, ops, rl, ru, n)));
+				}
+				for(Future<?> task : tasks)
+					task.get();
+			}
+			catch(Exception ex) {
+				throw new DMLRuntimeException(ex);
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+
+		private static void executeDense(DenseBlock a, DenseBlock c, Operator[] ops, int rl, int ru, int n) {
+			for(int i = rl; i < ru; i++) {
+				final double[] avals = a.values(i);
+				final double[] cvals = c.values(i);
+				final int aix = a.pos(i);
+				final int cix = c.pos(i);
+				for(int j = 0; j < n; j++)
+					cvals[cix + j] = apply(ops, avals[aix + j]);
+			}
+		}
+
+		private static double apply(Operator[] ops, double v) {
+			for(Operator op : ops) {
+				if(op instanceof ScalarOperator) {
+					final ScalarOperator sop = (ScalarOperator) op;
+					// multiplications with zero are no-ops with empty output, see LibMatrixBincell
+					v = (sop.fn instanceof Multiply && sop.getConstant() == 0) ? 0 : sop.executeScalar(v);
+				}
+				else
+					v = ((UnaryOperator) op).fn.execute(v);
+			}
+			return v;
+		}
+
+		private static double applyZero(Operator[] ops) {
+			// sparse-safe operations retain the zeros of their input
+			double v = 0;
+			for(Operator op : ops) {
+				if(v == 0 && op.sparseSafe)
+					continue;
+				v = apply(new Operator[] {op}, v);
+			}
+			return v;
+		}
+	}
+}
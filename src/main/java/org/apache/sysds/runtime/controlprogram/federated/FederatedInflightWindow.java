@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.controlprogram.caching.LazyWriteBuffer;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Coordinator-side window of in-flight request batches per federated site, which bounds the number and the size of
+ * outstanding request batches (e.g., under parfor over federated data, or fire-and-forget cleanups). Request batches
+ * beyond the window are queued in FIFO order, and sent once earlier request batches completed.
+ *
+ * Federated workers piggyback their memory pressure (heap and buffer pool utilization) on every response. Above a
+ * pressure threshold, the window of the site shrinks proportionally down to a single request batch, so the coordinator
+ * throttles before the worker runs out of memory. At least one request batch is always admitted, which ensures
+ * progress for batches larger than the byte window.
+ */
+public class FederatedInflightWindow {
+	/** Memory pressure of federated workers above which the window shrinks */
+	public static final double PRESSURE_THRESHOLD = 0.7;
+
+	private static final Map<InetSocketAddress, FederatedInflightWindow> _windows = new ConcurrentHashMap<>();
+
+	private final int _maxRequests;
+	private final long _maxBytes;
+	private final ArrayDeque<Pending> _queue = new ArrayDeque<>();
+	private int _requests = 0;
+	private long _bytes = 0;
+	private int _draining = 0; // queued batches taken for sending
+	private volatile double _pressure = 0;
+
+	public FederatedInflightWindow(int maxRequests, long maxBytes) {
+		_maxRequests = maxRequests;
+		_maxBytes = maxBytes;
+	}
+
+	/**
+	 * Indicates if the in-flight requests per federated site are bounded.
+	 *
+	 * @return true if a window in requests or bytes is configured
+	 */
+	public static boolean isEnabled() {
+		return ConfigurationManager.getFederatedInflightRequests() > 0
+			|| ConfigurationManager.getFederatedInflightBytes() > 0;
+	}
+
+	/**
+	 * Get the window of in-flight request batches of a federated site.
+	 *
+	 * @param address socket address of the federated site
+	 * @return the window of the site
+	 */
+	public static FederatedInflightWindow get(InetSocketAddress address) {
+		return _windows.computeIfAbsent(address, a -> new FederatedInflightWindow(
+			ConfigurationManager.getFederatedInflightRequests(),
+			ConfigurationManager.getFederatedInflightBytes() * 1024 * 1024));
+	}
+
+	/**
+	 * Clear the windows of all federated sites.
+	 */
+	public static void reset() {
+		_windows.clear();
+	}
+
+	/**
+	 * Get the memory pressure of the local federated worker, as utilization of the heap or the buffer pool.
+	 *
+	 * @return memory pressure in [0, 1]
+	 */
+	public static float getLocalMemoryPressure() {
+		final Runtime rt = Runtime.getRuntime();
+		double ret = (double) (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory();
+		final long limit = LazyWriteBuffer.getWriteBufferLimit();
+		// stored broadcast content is only covered by the heap utilization, because content that is bound to
+		// variables is also part of the buffer pool
+		if(limit > 0)
+			ret = Math.max(ret, 1 - (double) LazyWriteBuffer.getWriteBufferFree() / limit);
+		return (float) Math.min(Math.max(ret, 0), 1);
+	}
+
+	/**
+	 * Send the given request batch once it fits into the window.
+	 *
+	 * @param request the request batch
+	 * @param send    function to send a request batch
+	 * @return promise of the response, which completes after the request batch was sent and answered
+	 */
+	public Promise<FederatedResponse> execute(FederatedRequest[] request,
+		Function<FederatedRequest[], Promise<FederatedResponse>> send) {
+		final long bytes = FederatedWireCodec.estimateSize(request);
+		final Pending pending;
+		synchronized(this) {
+			// queued batches that are taken but not sent yet must not be overtaken either
+			if(_queue.isEmpty() && _draining == 0 && isAdmissible(bytes)) {
+				acquire(bytes);
+				pending = null;
+			}
+			else {
+				pending = new Pending(request, bytes, send);
+				_queue.add(pending);
+				FederatedStatistics.incFedThrottledCount();
+			}
+		}
+		return (pending == null) ? send(request, bytes, send) : pending._promise;
+	}
+
+	public synchronized int getNumInflight() {
+		return _requests;
+	}
+
+	public synchronized int getNumQueued() {
+		return _queue.size();
+	}
+
+	public double getMemoryPressure() {
+		return _pressure;
+	}
+
+	private Promise<FederatedResponse> send(FederatedRequest[] request, long bytes,
+		Function<FederatedRequest[], Promise<FederatedResponse>> send) {
+		final Promise<FederatedResponse> ret;
+		try {
+			ret = send.apply(request);
+		}
+		catch(RuntimeException ex) {
+			release(bytes);
+			throw ex;
+		}
+		ret.addListener(f -> {
+			if(f.isSuccess() && f.getNow() != null)
+				_pressure = ((FederatedResponse) f.getNow()).getMemoryPressure();
+			release(bytes);
+		});
+		return ret;
+	}
+
+	private void release(long bytes) {
+		synchronized(this) {
+			_requests--;
+			_bytes -= bytes;
+		}
+		// send queued request batches from outside the event loop, because sending might block on connects
+		GlobalEventExecutor.INSTANCE.execute(this::sendQueued);
+	}
+
+	private void sendQueued() {
+		while(true) {
+			final Pending pending;
+			synchronized(this) {
+				if(_queue.isEmpty() || !isAdmissible(_queue.peek()._bytes))
+					return;
+				pending = _queue.poll();
+				acquire(pending._bytes);
+				_draining++;
+			}
+			try {
+				send(pending._request, pending._bytes, pending._send).addListener(
+					(Future<FederatedResponse> f) -> {
+						if(f.isSuccess())
+							pending._promise.setSuccess(f.getNow());
+						else
+							pending._promise.setFailure(f.cause());
+					});
+			}
+			catch(RuntimeException ex) {
+				pending._promise.setFailure(ex);
+			}
+			finally {
+				synchronized(this) {
+					_draining--;
+				}
+			}
+		}
+	}
+
+	private boolean isAdmissible(long bytes) {
+		if(_requests == 0)
+			return true; // ensure progress
+		// shrink the window under memory pressure of the federated worker
+		final double scale = Math.min(1, (1 - _pressure) / (1 - PRESSURE_THRESHOLD));
+		final int maxRequests = (_maxRequests > 0) ? (int) Math.max(1, _maxRequests * scale) : Integer.MAX_VALUE;
+		final long maxBytes = (_maxBytes > 0) ? (long) (_maxBytes * scale) : Long.MAX_VALUE;
+		return _requests < maxRequests && _bytes + bytes <= maxBytes;
+	}
+
+	private void acquire(long bytes) {
+		_requests++;
+		_bytes += bytes;
+	}
+
+	private static class Pending {
+		private final FederatedRequest[] _request;
+		private final long _bytes;
+		private final Function<FederatedRequest[], Promise<FederatedResponse>> _send;
+		private final Promise<FederatedResponse> _promise = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+
+		private Pending(FederatedRequest[] request, long bytes,
+			Function<FederatedRequest[], Promise<FederatedResponse>> send) {
+			_request = request;
+			_bytes = bytes;
+			_send = send;
+		}
+	}
+}
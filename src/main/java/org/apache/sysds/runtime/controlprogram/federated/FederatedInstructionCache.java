@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.lops.Lop;
+import org.apache.sysds.runtime.instructions.Instruction;
+import org.apache.sysds.runtime.instructions.InstructionParser;
+import org.apache.sysds.runtime.instructions.cp.AggregateBinaryCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.AggregateUnaryCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.BinaryMatrixMatrixCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.BinaryMatrixScalarCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.BinaryScalarScalarCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.CPOperand;
+import org.apache.sysds.runtime.instructions.cp.ComputationCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.TernaryCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.UnaryMatrixCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.UnaryScalarCPInstruction;
+
+/**
+ * Bounded cache of parsed instructions on the federated worker. Iterative algorithms send the same instructions over
+ * and over again, which only differ in the names of their variable operands. Hence, instruction strings are normalized
+ * into templates by replacing all variable names with positional placeholders, and parsed instructions are kept per
+ * template. On a cache hit, an idle parsed instance is taken from the template and its operands are rebound to the
+ * variable names of the request, which avoids tokenizing the instruction string and constructing the operator.
+ *
+ * Only simple CP computation instructions, whose variable operands are fully covered by their inputs and output, are
+ * cached. A leased instance is used exclusively by one request until it is released again. Furthermore, the execution
+ * plans of program fragments are cached per fragment template, i.e., the sequence of normalized instructions with
+ * placeholders shared across instructions.
+ */
+public class FederatedInstructionCache {
+	private static final String PLACEHOLDER = "%%";
+
+	private final Map<String, Template> _templates;
+	private final Map<String, int[][]> _plans;
+
+	/**
+	 * Create a new instruction cache.
+	 *
+	 * @param capacity maximum number of cached instruction templates
+	 */
+	public FederatedInstructionCache(int capacity) {
+		_templates = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+				return size() > capacity;
+			}
+		};
+		_plans = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, int[][]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Obtain a parsed instruction for the given instruction string, either by reusing an idle cached instance or by
+	 * parsing the instruction string. The instruction should be released after execution for reuse.
+	 *
+	 * @param instString instruction string
+	 * @return lease of the parsed instruction
+	 */
+	public Lease acquire(String instString) {
+		final List<String> names = new ArrayList<>();
+		final String key = normalize(instString, names);
+		if(key == null)
+			return new Lease(null, InstructionParser.parseSingleInstruction(instString));
+
+		Template tpl;
+		synchronized(_templates) {
+			tpl = _templates.get(key);
+			if(tpl == null)
+				_templates.put(key, tpl = new Template());
+		}
+
+		if(tpl.cacheable) {
+			final CachedInstruction ci = tpl.idle.poll();
+			if(ci != null) {
+				FederatedStatistics.incFedInstCacheHits();
+				ci.bind(instString, names);
+				return new Lease(tpl, ci);
+			}
+		}
+		FederatedStatistics.incFedInstCacheMisses();
+
+		final Instruction ins = InstructionParser.parseSingleInstruction(instString);
+		if(!tpl.cacheable)
+			return new Lease(null, ins);
+		final CachedInstruction ci = CachedInstruction.create(ins, names);
+		if(ci == null) {
+			// mark the template as not cacheable to avoid repeated checks
+			tpl.cacheable = false;
+			return new Lease(null, ins);
+		}
+		return new Lease(tpl, ci);
+	}
+
+	/**
+	 * Obtain the execution plan of a program fragment, either from the cached plan of its fragment template or by
+	 * planning the fragment.
+	 *
+	 * @param instStrings instruction strings of the fragment
+	 * @param ins         parsed instructions of the fragment
+	 * @return execution steps of the fragment, see {@link FederatedFragment#plan(Instruction[])}
+	 */
+	public int[][] getPlan(String[] instStrings, Instruction[] ins) {
+		final Map<String, Integer> pos = new HashMap<>();
+		final List<String> names = new ArrayList<>();
+		final StringBuilder sb = new StringBuilder();
+		for(String instString : instStrings) {
+			final String tpl = normalize(instString, names, pos);
+			if(tpl == null)
+				return FederatedFragment.plan(ins);
+			sb.append(tpl).append('\n');
+		}
+		final String key = sb.toString();
+		synchronized(_plans) {
+			final int[][] plan = _plans.get(key);
+			if(plan != null)
+				return plan;
+		}
+		final int[][] plan = FederatedFragment.plan(ins);
+		synchronized(_plans) {
+			_plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Get the number of cached instruction templates.
+	 *
+	 * @return number of templates
+	 */
+	public int size() {
+		synchronized(_templates) {
+			return _templates.size();
+		}
+	}
+
+	/**
+	 * Normalize the given instruction string by replacing all variable names by positional placeholders, and collect
+	 * the replaced variable names in order of their placeholders.
+	 *
+	 * @param instString instruction string
+	 * @param names      output list of variable names
+	 * @return normalized instruction string, or null if the instruction is not eligible for caching
+	 */
+	protected static String normalize(String instString, List<String> names) {
+		return normalize(instString, names, new HashMap<>());
+	}
+
+	/**
+	 * Normalize the given instruction string with the given placeholders of already normalized instructions.
+	 *
+	 * @param instString instruction string
+	 * @param names      output list of variable names
+	 * @param pos        placeholder positions of the variable names
+	 * @return normalized instruction string, or null if the instruction is not eligible for caching
+	 */
+	protected static String normalize(String instString, List<String> names, Map<String, Integer> pos) {
+		if(instString.contains(Lop.VARIABLE_NAME_PLACEHOLDER) || instString.contains(PLACEHOLDER)
+			|| instString.contains(Lop.INSTRUCTION_DELIMITOR))
+			return null;
+		final String[] parts = instString.split(Lop.OPERAND_DELIMITOR);
+		if(parts.length < 3)
+			return null;
+		// the operands of variable removals are plain variable names
+		final boolean rmvar = parts[1].equals("rmvar");
+		final StringBuilder sb = new StringBuilder(instString.length());
+		sb.append(parts[0]).append(Lop.OPERAND_DELIMITOR).append(parts[1]);
+		for(int i = 2; i < parts.length; i++) {
+			sb.append(Lop.OPERAND_DELIMITOR);
+			final String[] op = rmvar ? new String[] {parts[i]} : parts[i].split(Lop.VALUETYPE_PREFIX);
+			if(rmvar || isVariable(op)) {
+				Integer ix = pos.get(op[0]);
+				if(ix == null) {
+					pos.put(op[0], ix = names.size());
+					names.add(op[0]);
+				}
+				sb.append(PLACEHOLDER).append(ix).append(parts[i], op[0].length(), parts[i].length());
+			}
+			else
+				sb.append(parts[i]);
+		}
+		return sb.toString();
+	}
+
+	private static boolean isVariable(String[] op) {
+		if(op.length < 3 || op.length > 4 || op[0].isEmpty() || (op.length == 4 && Boolean.parseBoolean(op[3])))
+			return false;
+		try {
+			DataType.valueOf(op[1]);
+			return true;
+		}
+		catch(IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	private static boolean isSupported(Instruction ins) {
+		final Class<?> clazz = ins.getClass();
+		return clazz == BinaryMatrixMatrixCPInstruction.class
+			|| clazz == BinaryMatrixScalarCPInstruction.class
+			|| clazz == BinaryScalarScalarCPInstruction.class
+			|| clazz == AggregateUnaryCPInstruction.class
+			|| clazz == AggregateBinaryCPInstruction.class
+			|| clazz == UnaryMatrixCPInstruction.class
+			|| clazz == UnaryScalarCPInstruction.class
+			|| clazz == TernaryCPInstruction.class;
+	}
+
+	/**
+	 * Lease of a parsed instruction, which is returned to the cache on release.
+	 */
+	public static class Lease {
+		private final Template _tpl;
+		private final CachedInstruction _ci;
+		private final Instruction _ins;
+
+		private Lease(Template tpl, CachedInstruction ci) {
+			_tpl = tpl;
+			_ci = ci;
+			_ins = ci._ins;
+		}
+
+		private Lease(Template tpl, Instruction ins) {
+			_tpl = tpl;
+			_ci = null;
+			_ins = ins;
+		}
+
+		public Instruction getInstruction() {
+			return _ins;
+		}
+
+		/**
+		 * Get an instruction that remains valid after the release of this lease, i.e., a newly parsed copy of a
+		 * cached instruction or the leased instruction itself if it is not returned to the cache.
+		 *
+		 * @return instruction independent of the cache
+		 */
+		public Instruction copyInstruction() {
+			return (_tpl != null && _ci != null) ? InstructionParser
+				.parseSingleInstruction(_ins.getInstructionString()) : _ins;
+		}
+
+		/**
+		 * Return the parsed instruction to the cache. The instruction must not be used afterwards.
+		 */
+		public void release() {
+			if(_tpl != null && _ci != null)
+				_tpl.idle.offer(_ci);
+		}
+	}
+
+	private static class Template {
+		private final ConcurrentLinkedQueue<CachedInstruction> idle = new ConcurrentLinkedQueue<>();
+		private volatile boolean cacheable = true;
+	}
+
+	/**
+	 * Parsed instruction with the placeholder positions of its variable operands.
+	 */
+	private static class CachedInstruction {
+		private final Instruction _ins;
+		private final CPOperand[] _ops;
+		private final int[] _pos;
+
+		private CachedInstruction(Instruction ins, CPOperand[] ops, int[] pos) {
+			_ins = ins;
+			_ops = ops;
+			_pos = pos;
+		}
+
+		private static CachedInstruction create(Instruction ins, List<String> names) {
+			if(!isSupported(ins))
+				return null;
+			final ComputationCPInstruction cins = (ComputationCPInstruction) ins;
+			final CPOperand[] ops = new CPOperand[] {cins.input1, cins.input2, cins.input3, cins.input4, cins.output};
+			final int[] pos = new int[ops.length];
+			final boolean[] covered = new boolean[names.size()];
+			for(int i = 0; i < ops.length; i++) {
+				pos[i] = -1;
+				if(ops[i] == null || ops[i].isLiteral())
+					continue;
+				pos[i] = names.indexOf(ops[i].getName());
+				if(pos[i] < 0)
+					return null;
+				covered[pos[i]] = true;
+			}
+			// all variables of the instruction string need to be rebindable
+			for(boolean c : covered)
+				if(!c)
+					return null;
+			return new CachedInstruction(ins, ops, pos);
+		}
+
+		private void bind(String instString, List<String> names) {
+			for(int i = 0; i < _ops.length; i++)
+				if(_pos[i] >= 0)
+					_ops[i].setName(names.get(_pos[i]));
+			_ins.setInstructionString(instString);
+		}
+	}
+}
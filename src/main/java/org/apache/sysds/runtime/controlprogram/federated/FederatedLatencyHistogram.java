@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets, which are subdivided linearly into 8 sub-buckets
+ * per power of two. Percentiles are therefore reported with a relative error of at most 12.5%, independent of the
+ * magnitude of the latencies, while the histogram has a small fixed size and can be merged across federated sites.
+ */
+public class FederatedLatencyHistogram implements Serializable {
+	private static final long serialVersionUID = 3180917622517455721L;
+
+	/**
+	 * Stages of federated requests, where the total latency is the sum of all stages.
+	 */
+	public enum Stage {
+		SERIALIZE, NETWORK, QUEUE, EXECUTE, DESERIALIZE, TOTAL;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int NUM_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final long[] _counts = new long[NUM_BUCKETS];
+	private long _count = 0;
+	private long _sum = 0;
+	private long _max = 0;
+
+	/**
+	 * Add a latency to the histogram.
+	 *
+	 * @param nanos latency in ns, negative latencies (e.g., due to clock granularity) are added as 0
+	 */
+	public synchronized void add(long nanos) {
+		final long v = Math.max(nanos, 0);
+		_counts[getBucket(v)]++;
+		_count++;
+		_sum += v;
+		_max = Math.max(_max, v);
+	}
+
+	/**
+	 * Add all latencies of another histogram to this histogram.
+	 *
+	 * @param that the other histogram
+	 */
+	public void merge(FederatedLatencyHistogram that) {
+		final FederatedLatencyHistogram tmp = that.copy();
+		synchronized(this) {
+			for(int i = 0; i < NUM_BUCKETS; i++)
+				_counts[i] += tmp._counts[i];
+			_count += tmp._count;
+			_sum += tmp._sum;
+			_max = Math.max(_max, tmp._max);
+		}
+	}
+
+	public synchronized FederatedLatencyHistogram copy() {
+		final FederatedLatencyHistogram ret = new FederatedLatencyHistogram();
+		System.arraycopy(_counts, 0, ret._counts, 0, NUM_BUCKETS);
+		ret._count = _count;
+		ret._sum = _sum;
+		ret._max = _max;
+		return ret;
+	}
+
+	public synchronized long getCount() {
+		return _count;
+	}
+
+	public synchronized long getMax() {
+		return _max;
+	}
+
+	public synchronized double getMean() {
+		return (_count > 0) ? (double) _sum / _count : 0;
+	}
+
+	/**
+	 * Get a percentile of the latencies, as the upper bound of the bucket containing the percentile.
+	 *
+	 * @param q percentile in [0, 1], e.g., 0.99 for the 99th percentile
+	 * @return latency in ns, 0 if the histogram is empty
+	 */
+	public synchronized long getPercentile(double q) {
+		if(_count == 0)
+			return 0;
+		final long rank = Math.max((long) Math.ceil(q * _count), 1);
+		long cum = 0;
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			cum += _counts[i];
+			if(cum >= rank)
+				return Math.min(getUpperBound(i), _max);
+		}
+		return _max;
+	}
+
+	private static int getBucket(long v) {
+		if(v < SUB_BUCKETS)
+			return (int) v;
+		final int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	private static long getUpperBound(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		final long upper = lower + (1L << shift) - 1;
+		return (lower < 0 || upper < 0) ? Long.MAX_VALUE : upper; // overflow of the largest buckets
+	}
+}
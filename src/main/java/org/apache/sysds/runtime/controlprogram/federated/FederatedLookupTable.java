@@ -25,6 +25,7 @@ import java.util.Objects;
 
 import org.apache.log4j.Logger;
 import org.apache.sysds.api.DMLScript;
+import org.apache.sysds.conf.ConfigurationManager;
 
 /**
  * Lookup table mapping from a FedUniqueCoordID (funCID) to an
@@ -43,8 +44,21 @@ public class FederatedLookupTable {
 	// stores the mapping between the funCID and the corresponding ExecutionContextMap
 	private final Map<FedUniqueCoordID, ExecutionContextMap> _lookup_table;
 
+	// broadcast content shared by the coordinators of this federated worker
+	private final FederatedContentStore _content;
+
 	public FederatedLookupTable() {
 		_lookup_table = new ConcurrentHashMap<>();
+		_content = new FederatedContentStore((long) ConfigurationManager.getFederatedContentStoreSize() * 1024 * 1024);
+	}
+
+	/**
+	 * Get the content store of content-addressed broadcasts, which is released with the last ExecutionContextMap.
+	 *
+	 * @return the content store of this federated worker
+	 */
+	public FederatedContentStore getContentStore() {
+		return _content;
 	}
 
 	/**
@@ -89,6 +103,9 @@ public class FederatedLookupTable {
 		if(_lookup_table.remove(funCID) == null)
 			LOG.warn("Removing federated execution context map failed. "
 				+ "No valid resolution for " + funCID.toString() + " found.");
+		// release the broadcast content once no coordinator is left to reference it
+		if(_lookup_table.isEmpty())
+			_content.clear();
 	}
 
 	/**
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.Serializable;
+
+/**
+ * Envelope of a batch of federated requests or a federated response, which carries a correlation ID. The federated
+ * worker echoes the correlation ID of a request batch in its response, which allows many in-flight request batches to
+ * share a single (multiplexed) connection and their responses to arrive in any order.
+ */
+public class FederatedMessage implements Serializable {
+	private static final long serialVersionUID = -2871626375186542716L;
+
+	private final long _cid;
+	private final Object _payload;
+
+	public FederatedMessage(long cid, FederatedRequest[] requests) {
+		this(cid, (Object) requests);
+	}
+
+	public FederatedMessage(long cid, FederatedResponse response) {
+		this(cid, (Object) response);
+	}
+
+	private FederatedMessage(long cid, Object payload) {
+		_cid = cid;
+		_payload = payload;
+	}
+
+	public long getCorrelationID() {
+		return _cid;
+	}
+
+	/**
+	 * Get the payload of this message.
+	 *
+	 * @return the request batch (<code>FederatedRequest[]</code>) or the <code>FederatedResponse</code>
+	 */
+	public Object getPayload() {
+		return _payload;
+	}
+
+	public long estimateSerializationBufferSize() {
+		long size = 64; // general offset for the envelope
+		if(_payload instanceof FederatedResponse)
+			size += ((FederatedResponse) _payload).estimateSerializationBufferSize();
+		else if(_payload instanceof FederatedRequest[])
+			for(FederatedRequest fr : (FederatedRequest[]) _payload)
+				size += fr.estimateSerializationBufferSize();
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "FederatedMessage[" + _cid + ";" + _payload.getClass().getSimpleName() + "]";
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport.LocalMode;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Promise;
+
+/**
+ * Multiplexed connections from the coordinator to the federated workers. In contrast to the
+ * {@link FederatedChannelPool}, channels are not leased exclusively, but many in-flight request batches share the
+ * same channel. Every batch is wrapped into a {@link FederatedMessage} with a unique correlation ID, which the worker
+ * echoes back so that responses can be matched to their requests, even if they arrive out of order.
+ */
+public class FederatedMultiplexer {
+	private static final Log LOG = LogFactory.getLog(FederatedMultiplexer.class.getName());
+
+	private final EventLoopGroup _group;
+	private final int _numChannels;
+	private final Map<InetSocketAddress, SiteChannels> _sites = new ConcurrentHashMap<>();
+	// local channels to federated workers of this JVM
+	private final Map<InetSocketAddress, SiteChannels> _localSites = new ConcurrentHashMap<>();
+	private final AtomicLong _cidSeq = new AtomicLong();
+
+	/**
+	 * Create a new multiplexer.
+	 *
+	 * @param group       event loop group used for all multiplexed channels
+	 * @param numChannels number of shared channels per federated site
+	 */
+	public FederatedMultiplexer(EventLoopGroup group, int numChannels) {
+		_group = group;
+		_numChannels = numChannels;
+	}
+
+	/**
+	 * Send a batch of federated requests over a shared channel to the given federated worker. The caller is only
+	 * blocked if a new connection needs to be established.
+	 *
+	 * @param address socket address of the federated worker
+	 * @param request the requested operations
+	 * @return future of the federated response
+	 * @throws Exception if no connection could be established
+	 */
+	public Promise<FederatedResponse> execute(InetSocketAddress address, FederatedRequest... request)
+		throws Exception {
+		final Channel ch = (FederatedTransport.getLocalMode(address) != LocalMode.NONE) ?
+			_localSites.computeIfAbsent(address, a -> new SiteChannels(a, true)).next() :
+			_sites.computeIfAbsent(address, a -> new SiteChannels(a, false)).next();
+		final MultiplexedResponseHandler handler = ch.pipeline().get(MultiplexedResponseHandler.class);
+		final long cid = _cidSeq.incrementAndGet();
+		final Promise<FederatedResponse> prom = ch.eventLoop().newPromise();
+		handler.register(cid, prom);
+		ch.writeAndFlush(new FederatedMessage(cid, request)).addListener(f -> {
+			if(!f.isSuccess())
+				handler.fail(cid, f.cause());
+		});
+		return prom;
+	}
+
+	/**
+	 * Close all channels of all federated sites, which fails all pending requests.
+	 */
+	public void close() {
+		for(SiteChannels site : _sites.values())
+			site.close();
+		for(SiteChannels site : _localSites.values())
+			site.close();
+		_sites.clear();
+		_localSites.clear();
+	}
+
+	/**
+	 * The shared channels of a single federated site, which are used in round-robin order and reconnected on demand.
+	 */
+	private class SiteChannels {
+		private final InetSocketAddress _address;
+		private final boolean _local;
+		private final Channel[] _channels;
+		private final AtomicInteger _pos = new AtomicInteger();
+
+		public SiteChannels(InetSocketAddress address, boolean local) {
+			_address = address;
+			_local = local;
+			_channels = new Channel[_numChannels];
+		}
+
+		public Channel next() throws Exception {
+			final int ix = Math.floorMod(_pos.getAndIncrement(), _channels.length);
+			Channel ch = _channels[ix];
+			if(ch != null && ch.isActive())
+				return ch;
+			synchronized(this) {
+				ch = _channels[ix];
+				if(ch == null || !ch.isActive())
+					_channels[ix] = ch = connect();
+				return ch;
+			}
+		}
+
+		private Channel connect() throws Exception {
+			if(LOG.isDebugEnabled())
+				LOG.debug("Created new multiplexed channel to federated worker " + _address);
+			final Bootstrap b = _local ? FederatedTransport.createLocalBootstrap(_group, _address.getPort()) :
+				FederatedTransport.createBootstrap(_group).remoteAddress(_address);
+			b.handler(new ChannelInitializer<Channel>() {
+				@Override
+				protected void initChannel(Channel ch) throws Exception {
+					FederatedData.initPipeline(ch, _address, new MultiplexedResponseHandler());
+				}
+			});
+			return b.connect().sync().channel();
+		}
+
+		public synchronized void close() {
+			for(Channel ch : _channels)
+				if(ch != null)
+					ch.close();
+		}
+	}
+
+	/**
+	 * Inbound handler of a multiplexed channel, which completes the promises of all in-flight request batches by the
+	 * correlation IDs of the received responses.
+	 */
+	protected static class MultiplexedResponseHandler extends ChannelInboundHandlerAdapter {
+		private final Map<Long, Promise<FederatedResponse>> _pending = new ConcurrentHashMap<>();
+
+		public void register(long cid, Promise<FederatedResponse> prom) {
+			_pending.put(cid, prom);
+		}
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			if(!(msg instanceof FederatedMessage)) {
+				LOG.warn("Received federated response without correlation ID on multiplexed channel " + ctx.channel());
+				return;
+			}
+			final FederatedMessage fm = (FederatedMessage) msg;
+			final Promise<FederatedResponse> prom = _pending.remove(fm.getCorrelationID());
+			if(prom != null)
+				prom.setSuccess((FederatedResponse) fm.getPayload());
+			else
+				LOG.warn("Received federated response with unknown correlation ID " + fm.getCorrelationID());
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			failAll(new DMLRuntimeException(
+				"Federated channel to " + ctx.channel().remoteAddress() + " closed before receiving all responses."));
+			super.channelInactive(ctx);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			ctx.close();
+			failAll(cause);
+		}
+
+		protected void fail(long cid, Throwable cause) {
+			final Promise<FederatedResponse> prom = _pending.remove(cid);
+			if(prom != null)
+				prom.tryFailure(cause);
+		}
+
+		private void failAll(Throwable cause) {
+			for(Long cid : _pending.keySet())
+				fail(cid, cause);
+		}
+	}
+}
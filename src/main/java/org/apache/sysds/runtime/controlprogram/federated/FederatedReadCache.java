@@ -19,37 +19,94 @@
 
 package org.apache.sysds.runtime.controlprogram.federated;
 
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.hadoop.fs.Path;
 import org.apache.log4j.Logger;
 import org.apache.sysds.api.DMLScript;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.hops.OptimizerUtils;
 import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
 import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysds.runtime.controlprogram.caching.LazyWriteBuffer;
+import org.apache.sysds.runtime.controlprogram.caching.UnifiedMemoryManager;
+import org.apache.sysds.runtime.io.IOUtilFunctions;
 
+/**
+ * Cache of the data read by a federated worker, which is shared by all coordinators of the worker. The cache is
+ * bounded by a fraction of the buffer pool limit (see {@link org.apache.sysds.conf.DMLConfig#FEDERATED_READCACHE_BUDGET}),
+ * and evicts entries in a cost-aware manner (greedy dual size): the score of an entry is its read time per byte plus
+ * an aging offset, which is raised to the score of the last evicted entry. Hence, large and cheaply read files are
+ * evicted first, while recently used entries are protected. On every hit, the modification time of the file is
+ * revalidated, so modified files are read again instead of returning stale data.
+ */
 public class FederatedReadCache {
 	private static final Logger LOG = Logger.getLogger(FederatedReadCache.class);
 
 	private Map<String, ReadCacheEntry> _rmap = new ConcurrentHashMap<>();
 
+	private final long _budget; // in bytes, <0 for the configured fraction of the buffer pool limit
+	private long _size = 0; // size of all cached data in bytes
+	private double _age = 0; // aging offset of scores, i.e., score of the last evicted entry
+
+	public FederatedReadCache() {
+		this(-1);
+	}
+
+	/**
+	 * Create a new read cache with a fixed budget.
+	 *
+	 * @param budget maximum size of the cached data in bytes, or -1 for the configured fraction of the buffer pool
+	 */
+	public FederatedReadCache(long budget) {
+		_budget = budget;
+	}
+
 	/**
 	 * Get the data from the ReadCacheEntry corresponding to the specified
 	 * filename, if the data from this filename has already been read.
 	 * Otherwise, create a new ReadCacheEntry for the filename and return null
-	 * to indicate that the data is not cached yet.
+	 * to indicate that the data is not cached yet. Cached data of files that
+	 * were modified after they have been read is dropped from the cache.
 	 *
 	 * @param fname the filename of the read data
 	 * @param putPlaceholder whether to put a placeholder if there is no mapping for the filename
 	 * @return the CacheableData object if it is cached, otherwise null
 	 */
 	public CacheableData<?> get(String fname, boolean putPlaceholder) {
-		ReadCacheEntry tmp = putPlaceholder ?
-			_rmap.putIfAbsent(fname, new ReadCacheEntry()) : _rmap.get(fname);
-		return (tmp != null) ? tmp.get() : null;
+		while(true) {
+			ReadCacheEntry tmp = putPlaceholder ?
+				_rmap.putIfAbsent(fname, new ReadCacheEntry()) : _rmap.get(fname);
+			CacheableData<?> data = (tmp != null) ? tmp.get() : null;
+			if(data == null) {
+				if(putPlaceholder)
+					FederatedStatistics.incFedReadCacheMisses();
+				return null;
+			}
+			if(tmp._modified != getModificationTime(fname)) {
+				LOG.debug("File " + fname + " was modified since it was read. Removing the ReadCacheEntry.");
+				remove(fname, tmp);
+				FederatedStatistics.incFedReadCacheStale();
+				continue; // read the modified file again
+			}
+			synchronized(this) {
+				tmp._score = _age + tmp._cost;
+			}
+			FederatedStatistics.incFedReadCacheHits();
+			if(DMLScript.STATISTICS) {
+				FederatedStatistics.incFedReuseReadHitCount();
+				FederatedStatistics.incFedReuseReadBytesCount(data);
+			}
+			return data;
+		}
 	}
 
 	/**
-	 * Set the data for the ReadCacheEntry with specified filename.
+	 * Set the data for the ReadCacheEntry with specified filename. The data is
+	 * read into memory to determine its size and read time, and entries with
+	 * the lowest scores are evicted until the cached data fits into the budget.
 	 *
 	 * @param fname the filename of the read data
 	 * @param data the CacheableData object for setting the ReadCacheEntry
@@ -59,7 +116,29 @@ public class FederatedReadCache {
 		ReadCacheEntry rce = _rmap.get(fname);
 		if(rce == null)
 			throw new DMLRuntimeException("Tried to set the data for an unregistered ReadCacheEntry.");
-		rce.setValue(data);
+
+		final long modified = getModificationTime(fname);
+		final long t0 = System.nanoTime();
+		final CacheBlock<?> cb = data.acquireRead();
+		final long t1 = System.nanoTime();
+		final long size = (cb != null) ? cb.getInMemorySize() : 0;
+		data.release();
+
+		final long budget = getBudget();
+		synchronized(this) {
+			rce.setValue(data, size, t1 - t0, modified);
+			if(size > budget) {
+				// waiting threads still obtain the data, but the entry is not retained
+				_rmap.remove(fname, rce);
+				FederatedStatistics.incFedReadCacheEvictions();
+				return;
+			}
+			rce._score = _age + rce._cost;
+			_size += size;
+			while(_size > budget && evict(rce)) {
+				// evict until the cached data fits into the budget
+			}
+		}
 	}
 
 	/**
@@ -76,12 +155,83 @@ public class FederatedReadCache {
 		rce.setInvalid();
 	}
 
+	/**
+	 * Get the size of all cached data.
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getSize() {
+		return _size;
+	}
+
+	/**
+	 * Get the number of entries, including the placeholders of files that are currently read.
+	 *
+	 * @return number of entries
+	 */
+	public int getNumEntries() {
+		return _rmap.size();
+	}
+
+	/**
+	 * Get the maximum size of the cached data, as the configured fraction of the limit of the buffer pool.
+	 *
+	 * @return budget in bytes
+	 */
+	public long getBudget() {
+		if(_budget >= 0)
+			return _budget;
+		long limit = OptimizerUtils.isUMMEnabled() ?
+			UnifiedMemoryManager.getUMMSize() : LazyWriteBuffer.getWriteBufferLimit();
+		if(limit <= 0) // buffer pool not initialized yet
+			limit = OptimizerUtils.getBufferPoolLimit();
+		return (long) (ConfigurationManager.getFederatedReadCacheBudget() * limit);
+	}
+
+	private void remove(String fname, ReadCacheEntry rce) {
+		synchronized(this) {
+			if(_rmap.remove(fname, rce))
+				_size -= rce._size;
+		}
+	}
+
+	private boolean evict(ReadCacheEntry keep) {
+		// linear scan, because workers only hold a moderate number of read files
+		Map.Entry<String, ReadCacheEntry> victim = null;
+		for(Map.Entry<String, ReadCacheEntry> e : _rmap.entrySet()) {
+			final ReadCacheEntry rce = e.getValue();
+			if(rce != keep && rce.isCached() && (victim == null || rce._score < victim.getValue()._score))
+				victim = e;
+		}
+		if(victim == null)
+			return false;
+		LOG.debug("Evicting the ReadCacheEntry of file " + victim.getKey() + ".");
+		_age = victim.getValue()._score;
+		remove(victim.getKey(), victim.getValue());
+		FederatedStatistics.incFedReadCacheEvictions();
+		return true;
+	}
+
+	private static long getModificationTime(String fname) {
+		try {
+			final Path path = new Path(fname);
+			return IOUtilFunctions.getFileSystem(path).getFileStatus(path).getModificationTime();
+		}
+		catch(Exception ex) {
+			return -1; // e.g., data of a local federated object without file
+		}
+	}
+
 	/**
 	 * Class representing an entry of the federated read cache.
 	 */
 	public static class ReadCacheEntry {
 		protected CacheableData<?> _data = null;
 		private boolean _is_valid = true;
+		private long _size = 0; // in-memory size in bytes
+		private long _modified = -1; // modification time of the file when it was read
+		private double _cost = 0; // read time in ns per byte
+		private double _score = 0; // eviction score, guarded by the read cache
 
 		public synchronized CacheableData<?> get() {
 			try {
@@ -99,29 +249,34 @@ public class FederatedReadCache {
 				throw new DMLRuntimeException(ex);
 			}
 
-			if(DMLScript.STATISTICS) {
-				FederatedStatistics.incFedReuseReadHitCount();
-				FederatedStatistics.incFedReuseReadBytesCount(_data);
-			}
-
 			//comes here if data is placed or the entry is removed by the running thread
 			return _data;
 		}
 
 		public synchronized void setValue(CacheableData<?> val) {
+			setValue(val, 0, 0, -1);
+		}
+
+		private synchronized void setValue(CacheableData<?> val, long size, long readTime, long modified) {
 			if(_data != null)
 				throw new DMLRuntimeException("Tried to set the value of a ReadCacheEntry twice. "
 					+ "Should only be performed once.");
 
+			_size = size;
+			_modified = modified;
+			_cost = (double) readTime / Math.max(size, 1);
 			_data = val;
 			//resume all threads waiting for _data
 			notifyAll();
 		}
 
+		public synchronized boolean isCached() {
+			return _data != null;
+		}
+
 		public synchronized void setInvalid() {
 			_is_valid = false;
 			notify(); // resume one waiting thread so it can try reading the data
 		}
 	}
 }
-
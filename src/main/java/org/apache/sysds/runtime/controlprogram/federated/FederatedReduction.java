@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.functionobjects.Plus;
+import org.apache.sysds.runtime.instructions.cp.Data;
+import org.apache.sysds.runtime.lineage.LineageItem;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.BinaryOperator;
+
+/**
+ * Worker-to-worker reduction of federated aggregates (e.g., tsmm or t(X)%*%y over row-partitioned data). Instead of
+ * returning one partial result per federated worker to the coordinator, the federated workers combine their partial
+ * results along a reduction topology (see {@link FederationMap#getReductionTopology(int)}), and only the root returns
+ * the aggregate. This reduces the coordinator-side ingress from one partial result per worker to a single result.
+ *
+ * Every worker receives a reduction request with its position in the topology. It waits for the partial results of
+ * its children, adds them to its local partial result, and sends the sum to its parent, which is a regular PUT_VAR
+ * request of the partial result (with the federated wire codec and chunking of large blocks), followed by an EXEC_UDF
+ * request that deposits the variable for the waiting reduction. The root stores the aggregate in a variable, which the
+ * coordinator obtains with a GET_VAR request of the same batch.
+ *
+ * NOTE: waiting for the children occupies a request thread of the worker and the serial request queue of the
+ * coordinator. All topologies therefore arrange the federated workers in one global order of their addresses, where
+ * parents always precede their children (see {@link FederationMap#getReductionTopology(int)}). Hence, a worker only
+ * waits for workers later in this order, and concurrent reductions cannot wait for each other in a cycle. The wait is
+ * still bounded by the federated timeout, or by {@link #DEFAULT_TIMEOUT} if no timeout is configured, in order to fail
+ * reductions with unavailable workers. Received partial results, whose reductions never start (e.g., because an earlier
+ * request of the batch failed), expire after the same time.
+ */
+public class FederatedReduction {
+	private static final Log LOG = LogFactory.getLog(FederatedReduction.class.getName());
+
+	/** Minimum number of federated partitions for worker-to-worker reductions */
+	public static final int MIN_NUM_PARTITIONS = 3;
+	/** Minimum number of cells of partial results for worker-to-worker reductions */
+	public static final long MIN_NUMCELLS = 16 * 1024;
+	/** Max wait in seconds for partial results of children if no federated timeout is configured */
+	public static final int DEFAULT_TIMEOUT = 300;
+	/** Maximum number of tracked failed reductions per federated worker */
+	private static final int MAX_FAILED_REDUCTIONS = 1024;
+
+	// federated worker: received partial results (or errors) of children, keyed by reduction and target position
+	private static final Map<String, Partials> _received = new ConcurrentHashMap<>();
+	// federated worker: failed reductions, whose late partial results are dropped
+	private static final Set<String> _failed = Collections.newSetFromMap(Collections.synchronizedMap(
+		new LinkedHashMap<String, Boolean>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > MAX_FAILED_REDUCTIONS;
+			}
+		}));
+
+	private FederatedReduction() {
+		// private constructor
+	}
+
+	/**
+	 * Indicates if an aggregate over the given federation map is reduced among the federated workers.
+	 *
+	 * @param fedMap   federation map of the partial results
+	 * @param numCells number of cells of the partial results
+	 * @return true if worker-to-worker reductions are configured and pay off
+	 */
+	public static boolean isEnabled(FederationMap fedMap, long numCells) {
+		// partitions of the same worker would wait for each other in the worker's serial request queue
+		return ConfigurationManager.getFederatedReductionFanout() > 0
+			&& fedMap.getSize() >= MIN_NUM_PARTITIONS && numCells >= MIN_NUMCELLS
+			&& Arrays.stream(fedMap.getFederatedData()).map(FederatedData::getAddress).distinct()
+				.count() == fedMap.getSize();
+	}
+
+	/**
+	 * Execute the given requests and add their matrix outputs among the federated workers.
+	 *
+	 * NOTE: the last federated request fr has to be the instruction call.
+	 *
+	 * @param fedMap   federation map of the partial results
+	 * @param tid      thread ID of the requests
+	 * @param frSliced worker-specific requests (e.g., sliced broadcasts), or null
+	 * @param fr       the requests computing the partial results
+	 * @return the aggregated matrix block
+	 */
+	public static MatrixBlock aggAdd(FederationMap fedMap, long tid, FederatedRequest[] frSliced,
+		FederatedRequest... fr) {
+		return aggAdd(fedMap, tid, ConfigurationManager.getFederatedReductionFanout(), frSliced, fr);
+	}
+
+	/**
+	 * Execute the given requests and add their matrix outputs among the federated workers.
+	 *
+	 * NOTE: the last federated request fr has to be the instruction call.
+	 *
+	 * @param fedMap   federation map of the partial results
+	 * @param tid      thread ID of the requests
+	 * @param fanout   fan-out of the reduction topology
+	 * @param frSliced worker-specific requests (e.g., sliced broadcasts), or null
+	 * @param fr       the requests computing the partial results
+	 * @return the aggregated matrix block
+	 */
+	public static MatrixBlock aggAdd(FederationMap fedMap, long tid, int fanout, FederatedRequest[] frSliced,
+		FederatedRequest... fr) {
+		final long callInstID = fr[fr.length - 1].getID();
+		final long outputID = FederationUtils.getNextFedDataID();
+		final int[] parents = fedMap.getReductionTopology(fanout);
+		final InetSocketAddress[] addresses = Arrays.stream(fedMap.getFederatedData())
+			.map(FederatedData::getAddress).toArray(InetSocketAddress[]::new);
+		final String key = UUID.randomUUID().toString();
+
+		// reduction request per worker, the root additionally returns the aggregate
+		final FederatedRequest frC = fedMap.cleanup(tid, callInstID, outputID);
+		final FederatedRequest[][] frReduce = new FederatedRequest[parents.length][];
+		int root = -1;
+		for(int i = 0; i < parents.length; i++) {
+			final FederatedRequest frU = new FederatedRequest(RequestType.EXEC_UDF, -1,
+				new ReduceAdd(callInstID, outputID, key, i, parents, addresses));
+			if(parents[i] < 0) {
+				root = i;
+				frReduce[i] = new FederatedRequest[] {frU, new FederatedRequest(RequestType.GET_VAR, outputID), frC};
+			}
+			else
+				frReduce[i] = new FederatedRequest[] {frU, frC};
+		}
+		final Future<FederatedResponse>[] ffr = fedMap.executeReduction(tid, frSliced, frReduce, fr);
+		FederatedStatistics.incFedReductionCount();
+
+		// wait for all workers to surface errors of inner nodes
+		try {
+			MatrixBlock ret = null;
+			for(int i = 0; i < ffr.length; i++) {
+				final Object[] data = ffr[i].get().getData();
+				if(i == root)
+					ret = (MatrixBlock) data[0];
+			}
+			return ret;
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed worker-to-worker reduction of federated partial results.", ex);
+		}
+	}
+
+	/**
+	 * Indicates if a received message is the partial result (or error) of a child in a worker-to-worker reduction,
+	 * which the federated worker handles directly, because the reductions of the parent block until all partial
+	 * results arrived.
+	 *
+	 * @param msg received message
+	 * @return true if the message is a deposit of a partial result
+	 */
+	public static boolean isDeposit(Object msg) {
+		if(!(msg instanceof FederatedRequest[]))
+			return false;
+		final FederatedRequest[] frs = (FederatedRequest[]) msg;
+		if(frs.length < 1 || frs.length > 2 || (frs.length == 2 && frs[0].getType() != RequestType.PUT_VAR))
+			return false;
+		final FederatedRequest fr = frs[frs.length - 1];
+		return fr.getType() == RequestType.EXEC_UDF && fr.getNumParams() == 1 && fr.getParam(0) instanceof Deposit;
+	}
+
+	/**
+	 * Get the number of reductions with partial results that are not consumed yet on this federated worker.
+	 *
+	 * @return number of pending reductions
+	 */
+	public static int getNumPending() {
+		return _received.size();
+	}
+
+	/**
+	 * Get the max wait for the partial results of the children of a reduction.
+	 *
+	 * @return timeout in seconds, always positive
+	 */
+	public static int getTimeout() {
+		final int timeout = ConfigurationManager.getFederatedTimeout();
+		return (timeout > 0) ? timeout : DEFAULT_TIMEOUT;
+	}
+
+	private static Partials getReceived(String key) {
+		// drop partial results of reductions that never started
+		final long expired = System.nanoTime() - TimeUnit.SECONDS.toNanos(getTimeout());
+		_received.values().removeIf(p -> !p._consumed && p._created - expired < 0);
+		return _received.computeIfAbsent(key, k -> new Partials());
+	}
+
+	private static String getKey(String key, int pos) {
+		return key + "-" + pos;
+	}
+
+	/**
+	 * Reduction of the partial result of one federated worker with the partial results of its children.
+	 */
+	public static class ReduceAdd extends FederatedUDF {
+		private static final long serialVersionUID = -5294838710612307511L;
+
+		private final long _outputID;
+		private final String _key;
+		private final int _pos;
+		private final int[] _parents;
+		private final InetSocketAddress[] _addresses;
+
+		private ReduceAdd(long input, long outputID, String key, int pos, int[] parents,
+			InetSocketAddress[] addresses) {
+			super(new long[] {input});
+			_outputID = outputID;
+			_key = key;
+			_pos = pos;
+			_parents = parents;
+			_addresses = addresses;
+		}
+
+		@Override
+		public FederatedResponse execute(ExecutionContext ec, Data... data) {
+			final String key = getKey(_key, _pos);
+			final int numChildren = (int) Arrays.stream(_parents).filter(p -> p == _pos).count();
+			MatrixBlock ret = null;
+			try {
+				ret = new MatrixBlock();
+				ret.copy(CompressedMatrixBlock.getUncompressed(((MatrixObject) data[0]).acquireReadAndRelease()));
+				final BinaryOperator plus = new BinaryOperator(Plus.getPlusFnObject());
+				final Partials partials = getReceived(key);
+				partials._consumed = true;
+				final BlockingQueue<Object> received = partials._queue;
+				// one deadline for all children, which bounds the occupation of the request thread
+				final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(getTimeout());
+				for(int i = 0; i < numChildren; i++) {
+					final Object partial = received.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if(partial == null)
+						throw new FederatedWorkerHandlerException("Timeout of federated reduction " + key);
+					else if(partial instanceof String)
+						throw new FederatedWorkerHandlerException((String) partial);
+					ret.binaryOperationsInPlace(plus, CompressedMatrixBlock.getUncompressed((MatrixBlock) partial));
+				}
+			}
+			catch(Exception ex) {
+				LOG.error("Failed federated reduction " + key, ex);
+				fail(key);
+				throw (ex instanceof FederatedWorkerHandlerException) ? (FederatedWorkerHandlerException) ex :
+					new FederatedWorkerHandlerException("Failed federated reduction " + key);
+			}
+			finally {
+				_received.remove(key);
+			}
+
+			if(_parents[_pos] < 0) {
+				ec.setMatrixOutput(String.valueOf(_outputID), ret);
+				return new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+			}
+			// put the partial result as a regular variable, which the deposit hands over to the reduction
+			final long partialID = FederationUtils.getNextFedDataID();
+			try {
+				final FederatedResponse res = send(new FederatedRequest(RequestType.PUT_VAR, null, partialID, ret),
+					new FederatedRequest(RequestType.EXEC_UDF, -1, new Deposit(getKey(_key, _parents[_pos]), partialID)));
+				if(!res.isSuccessful())
+					throw new FederatedWorkerHandlerException("Failed depositing partial result of federated reduction "
+						+ key + ": " + res.getErrorMessage());
+				return res;
+			}
+			catch(FederatedWorkerHandlerException ex) {
+				fail(key);
+				throw ex;
+			}
+		}
+
+		private void fail(String key) {
+			_failed.add(key);
+			if(_parents[_pos] < 0)
+				return;
+			// propagate the error to the parent, which otherwise waits for the partial result until the timeout
+			try {
+				send(new FederatedRequest(RequestType.EXEC_UDF, -1,
+					new Deposit(getKey(_key, _parents[_pos]), "Failed federated reduction " + key)));
+			}
+			catch(FederatedWorkerHandlerException ex) {
+				LOG.warn("Failed propagating the error of federated reduction " + key, ex);
+			}
+		}
+
+		private FederatedResponse send(FederatedRequest... request) {
+			try {
+				return FederatedData.executeFederatedOperation(_addresses[_parents[_pos]], 1, request)
+					.get(getTimeout(), TimeUnit.SECONDS);
+			}
+			catch(Exception ex) {
+				throw new FederatedWorkerHandlerException("Failed sending partial result of federated reduction", ex);
+			}
+		}
+
+		@Override
+		public Pair<String, LineageItem> getLineageItem(ExecutionContext ec) {
+			return null;
+		}
+	}
+
+	/**
+	 * Receipt of the partial result (or error) of a child in a worker-to-worker reduction, where the partial result is
+	 * put as a variable by the preceding request of the same batch.
+	 */
+	public static class Deposit extends FederatedUDF {
+		private static final long serialVersionUID = 3391472380526474981L;
+
+		private final String _key;
+		private final String _error;
+
+		private Deposit(String key, long partialID) {
+			super(new long[] {partialID});
+			_key = key;
+			_error = null;
+		}
+
+		private Deposit(String key, String error) {
+			super(new long[0]);
+			_key = key;
+			_error = error;
+		}
+
+		@Override
+		public FederatedResponse execute(ExecutionContext ec, Data... data) {
+			Object partial = _error;
+			if(_error == null) {
+				// take over the partial result and remove its variable
+				final String varName = String.valueOf(getInputIDs()[0]);
+				partial = ((MatrixObject) data[0]).acquireReadAndRelease();
+				ec.cleanupDataObject(ec.removeVariable(varName));
+			}
+			if(!_failed.contains(_key))
+				getReceived(_key)._queue.add(partial);
+			return new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+		}
+
+		@Override
+		public Pair<String, LineageItem> getLineageItem(ExecutionContext ec) {
+			return null;
+		}
+	}
+
+	private static class Partials {
+		private final long _created = System.nanoTime();
+		private final BlockingQueue<Object> _queue = new LinkedBlockingQueue<>();
+		private volatile boolean _consumed = false;
+	}
+}
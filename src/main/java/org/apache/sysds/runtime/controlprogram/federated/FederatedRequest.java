@@ -33,6 +33,7 @@ import org.apache.sysds.api.DMLScript;
 import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
 import org.apache.sysds.runtime.controlprogram.caching.CacheDataOutput;
 import org.apache.sysds.runtime.controlprogram.caching.LazyWriteBuffer;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
 import org.apache.sysds.runtime.controlprogram.parfor.util.IDHandler;
 import org.apache.sysds.runtime.instructions.cp.ScalarObject;
 import org.apache.sysds.runtime.lineage.Lineage;
@@ -50,6 +51,7 @@ public class FederatedRequest implements Serializable {
 		EXEC_UDF,  // execute arbitrary user-defined function
 		CLEAR,     // clear all variables and execution contexts (i.e., rmvar ALL)
 		NOOP,      // no operation (part of request sequence and ID carrying)
+		BATCH,     // coalesced request batches (batch lengths as parameters, batches appended)
 	}
 
 	private RequestType _method;
@@ -59,6 +61,10 @@ public class FederatedRequest implements Serializable {
 	private List<Long> _checksums;
 	private long _pid;
 	private String _lineageTrace; // the serialized lineage trace of a put object
+	private TraceContext _trace; // trace context of the originating span, null if not traced
+	private transient String _contentDigest; // digest of the put cache block, coordinator only
+	private transient volatile long _codecTime = 0; // serialization or deserialization time of the batch (nsec)
+	private transient volatile long _wireSize = 0; // size of the encoded batch incl chunks (bytes)
 
 	public FederatedRequest(RequestType method) {
 		this(method, FederationUtils.getNextFedDataID(), new ArrayList<>());
@@ -84,6 +90,21 @@ public class FederatedRequest implements Serializable {
 		_id = id;
 		_data = data;
 		_pid = Long.valueOf(IDHandler.getProcessID());
+		_trace = FederatedTracer.current();
+	}
+
+	/**
+	 * Create a federated request from its received wire representation (without counting it as a new request).
+	 */
+	FederatedRequest(RequestType method, long id, long tid, long pid, List<Object> data, List<Long> checksums,
+		String lineageTrace) {
+		_method = method;
+		_id = id;
+		_tid = tid;
+		_pid = pid;
+		_data = data;
+		_checksums = checksums;
+		_lineageTrace = lineageTrace;
 	}
 
 	public RequestType getType() {
@@ -110,6 +131,10 @@ public class FederatedRequest implements Serializable {
 		return _data.get(i);
 	}
 
+	void setParam(int i, Object obj) {
+		_data.set(i, obj);
+	}
+
 	public FederatedRequest appendParam(Object obj) {
 		_data.add(obj);
 		return this;
@@ -148,6 +173,53 @@ public class FederatedRequest implements Serializable {
 		return _checksums.get(i);
 	}
 
+	List<Long> getChecksums() {
+		return _checksums;
+	}
+
+	public TraceContext getTraceContext() {
+		return _trace;
+	}
+
+	public void setTraceContext(TraceContext trace) {
+		_trace = trace;
+	}
+
+	String getContentDigest() {
+		return _contentDigest;
+	}
+
+	void setContentDigest(String digest) {
+		_contentDigest = digest;
+	}
+
+	/**
+	 * Get the time of encoding (at the coordinator) or decoding (at the federated worker) of the request batch, which
+	 * is recorded at the first request of the batch.
+	 *
+	 * @return codec time in ns
+	 */
+	long getCodecTime() {
+		return _codecTime;
+	}
+
+	void setCodecTime(long time) {
+		_codecTime = time;
+	}
+
+	/**
+	 * Get the size of the encoded request batch on the wire, which is recorded at the first request of the batch.
+	 *
+	 * @return size in bytes, 0 if unknown (e.g., on local channels without serialization)
+	 */
+	long getWireSize() {
+		return _wireSize;
+	}
+
+	void setWireSize(long size) {
+		_wireSize = size;
+	}
+
 	private void calcChecksum() throws IOException {
 		for (Object ob : _data) {
 			if (!(ob instanceof CacheBlock) && !(ob instanceof ScalarObject))
@@ -187,6 +259,8 @@ public class FederatedRequest implements Serializable {
 			for(Object obj : _data) {
 				if(obj instanceof CacheBlock)
 					minBufferSize += ((CacheBlock<?>)obj).getExactSerializedSize();
+				else if(obj instanceof FederatedContent && !((FederatedContent) obj).isReference())
+					minBufferSize += ((FederatedContent) obj).getBlock().getExactSerializedSize();
 			}
 		}
 		if(_lineageTrace != null)
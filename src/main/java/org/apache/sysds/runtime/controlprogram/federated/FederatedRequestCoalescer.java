@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+
+/**
+ * Coordinator-side deferral and coalescing of federated request batches (lazy federated execution). Request batches
+ * that only execute instructions or put data (i.e., whose responses are usually not awaited) are queued per federated
+ * worker instead of being sent right away. The queued batches are flushed once a result is actually needed, which is
+ * the case if the response of a deferred batch is awaited, or if a batch that cannot be deferred (e.g., GET_VAR,
+ * EXEC_UDF, or CLEAR) is executed. A flush sends the queued batches of a worker as coalesced messages, one per
+ * coordinator thread (because the worker orders and executes requests per coordinator thread), which the worker
+ * executes in order and answers with one response per batch.
+ *
+ * A flush sends the deferred batches of all federated workers (not only of the worker of the triggering request),
+ * because workers may exchange data directly and thus depend on deferred requests of other workers. A flush does not
+ * wait for the completion of the sent batches. The batches are taken from the queues under a lock, but sent after
+ * releasing it, such that concurrent coordinator threads are not serialized behind the network sends. Batches of the
+ * same worker are still sent in the order they were taken, over a single channel per worker (see
+ * {@link FederatedData#executeOrderedFederatedOperation(InetSocketAddress, FederatedRequest...)}), because messages
+ * over different connections may arrive out of order, and a batch may depend on the batches of a previous message
+ * (e.g., if taken by the flush of a concurrent thread).
+ */
+public class FederatedRequestCoalescer {
+	private static final Map<InetSocketAddress, List<DeferredFuture>> _pending = new LinkedHashMap<>();
+	// batches taken from the pending batches, in order of flushes, but not sent yet
+	private static final Map<InetSocketAddress, Queue<List<DeferredFuture>>> _outbox = new ConcurrentHashMap<>();
+
+	private FederatedRequestCoalescer() {
+		// private constructor
+	}
+
+	/**
+	 * Execute (or defer) a batch of federated requests on the given federated worker.
+	 *
+	 * @param address socket address of the federated worker
+	 * @param request the requested operations
+	 * @return future of the federated response
+	 */
+	public static Future<FederatedResponse> execute(InetSocketAddress address, FederatedRequest... request) {
+		final DeferredFuture ret = new DeferredFuture(address, request);
+		final List<InetSocketAddress> addresses;
+		synchronized(_pending) {
+			if(isDeferrable(request)) {
+				_pending.computeIfAbsent(address, k -> new ArrayList<>()).add(ret);
+				FederatedStatistics.incFedDeferredCount();
+				return ret;
+			}
+			// flush all deferred batches, where the ones of the given worker are sent together with the request
+			_pending.computeIfAbsent(address, k -> new ArrayList<>()).add(ret);
+			addresses = takeAll();
+		}
+		sendAll(addresses);
+		return ret;
+	}
+
+	/**
+	 * Send all deferred request batches to their federated workers, without waiting for their responses.
+	 */
+	public static void flush() {
+		final List<InetSocketAddress> addresses;
+		synchronized(_pending) {
+			addresses = takeAll();
+		}
+		sendAll(addresses);
+	}
+
+	/**
+	 * Run the given action once the response of a request batch is available, without flushing deferred batches.
+	 * Actions of deferred batches run after their batch was sent and answered (or failed), and actions of futures
+	 * that cannot notify their completion run right away.
+	 *
+	 * @param response future of the federated response
+	 * @param action   action to run on completion
+	 */
+	public static void onCompletion(Future<FederatedResponse> response, Runnable action) {
+		if(response instanceof DeferredFuture)
+			((DeferredFuture) response).addListener(action);
+		else if(response instanceof io.netty.util.concurrent.Future)
+			((io.netty.util.concurrent.Future<?>) response).addListener(f -> action.run());
+		else
+			action.run();
+	}
+
+	/**
+	 * Get the number of deferred request batches that are not sent yet.
+	 *
+	 * @return number of pending batches
+	 */
+	public static int getNumPending() {
+		synchronized(_pending) {
+			return _pending.values().stream().mapToInt(List::size).sum();
+		}
+	}
+
+	/**
+	 * Indicates if a batch of requests can be deferred, i.e., does not return data other than meta data.
+	 *
+	 * @param request the requested operations
+	 * @return true if the request batch can be deferred
+	 */
+	protected static boolean isDeferrable(FederatedRequest[] request) {
+		for(FederatedRequest fr : request) {
+			final RequestType t = fr.getType();
+			if(t != RequestType.EXEC_INST && t != RequestType.PUT_VAR && t != RequestType.NOOP)
+				return false;
+		}
+		return request.length > 0;
+	}
+
+	/**
+	 * Split a coalesced message of request batches on the federated worker into the individual batches.
+	 *
+	 * @param requests coalesced message, starting with the BATCH request
+	 * @return individual request batches
+	 */
+	protected static List<FederatedRequest[]> split(FederatedRequest[] requests) {
+		final FederatedRequest header = requests[0];
+		final List<FederatedRequest[]> ret = new ArrayList<>(header.getNumParams());
+		int pos = 1;
+		for(int i = 0; i < header.getNumParams(); i++) {
+			final int len = (Integer) header.getParam(i);
+			final FederatedRequest[] batch = new FederatedRequest[len];
+			System.arraycopy(requests, pos, batch, 0, len);
+			ret.add(batch);
+			pos += len;
+		}
+		if(pos != requests.length)
+			throw new DMLRuntimeException("Corrupted coalesced federated request of length " + requests.length);
+		return ret;
+	}
+
+	/**
+	 * Create a response of a coalesced message from the responses of the individual batches.
+	 *
+	 * @param responses responses of the individual request batches
+	 * @return response of the coalesced message
+	 */
+	protected static FederatedResponse createResponse(List<FederatedResponse> responses) {
+		return new FederatedResponse(ResponseType.SUCCESS, responses.toArray(new Object[0]));
+	}
+
+	private static List<InetSocketAddress> takeAll() {
+		// caller holds the lock of the pending batches, which orders the batches in the outbox
+		final List<InetSocketAddress> ret = new ArrayList<>(_pending.keySet());
+		for(Map.Entry<InetSocketAddress, List<DeferredFuture>> e : _pending.entrySet())
+			_outbox.computeIfAbsent(e.getKey(), k -> new ConcurrentLinkedQueue<>()).add(e.getValue());
+		_pending.clear();
+		return ret;
+	}
+
+	private static void sendAll(List<InetSocketAddress> addresses) {
+		for(InetSocketAddress address : addresses)
+			send(address);
+	}
+
+	private static void send(InetSocketAddress address) {
+		final Queue<List<DeferredFuture>> outbox = _outbox.get(address);
+		if(outbox == null)
+			return;
+		// one sender per worker at a time, which sends all batches taken so far in order
+		synchronized(outbox) {
+			List<DeferredFuture> batches;
+			while((batches = outbox.poll()) != null)
+				for(List<DeferredFuture> group : groupByThread(batches))
+					send(address, group);
+		}
+	}
+
+	private static Collection<List<DeferredFuture>> groupByThread(List<DeferredFuture> batches) {
+		// batches of the same coordinator thread in order, because the worker orders the execution per thread
+		final Map<String, List<DeferredFuture>> ret = new LinkedHashMap<>();
+		for(DeferredFuture df : batches) {
+			final FederatedRequest fr = df._request[0];
+			ret.computeIfAbsent(fr.getPID() + "-" + fr.getTID(), k -> new ArrayList<>()).add(df);
+		}
+		return ret.values();
+	}
+
+	private static void send(InetSocketAddress address, List<DeferredFuture> batches) {
+		final List<FederatedRequest[]> units = fuse(batches);
+		if(units.size() == 1) {
+			final Future<FederatedResponse> sent = FederatedData.executeOrderedFederatedOperation(address,
+				units.get(0));
+			for(DeferredFuture df : batches)
+				df.setSent(sent, -1);
+			return;
+		}
+
+		// BATCH request with the batch lengths, followed by the concatenated batches
+		final List<FederatedRequest> requests = new ArrayList<>();
+		final FederatedRequest header = new FederatedRequest(RequestType.BATCH, -1);
+		header.setTID(batches.get(0)._request[0].getTID()); // all batches share the thread
+		requests.add(header);
+		for(FederatedRequest[] unit : units) {
+			header.appendParam(unit.length);
+			for(FederatedRequest fr : unit)
+				requests.add(fr);
+		}
+		final Future<FederatedResponse> sent = FederatedData
+			.executeOrderedFederatedOperation(address, requests.toArray(new FederatedRequest[0]));
+		for(DeferredFuture df : batches)
+			df.setSent(sent, df._unit);
+		FederatedStatistics.incFedCoalescedCount();
+	}
+
+	/**
+	 * Fuse runs of deferred single-instruction batches into program fragments, i.e., EXEC_INST requests with one
+	 * instruction per parameter, which the worker executes as a single program block and answers with one response
+	 * per instruction.
+	 *
+	 * @param batches deferred request batches of a federated worker, whose unit and fragment positions are set
+	 * @return the request batches to send, with fragments replacing the fused batches
+	 */
+	private static List<FederatedRequest[]> fuse(List<DeferredFuture> batches) {
+		final int max = ConfigurationManager.getFederatedFragmentSize();
+		final List<FederatedRequest[]> ret = new ArrayList<>();
+		for(int i = 0; i < batches.size();) {
+			int j = i + 1;
+			if(max > 1 && isFragmentable(batches.get(i)._request))
+				while(j < batches.size() && j - i < max && isFragmentable(batches.get(j)._request)
+					&& isSameContext(batches.get(i)._request[0], batches.get(j)._request[0]))
+					j++;
+			if(j - i > 1) {
+				final FederatedRequest first = batches.get(i)._request[0];
+				final List<Object> insts = new ArrayList<>(j - i);
+				for(int k = i; k < j; k++) {
+					insts.add(batches.get(k)._request[0].getParam(0));
+					batches.get(k)._fragment = k - i;
+				}
+				final FederatedRequest fragment = new FederatedRequest(RequestType.EXEC_INST, first.getID(),
+					first.getTID(), first.getPID(), insts, null, null);
+				fragment.setTraceContext(first.getTraceContext());
+				FederatedStatistics.incFedFragments(j - i);
+				ret.add(new FederatedRequest[] {fragment});
+			}
+			else
+				ret.add(batches.get(i)._request);
+			for(int k = i; k < j; k++)
+				batches.get(k)._unit = ret.size() - 1;
+			i = j;
+		}
+		return ret;
+	}
+
+	private static boolean isFragmentable(FederatedRequest[] request) {
+		return request.length == 1 && request[0].getType() == RequestType.EXEC_INST
+			&& request[0].getNumParams() == 1 && request[0].getLineageTrace() == null;
+	}
+
+	private static boolean isSameContext(FederatedRequest a, FederatedRequest b) {
+		return a.getTID() == b.getTID() && a.getPID() == b.getPID();
+	}
+
+	/**
+	 * Future of a deferred request batch, which flushes the deferred batches on first access of the response.
+	 */
+	private static class DeferredFuture implements Future<FederatedResponse> {
+		private final InetSocketAddress _address;
+		private final FederatedRequest[] _request;
+		private volatile Future<FederatedResponse> _sent;
+		private final List<Runnable> _listeners = new ArrayList<>(); // actions on completion until sent
+		private int _pos = -1; // position in the coalesced message
+		private int _unit = -1; // position of the batch or its fragment in the sent units
+		private int _fragment = -1; // position in the program fragment
+
+		public DeferredFuture(InetSocketAddress address, FederatedRequest[] request) {
+			_address = address;
+			_request = request;
+		}
+
+		private void setSent(Future<FederatedResponse> sent, int pos) {
+			final List<Runnable> listeners;
+			synchronized(this) {
+				_pos = pos;
+				_sent = sent;
+				listeners = new ArrayList<>(_listeners);
+				_listeners.clear();
+			}
+			for(Runnable action : listeners)
+				onCompletion(sent, action);
+		}
+
+		private void addListener(Runnable action) {
+			final Future<FederatedResponse> sent;
+			synchronized(this) {
+				sent = _sent;
+				if(sent == null) {
+					_listeners.add(action);
+					return;
+				}
+			}
+			onCompletion(sent, action);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			final Future<FederatedResponse> sent = _sent;
+			return sent != null && sent.isDone();
+		}
+
+		@Override
+		public FederatedResponse get() throws InterruptedException, ExecutionException {
+			return extract(getSent().get());
+		}
+
+		@Override
+		public FederatedResponse get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+			return extract(getSent().get(timeout, unit));
+		}
+
+		private Future<FederatedResponse> getSent() {
+			if(_sent == null)
+				flush();
+			if(_sent == null)
+				send(_address); // taken by a concurrent flush, which might still be sending
+			if(_sent == null)
+				throw new DMLRuntimeException("Deferred federated request to " + _address + " was not sent.");
+			return _sent;
+		}
+
+		private FederatedResponse extract(FederatedResponse response) throws ExecutionException {
+			// errors of the coalesced message or fragment as a whole apply to all its batches
+			try {
+				FederatedResponse ret = response;
+				if(_pos >= 0 && ret.isSuccessful())
+					ret = (FederatedResponse) ret.getData()[_pos];
+				if(_fragment >= 0 && ret.isSuccessful())
+					ret = (FederatedResponse) ret.getData()[_fragment];
+				return ret;
+			}
+			catch(Exception ex) {
+				throw new ExecutionException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.api.DMLScript;
+
+/**
+ * Bounded execution pool of a federated worker, which executes request batches off the netty event loops so that the
+ * I/O threads only decode requests and encode responses. Batches with the same key (i.e., the same coordinator host,
+ * process ID, and thread ID) are executed one after another in their order of arrival, while batches of independent
+ * coordinators or concurrent parfor workers run in parallel.
+ *
+ * The pool is shared among tenants (i.e., coordinators identified by host and process ID, like the execution context
+ * maps of the {@link FederatedLookupTable}) by weighted fair queueing: every free thread executes the next batch of
+ * the tenant with the smallest virtual time, which is the tenant's consumed execution time divided by its weight.
+ * Tenants that become active again start at the current virtual time, so a tenant with long-running operations (e.g.,
+ * large matrix multiplications) cannot starve tenants with small requests, and idle tenants do not accumulate credit.
+ */
+public class FederatedRequestExecutor {
+	private static final Log LOG = LogFactory.getLog(FederatedRequestExecutor.class.getName());
+
+	private final ExecutorService _pool;
+	private final Map<String, SerialQueue> _queues = new ConcurrentHashMap<>();
+	private final Map<String, Tenant> _tenants = new HashMap<>();
+	private final Map<String, Double> _weights = new ConcurrentHashMap<>();
+	private volatile long _quota = 0; // max data per tenant in bytes, <=0 for unbounded
+	private double _vtime = 0; // virtual time of the last dispatched batch
+
+	/**
+	 * Create a new execution pool.
+	 *
+	 * @param numThreads maximum number of concurrently executed request batches
+	 */
+	public FederatedRequestExecutor(int numThreads) {
+		_pool = new ThreadPoolExecutor(numThreads, numThreads, 10, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(), new ExecThreadFactory());
+		((ThreadPoolExecutor) _pool).allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Create the ordering key of a request batch.
+	 *
+	 * @param host host of the requesting coordinator
+	 * @param pid  process ID of the requesting coordinator
+	 * @param tid  thread ID of the requesting coordinator thread
+	 * @return the key for ordered execution
+	 */
+	public static String getKey(String host, long pid, long tid) {
+		return host + "-" + pid + "-" + tid;
+	}
+
+	/**
+	 * Create the tenant ID of a coordinator, which matches the coordinator IDs of the worker events and requests.
+	 *
+	 * @param host host of the requesting coordinator
+	 * @param pid  process ID of the requesting coordinator
+	 * @return the tenant ID
+	 */
+	public static String getTenant(String host, long pid) {
+		return host + "-" + pid;
+	}
+
+	/**
+	 * Set the weight of all tenants of a coordinator host in the fair sharing of the execution pool.
+	 *
+	 * @param host   host of the coordinators
+	 * @param weight positive weight, with a default of 1
+	 */
+	public void setWeight(String host, double weight) {
+		if(weight <= 0)
+			throw new IllegalArgumentException("Invalid weight of federated tenant " + host + ": " + weight);
+		_weights.put(host, weight);
+	}
+
+	/**
+	 * Set the weights of coordinator hosts from a specification of comma-separated host=weight pairs.
+	 *
+	 * @param weights specification of weights, or null or empty for none
+	 */
+	public void setWeights(String weights) {
+		if(weights == null || weights.trim().isEmpty())
+			return;
+		for(String entry : weights.split(",")) {
+			final String[] parts = entry.trim().split("=");
+			setWeight(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+		}
+	}
+
+	/**
+	 * Set the memory quota of every tenant, i.e., the max size of its data objects on the federated worker.
+	 *
+	 * @param quota quota in bytes, <=0 for unbounded
+	 */
+	public void setQuota(long quota) {
+		_quota = quota;
+	}
+
+	/**
+	 * Get the memory quota of every tenant.
+	 *
+	 * @return quota in bytes, <=0 for unbounded
+	 */
+	public long getQuota() {
+		return _quota;
+	}
+
+	/**
+	 * Enqueue a task for execution after all previously enqueued tasks with the same key, where every key is a
+	 * separate tenant.
+	 *
+	 * @param key  ordering key, see {@link #getKey(String, long, long)}
+	 * @param task the task to execute
+	 */
+	public void execute(String key, Runnable task) {
+		execute(key, key, task);
+	}
+
+	/**
+	 * Enqueue a task of a tenant for execution after all previously enqueued tasks with the same key.
+	 *
+	 * @param tenant tenant ID, see {@link #getTenant(String, long)}
+	 * @param key    ordering key, see {@link #getKey(String, long, long)}
+	 * @param task   the task to execute
+	 */
+	public void execute(String tenant, String key, Runnable task) {
+		final Runnable timedTask = DMLScript.STATISTICS ? new TimedTask(tenant, task) : task;
+		_queues.compute(key, (k, q) -> {
+			if(q == null)
+				q = new SerialQueue(k, tenant);
+			if(q.offer(timedTask))
+				schedule(q);
+			return q;
+		});
+	}
+
+	public void shutdown() {
+		_pool.shutdownNow();
+	}
+
+	private void schedule(SerialQueue q) {
+		synchronized(_tenants) {
+			final Tenant tenant = _tenants.computeIfAbsent(q._tenant, t -> new Tenant(t, getWeight(t)));
+			if(tenant._ready.isEmpty() && tenant._running == 0)
+				tenant._vtime = Math.max(tenant._vtime, _vtime); // no credit for idle time
+			tenant._ready.add(q);
+		}
+		// every scheduled queue corresponds to one dispatch
+		_pool.execute(this::dispatch);
+	}
+
+	private void dispatch() {
+		final SerialQueue q;
+		final Tenant tenant;
+		synchronized(_tenants) {
+			tenant = _tenants.values().stream().filter(t -> !t._ready.isEmpty())
+				.min(Comparator.comparingDouble(t -> t._vtime)).orElse(null);
+			if(tenant == null)
+				return;
+			q = tenant._ready.poll();
+			tenant._running++;
+			_vtime = tenant._vtime;
+		}
+		final long t0 = System.nanoTime();
+		try {
+			q.run();
+		}
+		finally {
+			final long time = System.nanoTime() - t0;
+			synchronized(_tenants) {
+				tenant._running--;
+				tenant._vtime += time / tenant._weight;
+				if(tenant._ready.isEmpty() && tenant._running == 0)
+					_tenants.remove(tenant._id); // idle, weights are kept separately
+			}
+			if(DMLScript.STATISTICS)
+				FederatedStatistics.incFedTenantExecTime(tenant._id, time);
+		}
+	}
+
+	private double getWeight(String tenant) {
+		return _weights.getOrDefault(getHost(tenant), 1d);
+	}
+
+	/**
+	 * Extract the coordinator host of a tenant ID, which ends with the process ID after the last delimiter (with a
+	 * negative process ID such as in host--1 for unknown processes).
+	 *
+	 * @param tenant tenant ID, see {@link #getTenant(String, long)}
+	 * @return the host of the tenant
+	 */
+	public static String getHost(String tenant) {
+		int pos = tenant.lastIndexOf('-');
+		if(pos > 0 && tenant.charAt(pos - 1) == '-')
+			pos--; // negative process ID
+		return (pos < 0) ? tenant : tenant.substring(0, pos);
+	}
+
+	/**
+	 * Queue of tasks with the same key, which runs at most one task at a time and reschedules itself while tasks are
+	 * pending (in order to interleave with other queues and tenants).
+	 */
+	private class SerialQueue implements Runnable {
+		private final String _key;
+		private final String _tenant;
+		private final Queue<Runnable> _tasks = new ArrayDeque<>();
+		private boolean _running = false;
+
+		public SerialQueue(String key, String tenant) {
+			_key = key;
+			_tenant = tenant;
+		}
+
+		/** @return true if the queue was idle and needs to be scheduled */
+		private boolean offer(Runnable task) {
+			_tasks.add(task);
+			if(_running)
+				return false;
+			_running = true;
+			return true;
+		}
+
+		@Override
+		public void run() {
+			final Runnable[] task = new Runnable[1];
+			_queues.computeIfPresent(_key, (k, q) -> {
+				task[0] = _tasks.poll();
+				return q;
+			});
+			try {
+				if(task[0] != null)
+					task[0].run();
+			}
+			catch(Throwable t) {
+				LOG.error("Failed to execute federated request batch", t);
+			}
+			finally {
+				// remove the idle queue or continue with the next task
+				_queues.computeIfPresent(_key, (k, q) -> {
+					if(_tasks.isEmpty()) {
+						_running = false;
+						return null;
+					}
+					schedule(this);
+					return q;
+				});
+			}
+		}
+	}
+
+	private static class Tenant {
+		private final String _id;
+		private final double _weight;
+		private final Queue<SerialQueue> _ready = new ArrayDeque<>();
+		private int _running = 0;
+		private double _vtime = 0;
+
+		public Tenant(String id, double weight) {
+			_id = id;
+			_weight = weight;
+		}
+	}
+
+	private static class TimedTask implements Runnable {
+		private final String _tenant;
+		private final Runnable _task;
+		private final long _t0;
+
+		public TimedTask(String tenant, Runnable task) {
+			_tenant = tenant;
+			_task = task;
+			_t0 = System.nanoTime();
+			FederatedStatistics.incFedExecQueueDepth();
+		}
+
+		@Override
+		public void run() {
+			final long waitTime = System.nanoTime() - _t0;
+			FederatedStatistics.decFedExecQueueDepth(waitTime);
+			FederatedStatistics.incFedTenantWaitTime(_tenant, waitTime);
+			_task.run();
+		}
+	}
+
+	private static class ExecThreadFactory implements ThreadFactory {
+		private final AtomicInteger _num = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread t = new Thread(r, "FederatedExec-" + _num.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
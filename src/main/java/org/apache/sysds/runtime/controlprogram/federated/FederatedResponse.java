@@ -32,10 +32,15 @@ public class FederatedResponse implements Serializable {
 
 	public enum ResponseType {
 		SUCCESS, SUCCESS_EMPTY, ERROR,
+		MISS, // referenced broadcast content not available, requests not executed
 	}
 
 	private ResponseType _status;
 	private Object[] _data;
+	private float _pressure = 0; // memory pressure of the federated worker
+	private long[] _workerTimes = null; // deserialize, queue, execute time at the federated worker (nsec)
+	private transient volatile long _codecTime = 0; // serialization or deserialization time (nsec)
+	private transient volatile long _wireSize = 0; // size of the encoded response incl chunks (bytes)
 	
 	private transient LineageItem _linItem = null; // not included in serialized object
 
@@ -68,7 +73,7 @@ public class FederatedResponse implements Serializable {
 	}
 
 	public boolean isSuccessful() {
-		return _status != ResponseType.ERROR;
+		return _status != ResponseType.ERROR && _status != ResponseType.MISS;
 	}
 
 	public String getErrorMessage() {
@@ -86,12 +91,65 @@ public class FederatedResponse implements Serializable {
 		return _data;
 	}
 
+	/**
+	 * Get the memory pressure of the federated worker at the time of the response.
+	 *
+	 * @return memory pressure in [0, 1]
+	 */
+	public float getMemoryPressure() {
+		return _pressure;
+	}
+
+	public void setMemoryPressure(float pressure) {
+		_pressure = pressure;
+	}
+
+	/**
+	 * Get the stage times of the request batch at the federated worker, which allow the coordinator to separate the
+	 * network time from the processing time of the worker.
+	 *
+	 * @return deserialize, queue, and execute time in ns, or null if unknown
+	 */
+	public long[] getWorkerTimes() {
+		return _workerTimes;
+	}
+
+	public void setWorkerTimes(long deserialize, long queue, long execute) {
+		_workerTimes = new long[] {deserialize, queue, execute};
+	}
+
+	long getCodecTime() {
+		return _codecTime;
+	}
+
+	void setCodecTime(long time) {
+		_codecTime = time;
+	}
+
+	long getWireSize() {
+		return _wireSize;
+	}
+
+	void setWireSize(long size) {
+		_wireSize = size;
+	}
+
+	ResponseType getStatus() {
+		return _status;
+	}
+
+	Object[] getDataNoCheck() {
+		return _data;
+	}
+
 	public long estimateSerializationBufferSize() {
 		long minBufferSize = 312; // general offset for the FederatedResponse object
 		if(_data != null) {
 			for(Object obj : _data) {
 				if(obj instanceof CacheBlock)
 					minBufferSize += ((CacheBlock<?>) obj).getExactSerializedSize();
+				else if(obj instanceof FederatedResponse)
+					minBufferSize += ((FederatedResponse) obj).estimateSerializationBufferSize();
 			}
 		}
 		return minBufferSize;
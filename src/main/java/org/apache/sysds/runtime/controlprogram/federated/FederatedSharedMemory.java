@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.controlprogram.parfor.util.IDHandler;
+import org.apache.sysds.runtime.frame.data.FrameBlock;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Shared memory segments for the exchange of large cache blocks between federated sites on the same host (e.g., one
+ * federated worker per NUMA socket or data owner next to the coordinator). Instead of streaming a large block through
+ * the socket, the sender serializes it into a memory-mapped file under the configured directory (ideally a tmpfs such
+ * as /dev/shm) and only sends the path and length of the segment. The receiver maps the segment, deserializes the
+ * block directly from the page cache, and deletes the segment.
+ *
+ * Shared memory is negotiated per channel: a receiver that accepts segments (i.e., with a configured
+ * {@link org.apache.sysds.conf.DMLConfig#FEDERATED_SHM_DIR} and a colocated remote site) advertises its directory
+ * when the channel becomes active, and the sender only uses shared memory after receiving this advertisement for
+ * the same directory as its own. Until then, and for all other peers, blocks are encoded inline. Receivers only read
+ * (and delete) regular files directly under their own directory. Segments of failed writes are deleted immediately,
+ * segments that are never received (e.g., due to failed peers) expire after {@link #EXPIRY} msec, and all remaining
+ * segments are removed on shutdown of the sending process.
+ */
+public class FederatedSharedMemory {
+	private static final Log LOG = LogFactory.getLog(FederatedSharedMemory.class.getName());
+
+	/** Max age of segments that were not received, in msec */
+	public static final long EXPIRY = TimeUnit.MINUTES.toMillis(10);
+
+	private static final String PREFIX = "fedshm_";
+	private static final AtomicLong _seq = new AtomicLong();
+	private static final AtomicLong _lastExpiry = new AtomicLong();
+	private static boolean _hook = false;
+
+	private FederatedSharedMemory() {
+		// static utility class
+	}
+
+	/**
+	 * Indicates if large cache blocks are exchanged with colocated federated sites via shared memory.
+	 *
+	 * @return true if a shared memory directory is configured
+	 */
+	public static boolean isEnabled() {
+		final String dir = ConfigurationManager.getFederatedShmDir();
+		return dir != null && !dir.trim().isEmpty();
+	}
+
+	/**
+	 * Get the configured shared memory directory, which is advertised to colocated senders.
+	 *
+	 * @return the canonical path of the directory, or null if shared memory is disabled or the directory is invalid
+	 */
+	public static String getDirectory() {
+		if(!isEnabled())
+			return null;
+		try {
+			final Path dir = Paths.get(ConfigurationManager.getFederatedShmDir().trim());
+			Files.createDirectories(dir);
+			return dir.toRealPath().toString();
+		}
+		catch(IOException | InvalidPathException ex) {
+			LOG.warn("Invalid federated shared memory directory: " + ConfigurationManager.getFederatedShmDir(), ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Indicates if a directory advertised by a receiver is the configured shared memory directory of this site, into
+	 * which the segments are written.
+	 *
+	 * @param dir advertised directory
+	 * @return true if shared memory is enabled with the same directory
+	 */
+	public static boolean isDirectory(String dir) {
+		return dir != null && dir.equals(getDirectory());
+	}
+
+	/**
+	 * Indicates if the remote site of a channel runs on the same host.
+	 *
+	 * @param remote remote address of the channel
+	 * @return true for loopback and local interface addresses
+	 */
+	public static boolean isColocated(SocketAddress remote) {
+		if(!(remote instanceof InetSocketAddress))
+			return false;
+		final InetAddress addr = ((InetSocketAddress) remote).getAddress();
+		if(addr == null)
+			return false;
+		try {
+			return addr.isLoopbackAddress() || addr.isAnyLocalAddress()
+				|| NetworkInterface.getByInetAddress(addr) != null;
+		}
+		catch(SocketException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Indicates if an object is exchanged via shared memory, i.e., a matrix or frame block whose serialized size
+	 * exceeds the configured threshold but fits into a single mapped segment.
+	 *
+	 * @param obj the object
+	 * @return true if the object is exchanged via shared memory
+	 */
+	public static boolean isEligible(Object obj) {
+		final Class<?> clazz = (obj != null) ? obj.getClass() : null;
+		final long size;
+		if(clazz == MatrixBlock.class || clazz == CompressedMatrixBlock.class)
+			size = ((MatrixBlock) obj).getExactSerializedSize();
+		else if(clazz == FrameBlock.class)
+			size = ((FrameBlock) obj).getExactSerializedSize();
+		else
+			return false;
+		return size >= (long) ConfigurationManager.getFederatedShmThreshold() * 1024
+			&& size < Integer.MAX_VALUE - 1024;
+	}
+
+	/**
+	 * Allocate a new segment of the given capacity under the configured directory.
+	 *
+	 * @param capacity capacity in bytes
+	 * @return the segment, whose buffer is positioned at the start of the segment
+	 * @throws IOException if the segment cannot be created or mapped
+	 */
+	public static Segment allocate(long capacity) throws IOException {
+		final Path dir = Paths.get(ConfigurationManager.getFederatedShmDir().trim());
+		Files.createDirectories(dir);
+		registerCleanup(dir);
+		final long now = System.currentTimeMillis();
+		final long last = _lastExpiry.get();
+		if(now - last > EXPIRY / 10 && _lastExpiry.compareAndSet(last, now))
+			expire(EXPIRY);
+		final Path file = dir.resolve(PREFIX + IDHandler.getProcessID() + "_" + _seq.incrementAndGet());
+		try(FileChannel fc = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+			StandardOpenOption.WRITE)) {
+			// the mapping stays valid after closing the file channel
+			return new Segment(file, Unpooled.wrappedBuffer(fc.map(MapMode.READ_WRITE, 0, capacity)).clear());
+		}
+		catch(IOException ex) {
+			Files.deleteIfExists(file);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Read a received segment and delete it afterwards.
+	 *
+	 * @param path   path of the segment
+	 * @param length number of written bytes of the segment
+	 * @param reader reader of the segment content
+	 * @param <T>    type of the read object
+	 * @return the read object
+	 * @throws IOException if the path is no segment under the configured directory, or the segment cannot be mapped
+	 *                     or read
+	 */
+	public static <T> T read(String path, long length, SegmentReader<T> reader) throws IOException {
+		final Path file = getSegment(path);
+		if(length < 0 || length > Files.size(file))
+			throw new IOException("Invalid length of federated shared memory segment: " + length);
+		try(FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+			return reader.read(Unpooled.wrappedBuffer(fc.map(MapMode.READ_ONLY, 0, length)));
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Validate the path of a received segment, which has to be a regular file with the segment prefix directly under
+	 * the configured directory, after resolving relative path elements and symbolic links.
+	 *
+	 * @param path path of the segment
+	 * @return the canonical path of the segment
+	 * @throws IOException if the path is no segment under the configured directory
+	 */
+	protected static Path getSegment(String path) throws IOException {
+		if(!isEnabled())
+			throw new IOException("Received federated shared memory segment without configured shared memory.");
+		try {
+			final Path dir = Paths.get(ConfigurationManager.getFederatedShmDir().trim()).toRealPath();
+			final Path file = Paths.get(path).toRealPath(LinkOption.NOFOLLOW_LINKS);
+			if(dir.equals(file.getParent()) && file.getFileName().toString().startsWith(PREFIX)
+				&& Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+				return file;
+		}
+		catch(IOException | InvalidPathException ex) {
+			// invalid or missing paths are rejected below
+		}
+		throw new IOException("Invalid federated shared memory segment: " + path);
+	}
+
+	/**
+	 * Remove all segments of this process under the configured directory that were created before the given time
+	 * and are therefore not expected to be received anymore.
+	 *
+	 * @param maxAge max age of the retained segments in msec
+	 * @return the number of removed segments
+	 */
+	public static int expire(long maxAge) {
+		if(!isEnabled())
+			return 0;
+		final Path dir = Paths.get(ConfigurationManager.getFederatedShmDir().trim());
+		final long now = System.currentTimeMillis();
+		int count = 0;
+		try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + IDHandler.getProcessID() + "_*")) {
+			for(Path file : ds)
+				if(now - Files.getLastModifiedTime(file).toMillis() > maxAge && Files.deleteIfExists(file))
+					count++;
+		}
+		catch(IOException ex) {
+			LOG.warn("Failed to expire federated shared memory segments in " + dir + ".", ex);
+		}
+		return count;
+	}
+
+	private static synchronized void registerCleanup(Path dir) {
+		if(_hook)
+			return;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> cleanup(dir)));
+		_hook = true;
+	}
+
+	private static void cleanup(Path dir) {
+		// remove all segments of this process that were not received
+		try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + IDHandler.getProcessID() + "_*")) {
+			for(Path file : ds)
+				Files.deleteIfExists(file);
+		}
+		catch(IOException ex) {
+			LOG.warn("Failed to remove federated shared memory segments in " + dir + ".", ex);
+		}
+	}
+
+	/**
+	 * Reader of the content of a shared memory segment.
+	 *
+	 * @param <T> type of the read object
+	 */
+	@FunctionalInterface
+	public interface SegmentReader<T> {
+		T read(ByteBuf in) throws IOException;
+	}
+
+	/**
+	 * Memory-mapped segment of the sender, which is written through its buffer.
+	 */
+	public static class Segment {
+		private final Path _file;
+		private final ByteBuf _buf;
+
+		private Segment(Path file, ByteBuf buf) {
+			_file = file;
+			_buf = buf;
+		}
+
+		public String getPath() {
+			return _file.toAbsolutePath().toString();
+		}
+
+		public ByteBuf getBuffer() {
+			return _buf;
+		}
+
+		/** @return the number of written bytes */
+		public long getLength() {
+			return _buf.writerIndex();
+		}
+
+		public void delete() {
+			try {
+				Files.deleteIfExists(_file);
+			}
+			catch(IOException ex) {
+				LOG.warn("Failed to delete federated shared memory segment " + _file + ".", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.instructions.cp.Data;
+import org.apache.sysds.runtime.lineage.LineageItem;
+import org.apache.sysds.utils.stats.InfrastructureAnalyzer;
+
+/**
+ * Registry of profiles of federated sites, which are measured by the coordinator when a site is first used. A probe
+ * measures the round-trip time with NOOP requests, the upload and download bandwidth with synthetic payloads, and
+ * obtains the number of cores and the free memory of the federated worker. Profiles are refreshed in the background
+ * once they are older than the configured refresh interval, and optionally persisted in a properties file keyed by
+ * host:port, which allows reusing profiles across sessions.
+ *
+ * Consumers like the federation map, federated planners, and data partitioners obtain the profiles from this
+ * registry, and fall back to homogeneous defaults for sites without profile.
+ */
+public class FederatedSiteProfiles {
+	private static final Log LOG = LogFactory.getLog(FederatedSiteProfiles.class.getName());
+
+	/** Number of NOOP round trips per probe, of which the fastest is used */
+	private static final int NUM_RTT_PROBES = 5;
+	/** Size of the synthetic payloads for bandwidth probes in bytes */
+	private static final int PROBE_SIZE = 1024 * 1024;
+
+	private static final Map<String, SiteProfile> _profiles = new ConcurrentHashMap<>();
+	private static final Set<String> _probing = ConcurrentHashMap.newKeySet();
+	private static volatile ScheduledExecutorService _prober = null;
+	private static String _loaded = null;
+
+	private FederatedSiteProfiles() {
+		// private constructor
+	}
+
+	/**
+	 * Indicates if federated sites are profiled.
+	 *
+	 * @return true if a positive refresh interval is configured
+	 */
+	public static boolean isEnabled() {
+		return ConfigurationManager.getFederatedProfileRefresh() > 0;
+	}
+
+	/**
+	 * Register a used federated site, which triggers an asynchronous probe if the site has no or a stale profile.
+	 *
+	 * @param address socket address of the federated site
+	 */
+	public static void register(InetSocketAddress address) {
+		if(address == null || !isEnabled())
+			return;
+		loadProfiles();
+		final SiteProfile profile = _profiles.get(getKey(address));
+		if(profile == null || isStale(profile))
+			getProber().execute(() -> refresh(address));
+	}
+
+	/**
+	 * Get the profile of a federated site.
+	 *
+	 * @param address socket address of the federated site
+	 * @return the profile, or null if the site was not profiled yet
+	 */
+	public static SiteProfile get(InetSocketAddress address) {
+		if(address == null)
+			return null;
+		loadProfiles();
+		return _profiles.get(getKey(address));
+	}
+
+	/**
+	 * Get the mean round-trip time over all profiled federated sites.
+	 *
+	 * @param defaultValue value if no site is profiled
+	 * @return round-trip time in s
+	 */
+	public static double getMeanLatency(double defaultValue) {
+		return getMean(p -> p.getLatency(), defaultValue);
+	}
+
+	/**
+	 * Get the mean bandwidth over all profiled federated sites, where every site contributes the minimum of its
+	 * upload and download bandwidth.
+	 *
+	 * @param defaultValue value if no site is profiled
+	 * @return bandwidth in bytes/s
+	 */
+	public static double getMeanBandwidth(double defaultValue) {
+		return getMean(p -> Math.min(p.getUploadBandwidth(), p.getDownloadBandwidth()), defaultValue);
+	}
+
+	/**
+	 * Measure the profile of a federated site, and update the registry.
+	 *
+	 * @param address socket address of the federated site
+	 * @return the measured profile
+	 */
+	public static SiteProfile probe(InetSocketAddress address) {
+		try {
+			// round-trip time of empty requests
+			long rtt = Long.MAX_VALUE;
+			for(int i = 0; i < NUM_RTT_PROBES; i++) {
+				final long t0 = System.nanoTime();
+				checkResponse(FederatedData.executeFederatedOperation(address, 1,
+					new FederatedRequest(RequestType.NOOP)).get());
+				rtt = Math.min(rtt, System.nanoTime() - t0);
+			}
+
+			// upload of a synthetic payload
+			final byte[] payload = new byte[PROBE_SIZE];
+			new Random(7).nextBytes(payload);
+			long t0 = System.nanoTime();
+			checkResponse(FederatedData.executeFederatedOperation(address, 1,
+				new FederatedRequest(RequestType.EXEC_UDF, -1, new ProbeSite(payload, 0))).get());
+			final long tUpload = System.nanoTime() - t0;
+
+			// download of a synthetic payload, incl worker characteristics
+			t0 = System.nanoTime();
+			final FederatedResponse response = FederatedData.executeFederatedOperation(address, 1,
+				new FederatedRequest(RequestType.EXEC_UDF, -1, new ProbeSite(null, PROBE_SIZE))).get();
+			final long tDownload = System.nanoTime() - t0;
+			checkResponse(response);
+			final Object[] data = response.getData();
+
+			final SiteProfile profile = new SiteProfile(rtt / 1e9, getBandwidth(tUpload, rtt),
+				getBandwidth(tDownload, rtt), (Integer) data[0], (Long) data[1], System.currentTimeMillis());
+			_profiles.put(getKey(address), profile);
+			saveProfiles();
+			if(LOG.isDebugEnabled())
+				LOG.debug("Profiled federated site " + getKey(address) + ": " + profile);
+			return profile;
+		}
+		catch(DMLRuntimeException ex) {
+			throw ex;
+		}
+		catch(Exception ex) {
+			throw new DMLRuntimeException("Failed to profile federated site " + getKey(address) + ".", ex);
+		}
+	}
+
+	/**
+	 * Clear all profiles, and stop the background refresh. Persisted profiles are kept.
+	 */
+	public static synchronized void reset() {
+		if(_prober != null)
+			_prober.shutdownNow();
+		_prober = null;
+		_profiles.clear();
+		_probing.clear();
+		_loaded = null;
+	}
+
+	private static void refresh(InetSocketAddress address) {
+		final String key = getKey(address);
+		if(!_probing.add(key))
+			return; // probe already in progress
+		try {
+			final SiteProfile profile = _profiles.get(key);
+			if(profile == null || isStale(profile))
+				probe(address);
+		}
+		catch(Exception ex) {
+			LOG.warn("Failed to profile federated site " + key + ".", ex);
+		}
+		finally {
+			_probing.remove(key);
+		}
+	}
+
+	private static void refreshAll() {
+		for(String key : _profiles.keySet()) {
+			final int pos = key.lastIndexOf(':');
+			refresh(new InetSocketAddress(key.substring(0, pos), Integer.parseInt(key.substring(pos + 1))));
+		}
+	}
+
+	private static synchronized ScheduledExecutorService getProber() {
+		if(_prober == null) {
+			_prober = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread t = new Thread(r, "FederatedSiteProfiler");
+				t.setDaemon(true);
+				return t;
+			});
+			final long refresh = ConfigurationManager.getFederatedProfileRefresh();
+			_prober.scheduleWithFixedDelay(FederatedSiteProfiles::refreshAll, refresh, refresh, TimeUnit.SECONDS);
+		}
+		return _prober;
+	}
+
+	private static boolean isStale(SiteProfile profile) {
+		return System.currentTimeMillis() - profile.getTimestamp() > ConfigurationManager
+			.getFederatedProfileRefresh() * 1000L;
+	}
+
+	private static double getMean(ToDoubleFunction<SiteProfile> f, double defaultValue) {
+		return _profiles.values().stream().mapToDouble(f).average().orElse(defaultValue);
+	}
+
+	private static double getBandwidth(long time, long rtt) {
+		// transfer time excl the round trip, bounded to avoid infinite bandwidth on fast local links
+		return PROBE_SIZE / (Math.max(time - rtt, 1000) / 1e9);
+	}
+
+	private static void checkResponse(FederatedResponse response) throws Exception {
+		if(!response.isSuccessful())
+			throw new DMLRuntimeException("Federated probe failed: " + response.getErrorMessage());
+	}
+
+	private static String getKey(InetSocketAddress address) {
+		return address.getHostString() + ":" + address.getPort();
+	}
+
+	private static synchronized void loadProfiles() {
+		final String fname = ConfigurationManager.getFederatedProfileCache();
+		if(fname == null || fname.isEmpty() || fname.equals(_loaded))
+			return;
+		_loaded = fname;
+		final File file = new File(fname);
+		if(!file.exists())
+			return;
+		try(InputStream in = new FileInputStream(file)) {
+			final Properties props = new Properties();
+			props.load(in);
+			for(String key : props.stringPropertyNames())
+				_profiles.putIfAbsent(key, SiteProfile.parse(props.getProperty(key)));
+		}
+		catch(Exception ex) {
+			LOG.warn("Failed to load federated site profiles from " + fname + ".", ex);
+		}
+	}
+
+	private static synchronized void saveProfiles() {
+		final String fname = ConfigurationManager.getFederatedProfileCache();
+		if(fname == null || fname.isEmpty())
+			return;
+		final Properties props = new Properties();
+		for(Map.Entry<String, SiteProfile> e : _profiles.entrySet())
+			props.setProperty(e.getKey(), e.getValue().serialize());
+		final File file = new File(fname);
+		if(file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		try(OutputStream out = new FileOutputStream(file)) {
+			props.store(out, "SystemDS federated site profiles");
+		}
+		catch(Exception ex) {
+			LOG.warn("Failed to save federated site profiles to " + fname + ".", ex);
+		}
+	}
+
+	/**
+	 * Measured characteristics of a federated site.
+	 */
+	public static class SiteProfile {
+		private final double _latency;
+		private final double _upload;
+		private final double _download;
+		private final int _cores;
+		private final long _freeMemory;
+		private final long _timestamp;
+
+		public SiteProfile(double latency, double upload, double download, int cores, long freeMemory,
+			long timestamp) {
+			_latency = latency;
+			_upload = upload;
+			_download = download;
+			_cores = cores;
+			_freeMemory = freeMemory;
+			_timestamp = timestamp;
+		}
+
+		/** @return round-trip time in s */
+		public double getLatency() {
+			return _latency;
+		}
+
+		/** @return bandwidth from the coordinator to the site in bytes/s */
+		public double getUploadBandwidth() {
+			return _upload;
+		}
+
+		/** @return bandwidth from the site to the coordinator in bytes/s */
+		public double getDownloadBandwidth() {
+			return _download;
+		}
+
+		/** @return number of cores of the federated worker */
+		public int getNumCores() {
+			return _cores;
+		}
+
+		/** @return free memory of the federated worker in bytes */
+		public long getFreeMemory() {
+			return _freeMemory;
+		}
+
+		/** @return time of the measurement in ms since epoch */
+		public long getTimestamp() {
+			return _timestamp;
+		}
+
+		protected String serialize() {
+			return _latency + "," + _upload + "," + _download + "," + _cores + "," + _freeMemory + "," + _timestamp;
+		}
+
+		protected static SiteProfile parse(String str) {
+			final String[] parts = str.split(",");
+			return new SiteProfile(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+				Double.parseDouble(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]),
+				Long.parseLong(parts[5]));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("rtt=%.3fms, upload=%.1fMB/s, download=%.1fMB/s, cores=%d, free=%dMB", _latency * 1e3,
+				_upload / 1e6, _download / 1e6, _cores, _freeMemory / (1024 * 1024));
+		}
+	}
+
+	/**
+	 * Probe UDF executed on the federated worker, which receives an upload payload and returns a download payload of
+	 * the requested size, as well as the number of cores and the free memory of the worker.
+	 */
+	private static class ProbeSite extends FederatedUDF {
+		private static final long serialVersionUID = -2305981946473250227L;
+		@SuppressWarnings("unused")
+		private final byte[] _payload;
+		private final int _responseSize;
+
+		protected ProbeSite(byte[] payload, int responseSize) {
+			super(new long[0]);
+			_payload = payload;
+			_responseSize = responseSize;
+		}
+
+		@Override
+		public FederatedResponse execute(ExecutionContext ec, Data... data) {
+			final Runtime rt = Runtime.getRuntime();
+			final long free = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+			final byte[] payload = new byte[_responseSize];
+			new Random(11).nextBytes(payload);
+			return new FederatedResponse(ResponseType.SUCCESS,
+				new Object[] {InfrastructureAnalyzer.getLocalParallelism(), free, payload});
+		}
+
+		@Override
+		public Pair<String, LineageItem> getLineageItem(ExecutionContext ec) {
+			return null;
+		}
+	}
+}
@@ -33,8 +33,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -49,6 +52,7 @@ import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysds.runtime.controlprogram.caching.FrameObject;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedLatencyHistogram.Stage;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics.FedStatsCollection.CacheStatsCollection;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics.FedStatsCollection.GCStatsCollection;
@@ -88,6 +92,22 @@ public class FederatedStatistics {
 	private static final LongAdder transferredMatrixBytes = new LongAdder();
 	private static final LongAdder transferredFrameBytes = new LongAdder();
 	private static final LongAdder asyncPrefetchCount = new LongAdder();
+	private static final LongAdder deferredCount = new LongAdder();
+	private static final LongAdder coalescedCount = new LongAdder();
+	private static final LongAdder fragmentCount = new LongAdder();
+	private static final LongAdder fragmentInsts = new LongAdder();
+	private static final LongAdder reductionCount = new LongAdder();
+	private static final LongAdder throttledCount = new LongAdder();
+	private static final LongAdder contentRefCount = new LongAdder();
+	private static final LongAdder contentRefBytes = new LongAdder();
+	private static final LongAdder contentMissCount = new LongAdder();
+	private static final LongAdder sharedMemoryCount = new LongAdder();
+	private static final LongAdder sharedMemoryBytes = new LongAdder();
+	private static final LongAdder[] compressionCount = createAdders(FederatedCompressor.Codec.values().length);
+	private static final LongAdder[] compressionInBytes = createAdders(FederatedCompressor.Codec.values().length);
+	private static final LongAdder[] compressionOutBytes = createAdders(FederatedCompressor.Codec.values().length);
+	private static final LongAdder[] compressionTime = createAdders(FederatedCompressor.Codec.values().length); // nsec
+	private static final LongAdder[] decompressionTime = createAdders(FederatedCompressor.Codec.values().length); // nsec
 	private static final LongAdder bytesSent = new LongAdder();
 	private static final LongAdder bytesReceived = new LongAdder();
 
@@ -104,6 +124,21 @@ public class FederatedStatistics {
 	private static final LongAdder fedPutLineageItems = new LongAdder();
 	private static final LongAdder fedSerializationReuseCount = new LongAdder();
 	private static final LongAdder fedSerializationReuseBytes = new LongAdder();
+	private static final LongAdder fedExecQueueDepth = new LongAdder();
+	private static final AtomicLong fedExecQueueMaxDepth = new AtomicLong();
+	private static final LongAdder fedExecTaskCount = new LongAdder();
+	private static final LongAdder fedExecWaitTime = new LongAdder(); // nsec
+	private static final LongAdder fedInstCacheHits = new LongAdder();
+	private static final LongAdder fedInstCacheMisses = new LongAdder();
+	private static final LongAdder fedFusedChains = new LongAdder();
+	private static final LongAdder fedFusedInsts = new LongAdder();
+	private static final LongAdder fedReadCacheHits = new LongAdder();
+	private static final LongAdder fedReadCacheMisses = new LongAdder();
+	private static final LongAdder fedReadCacheEvictions = new LongAdder();
+	private static final LongAdder fedReadCacheStale = new LongAdder();
+	private static final Map<String, LongAdder[]> fedTenantStats = new ConcurrentHashMap<>(); // count, wait, exec (nsec)
+	private static final Map<String, FederatedLatencyHistogram[]> fedLatencies = new ConcurrentHashMap<>(); // per stage
+	private static final Map<String, FederatedLatencyHistogram[]> fedWorkerLatencies = new ConcurrentHashMap<>();
 	private static final List<TrafficModel> coordinatorsTrafficBytes = new ArrayList<>();
 	private static final List<EventModel> workerEvents = new ArrayList<>();
 	private static final Map<String, DataObjectModel> workerDataObjects = new HashMap<>();
@@ -213,6 +248,24 @@ public class FederatedStatistics {
 		transferredMatrixBytes.reset();
 		transferredFrameBytes.reset();
 		asyncPrefetchCount.reset();
+		deferredCount.reset();
+		coalescedCount.reset();
+		fragmentCount.reset();
+		fragmentInsts.reset();
+		reductionCount.reset();
+		throttledCount.reset();
+		contentRefCount.reset();
+		contentRefBytes.reset();
+		contentMissCount.reset();
+		sharedMemoryCount.reset();
+		sharedMemoryBytes.reset();
+		for(int i = 0; i < compressionCount.length; i++) {
+			compressionCount[i].reset();
+			compressionInBytes[i].reset();
+			compressionOutBytes[i].reset();
+			compressionTime[i].reset();
+			decompressionTime[i].reset();
+		}
 		fedLookupTableGetCount.reset();
 		fedLookupTableGetTime.reset();
 		fedLookupTableEntryCount.reset();
@@ -222,6 +275,20 @@ public class FederatedStatistics {
 		fedPutLineageItems.reset();
 		fedSerializationReuseCount.reset();
 		fedSerializationReuseBytes.reset();
+		fedExecQueueMaxDepth.set(fedExecQueueDepth.longValue());
+		fedExecTaskCount.reset();
+		fedExecWaitTime.reset();
+		fedInstCacheHits.reset();
+		fedInstCacheMisses.reset();
+		fedFusedChains.reset();
+		fedFusedInsts.reset();
+		fedReadCacheHits.reset();
+		fedReadCacheMisses.reset();
+		fedReadCacheEvictions.reset();
+		fedReadCacheStale.reset();
+		fedTenantStats.clear();
+		fedLatencies.clear();
+		fedWorkerLatencies.clear();
 		bytesSent.reset();
 		bytesReceived.reset();
 		fedBytesSent.reset();
@@ -255,6 +322,28 @@ public class FederatedStatistics {
 					transferredFrameBytes.longValue() + " Bytes.\n");
 			sb.append("Federated prefetch count:\t" +
 				asyncPrefetchCount.longValue() + ".\n");
+			if(deferredCount.longValue() > 0)
+				sb.append("Fed Lazy (Deferred, Coalesced):\t" +
+					deferredCount.longValue() + "/" +
+					coalescedCount.longValue() + ".\n");
+			if(fragmentCount.longValue() > 0)
+				sb.append("Fed Fragments (Cnt, Inst):\t" +
+					fragmentCount.longValue() + "/" +
+					fragmentInsts.longValue() + ".\n");
+			if(reductionCount.longValue() > 0)
+				sb.append("Fed Worker Reductions:\t" +
+					reductionCount.longValue() + ".\n");
+			if(throttledCount.longValue() > 0)
+				sb.append("Fed Throttled Requests:\t" +
+					throttledCount.longValue() + ".\n");
+			if(contentRefCount.longValue() > 0 || contentMissCount.longValue() > 0)
+				sb.append("Fed Bcast Dedup (Ref, Miss):\t" +
+					contentRefCount.longValue() + "/" +
+					contentMissCount.longValue() + " (" +
+					contentRefBytes.longValue() + " Bytes).\n");
+			sb.append(displayFedSharedMemoryStats());
+			sb.append(displayFedCompressionStats());
+			sb.append(displayFedLatencyStats(fedLatencies));
 			return sb.toString();
 		}
 		return "";
@@ -293,8 +382,16 @@ public class FederatedStatistics {
 			StringBuilder sb = new StringBuilder();
 			sb.append(displayFedLookupTableStats());
 			sb.append(displayFedReuseReadStats());
+			sb.append(displayFedReadCacheStats());
 			sb.append(displayFedPutLineageStats());
 			sb.append(displayFedSerializationReuseStats());
+			sb.append(displayFedExecQueueStats());
+			sb.append(displayFedTenantStats());
+			sb.append(displayFedInstCacheStats());
+			sb.append(displayFedFusedStats());
+			sb.append(displayFedSharedMemoryStats());
+			sb.append(displayFedCompressionStats());
+			sb.append(displayFedLatencyStats(fedWorkerLatencies));
 
 			//sb.append(displayFedTransfer());
 			//sb.append(displayCPUUsage());
@@ -318,6 +415,7 @@ public class FederatedStatistics {
 		sb.append(displayGCStats(fedStats.gcStats));
 		sb.append(displayLinCacheStats(fedStats.linCacheStats));
 		sb.append(displayMultiTenantStats(fedStats.mtStats));
+		sb.append(displayFedLatencyStats(fedStats.workerLatencies));
 		sb.append(displayFedTransfer());
 		sb.append(displayHeavyHitters(fedStats.heavyHitters, numHeavyHitters));
 		sb.append(displayNetworkTrafficStatistics());
@@ -357,8 +455,13 @@ public class FederatedStatistics {
 		StringBuilder sb = new StringBuilder();
 		sb.append(displayFedLookupTableStats(mtsc.fLTGetCount, mtsc.fLTEntryCount, mtsc.fLTGetTime));
 		sb.append(displayFedReuseReadStats(mtsc.reuseReadHits, mtsc.reuseReadBytes));
+		sb.append(displayFedReadCacheStats(mtsc.readCacheHits, mtsc.readCacheMisses, mtsc.readCacheEvictions,
+			mtsc.readCacheStale));
 		sb.append(displayFedPutLineageStats(mtsc.putLineageCount, mtsc.putLineageItems));
 		sb.append(displayFedSerializationReuseStats(mtsc.serializationReuseCount, mtsc.serializationReuseBytes));
+		sb.append(displayFedExecQueueStats(mtsc.execTaskCount, mtsc.execWaitTime, mtsc.execQueueDepth, mtsc.execQueueMaxDepth));
+		sb.append(displayFedInstCacheStats(mtsc.instCacheHits, mtsc.instCacheMisses));
+		sb.append(displayFedFusedStats(mtsc.fusedChains, mtsc.fusedInsts));
 		return sb.toString();
 	}
 
@@ -570,6 +673,136 @@ public class FederatedStatistics {
 		return fedSerializationReuseBytes.longValue();
 	}
 
+	public static long getFedExecQueueDepth() {
+		return fedExecQueueDepth.longValue();
+	}
+
+	public static long getFedExecQueueMaxDepth() {
+		return fedExecQueueMaxDepth.get();
+	}
+
+	public static long getFedExecTaskCount() {
+		return fedExecTaskCount.longValue();
+	}
+
+	public static long getFedExecWaitTime() {
+		return fedExecWaitTime.longValue();
+	}
+
+	public static long getFedInstCacheHits() {
+		return fedInstCacheHits.longValue();
+	}
+
+	public static long getFedInstCacheMisses() {
+		return fedInstCacheMisses.longValue();
+	}
+
+	public static long getFedFusedChains() {
+		return fedFusedChains.longValue();
+	}
+
+	public static long getFedFusedInsts() {
+		return fedFusedInsts.longValue();
+	}
+
+	public static long getFedReadCacheHits() {
+		return fedReadCacheHits.longValue();
+	}
+
+	public static long getFedReadCacheMisses() {
+		return fedReadCacheMisses.longValue();
+	}
+
+	public static long getFedReadCacheEvictions() {
+		return fedReadCacheEvictions.longValue();
+	}
+
+	public static long getFedReadCacheStale() {
+		return fedReadCacheStale.longValue();
+	}
+
+	public static void incFedDeferredCount() {
+		deferredCount.increment();
+	}
+
+	public static void incFedCoalescedCount() {
+		coalescedCount.increment();
+	}
+
+	public static long getFedFragmentCount() {
+		return fragmentCount.longValue();
+	}
+
+	public static void incFedFragments(int numInsts) {
+		fragmentCount.increment();
+		fragmentInsts.add(numInsts);
+	}
+
+	public static long getFedReductionCount() {
+		return reductionCount.longValue();
+	}
+
+	public static void incFedReductionCount() {
+		reductionCount.increment();
+	}
+
+	public static long getFedThrottledCount() {
+		return throttledCount.longValue();
+	}
+
+	public static void incFedThrottledCount() {
+		throttledCount.increment();
+	}
+
+	public static long getFedContentRefCount() {
+		return contentRefCount.longValue();
+	}
+
+	public static long getFedContentMissCount() {
+		return contentMissCount.longValue();
+	}
+
+	public static void incFedContentRefs(long bytes) {
+		contentRefCount.increment();
+		contentRefBytes.add(bytes);
+	}
+
+	public static long getFedSharedMemoryCount() {
+		return sharedMemoryCount.longValue();
+	}
+
+	public static long getFedSharedMemoryBytes() {
+		return sharedMemoryBytes.longValue();
+	}
+
+	public static void incFedSharedMemory(long bytes) {
+		sharedMemoryCount.increment();
+		sharedMemoryBytes.add(bytes);
+	}
+
+	public static void incFedContentMisses() {
+		contentMissCount.increment();
+	}
+
+	public static void incFedCompression(FederatedCompressor.Codec codec, long inBytes, long outBytes, long time) {
+		compressionCount[codec.ordinal()].increment();
+		compressionInBytes[codec.ordinal()].add(inBytes);
+		compressionOutBytes[codec.ordinal()].add(outBytes);
+		compressionTime[codec.ordinal()].add(time);
+	}
+
+	public static void incFedDecompression(FederatedCompressor.Codec codec, long time) {
+		decompressionTime[codec.ordinal()].add(time);
+	}
+
+	public static long getFedCompressionCount(FederatedCompressor.Codec codec) {
+		return compressionCount[codec.ordinal()].longValue();
+	}
+
+	public static long getFedCompressionSavedBytes(FederatedCompressor.Codec codec) {
+		return compressionInBytes[codec.ordinal()].longValue() - compressionOutBytes[codec.ordinal()].longValue();
+	}
+
 	public static void incFedLookupTableGetCount() {
 		fedLookupTableGetCount.increment();
 	}
@@ -599,6 +832,129 @@ public class FederatedStatistics {
 		fedPutLineageItems.add(serializedLineage.lines().count());
 	}
 
+	public static void incFedExecQueueDepth() {
+		fedExecQueueDepth.increment();
+		fedExecQueueMaxDepth.accumulateAndGet(fedExecQueueDepth.longValue(), Math::max);
+	}
+
+	public static void decFedExecQueueDepth(long waitTime) {
+		fedExecQueueDepth.decrement();
+		fedExecTaskCount.increment();
+		fedExecWaitTime.add(waitTime);
+	}
+
+	public static void incFedTenantWaitTime(String tenant, long waitTime) {
+		final LongAdder[] stats = fedTenantStats.computeIfAbsent(tenant, t -> createAdders(3));
+		stats[0].increment();
+		stats[1].add(waitTime);
+	}
+
+	public static void incFedTenantExecTime(String tenant, long execTime) {
+		fedTenantStats.computeIfAbsent(tenant, t -> createAdders(3))[2].add(execTime);
+	}
+
+	/**
+	 * Get the key of the latency statistics of a request batch, which is the type of its last instruction or UDF
+	 * request (incl. the opcode or UDF class, or fragment for program fragments), or the type of its last request if
+	 * it does not execute anything.
+	 *
+	 * @param requests the request batch
+	 * @return the key of the latency statistics
+	 */
+	public static String getFedLatencyKey(FederatedRequest[] requests) {
+		FederatedRequest request = null;
+		for(FederatedRequest fr : requests)
+			if(request == null || fr.getType() == RequestType.EXEC_INST || fr.getType() == RequestType.EXEC_UDF
+				|| (request.getType() != RequestType.EXEC_INST && request.getType() != RequestType.EXEC_UDF))
+				request = fr;
+		if(request == null)
+			return "NONE";
+		else if(request.getType() == RequestType.EXEC_INST && request.getNumParams() > 1)
+			return "EXEC_INST fragment";
+		else if(request.getType() == RequestType.EXEC_INST && request.getParam(0) instanceof String)
+			return "EXEC_INST " + InstructionUtils.getOpCode((String) request.getParam(0));
+		else if(request.getType() == RequestType.EXEC_UDF && request.getNumParams() > 0)
+			return "EXEC_UDF " + request.getParam(0).getClass().getSimpleName();
+		return request.getType().name();
+	}
+
+	/**
+	 * Record the stage latencies of a request batch at the coordinator.
+	 *
+	 * @param key         key of the request batch (see {@link #getFedLatencyKey(FederatedRequest[])})
+	 * @param serialize   serialization time of the request batch in ns
+	 * @param network     network time in ns (incl. the serialization time of the response at the worker)
+	 * @param queue       queue wait time at the worker in ns
+	 * @param execute     execution time at the worker in ns
+	 * @param deserialize deserialization time of the request batch at the worker and of the response in ns
+	 */
+	public static void incFedLatency(String key, long serialize, long network, long queue, long execute,
+		long deserialize) {
+		addLatencies(fedLatencies, key, serialize, network, queue, execute, deserialize);
+	}
+
+	/**
+	 * Record the stage latencies of a request batch at the federated worker, where the network stage is unknown.
+	 *
+	 * @param key         key of the request batch (see {@link #getFedLatencyKey(FederatedRequest[])})
+	 * @param deserialize deserialization time of the request batch in ns
+	 * @param queue       queue wait time in ns
+	 * @param execute     execution time in ns
+	 * @param serialize   serialization time of the response in ns
+	 */
+	public static void incFedWorkerLatency(String key, long deserialize, long queue, long execute, long serialize) {
+		addLatencies(fedWorkerLatencies, key, serialize, -1, queue, execute, deserialize);
+	}
+
+	private static void addLatencies(Map<String, FederatedLatencyHistogram[]> latencies, String key, long serialize,
+		long network, long queue, long execute, long deserialize) {
+		final FederatedLatencyHistogram[] h = latencies.computeIfAbsent(key, k -> createHistograms());
+		h[Stage.SERIALIZE.ordinal()].add(serialize);
+		if(network >= 0)
+			h[Stage.NETWORK.ordinal()].add(network);
+		h[Stage.QUEUE.ordinal()].add(queue);
+		h[Stage.EXECUTE.ordinal()].add(execute);
+		h[Stage.DESERIALIZE.ordinal()].add(deserialize);
+		h[Stage.TOTAL.ordinal()].add(serialize + Math.max(network, 0) + queue + execute + deserialize);
+	}
+
+	public static Map<String, FederatedLatencyHistogram[]> getFedLatencies() {
+		return fedLatencies;
+	}
+
+	public static Map<String, FederatedLatencyHistogram[]> getFedWorkerLatencies() {
+		return fedWorkerLatencies;
+	}
+
+	public static void incFedInstCacheHits() {
+		fedInstCacheHits.increment();
+	}
+
+	public static void incFedInstCacheMisses() {
+		fedInstCacheMisses.increment();
+	}
+
+	public static void incFedFused(int numInsts) {
+		fedFusedChains.increment();
+		fedFusedInsts.add(numInsts);
+	}
+
+	public static void incFedReadCacheHits() {
+		fedReadCacheHits.increment();
+	}
+
+	public static void incFedReadCacheMisses() {
+		fedReadCacheMisses.increment();
+	}
+
+	public static void incFedReadCacheEvictions() {
+		fedReadCacheEvictions.increment();
+	}
+
+	public static void incFedReadCacheStale() {
+		fedReadCacheStale.increment();
+	}
+
 	public static void aggFedSerializationReuse(long bytes) {
 		fedSerializationReuseCount.increment();
 		fedSerializationReuseBytes.add(bytes);
@@ -661,6 +1017,133 @@ public class FederatedStatistics {
 		return "";
 	}
 
+	public static String displayFedExecQueueStats() {
+		return displayFedExecQueueStats(fedExecTaskCount.longValue(),
+			fedExecWaitTime.doubleValue() / 1000000000, fedExecQueueDepth.longValue(), fedExecQueueMaxDepth.get());
+	}
+
+	public static String displayFedExecQueueStats(long eqCount, double eqWaitTime, long eqDepth, long eqMaxDepth) {
+		if(eqCount > 0) {
+			return InstructionUtils.concatStrings(
+				"Fed ExecQueue (Count, Wait):\t",
+				String.valueOf(eqCount), "/", String.format("%.3f", eqWaitTime), " sec.\n",
+				"Fed ExecQueue (Depth, Max):\t",
+				String.valueOf(eqDepth), "/", String.valueOf(eqMaxDepth), ".\n");
+		}
+		return "";
+	}
+
+	public static String displayFedTenantStats() {
+		final StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, LongAdder[]> e : new TreeMap<>(fedTenantStats).entrySet())
+			sb.append(InstructionUtils.concatStrings(
+				"Fed Tenant ", e.getKey(), " (Count, Wait, Exec):\t",
+				String.valueOf(e.getValue()[0].longValue()), "/",
+				String.format("%.3f", e.getValue()[1].doubleValue() / 1000000000), "/",
+				String.format("%.3f", e.getValue()[2].doubleValue() / 1000000000), " sec.\n"));
+		return sb.toString();
+	}
+
+	public static String displayFedLatencyStats(Map<String, FederatedLatencyHistogram[]> latencies) {
+		final StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, FederatedLatencyHistogram[]> e : new TreeMap<>(latencies).entrySet()) {
+			for(Stage stage : Stage.values()) {
+				final FederatedLatencyHistogram h = e.getValue()[stage.ordinal()];
+				if(h.getCount() == 0 || h.getMax() == 0)
+					continue; // stage not recorded, e.g., no queueing
+				sb.append(InstructionUtils.concatStrings(
+					"Fed Latency ", e.getKey(), " ", stage.toString(), " (Cnt, p50/p90/p99/Max):\t",
+					String.valueOf(h.getCount()), ", ",
+					String.format("%.3f", h.getPercentile(0.5) / 1e6), "/",
+					String.format("%.3f", h.getPercentile(0.9) / 1e6), "/",
+					String.format("%.3f", h.getPercentile(0.99) / 1e6), "/",
+					String.format("%.3f", h.getMax() / 1e6), " ms.\n"));
+			}
+		}
+		return sb.toString();
+	}
+
+	public static String displayFedReadCacheStats() {
+		return displayFedReadCacheStats(fedReadCacheHits.longValue(), fedReadCacheMisses.longValue(),
+			fedReadCacheEvictions.longValue(), fedReadCacheStale.longValue());
+	}
+
+	public static String displayFedReadCacheStats(long rcHits, long rcMisses, long rcEvictions, long rcStale) {
+		if(rcHits + rcMisses > 0) {
+			return InstructionUtils.concatStrings(
+				"Fed ReadCache (Hit, Miss, Evict, Stale):\t",
+				String.valueOf(rcHits), "/", String.valueOf(rcMisses), "/",
+				String.valueOf(rcEvictions), "/", String.valueOf(rcStale), ".\n");
+		}
+		return "";
+	}
+
+	public static String displayFedInstCacheStats() {
+		return displayFedInstCacheStats(fedInstCacheHits.longValue(), fedInstCacheMisses.longValue());
+	}
+
+	public static String displayFedInstCacheStats(long icHits, long icMisses) {
+		if(icHits + icMisses > 0) {
+			return InstructionUtils.concatStrings(
+				"Fed InstCache (Hit, Miss):\t",
+				String.valueOf(icHits), "/", String.valueOf(icMisses), ".\n");
+		}
+		return "";
+	}
+
+	public static String displayFedFusedStats() {
+		return displayFedFusedStats(fedFusedChains.longValue(), fedFusedInsts.longValue());
+	}
+
+	public static String displayFedFusedStats(long chains, long insts) {
+		if(chains > 0) {
+			return InstructionUtils.concatStrings(
+				"Fed Fused (Chains, Inst):\t",
+				String.valueOf(chains), "/", String.valueOf(insts), ".\n");
+		}
+		return "";
+	}
+
+	public static String displayFedSharedMemoryStats() {
+		if(sharedMemoryCount.longValue() > 0) {
+			return InstructionUtils.concatStrings(
+				"Fed SharedMem (Cnt, Bytes):\t",
+				String.valueOf(sharedMemoryCount.longValue()), "/",
+				String.valueOf(sharedMemoryBytes.longValue()), ".\n");
+		}
+		return "";
+	}
+
+	public static String displayFedCompressionStats() {
+		final StringBuilder sb = new StringBuilder();
+		for(FederatedCompressor.Codec codec : FederatedCompressor.Codec.values()) {
+			final int i = codec.ordinal();
+			if(compressionCount[i].longValue() == 0 && decompressionTime[i].longValue() == 0)
+				continue;
+			sb.append(InstructionUtils.concatStrings(
+				"Fed Compress ", codec.name(), " (Cnt, Saved):\t",
+				String.valueOf(compressionCount[i].longValue()), "/",
+				String.valueOf(compressionInBytes[i].longValue() - compressionOutBytes[i].longValue()), " Bytes, ",
+				String.format("%.3f", compressionTime[i].doubleValue() / 1000000000), "/",
+				String.format("%.3f", decompressionTime[i].doubleValue() / 1000000000), " sec.\n"));
+		}
+		return sb.toString();
+	}
+
+	private static FederatedLatencyHistogram[] createHistograms() {
+		final FederatedLatencyHistogram[] ret = new FederatedLatencyHistogram[Stage.values().length];
+		for(int i = 0; i < ret.length; i++)
+			ret[i] = new FederatedLatencyHistogram();
+		return ret;
+	}
+
+	private static LongAdder[] createAdders(int len) {
+		final LongAdder[] ret = new LongAdder[len];
+		for(int i = 0; i < len; i++)
+			ret[i] = new LongAdder();
+		return ret;
+	}
+
 	public static class FedStatsCollectFunction extends FederatedUDF {
 		private static final long serialVersionUID = 1L;
 
@@ -696,6 +1179,7 @@ public class FederatedStatistics {
 		public List<EventModel> workerEvents = new ArrayList<>();
 		public List<DataObjectModel> workerDataObjects = new ArrayList<>();
 		public List<RequestModel> workerRequests = new ArrayList<>();
+		public HashMap<String, FederatedLatencyHistogram[]> workerLatencies = new HashMap<>();
 
 		private void collectStats() {
 			cacheStats.collectStats();
@@ -709,6 +1193,8 @@ public class FederatedStatistics {
 			workerEvents = getWorkerEvents();
 			workerDataObjects = getWorkerDataObjects();
 			workerRequests = getWorkerRequests();
+			workerLatencies = new HashMap<>();
+			mergeLatencies(workerLatencies, fedWorkerLatencies);
 		}
 		
 		public void aggregate(FedStatsCollection that) {
@@ -726,6 +1212,16 @@ public class FederatedStatistics {
 			workerEvents.addAll(that.workerEvents);
 			workerDataObjects.addAll(that.workerDataObjects);
 			workerRequests.addAll(that.workerRequests);
+			mergeLatencies(workerLatencies, that.workerLatencies);
+		}
+
+		private static void mergeLatencies(Map<String, FederatedLatencyHistogram[]> target,
+			Map<String, FederatedLatencyHistogram[]> source) {
+			for(Map.Entry<String, FederatedLatencyHistogram[]> e : source.entrySet()) {
+				final FederatedLatencyHistogram[] h = target.computeIfAbsent(e.getKey(), k -> createHistograms());
+				for(int i = 0; i < h.length; i++)
+					h[i].merge(e.getValue()[i]);
+			}
 		}
 
 		protected static class CacheStatsCollection implements Serializable {
@@ -876,10 +1372,22 @@ public class FederatedStatistics {
 			private long fLTEntryCount = 0;
 			private long reuseReadHits = 0;
 			private long reuseReadBytes = 0;
+			private long readCacheHits = 0;
+			private long readCacheMisses = 0;
+			private long readCacheEvictions = 0;
+			private long readCacheStale = 0;
 			private long putLineageCount = 0;
 			private long putLineageItems = 0;
 			private long serializationReuseCount = 0;
 			private long serializationReuseBytes = 0;
+			private long execTaskCount = 0;
+			private double execWaitTime = 0;
+			private long execQueueDepth = 0;
+			private long execQueueMaxDepth = 0;
+			private long instCacheHits = 0;
+			private long instCacheMisses = 0;
+			private long fusedChains = 0;
+			private long fusedInsts = 0;
 
 			private void collectStats() {
 				fLTGetCount = getFedLookupTableGetCount();
@@ -887,10 +1395,22 @@ public class FederatedStatistics {
 				fLTEntryCount = getFedLookupTableEntryCount();
 				reuseReadHits = getFedReuseReadHitCount();
 				reuseReadBytes = getFedReuseReadBytesCount();
+				readCacheHits = getFedReadCacheHits();
+				readCacheMisses = getFedReadCacheMisses();
+				readCacheEvictions = getFedReadCacheEvictions();
+				readCacheStale = getFedReadCacheStale();
 				putLineageCount = getFedPutLineageCount();
 				putLineageItems = getFedPutLineageItems();
 				serializationReuseCount = getFedSerializationReuseCount();
 				serializationReuseBytes = getFedSerializationReuseBytes();
+				execTaskCount = getFedExecTaskCount();
+				execWaitTime = ((double)getFedExecWaitTime()) / 1000000000; // in sec
+				execQueueDepth = getFedExecQueueDepth();
+				execQueueMaxDepth = getFedExecQueueMaxDepth();
+				instCacheHits = getFedInstCacheHits();
+				instCacheMisses = getFedInstCacheMisses();
+				fusedChains = getFedFusedChains();
+				fusedInsts = getFedFusedInsts();
 			}
 
 			private void aggregate(MultiTenantStatsCollection that) {
@@ -899,10 +1419,22 @@ public class FederatedStatistics {
 				fLTEntryCount += that.fLTEntryCount;
 				reuseReadHits += that.reuseReadHits;
 				reuseReadBytes += that.reuseReadBytes;
+				readCacheHits += that.readCacheHits;
+				readCacheMisses += that.readCacheMisses;
+				readCacheEvictions += that.readCacheEvictions;
+				readCacheStale += that.readCacheStale;
 				putLineageCount += that.putLineageCount;
 				putLineageItems += that.putLineageItems;
 				serializationReuseCount += that.serializationReuseCount;
 				serializationReuseBytes += that.serializationReuseBytes;
+				execTaskCount += that.execTaskCount;
+				execWaitTime += that.execWaitTime;
+				execQueueDepth += that.execQueueDepth;
+				execQueueMaxDepth = Math.max(execQueueMaxDepth, that.execQueueMaxDepth);
+				instCacheHits += that.instCacheHits;
+				instCacheMisses += that.instCacheMisses;
+				fusedChains += that.fusedChains;
+				fusedInsts += that.fusedInsts;
 			}
 
 		}
@@ -922,6 +1454,7 @@ public class FederatedStatistics {
 			sb.append("\nworkerEvents " + workerEvents);
 			sb.append("\nworkerDataObjects " + workerDataObjects);
 			sb.append("\nworkerRequests " + workerRequests);
+			sb.append("\nworkerLatencies " + workerLatencies.keySet());
 			sb.append("\n\n");
 			return sb.toString();
 		}
@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.controlprogram.parfor.util.IDHandler;
+import org.apache.sysds.runtime.instructions.Instruction;
+import org.apache.sysds.runtime.instructions.fed.FEDInstruction;
+
+/**
+ * Tracer of federated requests across the coordinator and the federated workers. Every federated instruction at the
+ * coordinator opens a span, whose trace context (trace ID, span ID, opcode, and program line) is carried by all
+ * federated requests created during the instruction. Federated workers record child spans of these requests for
+ * deserialization, queueing, execution, lineage cache lookups, and serialization, which links every worker-side
+ * operation to the instruction and program line that caused it.
+ *
+ * If enabled with {@link org.apache.sysds.conf.DMLConfig#FEDERATED_TRACE}, the coordinator and every federated worker
+ * export their spans to a separate file (prefix_coordinator_pid.json, or prefix_worker_port.json) in the Chrome trace
+ * event format, which can be loaded into chrome://tracing or Perfetto. The spans of all files share a wall-clock
+ * timeline in microseconds, and carry the trace, span, and parent IDs as arguments.
+ */
+public class FederatedTracer {
+	private static final Log LOG = LogFactory.getLog(FederatedTracer.class.getName());
+
+	private static final Map<String, FederatedTracer> _tracers = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Span> _active = new ThreadLocal<>();
+	// offset of System.nanoTime() to the wall clock in us, for a common timeline of coordinator and workers
+	private static final long EPOCH_OFFSET = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+	private static volatile long _traceId = newID();
+	private static boolean _hook = false;
+
+	private final String _name;
+	private final long _pid;
+	private Writer _out = null;
+	private boolean _failed = false;
+
+	private FederatedTracer(String name, long pid) {
+		_name = name;
+		_pid = pid;
+	}
+
+	/**
+	 * Indicates if federated requests are traced.
+	 *
+	 * @return true if a trace file prefix is configured
+	 */
+	public static boolean isEnabled() {
+		final String prefix = ConfigurationManager.getFederatedTrace();
+		return prefix != null && !prefix.trim().isEmpty();
+	}
+
+	/**
+	 * Get the tracer of the coordinator in this process.
+	 *
+	 * @return the tracer, or null if tracing is disabled
+	 */
+	public static FederatedTracer getCoordinator() {
+		final String pid = IDHandler.getProcessID();
+		return get("coordinator_" + pid, Long.parseLong(pid));
+	}
+
+	/**
+	 * Get the tracer of the federated worker at the given port.
+	 *
+	 * @param port port of the federated worker
+	 * @return the tracer, or null if tracing is disabled
+	 */
+	public static FederatedTracer getWorker(int port) {
+		return get("worker_" + port, port);
+	}
+
+	private static FederatedTracer get(String name, long pid) {
+		if(!isEnabled())
+			return null;
+		synchronized(_tracers) {
+			if(!_hook) {
+				Runtime.getRuntime().addShutdownHook(new Thread(FederatedTracer::closeAll));
+				_hook = true;
+			}
+		}
+		return _tracers.computeIfAbsent(name, n -> new FederatedTracer(n, pid));
+	}
+
+	/**
+	 * Get the trace context of the active span of the current thread, which is attached to new federated requests.
+	 *
+	 * @return the trace context, or null if no span is active
+	 */
+	public static TraceContext current() {
+		final Span span = _active.get();
+		return (span != null) ? span._ctx : null;
+	}
+
+	/**
+	 * Open the span of a federated instruction, which becomes the active span of the current thread until it is
+	 * ended. Instructions executed within another span (e.g., at a federated worker) continue its trace.
+	 *
+	 * @param inst the instruction
+	 * @return the span, or null if the instruction is not federated or tracing is disabled
+	 */
+	public static Span beginInstruction(Instruction inst) {
+		if(!(inst instanceof FEDInstruction) || !isEnabled())
+			return null;
+		final Span parent = _active.get();
+		final FederatedTracer tracer = (parent != null) ? parent._tracer : getCoordinator();
+		final TraceContext ctx = new TraceContext((parent != null) ? parent._ctx.getTraceID() : _traceId, newID(),
+			inst.getOpcode(), inst.getLineNum());
+		return new Span(tracer, "FED " + inst.getOpcode(), ctx, parent).activate();
+	}
+
+	/**
+	 * Open the span of the execution of a federated request at a federated worker, which becomes the active span of
+	 * the current thread until it is ended.
+	 *
+	 * @param tracer  tracer of the federated worker, or null if tracing is disabled
+	 * @param request the federated request
+	 * @return the span, or null if the request is not traced
+	 */
+	public static Span beginRequest(FederatedTracer tracer, FederatedRequest request) {
+		final TraceContext ctx = request.getTraceContext();
+		if(tracer == null || ctx == null)
+			return null;
+		final String name = FederatedStatistics.getFedLatencyKey(new FederatedRequest[] {request});
+		return new Span(tracer, name, ctx.child(newID()), ctx.getSpanID(), _active.get()).activate();
+	}
+
+	/**
+	 * Open a child span of the active span of the current thread (e.g., for lineage cache lookups).
+	 *
+	 * @param name name of the span
+	 * @return the span, or null if no span is active
+	 */
+	public static Span beginChild(String name) {
+		final Span parent = _active.get();
+		if(parent == null)
+			return null;
+		return new Span(parent._tracer, name, parent._ctx.child(newID()), parent._ctx.getSpanID(), parent)
+			.activate();
+	}
+
+	/**
+	 * End a span and restore the previously active span of the current thread.
+	 *
+	 * @param span the span, or null if not traced
+	 */
+	public static void end(Span span) {
+		if(span != null)
+			span.end();
+	}
+
+	/**
+	 * Record a span with known start and duration.
+	 *
+	 * @param name     name of the span
+	 * @param parent   trace context of the parent span
+	 * @param start    start time as System.nanoTime()
+	 * @param duration duration in ns
+	 * @param args     additional arguments as alternating keys and values
+	 */
+	public void record(String name, TraceContext parent, long start, long duration, Object... args) {
+		write(name, parent.child(newID()), parent.getSpanID(), start, duration, args);
+	}
+
+	/**
+	 * Start a new trace for subsequent federated instructions, e.g., for the next script execution, and flush all
+	 * recorded spans.
+	 */
+	public static void newTrace() {
+		_traceId = newID();
+		for(FederatedTracer tracer : _tracers.values())
+			tracer.flush();
+	}
+
+	/**
+	 * Close the trace files of all tracers, which completes their JSON arrays.
+	 */
+	public static void closeAll() {
+		for(String name : _tracers.keySet())
+			close(name);
+	}
+
+	/**
+	 * Close the trace file of the federated worker at the given port.
+	 *
+	 * @param port port of the federated worker
+	 */
+	public static void closeWorker(int port) {
+		close("worker_" + port);
+	}
+
+	private static void close(String name) {
+		final FederatedTracer tracer = _tracers.remove(name);
+		if(tracer != null)
+			tracer.close();
+	}
+
+	private synchronized void write(String name, TraceContext ctx, long parent, long start, long duration,
+		Object... args) {
+		if(_failed)
+			return;
+		try {
+			if(_out == null)
+				open();
+			final StringBuilder sb = new StringBuilder(256);
+			sb.append("{\"name\":\"").append(escape(name));
+			sb.append("\",\"cat\":\"federated\",\"ph\":\"X\",\"ts\":").append(EPOCH_OFFSET + start / 1000);
+			sb.append(",\"dur\":").append(Math.max(duration, 0) / 1000);
+			sb.append(",\"pid\":").append(_pid);
+			sb.append(",\"tid\":").append(Thread.currentThread().getId());
+			sb.append(",\"args\":{\"trace\":\"").append(Long.toHexString(ctx.getTraceID()));
+			sb.append("\",\"span\":\"").append(Long.toHexString(ctx.getSpanID()));
+			sb.append("\",\"parent\":\"").append(Long.toHexString(parent));
+			sb.append("\",\"opcode\":\"").append(escape(ctx.getOpcode()));
+			sb.append("\",\"line\":").append(ctx.getLine());
+			for(int i = 0; i < args.length - 1; i += 2) {
+				sb.append(",\"").append(args[i]).append("\":");
+				if(args[i + 1] instanceof Number)
+					sb.append(args[i + 1]);
+				else
+					sb.append('"').append(escape(String.valueOf(args[i + 1]))).append('"');
+			}
+			sb.append("}},\n");
+			_out.write(sb.toString());
+		}
+		catch(IOException ex) {
+			LOG.warn("Failed to write federated trace " + _name + ", tracing disabled.", ex);
+			_failed = true;
+		}
+	}
+
+	private void open() throws IOException {
+		final String prefix = ConfigurationManager.getFederatedTrace().trim();
+		_out = Files.newBufferedWriter(Paths.get(prefix + "_" + _name + ".json"), StandardCharsets.UTF_8);
+		// JSON array format, which allows to append events without closing the array
+		_out.write("[\n");
+	}
+
+	private synchronized void flush() {
+		try {
+			if(_out != null)
+				_out.flush();
+		}
+		catch(IOException ex) {
+			LOG.warn("Failed to flush federated trace " + _name + ".", ex);
+		}
+	}
+
+	private synchronized void close() {
+		if(_out == null)
+			return;
+		try {
+			// process name as final metadata event, which completes the JSON array
+			_out.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":" + _pid + ",\"args\":{\"name\":\""
+				+ _name + "\"}}\n]\n");
+			_out.close();
+		}
+		catch(IOException ex) {
+			LOG.warn("Failed to close federated trace " + _name + ".", ex);
+		}
+		_out = null;
+	}
+
+	private static long newID() {
+		long id = 0;
+		while(id == 0)
+			id = ThreadLocalRandom.current().nextLong();
+		return id;
+	}
+
+	private static String escape(String s) {
+		if(s == null)
+			return "";
+		final StringBuilder sb = new StringBuilder(s.length());
+		for(char c : s.toCharArray()) {
+			if(c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if(c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Open span, which is active in the current thread until it is ended.
+	 */
+	public static class Span {
+		private final FederatedTracer _tracer;
+		private final String _name;
+		private final TraceContext _ctx;
+		private final long _parent;
+		private final Span _previous;
+		private final long _start = System.nanoTime();
+
+		private Span(FederatedTracer tracer, String name, TraceContext ctx, Span previous) {
+			this(tracer, name, ctx, (previous != null) ? previous._ctx.getSpanID() : 0, previous);
+		}
+
+		private Span(FederatedTracer tracer, String name, TraceContext ctx, long parent, Span previous) {
+			_tracer = tracer;
+			_name = name;
+			_ctx = ctx;
+			_parent = parent;
+			_previous = previous;
+		}
+
+		public TraceContext getContext() {
+			return _ctx;
+		}
+
+		private Span activate() {
+			_active.set(this);
+			return this;
+		}
+
+		private void end() {
+			if(_tracer != null)
+				_tracer.write(_name, _ctx, _parent, _start, System.nanoTime() - _start);
+			if(_previous != null)
+				_active.set(_previous);
+			else
+				_active.remove();
+		}
+	}
+
+	/**
+	 * Trace context of a federated request: the trace and span ID of the originating span, and the opcode and
+	 * program line of the originating federated instruction.
+	 */
+	public static class TraceContext implements Serializable {
+		private static final long serialVersionUID = -2870465734120911243L;
+
+		private final long _traceID;
+		private final long _spanID;
+		private final String _opcode;
+		private final int _line;
+
+		public TraceContext(long traceID, long spanID, String opcode, int line) {
+			_traceID = traceID;
+			_spanID = spanID;
+			_opcode = opcode;
+			_line = line;
+		}
+
+		public long getTraceID() {
+			return _traceID;
+		}
+
+		public long getSpanID() {
+			return _spanID;
+		}
+
+		public String getOpcode() {
+			return _opcode;
+		}
+
+		public int getLine() {
+			return _line;
+		}
+
+		private TraceContext child(long spanID) {
+			return new TraceContext(_traceID, spanID, _opcode, _line);
+		}
+
+		@Override
+		public String toString() {
+			return Long.toHexString(_traceID) + "/" + Long.toHexString(_spanID) + " " + _opcode + " (line " + _line
+				+ ")";
+		}
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.frame.data.FrameBlock;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Network transport of federated workers and coordinators. Depending on the configured transport, the event loops
+ * and channels use the native Linux epoll transport (if available) or the portable NIO transport, and all socket
+ * channels are configured with the federated socket options (TCP_NODELAY, socket buffer sizes, write buffer water
+ * marks).
+ *
+ * Federated workers can additionally bind an in-JVM netty local channel, which coordinators of the same process use
+ * instead of TCP on loopback if {@link DMLConfig#FEDERATED_LOCAL} is enabled. With the serialized mode, requests and
+ * responses still pass the federated wire codec, while the reference mode skips serialization and passes the message
+ * objects directly. Since the runtime updates bound cache blocks in place in some cases (e.g., left indexing in loops
+ * or conversions between sparse and dense representations), the reference mode is not zero-copy: the worker
+ * deep-copies all uncompressed matrix and frame blocks in the parameters of received requests and the data of sent
+ * responses (see {@link ReferenceCopyHandler}), such that coordinator and worker never share mutable blocks. The
+ * reference mode thus only saves the encoding and decoding, and shares compressed blocks and scalars.
+ */
+public class FederatedTransport {
+	private static final Log LOG = LogFactory.getLog(FederatedTransport.class.getName());
+
+	public enum TransportType {
+		AUTO, // epoll if available, otherwise nio
+		EPOLL,
+		NIO,
+	}
+
+	public enum LocalMode {
+		NONE, // TCP on loopback
+		SERIALIZED, // local channels with the federated wire codec
+		REFERENCE, // local channels without serialization, copying mutable blocks in memory
+	}
+
+	private static final String LOCAL_PREFIX = "federated-";
+
+	// federated workers of this JVM with a bound local channel, by port
+	private static final Map<Integer, LocalMode> _localWorkers = new ConcurrentHashMap<>();
+
+	private FederatedTransport() {
+		// static utility class
+	}
+
+	/**
+	 * Indicates if the native epoll transport is used, according to the configured transport type and the
+	 * availability of the native library.
+	 *
+	 * @return true if epoll is used, false for nio
+	 */
+	public static boolean isEpoll() {
+		final String type = ConfigurationManager.getDMLConfig().getTextValue(DMLConfig.FEDERATED_TRANSPORT);
+		switch(TransportType.valueOf(type.toUpperCase())) {
+			case EPOLL:
+				if(!Epoll.isAvailable())
+					throw new DMLRuntimeException("Federated epoll transport not available: "
+						+ Epoll.unavailabilityCause().getMessage());
+				return true;
+			case AUTO:
+				if(!Epoll.isAvailable() && LOG.isDebugEnabled())
+					LOG.debug("Federated epoll transport not available, falling back to nio: "
+						+ Epoll.unavailabilityCause().getMessage());
+				return Epoll.isAvailable();
+			default:
+				return false;
+		}
+	}
+
+	public static LocalMode getLocalMode() {
+		final String mode = ConfigurationManager.getDMLConfig().getTextValue(DMLConfig.FEDERATED_LOCAL);
+		return LocalMode.valueOf(mode.toUpperCase());
+	}
+
+	/**
+	 * Get the in-JVM transport to the federated worker at the given address, which is only used if the worker runs in
+	 * this JVM with a bound local channel and the local transport is enabled for the coordinator as well.
+	 *
+	 * @param address socket address of the federated worker
+	 * @return the mode of the worker's local channel, NONE for TCP
+	 */
+	public static LocalMode getLocalMode(InetSocketAddress address) {
+		final LocalMode mode = getLocalWorkerMode(address.getPort());
+		if(mode == LocalMode.NONE || getLocalMode() == LocalMode.NONE || !FederatedSharedMemory.isColocated(address))
+			return LocalMode.NONE;
+		return mode;
+	}
+
+	public static LocalAddress getLocalAddress(int port) {
+		return new LocalAddress(LOCAL_PREFIX + port);
+	}
+
+	/**
+	 * Get the port of a federated worker from the local address of one of its channels.
+	 *
+	 * @param address local address of a socket channel or local channel of the worker
+	 * @return the port of the worker, or 0 if unknown
+	 */
+	public static int getPort(SocketAddress address) {
+		if(address instanceof InetSocketAddress)
+			return ((InetSocketAddress) address).getPort();
+		if(address instanceof LocalAddress && ((LocalAddress) address).id().startsWith(LOCAL_PREFIX))
+			return Integer.parseInt(((LocalAddress) address).id().substring(LOCAL_PREFIX.length()));
+		return 0;
+	}
+
+	/**
+	 * Register a federated worker of this JVM, whose local channel is bound to {@link #getLocalAddress(int)}.
+	 *
+	 * @param port port of the federated worker
+	 * @param mode mode of the worker's local channel
+	 */
+	public static void registerLocalWorker(int port, LocalMode mode) {
+		_localWorkers.put(port, mode);
+	}
+
+	public static void unregisterLocalWorker(int port) {
+		_localWorkers.remove(port);
+	}
+
+	/**
+	 * Get the mode of the local channel of the federated worker of this JVM at the given port.
+	 *
+	 * @param port port of the federated worker
+	 * @return the mode of the worker's local channel, NONE if no local channel is bound
+	 */
+	public static LocalMode getLocalWorkerMode(int port) {
+		return _localWorkers.getOrDefault(port, LocalMode.NONE);
+	}
+
+	public static EventLoopGroup createEventLoopGroup(int numThreads) {
+		return createEventLoopGroup(numThreads, null);
+	}
+
+	/**
+	 * Create a new event loop group of the configured transport.
+	 *
+	 * @param numThreads number of event loop threads
+	 * @param executor   executor of the event loops (null for the default thread factory)
+	 * @return the event loop group
+	 */
+	public static EventLoopGroup createEventLoopGroup(int numThreads, Executor executor) {
+		return isEpoll() ? new EpollEventLoopGroup(numThreads, executor) : new NioEventLoopGroup(numThreads, executor);
+	}
+
+	public static Class<? extends SocketChannel> getSocketChannelClass(EventLoopGroup group) {
+		return (group instanceof EpollEventLoopGroup) ? EpollSocketChannel.class : NioSocketChannel.class;
+	}
+
+	public static Class<? extends ServerSocketChannel> getServerSocketChannelClass(EventLoopGroup group) {
+		return (group instanceof EpollEventLoopGroup) ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+	}
+
+	/**
+	 * Create a client bootstrap for connections to federated workers, where the channel type matches the transport
+	 * of the given event loop group.
+	 *
+	 * @param group event loop group of the coordinator
+	 * @return the configured bootstrap
+	 */
+	public static Bootstrap createBootstrap(EventLoopGroup group) {
+		final Bootstrap b = new Bootstrap().group(group).channel(getSocketChannelClass(group));
+		setOptions(b);
+		return b;
+	}
+
+	/**
+	 * Create a client bootstrap for connections to the federated worker at the given address, which uses a local
+	 * channel for workers of this JVM (see {@link #getLocalMode(InetSocketAddress)}), and a socket channel otherwise.
+	 *
+	 * @param group   event loop group of the coordinator
+	 * @param address socket address of the federated worker
+	 * @return the configured bootstrap, with the address to connect to as remote address
+	 */
+	public static Bootstrap createBootstrap(EventLoopGroup group, InetSocketAddress address) {
+		return (getLocalMode(address) != LocalMode.NONE) ? createLocalBootstrap(group, address.getPort()) :
+			createBootstrap(group).remoteAddress(address);
+	}
+
+	/**
+	 * Create a client bootstrap for connections to the local channel of the federated worker of this JVM at the given
+	 * port. Local channels are compatible with the event loops of all transports, and have no socket options.
+	 *
+	 * @param group event loop group of the coordinator
+	 * @param port  port of the federated worker
+	 * @return the bootstrap, with the worker's local address as remote address
+	 */
+	public static Bootstrap createLocalBootstrap(EventLoopGroup group, int port) {
+		return new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(getLocalAddress(port));
+	}
+
+	/**
+	 * Create a server bootstrap for the federated worker, where the channel type matches the transport of the given
+	 * event loop groups.
+	 *
+	 * @param bossGroup   event loop group accepting connections
+	 * @param workerGroup event loop group of the accepted connections
+	 * @return the configured server bootstrap
+	 */
+	public static ServerBootstrap createServerBootstrap(EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+		final ServerBootstrap b = new ServerBootstrap().group(bossGroup, workerGroup)
+			.channel(getServerSocketChannelClass(workerGroup));
+		b.childOption(ChannelOption.TCP_NODELAY, ConfigurationManager.isFederatedTcpNoDelay());
+		final int sndbuf = ConfigurationManager.getFederatedSendBufferSize();
+		final int rcvbuf = ConfigurationManager.getFederatedReceiveBufferSize();
+		if(sndbuf > 0)
+			b.childOption(ChannelOption.SO_SNDBUF, sndbuf * 1024);
+		if(rcvbuf > 0) {
+			// set on the server socket too, because accepted connections negotiate the TCP window on accept
+			b.option(ChannelOption.SO_RCVBUF, rcvbuf * 1024);
+			b.childOption(ChannelOption.SO_RCVBUF, rcvbuf * 1024);
+		}
+		final WriteBufferWaterMark wm = getWriteBufferWaterMark();
+		if(wm != null)
+			b.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, wm);
+		return b;
+	}
+
+	/**
+	 * Create a server bootstrap for the local channel of a federated worker, which accepts in-JVM connections of
+	 * coordinators in the same process.
+	 *
+	 * @param bossGroup   event loop group accepting connections
+	 * @param workerGroup event loop group of the accepted connections
+	 * @return the server bootstrap
+	 */
+	public static ServerBootstrap createLocalServerBootstrap(EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+		return new ServerBootstrap().group(bossGroup, workerGroup).channel(LocalServerChannel.class);
+	}
+
+	private static void setOptions(AbstractBootstrap<?, ?> b) {
+		b.option(ChannelOption.TCP_NODELAY, ConfigurationManager.isFederatedTcpNoDelay());
+		final int sndbuf = ConfigurationManager.getFederatedSendBufferSize();
+		final int rcvbuf = ConfigurationManager.getFederatedReceiveBufferSize();
+		if(sndbuf > 0)
+			b.option(ChannelOption.SO_SNDBUF, sndbuf * 1024);
+		if(rcvbuf > 0)
+			b.option(ChannelOption.SO_RCVBUF, rcvbuf * 1024);
+		final WriteBufferWaterMark wm = getWriteBufferWaterMark();
+		if(wm != null)
+			b.option(ChannelOption.WRITE_BUFFER_WATER_MARK, wm);
+	}
+
+	private static WriteBufferWaterMark getWriteBufferWaterMark() {
+		final int low = ConfigurationManager.getFederatedWriteBufferLowWaterMark();
+		final int high = ConfigurationManager.getFederatedWriteBufferHighWaterMark();
+		if(low <= 0 && high <= 0)
+			return null; // netty defaults
+		// a single configured water mark is combined with netty's default of the other one
+		final WriteBufferWaterMark def = WriteBufferWaterMark.DEFAULT;
+		final int lowBytes = (low > 0) ? low * 1024 : Math.min(def.low(), high * 1024);
+		final int highBytes = (high > 0) ? high * 1024 : Math.max(def.high(), lowBytes);
+		return new WriteBufferWaterMark(lowBytes, Math.max(lowBytes, highBytes));
+	}
+
+	/**
+	 * Deep-copies the mutable cache blocks of federated messages on local channels in reference mode, i.e., all
+	 * uncompressed matrix and frame blocks in the parameters of received requests and the data of sent responses,
+	 * regardless of whether they are modified later on. Only compressed matrix blocks and scalars are immutable and
+	 * shared. Received requests with copied blocks are recreated, because the coordinator may send the same request
+	 * objects to multiple federated workers.
+	 */
+	public static class ReferenceCopyHandler extends ChannelDuplexHandler {
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			ctx.fireChannelRead(copy(msg));
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			ctx.write(copy(msg), promise);
+		}
+
+		private static Object copy(Object msg) {
+			if(msg instanceof FederatedMessage) {
+				final FederatedMessage fm = (FederatedMessage) msg;
+				final Object payload = copy(fm.getPayload());
+				return (payload instanceof FederatedResponse) ?
+					new FederatedMessage(fm.getCorrelationID(), (FederatedResponse) payload) :
+					new FederatedMessage(fm.getCorrelationID(), (FederatedRequest[]) payload);
+			}
+			else if(msg instanceof FederatedRequest[]) {
+				final FederatedRequest[] requests = (FederatedRequest[]) msg;
+				final FederatedRequest[] ret = new FederatedRequest[requests.length];
+				for(int i = 0; i < requests.length; i++)
+					ret[i] = copy(requests[i]);
+				return ret;
+			}
+			else if(msg instanceof FederatedResponse) {
+				// responses are created per request batch, so the data is replaced in place
+				final Object[] data = ((FederatedResponse) msg).getDataNoCheck();
+				if(data != null)
+					for(int i = 0; i < data.length; i++)
+						data[i] = copyBlock(data[i]);
+			}
+			return msg;
+		}
+
+		private static FederatedRequest copy(FederatedRequest request) {
+			final List<Object> data = new ArrayList<>(request.getNumParams());
+			boolean copied = false;
+			for(int i = 0; i < request.getNumParams(); i++) {
+				final Object param = request.getParam(i);
+				data.add(copyBlock(param));
+				copied |= data.get(i) != param;
+			}
+			if(!copied)
+				return request;
+			final FederatedRequest ret = new FederatedRequest(request.getType(), request.getID(), request.getTID(),
+				request.getPID(), data, request.getChecksums(), request.getLineageTrace());
+			ret.setTraceContext(request.getTraceContext());
+			return ret;
+		}
+
+		private static Object copyBlock(Object obj) {
+			// exact class checks, because compressed blocks are immutable
+			final Class<?> clazz = (obj != null) ? obj.getClass() : null;
+			if(clazz == MatrixBlock.class)
+				return new MatrixBlock((MatrixBlock) obj);
+			else if(clazz == FrameBlock.class)
+				return new FrameBlock((FrameBlock) obj);
+			return obj;
+		}
+	}
+}
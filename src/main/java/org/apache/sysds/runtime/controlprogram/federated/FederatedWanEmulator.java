@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.DMLRuntimeException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseCombiner;
+
+/**
+ * Outbound handler that emulates a wide-area network link on loopback, for benchmarking federated sites with
+ * realistic latencies and bandwidths on a single host. Every write is delayed by the one-way latency plus a random
+ * jitter, and by its transmission time at the link bandwidth. With pacing, large writes are sent in bursts of the
+ * pacing size at the link rate (instead of a single delayed burst). The bandwidth is shared by all channels to the
+ * same remote site, and writes are never reordered.
+ *
+ * Links are configured with {@link org.apache.sysds.conf.DMLConfig#FEDERATED_WAN} as ';'-separated entries of the
+ * form [host[:port]=]latency_ms/jitter_ms/bandwidth_mbit/pacing_kb, where entries without host apply to all remote
+ * sites, and a bandwidth or pacing of 0 disables the respective limit. Since the handler only delays outbound data,
+ * both coordinator and workers need to be configured to emulate both directions of a link.
+ */
+public class FederatedWanEmulator extends ChannelOutboundHandlerAdapter {
+	private static final Map<String, Link> _links = new ConcurrentHashMap<>();
+
+	private final Link _link;
+	// writes of this channel in order of arrival, only accessed from the channel's event loop
+	private final ArrayDeque<Pending> _pending = new ArrayDeque<>();
+	private boolean _scheduled = false;
+
+	public FederatedWanEmulator(Link link) {
+		_link = link;
+	}
+
+	/**
+	 * Create the WAN emulation handler for a channel to the given remote site.
+	 *
+	 * @param host host of the remote site
+	 * @param port port of the remote site, or -1 for channels from the remote host (e.g., of a coordinator)
+	 * @return the handler, or null if no emulated link is configured for the site
+	 */
+	public static FederatedWanEmulator create(String host, int port) {
+		final String spec = ConfigurationManager.getFederatedWan();
+		if(spec == null || spec.trim().isEmpty() || host == null)
+			return null;
+		final String site = (port > 0) ? host + ":" + port : host;
+		String link = null;
+		for(String entry : spec.split(";")) {
+			final String[] parts = entry.trim().split("=");
+			if(parts.length == 1 && link == null)
+				link = parts[0];
+			else if(parts.length == 2 && (parts[0].trim().equals(site) || parts[0].trim().equals(host))) {
+				link = parts[1];
+				if(parts[0].trim().equals(site))
+					break; // most specific entry
+			}
+		}
+		if(link == null || link.trim().isEmpty())
+			return null;
+		final String params = link.trim();
+		return new FederatedWanEmulator(_links.computeIfAbsent(site + "/" + params, k -> Link.parse(params)));
+	}
+
+	/**
+	 * Remove the state of all emulated links.
+	 */
+	public static void reset() {
+		_links.clear();
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+		if(!(msg instanceof ByteBuf) || _link._pacing <= 0 || ((ByteBuf) msg).readableBytes() <= _link._pacing) {
+			final int size = (msg instanceof ByteBuf) ? ((ByteBuf) msg).readableBytes() : 0;
+			enqueue(ctx, msg, promise, _link.reserve(size));
+			return;
+		}
+
+		// paced bursts of a large write, which complete the promise once all bursts were written
+		final ByteBuf buf = (ByteBuf) msg;
+		final PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+		try {
+			while(buf.isReadable()) {
+				final int len = Math.min(buf.readableBytes(), _link._pacing);
+				final ChannelPromise p = ctx.newPromise();
+				combiner.add(p);
+				enqueue(ctx, buf.readRetainedSlice(len), p, _link.reserve(len));
+			}
+		}
+		finally {
+			buf.release();
+		}
+		combiner.finish(promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) {
+		for(Pending p : _pending) {
+			ReferenceCountUtil.release(p._msg);
+			p._promise.tryFailure(new ClosedChannelException());
+		}
+		_pending.clear();
+	}
+
+	private void enqueue(ChannelHandlerContext ctx, Object msg, ChannelPromise promise, long time) {
+		_pending.add(new Pending(msg, promise, time));
+		if(!_scheduled)
+			schedule(ctx);
+	}
+
+	private void schedule(ChannelHandlerContext ctx) {
+		_scheduled = true;
+		final long delay = Math.max(_pending.peek()._time - System.nanoTime(), 0);
+		ctx.executor().schedule(() -> deliver(ctx), delay, TimeUnit.NANOSECONDS);
+	}
+
+	private void deliver(ChannelHandlerContext ctx) {
+		// write all delivered data in order of arrival, which preserves the order of the byte stream
+		_scheduled = false;
+		final long now = System.nanoTime();
+		boolean written = false;
+		while(!_pending.isEmpty() && _pending.peek()._time <= now) {
+			final Pending p = _pending.poll();
+			ctx.write(p._msg, p._promise);
+			written = true;
+		}
+		if(written)
+			ctx.flush();
+		if(!_pending.isEmpty())
+			schedule(ctx);
+	}
+
+	private static class Pending {
+		private final Object _msg;
+		private final ChannelPromise _promise;
+		private final long _time;
+
+		private Pending(Object msg, ChannelPromise promise, long time) {
+			_msg = msg;
+			_promise = promise;
+			_time = time;
+		}
+	}
+
+	/**
+	 * Emulated link to a remote site, shared by all channels to this site.
+	 */
+	public static class Link {
+		private final long _latency; // one-way delay in ns
+		private final long _jitter; // max additional delay in ns
+		private final double _bandwidth; // bytes per ns, <=0 for unbounded
+		private final int _pacing; // bytes per burst, <=0 for single bursts
+		private long _free = 0; // time when the link finished the previous transmission
+		private long _delivered = 0; // delivery time of the previous transmission
+
+		public Link(double latencyMs, double jitterMs, double bandwidthMbit, int pacingKb) {
+			_latency = (long) (latencyMs * 1e6);
+			_jitter = (long) (jitterMs * 1e6);
+			_bandwidth = bandwidthMbit * 1e6 / 8 / 1e9;
+			_pacing = pacingKb * 1024;
+		}
+
+		/**
+		 * Parse a link specification of the form latency_ms/jitter_ms/bandwidth_mbit/pacing_kb, where trailing
+		 * parameters can be omitted.
+		 *
+		 * @param spec link specification
+		 * @return the link
+		 */
+		public static Link parse(String spec) {
+			try {
+				final String[] parts = spec.split("/");
+				return new Link(parts.length > 0 ? Double.parseDouble(parts[0].trim()) : 0,
+					parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 0,
+					parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 0,
+					parts.length > 3 ? Integer.parseInt(parts[3].trim()) : 0);
+			}
+			catch(NumberFormatException ex) {
+				throw new DMLRuntimeException("Invalid emulated federated WAN link: " + spec, ex);
+			}
+		}
+
+		/**
+		 * Reserve the link for the transmission of the given number of bytes.
+		 *
+		 * @param bytes number of bytes
+		 * @return the delivery time as System.nanoTime()
+		 */
+		public synchronized long reserve(int bytes) {
+			final long now = System.nanoTime();
+			_free = Math.max(_free, now) + ((_bandwidth > 0) ? (long) (bytes / _bandwidth) : 0);
+			final long jitter = (_jitter > 0) ? ThreadLocalRandom.current().nextLong(_jitter + 1) : 0;
+			// no reordering by jitter, as on a TCP connection
+			_delivered = Math.max(_delivered, _free + _latency + jitter);
+			return _delivered;
+		}
+	}
+}
@@ -0,0 +1,1258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedCompressor.Codec;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
+import org.apache.sysds.runtime.data.SparseBlock;
+import org.apache.sysds.runtime.frame.data.FrameBlock;
+import org.apache.sysds.runtime.instructions.cp.BooleanObject;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.instructions.cp.IntObject;
+import org.apache.sysds.runtime.instructions.cp.StringObject;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.data.MatrixBlockDataInput;
+import org.apache.sysds.runtime.matrix.data.MatrixBlockDataOutput;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * Binary wire format of federated requests and responses. Every message is sent as a length-prefixed frame with a
+ * compact header (request type, IDs, response status) followed by the typed parameters. Matrix and frame blocks are
+ * streamed directly from their dense or sparse arrays into the (pooled, direct) output buffer and read directly from
+ * the received frame, without intermediate byte arrays. Compressed matrix blocks are sent in their native compressed
+ * representation (column groups with dictionaries and mappings), so receivers can operate on them directly. Java
+ * serialization is only used as a fallback for all other
+ * objects such as federated UDFs and exceptions.
+ *
+ * Matrix and frame blocks larger than the configured chunk size are not inlined but sent as a sequence of row-block
+ * chunk frames after the frame of the message itself. The chunks are produced lazily under netty's flow control (via
+ * a ChunkedWriteHandler in front of the encoder) and assembled incrementally into the target block by the decoder, which bounds the memory footprint of both sides and allows transfers beyond the 2GB frame limit.
+ *
+ * With adaptive compression, the content of individual frames (including chunk frames) is compressed if the
+ * {@link FederatedCompressor} expects a benefit, and the chosen codec is carried in the compressed frame header.
+ *
+ * Large matrix and frame blocks for federated sites on the same host are not sent over the socket at all, but
+ * exchanged via {@link FederatedSharedMemory} segments, whose path and length are sent in place of the block. The
+ * receiver advertises its shared memory directory in a handshake frame when the channel becomes active, and the
+ * sender encodes all blocks inline until it received this handshake.
+ */
+public class FederatedWireCodec {
+	// message types
+	private static final byte MSG_REQUESTS = 1;
+	private static final byte MSG_RESPONSE = 2;
+	private static final byte MSG_MULTIPLEXED = 3;
+	private static final byte MSG_OBJECT = 4;
+	private static final byte MSG_CHUNK = 5;
+	private static final byte MSG_COMPRESSED = 6;
+	private static final byte MSG_HANDSHAKE = 7;
+
+	// parameter types
+	private static final byte OBJ_NULL = 0;
+	private static final byte OBJ_MATRIX = 1;
+	private static final byte OBJ_FRAME = 2;
+	private static final byte OBJ_STRING = 3;
+	private static final byte OBJ_LONG = 4;
+	private static final byte OBJ_INT = 5;
+	private static final byte OBJ_DOUBLE = 6;
+	private static final byte OBJ_BOOLEAN = 7;
+	private static final byte OBJ_INT_SCALAR = 8;
+	private static final byte OBJ_DOUBLE_SCALAR = 9;
+	private static final byte OBJ_BOOLEAN_SCALAR = 10;
+	private static final byte OBJ_STRING_SCALAR = 11;
+	private static final byte OBJ_SERIALIZED = 12;
+	private static final byte OBJ_MATRIX_CHUNKED = 13;
+	private static final byte OBJ_RESPONSE = 14;
+	private static final byte OBJ_CONTENT = 15;
+	private static final byte OBJ_COMPRESSED = 16;
+	private static final byte OBJ_SHARED = 17;
+	private static final byte OBJ_FRAME_CHUNKED = 18;
+
+	private static final Codec[] CODECS = Codec.values();
+	private static final RequestType[] REQUEST_TYPES = RequestType.values();
+	private static final ResponseType[] RESPONSE_TYPES = ResponseType.values();
+
+	private FederatedWireCodec() {
+		// static utility class
+	}
+
+	/**
+	 * Write a federated message (request batch, response, or multiplexed envelope) without the frame length.
+	 *
+	 * @param out output buffer
+	 * @param msg the federated message
+	 * @throws IOException if a parameter cannot be serialized
+	 */
+	public static void write(ByteBuf out, Object msg) throws IOException {
+		write(out, msg, null);
+	}
+
+	private static void write(ByteBuf out, Object msg, Chunks chunks) throws IOException {
+		if(msg instanceof FederatedRequest[]) {
+			final FederatedRequest[] requests = (FederatedRequest[]) msg;
+			out.writeByte(MSG_REQUESTS);
+			out.writeInt(requests.length);
+			for(FederatedRequest request : requests)
+				writeRequest(out, request, chunks);
+		}
+		else if(msg instanceof FederatedResponse) {
+			out.writeByte(MSG_RESPONSE);
+			writeResponse(out, (FederatedResponse) msg, chunks);
+		}
+		else if(msg instanceof FederatedMessage) {
+			final FederatedMessage fm = (FederatedMessage) msg;
+			out.writeByte(MSG_MULTIPLEXED);
+			out.writeLong(fm.getCorrelationID());
+			write(out, fm.getPayload(), chunks);
+		}
+		else {
+			out.writeByte(MSG_OBJECT);
+			writeSerialized(out, msg);
+		}
+	}
+
+	/**
+	 * Read a federated message written by {@link #write(ByteBuf, Object)}.
+	 *
+	 * @param in input buffer positioned at the start of the message
+	 * @return the federated message
+	 * @throws IOException if the message is corrupted or a parameter cannot be deserialized
+	 */
+	public static Object read(ByteBuf in) throws IOException {
+		return read(in, null, false);
+	}
+
+	private static Object read(ByteBuf in, List<ChunkTarget> targets, boolean shared) throws IOException {
+		final byte type = in.readByte();
+		switch(type) {
+			case MSG_REQUESTS:
+				final FederatedRequest[] requests = new FederatedRequest[in.readInt()];
+				for(int i = 0; i < requests.length; i++)
+					requests[i] = readRequest(in, targets, shared);
+				return requests;
+			case MSG_RESPONSE:
+				return readResponse(in, targets, shared);
+			case MSG_MULTIPLEXED:
+				final long cid = in.readLong();
+				final Object payload = read(in, targets, shared);
+				return (payload instanceof FederatedResponse) ? new FederatedMessage(cid,
+					(FederatedResponse) payload) : new FederatedMessage(cid, (FederatedRequest[]) payload);
+			case MSG_OBJECT:
+				return readSerialized(in);
+			default:
+				throw new IOException("Invalid federated message type: " + type);
+		}
+	}
+
+	/**
+	 * Estimate the serialized size of a federated message in order to size the output buffer upfront.
+	 *
+	 * @param msg the federated message
+	 * @return the estimated size in bytes
+	 */
+	public static long estimateSize(Object msg) {
+		long size = 256; // default initial capacity
+		if(msg instanceof FederatedRequest[]) {
+			size = 0;
+			for(FederatedRequest fr : (FederatedRequest[]) msg)
+				size += fr.estimateSerializationBufferSize();
+		}
+		else if(msg instanceof FederatedResponse)
+			size = ((FederatedResponse) msg).estimateSerializationBufferSize();
+		else if(msg instanceof FederatedMessage)
+			size = ((FederatedMessage) msg).estimateSerializationBufferSize();
+		return size;
+	}
+
+	private static void writeRequest(ByteBuf out, FederatedRequest request, Chunks chunks) throws IOException {
+		out.writeByte(request.getType().ordinal());
+		out.writeLong(request.getID());
+		out.writeLong(request.getTID());
+		out.writeLong(request.getPID());
+		writeString(out, request.getLineageTrace());
+		writeTrace(out, request.getTraceContext());
+		final List<Long> checksums = request.getChecksums();
+		out.writeInt(checksums != null ? checksums.size() : -1);
+		if(checksums != null)
+			for(Long checksum : checksums)
+				out.writeLong(checksum);
+		out.writeInt(request.getNumParams());
+		for(int i = 0; i < request.getNumParams(); i++)
+			writeObject(out, request.getParam(i), chunks);
+	}
+
+	private static FederatedRequest readRequest(ByteBuf in, List<ChunkTarget> targets, boolean shared)
+		throws IOException {
+		final RequestType method = REQUEST_TYPES[in.readByte()];
+		final long id = in.readLong();
+		final long tid = in.readLong();
+		final long pid = in.readLong();
+		final String lineageTrace = readString(in);
+		final TraceContext trace = readTrace(in);
+		final int numChecksums = in.readInt();
+		List<Long> checksums = null;
+		if(numChecksums >= 0) {
+			checksums = new ArrayList<>(numChecksums);
+			for(int i = 0; i < numChecksums; i++)
+				checksums.add(in.readLong());
+		}
+		final int numParams = in.readInt();
+		final List<Object> data = new ArrayList<>(numParams);
+		for(int i = 0; i < numParams; i++)
+			data.add(readObject(in, targets, shared));
+		final FederatedRequest ret = new FederatedRequest(method, id, tid, pid, data, checksums, lineageTrace);
+		ret.setTraceContext(trace);
+		return ret;
+	}
+
+	private static void writeTrace(ByteBuf out, TraceContext trace) {
+		out.writeBoolean(trace != null);
+		if(trace != null) {
+			out.writeLong(trace.getTraceID());
+			out.writeLong(trace.getSpanID());
+			writeString(out, trace.getOpcode());
+			out.writeInt(trace.getLine());
+		}
+	}
+
+	private static TraceContext readTrace(ByteBuf in) {
+		if(!in.readBoolean())
+			return null;
+		return new TraceContext(in.readLong(), in.readLong(), readString(in), in.readInt());
+	}
+
+	private static void writeResponse(ByteBuf out, FederatedResponse response, Chunks chunks) throws IOException {
+		final Object[] data = response.getDataNoCheck();
+		out.writeByte(response.getStatus().ordinal());
+		out.writeFloat(response.getMemoryPressure());
+		final long[] times = response.getWorkerTimes();
+		out.writeByte(times != null ? times.length : 0);
+		if(times != null)
+			for(long time : times)
+				out.writeLong(time);
+		out.writeInt(data != null ? data.length : -1);
+		if(data != null)
+			for(Object obj : data)
+				writeObject(out, obj, chunks);
+	}
+
+	/**
+	 * Overwrite the piggybacked fields of an encoded response frame, i.e., the memory pressure and the stage times of
+	 * the federated worker, with the fields of the given response. These fields are specific to every response, even
+	 * if the data is the same (e.g., frames reused from the lineage cache).
+	 *
+	 * @param frame    buffer with the encoded frame
+	 * @param start    index of the frame length in the buffer
+	 * @param response the response with the current fields
+	 * @return true if the fields were overwritten, false if the frame is no uncompressed response frame with the same
+	 *         number of worker times
+	 */
+	public static boolean patchResponse(ByteBuf frame, int start, FederatedResponse response) {
+		// frame length, message type, and response status precede the fields
+		final int pos = start + 6;
+		final long[] times = response.getWorkerTimes();
+		if(frame.writerIndex() < pos + 5 || frame.getByte(start + 4) != MSG_RESPONSE
+			|| frame.getByte(pos + 4) != (times != null ? times.length : 0))
+			return false;
+		frame.setFloat(pos, response.getMemoryPressure());
+		if(times != null)
+			for(int i = 0; i < times.length; i++)
+				frame.setLong(pos + 5 + 8 * i, times[i]);
+		return true;
+	}
+
+	private static FederatedResponse readResponse(ByteBuf in, List<ChunkTarget> targets, boolean shared)
+		throws IOException {
+		final ResponseType status = RESPONSE_TYPES[in.readByte()];
+		final float pressure = in.readFloat();
+		final long[] times = new long[in.readByte()];
+		for(int i = 0; i < times.length; i++)
+			times[i] = in.readLong();
+		final int len = in.readInt();
+		Object[] data = null;
+		if(len >= 0) {
+			data = new Object[len];
+			for(int i = 0; i < len; i++)
+				data[i] = readObject(in, targets, shared);
+		}
+		final FederatedResponse ret = new FederatedResponse(status, data);
+		ret.setMemoryPressure(pressure);
+		if(times.length >= 3)
+			ret.setWorkerTimes(times[0], times[1], times[2]);
+		return ret;
+	}
+
+	private static void writeObject(ByteBuf out, Object obj, Chunks chunks) throws IOException {
+		// exact class checks, because subclasses (e.g., compressed blocks) have their own serialization
+		final Class<?> clazz = (obj != null) ? obj.getClass() : null;
+		if(obj == null)
+			out.writeByte(OBJ_NULL);
+		else if(chunks != null && chunks.isShared(obj)) {
+			out.writeByte(OBJ_SHARED);
+			writeShared(out, obj, chunks);
+		}
+		else if(clazz == MatrixBlock.class && chunks != null && chunks.isLarge(obj)) {
+			// header only, the data follows in separate chunk frames
+			final MatrixBlock mb = (MatrixBlock) obj;
+			out.writeByte(OBJ_MATRIX_CHUNKED);
+			out.writeInt(mb.getNumRows());
+			out.writeInt(mb.getNumColumns());
+			out.writeBoolean(mb.isInSparseFormat());
+			out.writeLong(mb.getNonZeros());
+			chunks.add(mb);
+		}
+		else if(clazz == MatrixBlock.class) {
+			out.writeByte(OBJ_MATRIX);
+			((MatrixBlock) obj).write(new ByteBufDataOutput(out));
+		}
+		else if(clazz == CompressedMatrixBlock.class) {
+			out.writeByte(OBJ_COMPRESSED);
+			((CompressedMatrixBlock) obj).write(new ByteBufDataOutput(out));
+		}
+		else if(clazz == FrameBlock.class && chunks != null && chunks.isLarge(obj)) {
+			// header with the number of rows and an empty frame of the schema and column meta data
+			final FrameBlock fb = (FrameBlock) obj;
+			final FrameBlock meta = new FrameBlock(fb.getSchema(), fb.getColumnNames(false));
+			meta.setColumnMetadata(fb.getColumnMetadata());
+			out.writeByte(OBJ_FRAME_CHUNKED);
+			out.writeInt(fb.getNumRows());
+			meta.write(new ByteBufDataOutput(out));
+			chunks.add(fb);
+		}
+		else if(clazz == FrameBlock.class) {
+			out.writeByte(OBJ_FRAME);
+			((FrameBlock) obj).write(new ByteBufDataOutput(out));
+		}
+		else if(clazz == String.class) {
+			out.writeByte(OBJ_STRING);
+			writeString(out, (String) obj);
+		}
+		else if(clazz == Long.class) {
+			out.writeByte(OBJ_LONG);
+			out.writeLong((Long) obj);
+		}
+		else if(clazz == Integer.class) {
+			out.writeByte(OBJ_INT);
+			out.writeInt((Integer) obj);
+		}
+		else if(clazz == Double.class) {
+			out.writeByte(OBJ_DOUBLE);
+			out.writeDouble((Double) obj);
+		}
+		else if(clazz == Boolean.class) {
+			out.writeByte(OBJ_BOOLEAN);
+			out.writeBoolean((Boolean) obj);
+		}
+		else if(clazz == IntObject.class) {
+			out.writeByte(OBJ_INT_SCALAR);
+			out.writeLong(((IntObject) obj).getLongValue());
+		}
+		else if(clazz == DoubleObject.class) {
+			out.writeByte(OBJ_DOUBLE_SCALAR);
+			out.writeDouble(((DoubleObject) obj).getDoubleValue());
+		}
+		else if(clazz == BooleanObject.class) {
+			out.writeByte(OBJ_BOOLEAN_SCALAR);
+			out.writeBoolean(((BooleanObject) obj).getBooleanValue());
+		}
+		else if(clazz == StringObject.class) {
+			out.writeByte(OBJ_STRING_SCALAR);
+			writeString(out, ((StringObject) obj).getStringValue());
+		}
+		else if(clazz == FederatedContent.class) {
+			// content-addressed broadcast, with or without the cache block
+			final FederatedContent fc = (FederatedContent) obj;
+			out.writeByte(OBJ_CONTENT);
+			writeString(out, fc.getDigest());
+			writeObject(out, fc.getBlock(), chunks);
+		}
+		else if(clazz == FederatedResponse.class) {
+			// nested response of a coalesced request batch
+			out.writeByte(OBJ_RESPONSE);
+			writeResponse(out, (FederatedResponse) obj, chunks);
+		}
+		else {
+			out.writeByte(OBJ_SERIALIZED);
+			writeSerialized(out, obj);
+		}
+	}
+
+	private static Object readObject(ByteBuf in, List<ChunkTarget> targets, boolean shared) throws IOException {
+		final byte type = in.readByte();
+		switch(type) {
+			case OBJ_NULL:
+				return null;
+			case OBJ_MATRIX_CHUNKED:
+				if(targets == null)
+					throw new IOException("Chunked matrix block without chunk frames.");
+				final MatrixChunkTarget target = new MatrixChunkTarget(in.readInt(), in.readInt(), in.readBoolean(),
+					in.readLong());
+				targets.add(target);
+				return target._mb;
+			case OBJ_FRAME_CHUNKED:
+				if(targets == null)
+					throw new IOException("Chunked frame block without chunk frames.");
+				final int rows = in.readInt();
+				final FrameBlock meta = new FrameBlock();
+				meta.readFields(new ByteBufDataInput(in));
+				final FrameChunkTarget ftarget = new FrameChunkTarget(rows, meta);
+				targets.add(ftarget);
+				return ftarget._fb;
+			case OBJ_MATRIX:
+				final MatrixBlock mb = new MatrixBlock();
+				mb.readFields(new ByteBufDataInput(in));
+				return mb;
+			case OBJ_COMPRESSED:
+				return CompressedMatrixBlock.read(new ByteBufDataInput(in));
+			case OBJ_FRAME:
+				final FrameBlock fb = new FrameBlock();
+				fb.readFields(new ByteBufDataInput(in));
+				return fb;
+			case OBJ_STRING:
+				return readString(in);
+			case OBJ_LONG:
+				return in.readLong();
+			case OBJ_INT:
+				return in.readInt();
+			case OBJ_DOUBLE:
+				return in.readDouble();
+			case OBJ_BOOLEAN:
+				return in.readBoolean();
+			case OBJ_INT_SCALAR:
+				return new IntObject(in.readLong());
+			case OBJ_DOUBLE_SCALAR:
+				return new DoubleObject(in.readDouble());
+			case OBJ_BOOLEAN_SCALAR:
+				return new BooleanObject(in.readBoolean());
+			case OBJ_STRING_SCALAR:
+				return new StringObject(readString(in));
+			case OBJ_RESPONSE:
+				return readResponse(in, targets, shared);
+			case OBJ_CONTENT:
+				final String digest = readString(in);
+				return new FederatedContent(digest, (CacheBlock<?>) readObject(in, targets, shared));
+			case OBJ_SERIALIZED:
+				return readSerialized(in);
+			case OBJ_SHARED:
+				// only segments of colocated sites under the local shared memory directory are read (and deleted)
+				if(!shared)
+					throw new IOException("Unexpected shared memory segment from a remote site.");
+				return FederatedSharedMemory.read(readString(in), in.readLong(),
+					buf -> readObject(buf, null, false));
+			default:
+				throw new IOException("Invalid federated parameter type: " + type);
+		}
+	}
+
+	private static void writeShared(ByteBuf out, Object obj, Chunks chunks) throws IOException {
+		final long size = (obj instanceof MatrixBlock) ? ((MatrixBlock) obj).getExactSerializedSize() :
+			((FrameBlock) obj).getExactSerializedSize();
+		final FederatedSharedMemory.Segment segment = FederatedSharedMemory.allocate(size + 64);
+		try {
+			writeObject(segment.getBuffer(), obj, null);
+		}
+		catch(IOException | RuntimeException ex) {
+			segment.delete();
+			throw ex;
+		}
+		chunks._segments.add(segment);
+		writeString(out, segment.getPath());
+		out.writeLong(segment.getLength());
+		FederatedStatistics.incFedSharedMemory(segment.getLength());
+	}
+
+	private static void writeString(ByteBuf out, String str) {
+		if(str == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final int pos = out.writerIndex();
+		out.writeInt(0); // placeholder for the length in bytes
+		final int len = out.writeCharSequence(str, StandardCharsets.UTF_8);
+		out.setInt(pos, len);
+	}
+
+	private static String readString(ByteBuf in) {
+		final int len = in.readInt();
+		return (len < 0) ? null : in.readCharSequence(len, StandardCharsets.UTF_8).toString();
+	}
+
+	private static void writeSerialized(ByteBuf out, Object obj) throws IOException {
+		final int pos = out.writerIndex();
+		out.writeInt(0); // placeholder for the length in bytes
+		try(ObjectOutputStream oos = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+			oos.writeObject(obj);
+		}
+		out.setInt(pos, out.writerIndex() - pos - 4);
+	}
+
+	private static Object readSerialized(ByteBuf in) throws IOException {
+		final int len = in.readInt();
+		try(ObjectInputStream ois = new ObjectInputStream(new ByteBufInputStream(in.readSlice(len)))) {
+			return ois.readObject();
+		}
+		catch(ClassNotFoundException ex) {
+			throw new IOException("Failed to deserialize federated parameter.", ex);
+		}
+	}
+
+	/**
+	 * Encoder of federated messages into length-prefixed frames, where the output buffer is allocated according to
+	 * the estimated size of the message. Messages with matrix blocks larger than the chunk size are handed on as
+	 * chunked input, which requires a ChunkedWriteHandler between this encoder and the network.
+	 */
+	public static class Encoder extends MessageToByteEncoder<Object> {
+		private final long _chunkSize;
+		private final boolean _adaptive;
+		private Boolean _shared; // large blocks via shared memory, null until the remote site is known
+		private boolean _negotiated = false; // shared memory directory of the receiver matches
+		private List<FederatedSharedMemory.Segment> _segments = null; // segments of the current frame
+
+		public Encoder() {
+			_chunkSize = getConfiguredChunkSize();
+			_adaptive = FederatedCompressor.isAdaptive();
+			_shared = FederatedSharedMemory.isEnabled() ? null : false;
+		}
+
+		/**
+		 * Create a new encoder without compression.
+		 *
+		 * @param chunkSize max serialized size of an inlined matrix block in bytes (<=0 disables chunking)
+		 */
+		public Encoder(long chunkSize) {
+			this(chunkSize, false);
+		}
+
+		/**
+		 * Create a new encoder.
+		 *
+		 * @param chunkSize max serialized size of an inlined matrix block in bytes (<=0 disables chunking)
+		 * @param adaptive  true to compress individual frames if beneficial
+		 */
+		public Encoder(long chunkSize, boolean adaptive) {
+			this(chunkSize, adaptive, false);
+		}
+
+		/**
+		 * Create a new encoder.
+		 *
+		 * @param chunkSize max serialized size of an inlined matrix block in bytes (<=0 disables chunking)
+		 * @param adaptive  true to compress individual frames if beneficial
+		 * @param shared    true to exchange large blocks via shared memory (once negotiated), independent of the remote
+		 *                  site
+		 */
+		public Encoder(long chunkSize, boolean adaptive, boolean shared) {
+			_chunkSize = chunkSize;
+			_adaptive = adaptive;
+			_shared = shared;
+		}
+
+		/**
+		 * Accept the shared memory directory advertised by the receiver, which enables shared memory if it matches
+		 * the local shared memory directory.
+		 *
+		 * @param dir shared memory directory of the receiver
+		 */
+		public void setSharedDirectory(String dir) {
+			_negotiated = FederatedSharedMemory.isDirectory(dir);
+		}
+
+		/**
+		 * Indicates if large blocks are exchanged via shared memory on the channel of the given context, which
+		 * requires shared memory to be enabled, the remote site to run on the same host, and the receiver to have
+		 * advertised the same shared memory directory.
+		 *
+		 * @param ctx channel handler context of the encoder
+		 * @return true if large blocks are exchanged via shared memory
+		 */
+		protected boolean isShared(ChannelHandlerContext ctx) {
+			if(!_negotiated)
+				return false;
+			if(_shared == null)
+				_shared = FederatedSharedMemory.isColocated(ctx.channel().remoteAddress());
+			return _shared;
+		}
+
+		@Override
+		public boolean acceptOutboundMessage(Object msg) {
+			return !(msg instanceof ByteBuf || msg instanceof ChunkedInput);
+		}
+
+		@Override
+		public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+			if(_chunkSize > 0 && acceptOutboundMessage(msg) && hasLargeBlock(msg, _chunkSize)) {
+				final ChunkedMessage cm = new ChunkedMessage(msg, _chunkSize, _adaptive, isShared(ctx),
+					ctx.channel().remoteAddress());
+				ctx.write(cm, promise);
+				deleteOnFailure(promise, cm._chunks._segments);
+			}
+			else {
+				try {
+					super.write(ctx, msg, promise);
+				}
+				finally {
+					deleteOnFailure(promise, _segments);
+					_segments = null;
+				}
+			}
+		}
+
+		@Override
+		protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) {
+			final int initCapacity = (int) Math.min(estimateSize(msg) + 4, Integer.MAX_VALUE);
+			if(preferDirect)
+				return ctx.alloc().ioBuffer(initCapacity);
+			else
+				return ctx.alloc().heapBuffer(initCapacity);
+		}
+
+		@Override
+		protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+			final long t0 = System.nanoTime();
+			final int pos = out.writerIndex();
+			out.writeInt(0); // placeholder for the frame length
+			final Chunks chunks = isShared(ctx) ? new Chunks(0, true) : null;
+			if(chunks != null)
+				_segments = chunks._segments;
+			FederatedWireCodec.write(out, msg, chunks);
+			if(_adaptive)
+				compressFrame(ctx.alloc(), out, pos + 4, getDensity(msg), ctx.channel().remoteAddress());
+			out.setInt(pos, out.writerIndex() - pos - 4);
+			setCodecTime(msg, System.nanoTime() - t0);
+			setWireSize(msg, out.writerIndex() - pos);
+		}
+	}
+
+	private static void deleteOnFailure(ChannelPromise promise, List<FederatedSharedMemory.Segment> segments) {
+		// segments of unsent messages are never received and deleted by the receiver
+		if(segments != null && !promise.isVoid())
+			promise.addListener(f -> {
+				if(!f.isSuccess())
+					segments.forEach(FederatedSharedMemory.Segment::delete);
+			});
+	}
+
+	/**
+	 * Decoder of length-prefixed frames into federated messages, which reads the message directly from the received
+	 * frame. If the message contains chunked matrix blocks, the following chunk frames are assembled into the target
+	 * blocks and the message is passed on once all chunks arrived.
+	 */
+	public static class Decoder extends LengthFieldBasedFrameDecoder {
+		private final List<ChunkTarget> _targets = new ArrayList<>();
+		private Boolean _shared; // large blocks via shared memory, null until the remote site is known
+		private Object _pending = null;
+		private int _current = 0;
+		private long _time = 0; // decoding time of the current message (nsec)
+		private long _size = 0; // received bytes of the current message
+
+		public Decoder() {
+			this(null);
+		}
+
+		/**
+		 * Create a new decoder.
+		 *
+		 * @param shared true to accept shared memory segments of any remote site, false to reject them, and null to
+		 *               accept them from colocated sites if shared memory is configured
+		 */
+		public Decoder(Boolean shared) {
+			super(Integer.MAX_VALUE, 0, 4, 0, 4);
+			_shared = (shared != null || FederatedSharedMemory.isEnabled()) ? shared : false;
+		}
+
+		/**
+		 * Indicates if large blocks are received via shared memory, which requires a colocated remote site.
+		 *
+		 * @param ctx channel handler context of the decoder
+		 * @return true if shared memory segments are accepted
+		 */
+		protected boolean isShared(ChannelHandlerContext ctx) {
+			if(_shared == null)
+				_shared = FederatedSharedMemory.isColocated(ctx.channel().remoteAddress());
+			return _shared;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			// advertise the shared memory directory to the encoder of the remote site, through the entire pipeline
+			final String dir = isShared(ctx) ? FederatedSharedMemory.getDirectory() : null;
+			if(dir != null) {
+				final ByteBuf out = ctx.alloc().ioBuffer(dir.length() + 16);
+				out.writeInt(0); // placeholder for the frame length
+				out.writeByte(MSG_HANDSHAKE);
+				writeString(out, dir);
+				out.setInt(0, out.writerIndex() - 4);
+				ctx.channel().writeAndFlush(out);
+			}
+			super.channelActive(ctx);
+		}
+
+		@Override
+		protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+			ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+			if(frame == null)
+				return null;
+			final long t0 = System.nanoTime();
+			final long size = frame.readableBytes() + 4; // incl the length field
+			if(frame.getByte(frame.readerIndex()) == MSG_COMPRESSED)
+				frame = decompressFrame(ctx.alloc(), frame);
+			try {
+				if(frame.getByte(frame.readerIndex()) == MSG_HANDSHAKE) {
+					frame.readByte();
+					final Encoder encoder = ctx.pipeline().get(Encoder.class);
+					if(encoder != null)
+						encoder.setSharedDirectory(readString(frame));
+					return null;
+				}
+				if(_pending == null) {
+					final Object msg = read(frame, _targets, isShared(ctx));
+					if(_targets.isEmpty()) {
+						setCodecTime(msg, System.nanoTime() - t0);
+						setWireSize(msg, size);
+						return msg;
+					}
+					_pending = msg;
+					_current = 0;
+					_time = System.nanoTime() - t0;
+					_size = size;
+					return null;
+				}
+				// chunk of the current target block
+				final byte type = frame.readByte();
+				if(type != MSG_CHUNK)
+					throw new IOException("Expected chunk frame but received message type: " + type);
+				if(_targets.get(_current).append(frame))
+					_current++;
+				_time += System.nanoTime() - t0;
+				_size += size;
+				if(_current < _targets.size())
+					return null;
+				final Object msg = _pending;
+				_pending = null;
+				_targets.clear();
+				setCodecTime(msg, _time);
+				setWireSize(msg, _size);
+				return msg;
+			}
+			finally {
+				frame.release();
+			}
+		}
+	}
+
+	/**
+	 * Get the configured max serialized size of inlined matrix blocks.
+	 *
+	 * @return chunk size in bytes (<=0 if chunking is disabled)
+	 */
+	public static long getConfiguredChunkSize() {
+		return (long) ConfigurationManager.getFederatedChunkSize() * 1024 * 1024;
+	}
+
+	/**
+	 * Compress the content of a frame in place, if the adaptive compressor chooses a codec and the compressed content
+	 * is smaller than the uncompressed content.
+	 *
+	 * @param alloc   allocator of the temporary buffer
+	 * @param out     output buffer with the frame content from the given start index to the writer index
+	 * @param start   start index of the frame content (after the frame length)
+	 * @param density fraction of non-zero bytes of the frame content
+	 * @param remote  remote address of the channel
+	 */
+	private static void compressFrame(ByteBufAllocator alloc, ByteBuf out, int start, double density,
+		SocketAddress remote) {
+		final int len = out.writerIndex() - start;
+		final Codec codec = FederatedCompressor.choose(len, density, remote);
+		if(codec == Codec.NONE)
+			return;
+		final ByteBuf tmp = alloc.ioBuffer(len / 2 + 64);
+		try {
+			if(FederatedCompressor.compress(codec, out, start, len, tmp)) {
+				out.writerIndex(start);
+				out.writeByte(MSG_COMPRESSED);
+				out.writeByte(codec.ordinal());
+				out.writeInt(len);
+				out.writeBytes(tmp);
+			}
+		}
+		finally {
+			tmp.release();
+		}
+	}
+
+	private static ByteBuf decompressFrame(ByteBufAllocator alloc, ByteBuf frame) throws IOException {
+		ByteBuf ret = null;
+		try {
+			frame.readByte(); // MSG_COMPRESSED
+			final byte codec = frame.readByte();
+			if(codec <= 0 || codec >= CODECS.length)
+				throw new IOException("Invalid federated compression codec: " + codec);
+			final int len = frame.readInt();
+			ret = alloc.buffer(len);
+			FederatedCompressor.decompress(CODECS[codec], frame, ret, len);
+			return ret;
+		}
+		catch(Exception ex) {
+			if(ret != null)
+				ret.release();
+			throw ex;
+		}
+		finally {
+			frame.release();
+		}
+	}
+
+	/**
+	 * Record the encoding or decoding time of a message at its request batch or response, which provides the
+	 * serialization and deserialization stages of the federated latency statistics.
+	 *
+	 * @param msg  the federated message
+	 * @param time codec time in ns
+	 */
+	private static void setCodecTime(Object msg, long time) {
+		final Object payload = (msg instanceof FederatedMessage) ? ((FederatedMessage) msg).getPayload() : msg;
+		if(payload instanceof FederatedRequest[] && ((FederatedRequest[]) payload).length > 0)
+			((FederatedRequest[]) payload)[0].setCodecTime(time);
+		else if(payload instanceof FederatedResponse)
+			((FederatedResponse) payload).setCodecTime(time);
+	}
+
+	/**
+	 * Record the size of the encoded message on the wire (incl all chunk frames) at its request batch or response,
+	 * which allows the coordinator to observe the link bandwidth from the round trip of a request batch.
+	 *
+	 * @param msg  the federated message
+	 * @param size wire size in bytes
+	 */
+	private static void setWireSize(Object msg, long size) {
+		final Object payload = (msg instanceof FederatedMessage) ? ((FederatedMessage) msg).getPayload() : msg;
+		if(payload instanceof FederatedRequest[] && ((FederatedRequest[]) payload).length > 0)
+			((FederatedRequest[]) payload)[0].setWireSize(size);
+		else if(payload instanceof FederatedResponse)
+			((FederatedResponse) payload).setWireSize(size);
+	}
+
+	/**
+	 * Get the size of a message on the wire recorded by the encoder or decoder.
+	 *
+	 * @param msg the federated message
+	 * @return wire size in bytes, 0 if unknown
+	 */
+	public static long getWireSize(Object msg) {
+		final Object payload = (msg instanceof FederatedMessage) ? ((FederatedMessage) msg).getPayload() : msg;
+		if(payload instanceof FederatedRequest[] && ((FederatedRequest[]) payload).length > 0)
+			return ((FederatedRequest[]) payload)[0].getWireSize();
+		else if(payload instanceof FederatedResponse)
+			return ((FederatedResponse) payload).getWireSize();
+		return 0;
+	}
+
+	/**
+	 * Get the encoding or decoding time of a message recorded by the encoder or decoder.
+	 *
+	 * @param msg the federated message
+	 * @return codec time in ns, 0 if unknown
+	 */
+	static long getCodecTime(Object msg) {
+		final Object payload = (msg instanceof FederatedMessage) ? ((FederatedMessage) msg).getPayload() : msg;
+		if(payload instanceof FederatedRequest[] && ((FederatedRequest[]) payload).length > 0)
+			return ((FederatedRequest[]) payload)[0].getCodecTime();
+		else if(payload instanceof FederatedResponse)
+			return ((FederatedResponse) payload).getCodecTime();
+		return 0;
+	}
+
+	/**
+	 * Estimate the fraction of non-zero bytes of a message from the dense matrix blocks it contains, which serves as
+	 * a hint of the achievable compression ratio.
+	 *
+	 * @param msg the federated message
+	 * @return the estimated density in [0,1], 1 if unknown
+	 */
+	private static double getDensity(Object msg) {
+		final long[] bytes = new long[2]; // non-zero bytes, total bytes
+		addDensity(msg, bytes);
+		return bytes[1] > 0 ? (double) bytes[0] / bytes[1] : 1;
+	}
+
+	private static void addDensity(Object obj, long[] bytes) {
+		if(obj instanceof FederatedRequest[]) {
+			for(FederatedRequest fr : (FederatedRequest[]) obj)
+				for(int i = 0; i < fr.getNumParams(); i++)
+					addDensity(fr.getParam(i), bytes);
+		}
+		else if(obj instanceof FederatedResponse) {
+			final Object[] data = ((FederatedResponse) obj).getDataNoCheck();
+			if(data != null)
+				for(Object o : data)
+					addDensity(o, bytes);
+		}
+		else if(obj instanceof FederatedMessage)
+			addDensity(((FederatedMessage) obj).getPayload(), bytes);
+		else if(obj instanceof FederatedContent)
+			addDensity(((FederatedContent) obj).getBlock(), bytes);
+		else if(obj instanceof MatrixBlock) {
+			final MatrixBlock mb = (MatrixBlock) obj;
+			final long size = mb.getExactSerializedSize();
+			// dense blocks are serialized with their zeros, sparse and compressed blocks only with non-zeros
+			final boolean dense = !mb.isInSparseFormat() && !(mb instanceof CompressedMatrixBlock);
+			bytes[0] += dense ? Math.min(size, mb.getNonZeros() * 8 + 64) : size;
+			bytes[1] += size;
+		}
+	}
+
+	private static boolean hasLargeBlock(Object msg, long chunkSize) {
+		if(msg instanceof FederatedRequest[]) {
+			for(FederatedRequest fr : (FederatedRequest[]) msg)
+				for(int i = 0; i < fr.getNumParams(); i++)
+					if(isLarge(fr.getParam(i), chunkSize))
+						return true;
+		}
+		else if(msg instanceof FederatedResponse) {
+			final Object[] data = ((FederatedResponse) msg).getDataNoCheck();
+			if(data != null)
+				for(Object obj : data)
+					if(isLarge(obj, chunkSize) || (obj instanceof FederatedResponse && hasLargeBlock(obj, chunkSize)))
+						return true;
+		}
+		else if(msg instanceof FederatedMessage)
+			return hasLargeBlock(((FederatedMessage) msg).getPayload(), chunkSize);
+		return false;
+	}
+
+	private static boolean isLarge(Object obj, long chunkSize) {
+		if(obj instanceof FederatedContent)
+			return isLarge(((FederatedContent) obj).getBlock(), chunkSize);
+		// exact class checks, because compressed blocks are sent in their compressed representation
+		return obj != null && (obj.getClass() == MatrixBlock.class || obj.getClass() == FrameBlock.class)
+			&& ((CacheBlock<?>) obj).getExactSerializedSize() > chunkSize;
+	}
+
+	/**
+	 * Matrix and frame blocks of a message that are sent in chunks of rows, in order of their occurrence in the
+	 * message, unless large blocks are exchanged via shared memory.
+	 */
+	private static class Chunks {
+		private final long _chunkSize;
+		private final boolean _shared;
+		private final List<CacheBlock<?>> _blocks = new ArrayList<>();
+		private final List<Integer> _rows = new ArrayList<>();
+		private final List<FederatedSharedMemory.Segment> _segments = new ArrayList<>();
+
+		public Chunks(long chunkSize, boolean shared) {
+			_chunkSize = chunkSize;
+			_shared = shared;
+		}
+
+		public boolean isLarge(Object obj) {
+			return _chunkSize > 0 && FederatedWireCodec.isLarge(obj, _chunkSize);
+		}
+
+		public boolean isShared(Object obj) {
+			return _shared && FederatedSharedMemory.isEligible(obj);
+		}
+
+		public void add(CacheBlock<?> cb) {
+			// number of rows per chunk according to the average serialized row size
+			final long size = cb.getExactSerializedSize();
+			_blocks.add(cb);
+			_rows.add((int) Math.max(1, Math.min(cb.getNumRows(), cb.getNumRows() * _chunkSize / size)));
+		}
+	}
+
+	/**
+	 * Lazily encoded frames of a message with large matrix or frame blocks: first the message frame with the block headers,
+	 * then one frame per row-block chunk of every large block.
+	 */
+	private static class ChunkedMessage implements ChunkedInput<ByteBuf> {
+		private final Object _msg;
+		private final Chunks _chunks;
+		private final boolean _adaptive;
+		private final SocketAddress _remote;
+		private boolean _head = true;
+		private int _block = 0;
+		private int _row = 0;
+		private long _progress = 0;
+		private long _time = 0; // encoding time of all frames so far (nsec)
+
+		public ChunkedMessage(Object msg, long chunkSize, boolean adaptive, boolean shared, SocketAddress remote) {
+			_msg = msg;
+			_chunks = new Chunks(chunkSize, shared);
+			_adaptive = adaptive;
+			_remote = remote;
+		}
+
+		@Override
+		public boolean isEndOfInput() {
+			return !_head && _block >= _chunks._blocks.size();
+		}
+
+		@Override
+		public void close() {
+			// nothing to release, chunks are encoded on demand
+		}
+
+		@Override
+		@Deprecated
+		public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+			return readChunk(ctx.alloc());
+		}
+
+		@Override
+		public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+			if(isEndOfInput())
+				return null;
+			final long t0 = System.nanoTime();
+			ByteBuf out = null;
+			try {
+				if(_head) {
+					out = allocator.ioBuffer(1024);
+					final int pos = out.writerIndex();
+					out.writeInt(0); // placeholder for the frame length
+					FederatedWireCodec.write(out, _msg, _chunks);
+					if(_adaptive)
+						compressFrame(allocator, out, pos + 4, 1, _remote);
+					out.setInt(pos, out.writerIndex() - pos - 4);
+					_head = false;
+				}
+				else {
+					final CacheBlock<?> cb = _chunks._blocks.get(_block);
+					final int ru = Math.min(_row + _chunks._rows.get(_block), cb.getNumRows());
+					final CacheBlock<?> chunk = cb.slice(_row, ru - 1);
+					out = allocator.ioBuffer((int) Math.min(chunk.getExactSerializedSize() + 16, Integer.MAX_VALUE));
+					final int pos = out.writerIndex();
+					out.writeInt(0); // placeholder for the frame length
+					out.writeByte(MSG_CHUNK);
+					out.writeInt(_row);
+					chunk.write(new ByteBufDataOutput(out));
+					if(_adaptive)
+						compressFrame(allocator, out, pos + 4, getDensity(chunk), _remote);
+					out.setInt(pos, out.writerIndex() - pos - 4);
+					_row = ru;
+					if(_row >= cb.getNumRows()) {
+						_block++;
+						_row = 0;
+					}
+				}
+				_progress += out.readableBytes();
+				_time += System.nanoTime() - t0;
+				setCodecTime(_msg, _time);
+				setWireSize(_msg, _progress);
+				return out;
+			}
+			catch(Exception ex) {
+				if(out != null)
+					out.release();
+				throw ex;
+			}
+		}
+
+		@Override
+		public long length() {
+			return -1;
+		}
+
+		@Override
+		public long progress() {
+			return _progress;
+		}
+	}
+
+	/**
+	 * Target block of a chunked transfer, which is filled incrementally by the received chunks of rows.
+	 */
+	private static abstract class ChunkTarget {
+		private final int _rlen;
+		private int _row = 0;
+
+		protected ChunkTarget(int rlen) {
+			_rlen = rlen;
+		}
+
+		/** @return true if the target block is complete */
+		public boolean append(ByteBuf in) throws IOException {
+			final int rl = in.readInt();
+			if(rl != _row)
+				throw new IOException("Received chunk at row " + rl + " but expected row " + _row + ".");
+			_row += appendChunk(new ByteBufDataInput(in), rl);
+			if(_row < _rlen)
+				return false;
+			complete();
+			return true;
+		}
+
+		/** @return number of rows of the appended chunk */
+		protected abstract int appendChunk(ByteBufDataInput in, int rl) throws IOException;
+
+		protected abstract void complete();
+	}
+
+	private static class MatrixChunkTarget extends ChunkTarget {
+		private final MatrixBlock _mb;
+		private long _nnz = 0;
+
+		public MatrixChunkTarget(int rlen, int clen, boolean sparse, long nnz) {
+			super(rlen);
+			_mb = new MatrixBlock(rlen, clen, sparse, Math.max(nnz, 0));
+			_mb.allocateBlock();
+		}
+
+		@Override
+		protected int appendChunk(ByteBufDataInput in, int rl) throws IOException {
+			final MatrixBlock chunk = new MatrixBlock();
+			chunk.readFields(in);
+			_nnz += chunk.getNonZeros();
+			_mb.copy(rl, rl + chunk.getNumRows() - 1, 0, _mb.getNumColumns() - 1, chunk, false);
+			return chunk.getNumRows();
+		}
+
+		@Override
+		protected void complete() {
+			_mb.setNonZeros(_nnz);
+		}
+	}
+
+	private static class FrameChunkTarget extends ChunkTarget {
+		private final FrameBlock _fb;
+
+		public FrameChunkTarget(int rlen, FrameBlock meta) {
+			super(rlen);
+			// columns are allocated by the first chunk according to its array types
+			_fb = new FrameBlock(meta.getSchema(), meta.getColumnNames(false), rlen);
+			_fb.setColumnMetadata(meta.getColumnMetadata());
+		}
+
+		@Override
+		protected int appendChunk(ByteBufDataInput in, int rl) throws IOException {
+			final FrameBlock chunk = new FrameBlock();
+			chunk.readFields(in);
+			_fb.copy(rl, rl + chunk.getNumRows() - 1, 0, _fb.getNumColumns() - 1, chunk);
+			return chunk.getNumRows();
+		}
+
+		@Override
+		protected void complete() {
+			// nothing to finalize, frames carry no non-zero counts
+		}
+	}
+
+	/**
+	 * Data output that writes directly into a netty buffer, including the fast serialization of entire dense and
+	 * sparse blocks.
+	 */
+	private static class ByteBufDataOutput extends ByteBufOutputStream implements MatrixBlockDataOutput {
+		private final ByteBuf _buf;
+
+		public ByteBufDataOutput(ByteBuf buf) {
+			super(buf);
+			_buf = buf;
+		}
+
+		@Override
+		public void writeDoubleArray(int len, double[] varr) {
+			_buf.ensureWritable(len * 8);
+			for(int i = 0; i < len; i++)
+				_buf.writeDouble(varr[i]);
+		}
+
+		@Override
+		public void writeSparseRows(int rlen, SparseBlock rows) {
+			final int lrlen = Math.min(rows.numRows(), rlen);
+			for(int i = 0; i < lrlen; i++) {
+				if(!rows.isEmpty(i)) {
+					final int apos = rows.pos(i);
+					final int alen = rows.size(i);
+					final int[] aix = rows.indexes(i);
+					final double[] avals = rows.values(i);
+					_buf.ensureWritable(4 + alen * 12);
+					_buf.writeInt(alen);
+					for(int j = apos; j < apos + alen; j++) {
+						_buf.writeInt(aix[j]);
+						_buf.writeDouble(avals[j]);
+					}
+				}
+				else
+					_buf.writeInt(0);
+			}
+			// remaining empty rows
+			for(int i = lrlen; i < rlen; i++)
+				_buf.writeInt(0);
+		}
+	}
+
+	/**
+	 * Data input that reads directly from a netty buffer, including the fast deserialization of entire dense and
+	 * sparse blocks.
+	 */
+	private static class ByteBufDataInput extends ByteBufInputStream implements MatrixBlockDataInput {
+		private final ByteBuf _buf;
+
+		public ByteBufDataInput(ByteBuf buf) {
+			super(buf);
+			_buf = buf;
+		}
+
+		@Override
+		public long readDoubleArray(int len, double[] varr) {
+			long nnz = 0;
+			for(int i = 0; i < len; i++)
+				nnz += (varr[i] = _buf.readDouble()) != 0 ? 1 : 0;
+			return nnz;
+		}
+
+		@Override
+		public long readSparseRows(int rlen, long nnz, SparseBlock rows) throws IOException {
+			long gnnz = 0;
+			for(int i = 0; i < rlen; i++) {
+				final int lnnz = _buf.readInt();
+				if(lnnz > 0) {
+					rows.allocate(i, lnnz);
+					for(int j = 0; j < lnnz; j++)
+						rows.append(i, _buf.readInt(), _buf.readDouble());
+					gnnz += lnnz;
+				}
+			}
+			if(gnnz != nnz)
+				throw new IOException("Invalid number of read nnz: " + gnnz + " vs " + nnz);
+			return nnz;
+		}
+	}
+}
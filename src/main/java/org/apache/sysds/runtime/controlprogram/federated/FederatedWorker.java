@@ -42,6 +42,7 @@ import org.apache.sysds.conf.ConfigurationManager;
 import org.apache.sysds.conf.DMLConfig;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport.LocalMode;
 import org.apache.sysds.runtime.controlprogram.federated.compression.CompressionDecoderEndStatisticsHandler;
 import org.apache.sysds.runtime.controlprogram.federated.compression.CompressionDecoderStartStatisticsHandler;
 import org.apache.sysds.runtime.controlprogram.federated.compression.CompressionEncoderEndStatisticsHandler;
@@ -56,17 +57,14 @@ import org.apache.sysds.runtime.lineage.LineageItem;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalChannel;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.stream.ChunkedWriteHandler;
 
-@SuppressWarnings("deprecation")
 public class FederatedWorker {
 	protected static Logger log = Logger.getLogger(FederatedWorker.class);
 
@@ -75,7 +73,8 @@ public class FederatedWorker {
 	private final FederatedReadCache _frc;
 	private final FederatedWorkloadAnalyzer _fan;
 	private final boolean _debug;
-	private Timing networkTimer = new Timing();
+	private FederatedRequestExecutor _exec;
+	private FederatedInstructionCache _fic;
 
 	public FederatedWorker(int port, boolean debug) {
 		_flt = new FederatedLookupTable();
@@ -99,16 +98,21 @@ public class FederatedWorker {
 		log.info("Setting up Federated Worker on port " + _port);
 		int par_conn = ConfigurationManager.getDMLConfig().getIntValue(DMLConfig.FEDERATED_PAR_CONN);
 		final int EVENT_LOOP_THREADS = (par_conn > 0) ? par_conn : InfrastructureAnalyzer.getLocalParallelism();
-		NioEventLoopGroup bossGroup = new NioEventLoopGroup(1);
+		EventLoopGroup bossGroup = FederatedTransport.createEventLoopGroup(1);
 		ThreadPoolExecutor workerTPE = new ThreadPoolExecutor(1, Integer.MAX_VALUE, 10, TimeUnit.SECONDS,
 			new SynchronousQueue<Runnable>(true));
-		NioEventLoopGroup workerGroup = new NioEventLoopGroup(EVENT_LOOP_THREADS, workerTPE);
+		EventLoopGroup workerGroup = FederatedTransport.createEventLoopGroup(EVENT_LOOP_THREADS, workerTPE);
+		int par_req = ConfigurationManager.getFederatedParRequests();
+		_exec = new FederatedRequestExecutor((par_req > 0) ? par_req : InfrastructureAnalyzer.getLocalParallelism());
+		_exec.setWeights(ConfigurationManager.getFederatedTenantWeights());
+		_exec.setQuota(ConfigurationManager.getFederatedTenantQuota() * 1024 * 1024);
+		int inst_cache = ConfigurationManager.getFederatedInstCacheSize();
+		_fic = (inst_cache > 0) ? new FederatedInstructionCache(inst_cache) : null;
 
 		final boolean ssl = ConfigurationManager.isFederatedSSL();
+		final LocalMode local = FederatedTransport.getLocalMode();
 		try {
-			final ServerBootstrap b = new ServerBootstrap();
-			b.group(bossGroup, workerGroup);
-			b.channel(NioServerSocketChannel.class);
+			final ServerBootstrap b = FederatedTransport.createServerBootstrap(bossGroup, workerGroup);
 			b.childHandler(createChannel(ssl));
 			b.option(ChannelOption.SO_BACKLOG, 128);
 			b.childOption(ChannelOption.SO_KEEPALIVE, true);
@@ -116,6 +120,14 @@ public class FederatedWorker {
 			log.info("Starting Federated Worker server at port: " + _port);
 			ChannelFuture f = b.bind(_port).sync();
 			log.info("Started Federated Worker at port: " + _port);
+			if(local != LocalMode.NONE) {
+				// in-JVM transport for coordinators of the same process, closed with the event loop groups
+				FederatedTransport.createLocalServerBootstrap(bossGroup, workerGroup)
+					.childHandler(createLocalChannel(local == LocalMode.REFERENCE))
+					.bind(FederatedTransport.getLocalAddress(_port)).sync();
+				FederatedTransport.registerLocalWorker(_port, local);
+				log.info("Started Federated Worker local channel (" + local + ") at port: " + _port);
+			}
 			f.channel().closeFuture().sync();
 		}
 		catch(Exception e) {
@@ -127,33 +139,20 @@ public class FederatedWorker {
 		}
 		finally {
 			log.info("Federated Worker Shutting down.");
+			if(local != LocalMode.NONE)
+				FederatedTransport.unregisterLocalWorker(_port);
 			workerGroup.shutdownGracefully();
 			bossGroup.shutdownGracefully();
+			workerTPE.shutdown(); // not owned by the event loop group
+			_exec.shutdown();
+			_flt.getContentStore().clear();
+			FederatedTracer.closeWorker(_port);
 		}
 	}
 
-	public static class FederatedResponseEncoder extends ObjectEncoder {
-		@Override
-		protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Serializable msg, boolean preferDirect)
-			throws Exception {
-			int initCapacity = 256; // default initial capacity
-			if(msg instanceof FederatedResponse) {
-				FederatedResponse response = (FederatedResponse) msg;
-				try {
-					initCapacity = Math.toIntExact(response.estimateSerializationBufferSize());
-				}
-				catch(ArithmeticException ae) { // size of cache block exceeds integer limits
-					initCapacity = Integer.MAX_VALUE;
-				}
-			}
-			if(preferDirect)
-				return ctx.alloc().ioBuffer(initCapacity);
-			else
-				return ctx.alloc().heapBuffer(initCapacity);
-		}
-
+	public static class FederatedResponseEncoder extends FederatedWireCodec.Encoder {
 		@Override
-		protected void encode(ChannelHandlerContext ctx, Serializable msg, ByteBuf out) throws Exception {
+		protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
 			LineageItem objLI = null;
 			boolean linReusePossible = (!ReuseCacheType.isNone() && msg instanceof FederatedResponse);
 			if(linReusePossible) {
@@ -164,20 +163,26 @@ public class FederatedWorker {
 
 					byte[] cachedBytes = LineageCache.reuseSerialization(objLI);
 					if(cachedBytes != null) {
+						// the cached frame carries the memory pressure and worker times of its first response
+						final int start = out.writerIndex();
 						out.writeBytes(cachedBytes);
-						return;
+						if(FederatedWireCodec.patchResponse(out, start, response))
+							return;
+						out.writerIndex(start);
 					}
 				}
 			}
 
-			linReusePossible &= (objLI != null);
+			// no reuse of messages that refer to shared memory segments, which are deleted by the receiver
+			linReusePossible &= (objLI != null) && !isShared(ctx);
 
 			int startIdx = linReusePossible ? out.writerIndex() : 0;
 			long t0 = linReusePossible ? System.nanoTime() : 0;
 			super.encode(ctx, msg, out);
 			long t1 = linReusePossible ? System.nanoTime() : 0;
 
-			if(linReusePossible) {
+			// only uncompressed response frames can be reused with updated fields
+			if(linReusePossible && FederatedWireCodec.patchResponse(out, startIdx, (FederatedResponse) msg)) {
 				out.readerIndex(startIdx);
 				byte[] dst = new byte[out.readableBytes()];
 				out.readBytes(dst);
@@ -207,6 +212,10 @@ public class FederatedWorker {
 				@Override
 				public void initChannel(SocketChannel ch) {
 					final ChannelPipeline cp = ch.pipeline();
+					final FederatedWanEmulator wan = (ch.remoteAddress() != null) ?
+						FederatedWanEmulator.create(ch.remoteAddress().getHostString(), -1) : null;
+					if(wan != null)
+						cp.addLast("WanEmulator", wan);
 					if(sslEnabled)
 						cp.addLast(cont2.newHandler(ch.alloc()));
 					
@@ -215,15 +224,13 @@ public class FederatedWorker {
 					cp.addLast("CompressionDecodingStartStatistics", new CompressionDecoderStartStatisticsHandler());
 					compressionStrategy.ifPresent(strategy -> cp.addLast("CompressionDecoder", strategy.left));
 					cp.addLast("CompressionDecoderEndStatistics", new CompressionDecoderEndStatisticsHandler());
-					cp.addLast("ObjectDecoder",
-						new ObjectDecoder(Integer.MAX_VALUE,
-							ClassResolvers.weakCachingResolver(ClassLoader.getSystemClassLoader())));
+					cp.addLast("FederatedDecoder", FederationUtils.decoder());
 					cp.addLast("CompressionEncodingEndStatistics", new CompressionEncoderEndStatisticsHandler());
 					compressionStrategy.ifPresent(strategy -> cp.addLast("CompressionEncoder", strategy.right));
 					cp.addLast("CompressionEncodingStartStatistics", new CompressionEncoderStartStatisticsHandler());
-					cp.addLast("ObjectEncoder", new ObjectEncoder());
-					cp.addLast(FederationUtils.decoder(), new FederatedResponseEncoder());
-					cp.addLast(new FederatedWorkerHandler(_flt, _frc, _fan, networkTimer));
+					cp.addLast("ChunkedWriter", new ChunkedWriteHandler());
+					cp.addLast("FederatedEncoder", new FederatedResponseEncoder());
+					cp.addLast(new FederatedWorkerHandler(_flt, _frc, _fan, _exec, _fic, new Timing()));
 				}
 			};
 		}
@@ -231,4 +238,21 @@ public class FederatedWorker {
 			throw new DMLRuntimeException("Failed creating channel SSL", e);
 		}
 	}
+
+	private ChannelInitializer<LocalChannel> createLocalChannel(boolean reference) {
+		return new ChannelInitializer<>() {
+			@Override
+			public void initChannel(LocalChannel ch) {
+				final ChannelPipeline cp = ch.pipeline();
+				if(!reference) {
+					cp.addLast("FederatedDecoder", FederationUtils.decoder());
+					cp.addLast("ChunkedWriter", new ChunkedWriteHandler());
+					cp.addLast("FederatedEncoder", new FederatedResponseEncoder());
+				}
+				else
+					cp.addLast("ReferenceCopy", new FederatedTransport.ReferenceCopyHandler());
+				cp.addLast(new FederatedWorkerHandler(_flt, _frc, _fan, _exec, _fic, new Timing()));
+			}
+		};
+	}
 }
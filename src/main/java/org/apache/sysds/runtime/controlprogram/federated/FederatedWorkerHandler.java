@@ -21,10 +21,15 @@ package org.apache.sysds.runtime.controlprogram.federated;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.logging.Log;
@@ -38,6 +43,7 @@ import org.apache.sysds.common.Types.FileFormat;
 import org.apache.sysds.conf.ConfigurationManager;
 import org.apache.sysds.conf.DMLConfig;
 import org.apache.sysds.lops.Compression.CompressConfig;
+import org.apache.sysds.hops.OptimizerUtils;
 import org.apache.sysds.parser.DataExpression;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.compress.CompressedMatrixBlockFactory;
@@ -50,6 +56,7 @@ import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
 import org.apache.sysds.runtime.controlprogram.context.SparkExecutionContext;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.DataObjectModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventStageModel;
@@ -84,10 +91,11 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.local.LocalAddress;
 
 /**
- * Note: federated worker handler created for every command; and concurrent parfor threads at coordinator need separate
- * execution contexts at the federated sites too
+ * Note: federated worker handler created for every connection, which might be reused for many commands; and concurrent
+ * parfor threads at coordinator need separate execution contexts at the federated sites too
  */
 public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 	private static final Log LOG = LogFactory.getLog(FederatedWorkerHandler.class.getName());
@@ -97,27 +105,52 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 
 	/** Read cache shared by all worker handlers */
 	private final FederatedReadCache _frc;
+	/** Network time between responses and requests of this connection, only accessed from its event loop */
 	private Timing _timing = null;
 	
 	/** Federated workload analyzer */
 	private final FederatedWorkloadAnalyzer _fan;
 
-	private String _remoteAddress = FederatedLookupTable.NOHOST;
+	/** Execution pool shared by all worker handlers (null for execution on the event loop) */
+	private final FederatedRequestExecutor _exec;
+
+	/** Parsed instruction cache shared by all worker handlers (null for parsing every instruction) */
+	private final FederatedInstructionCache _fic;
+
+	/** Tracer of this federated worker (null if tracing is disabled) */
+	private volatile FederatedTracer _tracer = null;
 
 	/**
 	 * Create a Federated Worker Handler.
 	 * 
-	 * Note: federated worker handler created for every command; and concurrent parfor threads at coordinator need
-	 * separate execution contexts at the federated sites too
+	 * Note: federated worker handler created for every connection, which might be reused for many commands; and
+	 * concurrent parfor threads at coordinator need separate execution contexts at the federated sites too
 	 * 
 	 * @param flt The Federated Lookup Table of the current Federated Worker.
 	 * @param frc Read cache shared by all worker handlers.
 	 * @param fan A Workload analyzer object (should be null if not used).
 	 */
 	public FederatedWorkerHandler(FederatedLookupTable flt, FederatedReadCache frc, FederatedWorkloadAnalyzer fan) {
+		this(flt, frc, fan, null, null);
+	}
+
+	/**
+	 * Create a Federated Worker Handler, which executes the received requests in the given execution pool instead of
+	 * the netty event loop of the connection.
+	 * 
+	 * @param flt  The Federated Lookup Table of the current Federated Worker.
+	 * @param frc  Read cache shared by all worker handlers.
+	 * @param fan  A Workload analyzer object (should be null if not used).
+	 * @param exec Execution pool shared by all worker handlers (null for execution on the event loop).
+	 * @param fic  Parsed instruction cache shared by all worker handlers (null for parsing every instruction).
+	 */
+	public FederatedWorkerHandler(FederatedLookupTable flt, FederatedReadCache frc, FederatedWorkloadAnalyzer fan,
+		FederatedRequestExecutor exec, FederatedInstructionCache fic) {
 		_flt = flt;
 		_frc = frc;
 		_fan = fan;
+		_exec = exec;
+		_fic = fic;
 		
 		if(DMLScript.LINEAGE) {
 			// Compiler assisted optimizations are not applicable for Fed workers.
@@ -132,18 +165,87 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		this(flt, frc, fan);
 		_timing = timing;
 	}
+
+	public FederatedWorkerHandler(FederatedLookupTable flt, FederatedReadCache frc, FederatedWorkloadAnalyzer fan,
+		FederatedRequestExecutor exec, FederatedInstructionCache fic, Timing timing) {
+		this(flt, frc, fan, exec, fic);
+		_timing = timing;
+	}
 	
 	@Override
 	public void channelRead(ChannelHandlerContext ctx, Object msg) {
-		ctx.writeAndFlush(createResponse(msg, ctx.channel().remoteAddress()))
-			.addListener(new CloseListener());
+		final SocketAddress remoteAddress = ctx.channel().remoteAddress();
+		final Object payload = (msg instanceof FederatedMessage) ? ((FederatedMessage) msg).getPayload() : msg;
+		final long received = System.nanoTime();
+		if(_tracer == null && FederatedTracer.isEnabled()) {
+			_tracer = FederatedTracer.getWorker(FederatedTransport.getPort(ctx.channel().localAddress()));
+		}
+		stopTiming();
+		final Runnable task = () -> {
+			final long started = System.nanoTime();
+			final FederatedResponse res = createResponse(payload, remoteAddress);
+			// piggyback the stage times, which allows the coordinator to separate the network time
+			final long deserialize = FederatedWireCodec.getCodecTime(payload);
+			final long queue = started - received;
+			final long execute = System.nanoTime() - started;
+			res.setWorkerTimes(deserialize, queue, execute);
+			// multiplexed connection: echo the correlation ID of the request batch
+			final Object response = (msg instanceof FederatedMessage) ?
+				new FederatedMessage(((FederatedMessage) msg).getCorrelationID(), res) : res;
+			final String key = (payload instanceof FederatedRequest[]) ?
+				FederatedStatistics.getFedLatencyKey((FederatedRequest[]) payload) : "NONE";
+			final FederatedTracer tracer = _tracer;
+			final TraceContext trace = (tracer != null) ? getTraceContext(payload) : null;
+			if(trace != null) {
+				tracer.record("deserialize", trace, received - deserialize, deserialize);
+				tracer.record("queue", trace, received, queue);
+				tracer.record("execute " + key, trace, started, execute, "status", res.getStatus());
+			}
+			ctx.writeAndFlush(response).addListener(new ResponseListener()).addListener(f -> {
+				// listeners run on the event loop, like the timing of received requests
+				startTiming();
+				FederatedStatistics.incFedWorkerLatency(key, deserialize, queue, execute, res.getCodecTime());
+				if(trace != null)
+					tracer.record("serialize", trace, started + execute, res.getCodecTime());
+			});
+		};
+
+		if(_exec == null || FederatedReduction.isDeposit(payload))
+			task.run(); // deposits of reductions must not wait behind the blocked reductions
+		else {
+			// execute off the event loop, ordered per coordinator thread and fairly shared among coordinators
+			final String host = getHost(remoteAddress);
+			_exec.execute(getTenant(payload, host), getExecutionKey(payload, host), task);
+		}
+	}
+
+	private static TraceContext getTraceContext(Object msg) {
+		if(msg instanceof FederatedRequest[])
+			for(FederatedRequest request : (FederatedRequest[]) msg)
+				if(request.getTraceContext() != null)
+					return request.getTraceContext();
+		return null;
+	}
+
+	private static String getTenant(Object msg, String host) {
+		if(msg instanceof FederatedRequest[] && ((FederatedRequest[]) msg).length > 0)
+			return FederatedRequestExecutor.getTenant(host, ((FederatedRequest[]) msg)[0].getPID());
+		return FederatedRequestExecutor.getTenant(host, -1);
+	}
+
+	private static String getExecutionKey(Object msg, String host) {
+		if(msg instanceof FederatedRequest[] && ((FederatedRequest[]) msg).length > 0) {
+			final FederatedRequest request = ((FederatedRequest[]) msg)[0];
+			return FederatedRequestExecutor.getKey(host, request.getPID(), request.getTID());
+		}
+		return FederatedRequestExecutor.getKey(host, -1, -1);
 	}
 
 	protected FederatedResponse createResponse(Object msg) {
-		return createResponse(msg, FederatedLookupTable.NOHOST);
+		return createResponse(msg, FederatedLookupTable.NOHOST, FederatedLookupTable.NOHOST);
 	}
 
-	private FederatedResponse createResponse(Object msg, SocketAddress remoteAddress) {
+	private void stopTiming() {
 		try {
 			if (_timing != null) {
 				ParamServStatistics.accFedNetworkTime((long) _timing.stop());
@@ -151,37 +253,52 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		} catch (RuntimeException ignored) {
 			// ignore timing if it wasn't started yet
 		}
-		
-		String host;
-		if(remoteAddress == null) {
-			LOG.warn("Given remote address of coordinator is null. Continuing with "
-				+ FederatedLookupTable.NOHOST + " as host identifier.");
-			host = FederatedLookupTable.NOHOST;
-		}
-		else if(remoteAddress instanceof InetSocketAddress) {
-			host = ((InetSocketAddress) remoteAddress).getHostString();
-			_remoteAddress = remoteAddress.toString();
-		}
-		else {
-			host = remoteAddress.toString().split(":")[0].split("/")[1];
-			_remoteAddress = remoteAddress.toString();
-		}
-		
+	}
 
-		FederatedResponse res = createResponse(msg, host);
+	private void startTiming() {
 		if (_timing != null) {
 			_timing.start();
 		}
+	}
+
+	private FederatedResponse createResponse(Object msg, SocketAddress remoteAddress) {
+		// the remote address is passed along instead of kept in the handler, because requests
+		// of the same connection are executed concurrently by the execution pool
+		final String address = (remoteAddress != null) ? remoteAddress.toString() : FederatedLookupTable.NOHOST;
+		FederatedResponse res = createResponse(msg, getHost(remoteAddress), address);
+		// signal the memory pressure, which allows the coordinator to throttle requests
+		res.setMemoryPressure(FederatedInflightWindow.getLocalMemoryPressure());
 		return res;
 	}
 
-	private FederatedResponse createResponse(Object msg, String remoteHost) {
+	private static String getHost(SocketAddress remoteAddress) {
+		if(remoteAddress == null) {
+			LOG.warn("Given remote address of coordinator is null. Continuing with "
+				+ FederatedLookupTable.NOHOST + " as host identifier.");
+			return FederatedLookupTable.NOHOST;
+		}
+		else if(remoteAddress instanceof InetSocketAddress)
+			return ((InetSocketAddress) remoteAddress).getHostString();
+		else if(remoteAddress instanceof LocalAddress)
+			// coordinator in this JVM, identified like over TCP on loopback
+			return InetAddress.getLoopbackAddress().getHostAddress();
+		else
+			return remoteAddress.toString().split(":")[0].split("/")[1];
+	}
+
+	private FederatedResponse createResponse(Object msg, String remoteHost, String remoteAddress) {
 		if(!(msg instanceof FederatedRequest[]))
 			return new FederatedResponse(ResponseType.ERROR,
 				new FederatedWorkerHandlerException("Received object of wrong instance 'FederatedRequest[]'."));
 		final FederatedRequest[] requests = (FederatedRequest[]) msg;
+		// resolve content-addressed broadcasts before executing any request
+		final FederatedResponse miss = _flt.getContentStore().resolve(requests);
+		if(miss != null)
+			return miss;
+		if(requests.length > 0 && requests[0].getType() == RequestType.BATCH)
+			return createCoalescedResponse(requests, remoteHost, remoteAddress);
 		try {
-			return createResponse(requests, remoteHost);
+			return createResponse(requests, remoteHost, remoteAddress);
 		}
 		catch(FederatedWorkerHandlerException ex) {
 			// Here we control the error message, therefore it is allowed to send the stack trace with the response
@@ -197,7 +314,24 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		}
 	}
 
-	private FederatedResponse createResponse(FederatedRequest[] requests, String remoteHost)
+	private FederatedResponse createCoalescedResponse(FederatedRequest[] requests, String remoteHost,
+		String remoteAddress) {
+		final List<FederatedRequest[]> batches;
+		try {
+			batches = FederatedRequestCoalescer.split(requests);
+		}
+		catch(Exception ex) {
+			LOG.error("Failed to split coalesced federated requests", ex);
+			return new FederatedResponse(ResponseType.ERROR, new FederatedWorkerHandlerException(ex.getMessage()));
+		}
+		// execute the coalesced batches in order, with separate responses and error handling
+		final List<FederatedResponse> responses = new ArrayList<>(batches.size());
+		for(FederatedRequest[] batch : batches)
+			responses.add(createResponse((Object) batch, remoteHost, remoteAddress));
+		return FederatedRequestCoalescer.createResponse(responses);
+	}
+
+	private FederatedResponse createResponse(FederatedRequest[] requests, String remoteHost, String remoteAddress)
 		throws FederatedWorkerHandlerException, Exception {
 			
 		FederatedResponse response = null; // last response
@@ -212,10 +346,26 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 			final RequestType t = request.getType();
 			final ExecutionContextMap ecm = _flt.getECM(remoteHost, request.getPID());
 			logRequests(request, i, requests.length);
+			if(t == RequestType.PUT_VAR)
+				checkMemoryQuota(request, ecm, remoteHost, request.estimateSerializationBufferSize());
+			else if(t == RequestType.READ_VAR)
+				checkMemoryQuota(request, ecm, remoteHost, estimateReadSize(request));
+			// the outputs of instructions and UDFs are only known after the execution
+			final Map<String, Data> bound = (t == RequestType.EXEC_INST || t == RequestType.EXEC_UDF)
+				&& getMemoryQuota() > 0 ? getBoundData(ecm.get(request.getTID())) : null;
 
 			var eventStage = new EventStageModel();
+			if(request.getTraceContext() != null)
+				eventStage.setTraceContext(request.getTraceContext());
 			// execute command and handle privacy constraints
-			final FederatedResponse tmp = executeCommand(request, ecm, eventStage);
+			final FederatedTracer.Span span = FederatedTracer.beginRequest(_tracer, request);
+			final FederatedResponse tmp;
+			try {
+				tmp = executeCommand(request, ecm, eventStage);
+			}
+			finally {
+				FederatedTracer.end(span);
+			}
 
 			if (DMLScript.STATISTICS) {
 				var requestStat = new RequestModel(request.getType().name(), 1L);
@@ -256,12 +406,25 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 			if (DMLScript.STATISTICS) {
 				if(t == RequestType.PUT_VAR || t == RequestType.EXEC_UDF) {
 					for (int paramIndex = 0; paramIndex < request.getNumParams(); paramIndex++)
-						FederatedStatistics.incFedTransfer(request.getParam(paramIndex), _remoteAddress, request.getPID());
+						FederatedStatistics.incFedTransfer(request.getParam(paramIndex), remoteAddress, request.getPID());
 				}
 				if(t == RequestType.GET_VAR) {
 					var data = response.getData();
 					for (int dataObjIndex = 0; dataObjIndex < Arrays.stream(data).count(); dataObjIndex++)
-						FederatedStatistics.incFedTransfer(data[dataObjIndex], _remoteAddress, request.getPID());
+						FederatedStatistics.incFedTransfer(data[dataObjIndex], remoteAddress, request.getPID());
+				}
+			}
+
+			if(bound != null) {
+				try {
+					checkMemoryQuota(request, ecm, remoteHost, 0);
+				}
+				catch(FederatedWorkerHandlerException ex) {
+					// reject the outputs, which are already bound to variables
+					removeOutputs(ecm.get(request.getTID()), bound);
+					if (DMLScript.STATISTICS)
+						FederatedStatistics.addEvent(event);
+					throw ex;
 				}
 			}
 
@@ -282,6 +445,82 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		return response;
 	}
 
+	private long getMemoryQuota() {
+		return (_exec != null) ? _exec.getQuota() : ConfigurationManager.getFederatedTenantQuota() * 1024 * 1024;
+	}
+
+	private void checkMemoryQuota(FederatedRequest request, ExecutionContextMap ecm, String remoteHost,
+		long added) {
+		final long quota = getMemoryQuota();
+		if(quota <= 0)
+			return;
+		final long size = ecm.getDataSize() + added;
+		if(size > quota)
+			throw new FederatedWorkerHandlerException("Memory quota of federated coordinator "
+				+ FederatedRequestExecutor.getTenant(remoteHost, request.getPID()) + " exceeded: " + size + " > "
+				+ quota + " bytes.");
+	}
+
+	private static Map<String, Data> getBoundData(ExecutionContext ec) {
+		final Map<String, Data> ret = new HashMap<>();
+		for(Map.Entry<String, Data> e : ec.getVariables().entrySet())
+			ret.put(e.getKey(), e.getValue());
+		return ret;
+	}
+
+	/**
+	 * Remove and cleanup all variables that were bound or rebound since the given snapshot of the variables.
+	 *
+	 * @param ec    execution context of the request
+	 * @param bound variables bound before the execution of the request
+	 */
+	private static void removeOutputs(ExecutionContext ec, Map<String, Data> bound) {
+		final List<String> outputs = new ArrayList<>();
+		for(Map.Entry<String, Data> e : ec.getVariables().entrySet())
+			if(bound.get(e.getKey()) != e.getValue())
+				outputs.add(e.getKey());
+		for(String name : outputs)
+			ec.cleanupDataObject(ec.removeVariable(name));
+	}
+
+	/**
+	 * Estimate the in-memory size of the data read by a READ_VAR request from the metadata of the file.
+	 *
+	 * @param request the READ_VAR request
+	 * @return estimated size in bytes, 0 if unknown
+	 */
+	private static long estimateReadSize(FederatedRequest request) {
+		if(request.getNumParams() == 3 && request.getParam(2) instanceof CacheBlock)
+			return ((CacheBlock<?>) request.getParam(2)).getInMemorySize();
+		if(request.getNumParams() < 1 || !(request.getParam(0) instanceof String))
+			return 0;
+		try {
+			final MetaDataAll mtd = readMetaData((String) request.getParam(0));
+			// frames are estimated like dense matrices
+			final long nnz = (mtd.getNnz() > 0) ? mtd.getNnz() : mtd.getDim1() * mtd.getDim2();
+			return (mtd.getDim1() > 0 && mtd.getDim2() > 0) ?
+				OptimizerUtils.estimateSizeExactSparsity(mtd.getDim1(), mtd.getDim2(), nnz) : 0;
+		}
+		catch(Exception ex) {
+			// invalid metadata fails the read request itself
+			return 0;
+		}
+	}
+
+	private static MetaDataAll readMetaData(String filename) throws Exception {
+		final String mtdName = DataExpression.getMTDFileName(filename);
+		final FileSystem fs = IOUtilFunctions.getFileSystem(mtdName);
+		try(BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(new Path(mtdName))))) {
+			final MetaDataAll mtd = new MetaDataAll(br);
+			if(!mtd.mtdExists())
+				throw new FederatedWorkerHandlerException("Could not parse metadata file");
+			return mtd;
+		}
+		finally {
+			IOUtilFunctions.closeSilently(fs);
+		}
+	}
+
 	private static void printStatistics() {
 		if(DMLScript.STATISTICS && Statistics.allowWorkerStatistics) {
 			System.out.println("Federated Worker " + Statistics.display());
@@ -431,24 +670,15 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		FileFormat fmt = null;
 		boolean header = false;
 		String delim = null;
-		FileSystem fs = null;
-		MetaDataAll mtd;
 
 		try {
-			final String mtdName = DataExpression.getMTDFileName(filename);
-			Path path = new Path(mtdName);
-			fs = IOUtilFunctions.getFileSystem(mtdName);
-			try(BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(path)))) {
-				mtd = new MetaDataAll(br);
-				if(!mtd.mtdExists())
-					throw new FederatedWorkerHandlerException("Could not parse metadata file");
-				mc.setRows(mtd.getDim1());
-				mc.setCols(mtd.getDim2());
-				mc.setNonZeros(mtd.getNnz());
-				header = mtd.getHasHeader();
-				fmt = mtd.getFileFormat();
-				delim = mtd.getDelim();
-			}
+			final MetaDataAll mtd = readMetaData(filename);
+			mc.setRows(mtd.getDim1());
+			mc.setCols(mtd.getDim2());
+			mc.setNonZeros(mtd.getNnz());
+			header = mtd.getHasHeader();
+			fmt = mtd.getFileFormat();
+			delim = mtd.getDelim();
 		}
 		catch(FederatedWorkerHandlerException ex) {
 			throw ex;
@@ -458,9 +688,6 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 			LOG.error(msg, ex);
 			throw new DMLRuntimeException(msg);
 		}
-		finally {
-			IOUtilFunctions.closeSilently(fs);
-		}
 
 		// put meta data object in symbol table, read on first operation
 		cd.setMetaData(new MetaDataFormat(mc, fmt));
@@ -574,15 +801,77 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 	}
 
 	private FederatedResponse execInstruction(FederatedRequest request, ExecutionContextMap ecm, EventStageModel eventStage) throws Exception {
-		final Instruction ins = InstructionParser.parseSingleInstruction((String) request.getParam(0));
+		if(request.getNumParams() > 1)
+			return execFragment(request, ecm, eventStage);
+		final String instString = (String) request.getParam(0);
+		if(_fic == null)
+			return execInstruction(InstructionParser.parseSingleInstruction(instString), null, request, ecm, eventStage);
+
+		final FederatedInstructionCache.Lease lease = _fic.acquire(instString);
+		try {
+			return execInstruction(lease.getInstruction(), lease, request, ecm, eventStage);
+		}
+		finally {
+			lease.release();
+		}
+	}
+
+	/**
+	 * Execute a program fragment of multiple instructions as a single program block, which fuses chains of cell-wise
+	 * operations, and answer with one response per instruction.
+	 */
+	private FederatedResponse execFragment(FederatedRequest request, ExecutionContextMap ecm, EventStageModel eventStage)
+		throws Exception {
+		eventStage.operation = "fragment";
+
+		final int n = request.getNumParams();
+		final String[] instStrings = new String[n];
+		final Instruction[] ins = new Instruction[n];
+		final FederatedInstructionCache.Lease[] leases = new FederatedInstructionCache.Lease[n];
+		try {
+			for(int i = 0; i < n; i++) {
+				instStrings[i] = (String) request.getParam(i);
+				if(_fic != null) {
+					leases[i] = _fic.acquire(instStrings[i]);
+					ins[i] = leases[i].getInstruction();
+				}
+				else
+					ins[i] = InstructionParser.parseSingleInstruction(instStrings[i]);
+			}
+			final int[][] plan = (_fic != null) ? _fic.getPlan(instStrings, ins) : FederatedFragment.plan(ins);
+
+			final long tid = request.getTID();
+			ExecutionContext ec = null;
+			for(Instruction in : ins) {
+				ec = getContextForInstruction(tid, in, ecm);
+				setThreads(in);
+			}
+			exec(ec, FederatedFragment.compile(ins, plan));
+
+			final Object[] responses = new Object[n];
+			for(int i = 0; i < n; i++) {
+				adaptToWorkload(ec, _fan, tid, ins[i], leases[i]);
+				// outputs of fused intermediates and removed variables have unknown nnz
+				responses[i] = new FederatedResponse(ResponseType.SUCCESS_EMPTY, getOutputNnz(ec, ins[i]));
+			}
+			return new FederatedResponse(ResponseType.SUCCESS, responses);
+		}
+		finally {
+			for(FederatedInstructionCache.Lease lease : leases)
+				if(lease != null)
+					lease.release();
+		}
+	}
 
+	private FederatedResponse execInstruction(Instruction ins, FederatedInstructionCache.Lease lease,
+		FederatedRequest request, ExecutionContextMap ecm, EventStageModel eventStage) throws Exception {
 		eventStage.operation = ins.getExtendedOpcode();
 
 		final long tid = request.getTID();
 		final ExecutionContext ec = getContextForInstruction(tid, ins, ecm);
 		setThreads(ins);
 		exec(ec, ins);
-		adaptToWorkload(ec, _fan, tid, ins);
+		adaptToWorkload(ec, _fan, tid, ins, lease);
 		return new FederatedResponse(
 			ResponseType.SUCCESS_EMPTY, getOutputNnz(ec, ins));
 	}
@@ -613,9 +902,12 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		final BasicProgramBlock pb = new BasicProgramBlock(null);
 		pb.getInstructions().clear();
 		pb.getInstructions().add(ins);
-		
+		// execute single instruction
+		exec(ec, pb);
+	}
+
+	private static void exec(ExecutionContext ec, BasicProgramBlock pb){
 		try {
-			// execute single instruction
 			pb.execute(ec);
 		}
 		catch(Exception ex) {
@@ -626,10 +918,13 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		}
 	}
 
-	private static void adaptToWorkload(ExecutionContext ec, FederatedWorkloadAnalyzer fan,  long tid, Instruction ins){
+	private static void adaptToWorkload(ExecutionContext ec, FederatedWorkloadAnalyzer fan, long tid, Instruction ins,
+		FederatedInstructionCache.Lease lease){
 		if(fan != null){
+			// leased instructions are rebound by later requests, so the asynchronous analysis gets its own copy
+			final Instruction ains = (lease != null) ? lease.copyInstruction() : ins;
 			CompletableFuture.runAsync(() -> {
-				fan.incrementWorkload(ec, tid, ins);
+				fan.incrementWorkload(ec, tid, ains);
 				fan.compressRun(ec, tid);
 			});
 		}
@@ -729,17 +1024,16 @@ public class FederatedWorkerHandler extends ChannelInboundHandlerAdapter {
 		return CompressConfig.valueOf(conf.getTextValue(DMLConfig.COMPRESSED_LINALG).toUpperCase()) == CompressConfig.TRUE;
 	}
 
-	private static class CloseListener implements ChannelFutureListener {
+	private static class ResponseListener implements ChannelFutureListener {
 		@Override
 		public void operationComplete(ChannelFuture channelFuture) throws InterruptedException {
+			// the channel is kept open for subsequent requests (pooled connections), and
+			// closed by the coordinator once it is not needed anymore
 			if(!channelFuture.isSuccess()) {
 				LOG.error("Federated Worker Write failed");
 				channelFuture.channel().writeAndFlush(new FederatedResponse(ResponseType.ERROR,
 					new FederatedWorkerHandlerException("Error while sending response."))).channel().close().sync();
 			}
-			else {
-				channelFuture.channel().close().sync();
-			}
 		}
 	}
 }
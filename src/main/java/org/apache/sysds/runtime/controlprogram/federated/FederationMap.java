@@ -19,8 +19,10 @@
 
 package org.apache.sysds.runtime.controlprogram.federated;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -31,6 +33,7 @@ import java.util.function.BiFunction;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.sysds.common.Types.DataType;
 import org.apache.sysds.common.Types.ValueType;
@@ -38,6 +41,8 @@ import org.apache.sysds.hops.fedplanner.FTypes.AlignType;
 import org.apache.sysds.hops.fedplanner.FTypes.FType;
 import org.apache.sysds.lops.RightIndex;
 import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.compress.lib.CLALibSlice;
 import org.apache.sysds.runtime.controlprogram.caching.CacheBlock;
 import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
@@ -45,6 +50,7 @@ import org.apache.sysds.runtime.instructions.cp.CPOperand;
 import org.apache.sysds.runtime.instructions.cp.ScalarObject;
 import org.apache.sysds.runtime.instructions.cp.VariableCPInstruction;
 import org.apache.sysds.runtime.lineage.LineageItem;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
 import org.apache.sysds.runtime.util.CommonThreadPool;
 import org.apache.sysds.runtime.util.IndexRange;
 
@@ -96,6 +102,16 @@ public class FederationMap {
 		return _fedMap.stream().map(e -> e.getValue()).toArray(FederatedData[]::new);
 	}
 
+	/**
+	 * Get the measured profiles of the federated sites of all partitions.
+	 *
+	 * @return site profiles in the order of partitions, with null for sites without profile
+	 */
+	public FederatedSiteProfiles.SiteProfile[] getSiteProfiles() {
+		return _fedMap.stream().map(e -> FederatedSiteProfiles.get(e.getValue().getAddress()))
+			.toArray(FederatedSiteProfiles.SiteProfile[]::new);
+	}
+
 	private FederatedData getFederatedData(FederatedRange range) {
 		for( Pair<FederatedRange, FederatedData> e : _fedMap )
 			if( e.getKey().equals(range) )
@@ -242,10 +258,20 @@ public class FederationMap {
 				ru.getLiteralLineageItem(), cl.getLiteralLineageItem(), cu.getLiteralLineageItem()});
 		}
 		FederatedRequest fr = new FederatedRequest(RequestType.PUT_VAR, li, id,
+			(cb instanceof CompressedMatrixBlock) ? sliceCompressed((CompressedMatrixBlock) cb, ix) :
 			cb.slice(ix[0], ix[1], ix[2], ix[3]));
 		return fr;
 	}
 
+	private static MatrixBlock sliceCompressed(CompressedMatrixBlock cmb, int[] ix) {
+		// keep the slices compressed (independent of their number of rows), because the
+		// compressed column groups are usually much smaller to transfer than the decompressed slices
+		final MatrixBlock ret = CLALibSlice.sliceRowsCompressed(
+			CLALibSlice.sliceColumns(cmb, ix[2], ix[3]), ix[0], ix[1]);
+		ret.recomputeNonZeros();
+		return ret;
+	}
+
 	/**
 	 * helper function for checking multiple allowed alignment types
 	 * @param that FederationMap to check alignment with
@@ -349,6 +375,54 @@ public class FederationMap {
 		return ret.toArray(new Future[0]);
 	}
 
+	/**
+	 * Executes the given requests followed by worker-specific reduction requests, which are appended after the common
+	 * requests (see {@link FederatedReduction}).
+	 *
+	 * @param tid      thread ID of the requests
+	 * @param frSlices worker-specific requests executed before the common requests, or null
+	 * @param frReduce worker-specific requests executed after the common requests
+	 * @param fr       the common requests
+	 * @return future federated responses
+	 */
+	@SuppressWarnings("unchecked")
+	public Future<FederatedResponse>[] executeReduction(long tid, FederatedRequest[] frSlices,
+		FederatedRequest[][] frReduce, FederatedRequest... fr) {
+		setThreadID(tid, frSlices, fr);
+		setThreadID(tid, frReduce);
+		List<Future<FederatedResponse>> ret = new ArrayList<>();
+		int pos = 0;
+		for(Pair<FederatedRange, FederatedData> e : _fedMap) {
+			FederatedRequest[] fedReq = (frSlices != null) ? addAll(frSlices[pos], fr) : fr;
+			ret.add(e.getValue().executeFederatedOperation(ArrayUtils.addAll(fedReq, frReduce[pos++])));
+		}
+		return ret.toArray(new Future[0]);
+	}
+
+	/**
+	 * Get the topology of worker-to-worker reductions as the position of the parent of every federated partition
+	 * (-1 for the root). The partitions are arranged in a complete tree of the given fan-out in the global order of
+	 * their worker addresses (host and port), where a fan-out of 1 yields a chain (ring without the closing link to the
+	 * coordinator). Since parents precede their children in all topologies, the waits of concurrent reductions on
+	 * the same workers cannot form a cycle.
+	 *
+	 * @param fanout max number of children per partition
+	 * @return position of the parent of every federated partition
+	 */
+	public int[] getReductionTopology(int fanout) {
+		if(fanout <= 0)
+			throw new DMLRuntimeException("Invalid fan-out of federated reduction: " + fanout);
+		final Comparator<InetSocketAddress> cmp = Comparator.nullsFirst(Comparator
+			.comparing(InetSocketAddress::getHostString).thenComparingInt(InetSocketAddress::getPort));
+		final int[] order = IntStream.range(0, _fedMap.size()).boxed()
+			.sorted(Comparator.comparing(i -> _fedMap.get(i).getValue().getAddress(), cmp))
+			.mapToInt(Integer::intValue).toArray();
+		final int[] ret = new int[order.length];
+		for(int j = 0; j < order.length; j++)
+			ret[order[j]] = (j == 0) ? -1 : order[(j - 1) / fanout];
+		return ret;
+	}
+
 	public Future<FederatedResponse>[] execute(long tid, boolean wait, FederatedRange[] fedRange1,
 		FederatedRequest elseFr, FederatedRequest frSlice1, FederatedRequest frSlice2, FederatedRequest fr) {
 		return execute(tid, wait, fedRange1, elseFr, new FederatedRequest[]{frSlice1}, new FederatedRequest[]{frSlice2}, fr);
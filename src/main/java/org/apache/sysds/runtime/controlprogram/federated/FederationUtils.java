@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
@@ -48,6 +49,7 @@ import org.apache.sysds.hops.fedplanner.FTypes.FPartitioning;
 import org.apache.sysds.hops.fedplanner.FTypes.FType;
 import org.apache.sysds.lops.Lop;
 import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
 import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
@@ -59,23 +61,18 @@ import org.apache.sysds.runtime.functionobjects.KahanFunction;
 import org.apache.sysds.runtime.functionobjects.Mean;
 import org.apache.sysds.runtime.functionobjects.Multiply;
 import org.apache.sysds.runtime.functionobjects.Plus;
-import org.apache.sysds.runtime.functionobjects.ReduceAll;
 import org.apache.sysds.runtime.instructions.InstructionUtils;
 import org.apache.sysds.runtime.instructions.cp.CPOperand;
 import org.apache.sysds.runtime.instructions.cp.DoubleObject;
 import org.apache.sysds.runtime.instructions.cp.ScalarObject;
 import org.apache.sysds.runtime.matrix.data.LibMatrixAgg;
 import org.apache.sysds.runtime.matrix.data.MatrixBlock;
-import org.apache.sysds.runtime.matrix.operators.AggregateOperator;
 import org.apache.sysds.runtime.matrix.operators.AggregateUnaryOperator;
 import org.apache.sysds.runtime.matrix.operators.BinaryOperator;
 import org.apache.sysds.runtime.matrix.operators.ScalarOperator;
-import org.apache.sysds.runtime.matrix.operators.SimpleOperator;
+import org.apache.sysds.runtime.meta.DataCharacteristics;
 
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
 
-@SuppressWarnings("deprecation")
 public class FederationUtils {
 	protected static Logger log = Logger.getLogger(FederationUtils.class);
 	private static final IDSequence _idSeq = new IDSequence();
@@ -185,34 +182,25 @@ public class FederationUtils {
 	}
 
 	public static MatrixBlock aggAdd(Future<FederatedResponse>[] ffr) {
-		try {
-			SimpleOperator op = new SimpleOperator(Plus.getPlusFnObject());
-			MatrixBlock[] in = new MatrixBlock[ffr.length];
-			for(int i=0; i<ffr.length; i++)
-				in[i] = (MatrixBlock) ffr[i].get().getData()[0];
-			return MatrixBlock.naryOperations(op, in, new ScalarObject[0], new MatrixBlock());
-		}
-		catch(Exception ex) {
-			throw new DMLRuntimeException(ex);
-		}
+		// fold partial results in completion order
+		return FederatedAggregator.aggregate(ffr, new BinaryOperator(Plus.getPlusFnObject()));
 	}
 
 	public static MatrixBlock aggMean(Future<FederatedResponse>[] ffr, FederationMap map) {
 		try {
 			FederatedRange[] ranges = map.getFederatedRanges();
 			BinaryOperator bop = InstructionUtils.parseBinaryOperator("+");
-			ScalarOperator sop1 = InstructionUtils.parseScalarBinaryOperator("*", false);
-			MatrixBlock ret = null;
 			long size = 0;
-			for(int i=0; i<ffr.length; i++) {
-				Object input = ffr[i].get().getData()[0];
-				MatrixBlock tmp = (input instanceof ScalarObject) ?
-					new MatrixBlock(((ScalarObject)input).getDoubleValue()) : (MatrixBlock) input;
+			for(int i=0; i<ffr.length; i++)
 				size += ranges[i].getSize(0);
-				sop1 = sop1.setConstant(ranges[i].getSize(0));
-				tmp = tmp.scalarOperations(sop1, new MatrixBlock());
-				ret = (ret==null) ? tmp : ret.binaryOperationsInPlace(bop, tmp);
-			}
+			// fold the partial means weighted by their number of rows in completion order
+			MatrixBlock ret = FederatedAggregator.aggregate(ffr, bop, (i, input) -> {
+				MatrixBlock tmp = (input instanceof ScalarObject) ?
+					new MatrixBlock(((ScalarObject)input).getDoubleValue()) :
+					CompressedMatrixBlock.getUncompressed((MatrixBlock) input);
+				ScalarOperator sop1 = InstructionUtils.parseScalarBinaryOperator("*", false);
+				return tmp.scalarOperations(sop1.setConstant(ranges[i].getSize(0)), new MatrixBlock());
+			});
 			ScalarOperator sop2 = InstructionUtils.parseScalarBinaryOperator("/", false);
 			sop2 = sop2.setConstant(size);
 			return ret.scalarOperations(sop2, new MatrixBlock());
@@ -250,25 +238,15 @@ public class FederationUtils {
 	public static MatrixBlock aggMinMax(Future<FederatedResponse>[] ffr, boolean isMin, boolean isScalar, Optional<FType> fedType) {
 		try {
 			if (!fedType.isPresent() || fedType.get() == FType.OTHER) {
-				double res = isMin ? Double.MAX_VALUE : -Double.MAX_VALUE;
-				for (Future<FederatedResponse> fr : ffr) {
-					double v = isScalar ? ((ScalarObject) fr.get().getData()[0]).getDoubleValue() :
-						isMin ? ((MatrixBlock) fr.get().getData()[0]).min() : ((MatrixBlock) fr.get().getData()[0]).max();
-					res = isMin ? Math.min(res, v) : Math.max(res, v);
-				}
+				double res = FederatedAggregator.aggregate(ffr,
+					obj -> isScalar ? ((ScalarObject) obj).getDoubleValue() :
+						isMin ? ((MatrixBlock) obj).min() : ((MatrixBlock) obj).max(),
+					isMin ? Math::min : Math::max, isMin ? Double.MAX_VALUE : -Double.MAX_VALUE);
 				return new MatrixBlock(1, 1, res);
 			} else {
-				MatrixBlock[] tmp = getResults(ffr);
-				int dim = fedType.get() == FType.COL ? tmp[0].getNumRows() : tmp[0].getNumColumns();
-
-				for (int i = 0; i < ffr.length - 1; i++)
-					for (int j = 0; j < dim; j++)
-						if (fedType.get() == FType.COL)
-							tmp[i + 1].set(j, 0, isMin ? Double.min(tmp[i].get(j, 0), tmp[i + 1].get(j, 0)) :
-								Double.max(tmp[i].get(j, 0), tmp[i + 1].get(j, 0)));
-						else tmp[i + 1].set(0, j, isMin ? Double.min(tmp[i].get(0, j), tmp[i + 1].get(0, j)) :
-							Double.max(tmp[i].get(0, j), tmp[i + 1].get(0, j)));
-				return tmp[ffr.length-1];
+				// cell-wise min/max of the row or column vectors in completion order
+				return FederatedAggregator.aggregate(ffr, new BinaryOperator(
+					Builtin.getBuiltinFnObject(isMin ? BuiltinCode.MIN : BuiltinCode.MAX)));
 			}
 		}
 		catch (Exception ex) {
@@ -416,9 +394,8 @@ public class FederationUtils {
 
 			}
 			else { //if (aop.aggOp.increOp.fn instanceof KahanFunction)
-				double sum = 0; //uak+
-				for( Future<FederatedResponse> fr : ffr )
-					sum += ((ScalarObject)fr.get().getData()[0]).getDoubleValue();
+				double sum = FederatedAggregator.aggregateSum(ffr, //uak+
+					obj -> ((ScalarObject) obj).getDoubleValue());
 				return new DoubleObject(sum);
 			}
 		}
@@ -483,14 +460,9 @@ public class FederationUtils {
 
 		try {
 			if(aop.aggOp.increOp.fn instanceof Multiply){
-				MatrixBlock ret = new MatrixBlock(ffr.length, 1, false);
-				MatrixBlock res = new MatrixBlock(0);
-				for(int i = 0; i < ffr.length; i++)
-					ret.set(i, 0, ((ScalarObject)ffr[i].get().getData()[0]).getDoubleValue());
-				LibMatrixAgg.aggregateUnaryMatrix(ret, res,
-					new AggregateUnaryOperator(new AggregateOperator(1, Multiply.getMultiplyFnObject()),
-						ReduceAll.getReduceAllFnObject()));
-				return new DoubleObject(res.get(0, 0));
+				double prod = FederatedAggregator.aggregate(ffr,
+					obj -> ((ScalarObject) obj).getDoubleValue(), (a, b) -> a * b, 1);
+				return new DoubleObject(prod);
 			}
 			else if(aop.aggOp.increOp.fn instanceof Builtin){
 				// then we know it is a Min or Max based on the previous check.
@@ -501,9 +473,8 @@ public class FederationUtils {
 				return new DoubleObject(aggMean(ffr, map).get(0,0));
 			}
 			else { //if (aop.aggOp.increOp.fn instanceof KahanFunction)
-				double sum = 0; //uak+
-				for( Future<FederatedResponse> fr : ffr )
-					sum += ((ScalarObject)fr.get().getData()[0]).getDoubleValue();
+				double sum = FederatedAggregator.aggregateSum(ffr, //uak+
+					obj -> ((ScalarObject) obj).getDoubleValue());
 				return new DoubleObject(sum);
 			}
 		}
@@ -513,15 +484,9 @@ public class FederationUtils {
 	}
 	
 	public static boolean aggBooleanScalar(Future<FederatedResponse>[] tmp) {
-		boolean ret = false;
-		try {
-			for( Future<FederatedResponse> fr : tmp )
-				ret |= ((ScalarObject)fr.get().getData()[0]).getBooleanValue();
-		}
-		catch (Exception e) {
-			throw new DMLRuntimeException(e);
-		}
-		return ret;
+		// logical or of all partial results in completion order
+		return FederatedAggregator.aggregate(tmp,
+			obj -> ((ScalarObject) obj).getBooleanValue() ? 1 : 0, Math::max, 0) != 0;
 	}
 	
 	public static MatrixBlock aggMatrix(AggregateUnaryOperator aop, Future<FederatedResponse>[] ffr, FederationMap map) {
@@ -609,9 +574,8 @@ public class FederationUtils {
 		return FederationUtils.aggAdd(dataParts.toArray(new Future[0]));
 	}
 
-	public static ObjectDecoder decoder() {
-		return new ObjectDecoder(Integer.MAX_VALUE,
-			ClassResolvers.weakCachingResolver(ClassLoader.getSystemClassLoader()));
+	public static FederatedWireCodec.Decoder decoder() {
+		return new FederatedWireCodec.Decoder();
 	}
 
 	public static Optional<ChannelOutboundHandlerAdapter> compressionEncoder() {
@@ -626,6 +590,7 @@ public class FederationUtils {
 		String strategy = ConfigurationManager.getDMLConfig().getTextValue(DMLConfig.FEDERATED_COMPRESSION).toLowerCase();
 		switch (strategy) {
 			case "none":
+			case "adaptive": // per-message compression in the federated wire codec
 				return Optional.empty();
 			case "zlib":
 				return Optional.of(new ImmutablePair<>(new JdkZlibDecoder(), new JdkZlibEncoder()));
@@ -642,6 +607,23 @@ public class FederationUtils {
 		}
 	}
 
+	/**
+	 * Set the number of non-zeros of the given data characteristics to the sum of the non-zeros of the responses,
+	 * once all responses are available. In contrast to {@link #sumNonZeros(Future[])}, this does not wait for the
+	 * responses and thus keeps deferred requests of lazy federated execution deferred.
+	 *
+	 * @param responses futures of the federated responses
+	 * @param dc        data characteristics of the output
+	 */
+	public static void setNonZerosOnCompletion(Future<FederatedResponse>[] responses, DataCharacteristics dc) {
+		final AtomicInteger pending = new AtomicInteger(responses.length);
+		for(Future<FederatedResponse> r : responses)
+			FederatedRequestCoalescer.onCompletion(r, () -> {
+				if(pending.decrementAndGet() == 0)
+					dc.setNonZeros(sumNonZeros(responses));
+			});
+	}
+
 	public static long sumNonZeros(Future<FederatedResponse>[] responses) {
 		long nnz = 0;
 		try {
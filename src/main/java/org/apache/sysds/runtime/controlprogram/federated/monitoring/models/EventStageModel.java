@@ -21,17 +21,23 @@ package org.apache.sysds.runtime.controlprogram.federated.monitoring.models;
 
 import java.time.LocalDateTime;
 
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
+
 public class EventStageModel extends BaseModel {
 	private static final long serialVersionUID = -6867424341266726981L;
 	public Long eventId;
 	public String operation;
 	public LocalDateTime startTime;
 	public LocalDateTime endTime;
+	public String traceId;
+	public String spanId;
 
 	private static final String JsonFormat = "{" +
 			"\"operation\": \"%s\"," +
 			"\"startTime\": \"%s\"," +
-			"\"endTime\": \"%s\"" +
+			"\"endTime\": \"%s\"," +
+			"\"traceId\": \"%s\"," +
+			"\"spanId\": \"%s\"" +
 			"}";
 
 	public EventStageModel() {
@@ -52,8 +58,14 @@ public class EventStageModel extends BaseModel {
 		this.operation = operation;
 	}
 
+	public void setTraceContext(TraceContext trace) {
+		// span of the federated instruction at the coordinator that caused this stage
+		this.traceId = Long.toHexString(trace.getTraceID());
+		this.spanId = Long.toHexString(trace.getSpanID());
+	}
+
 	@Override
 	public String toString() {
-		return String.format(JsonFormat, this.operation, this.startTime, this.endTime);
+		return String.format(JsonFormat, this.operation, this.startTime, this.endTime, this.traceId, this.spanId);
 	}
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.runtime.controlprogram.federated.monitoring.models;
+
+public class LatencyModel extends BaseModel {
+	private static final long serialVersionUID = 1L;
+	public Long workerId;
+	public String operation;
+	public String stage;
+	public Long count;
+	public double p50;
+	public double p90;
+	public double p99;
+	public double maximum; // max is a reserved word in SQL
+
+	private static final String JsonFormat = "{" +
+			"\"operation\": \"%s\"," +
+			"\"stage\": \"%s\"," +
+			"\"count\": %d," +
+			"\"p50\": %.3f," +
+			"\"p90\": %.3f," +
+			"\"p99\": %.3f," +
+			"\"max\": %.3f" +
+			"}";
+
+	public LatencyModel() {
+		this(-1L);
+	}
+
+	private LatencyModel(final Long id) {
+		this.id = id;
+	}
+
+	public LatencyModel(final Long workerId,
+						final String operation,
+						final String stage,
+						final Long count,
+						final double p50,
+						final double p90,
+						final double p99,
+						final double max) {
+		this.id = -1L;
+		this.workerId = workerId;
+		this.operation = operation;
+		this.stage = stage;
+		this.count = count;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.maximum = max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(JsonFormat, this.operation, this.stage, this.count, this.p50, this.p90, this.p99, this.maximum);
+	}
+}
@@ -30,6 +30,7 @@ public class StatisticsModel extends BaseModel {
 	public List<DataObjectModel> dataObjects;
 	public List<RequestModel> requests;
 	public List<HeavyHitterModel> heavyHitters;
+	public List<LatencyModel> latencies;
 
 	private static final String JsonFormat = "{" +
 			"\"utilization\": [%s]," +
@@ -37,7 +38,8 @@ public class StatisticsModel extends BaseModel {
 			"\"events\": [%s]," +
 			"\"dataObjects\": [%s]," +
 			"\"requests\": [%s]," +
-			"\"heavyHitters\": [%s]" +
+			"\"heavyHitters\": [%s]," +
+			"\"latencies\": [%s]" +
 			"}";
 
 	public StatisticsModel() { }
@@ -56,10 +58,21 @@ public class StatisticsModel extends BaseModel {
 		this.heavyHitters = heavyHitters;
 	}
 
+	public StatisticsModel(List<UtilizationModel> utilization,
+						   List<TrafficModel> traffic,
+						   List<EventModel> events,
+						   List<DataObjectModel> dataObjects,
+						   List<RequestModel> requests,
+						   List<HeavyHitterModel> heavyHitters,
+						   List<LatencyModel> latencies) {
+		this(utilization, traffic, events, dataObjects, requests, heavyHitters);
+		this.latencies = latencies;
+	}
+
 
 	@Override
 	public String toString() {
-		String utilizationStr = null, trafficStr = null, eventsStr = null, dataObjectsStr = null, requestsStr = null, heavyHittersStr = null;
+		String utilizationStr = null, trafficStr = null, eventsStr = null, dataObjectsStr = null, requestsStr = null, heavyHittersStr = null, latenciesStr = null;
 
 		if (utilization != null) {
 			utilizationStr = utilization.stream()
@@ -97,6 +110,12 @@ public class StatisticsModel extends BaseModel {
 					.collect(Collectors.joining(","));
 		}
 
-		return String.format(JsonFormat, utilizationStr, trafficStr, eventsStr, dataObjectsStr, requestsStr, heavyHittersStr);
+		if (latencies != null) {
+			latenciesStr = latencies.stream()
+					.map(LatencyModel::toString)
+					.collect(Collectors.joining(","));
+		}
+
+		return String.format(JsonFormat, utilizationStr, trafficStr, eventsStr, dataObjectsStr, requestsStr, heavyHittersStr, latenciesStr);
 	}
 }
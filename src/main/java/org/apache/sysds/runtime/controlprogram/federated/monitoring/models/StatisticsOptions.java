@@ -28,4 +28,5 @@ public class StatisticsOptions extends BaseModel {
 	public boolean dataObjects = true;
 	public boolean requests = true;
 	public boolean heavyHitters = true;
+	public boolean latencies = true;
 }
@@ -40,6 +40,7 @@ import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.DataO
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventStageModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.HeavyHitterModel;
+import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.LatencyModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.RequestModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.TrafficModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.UtilizationModel;
@@ -59,7 +60,8 @@ public class DerbyRepository implements IRepository {
 			new EventStageModel(),
 			new DataObjectModel(),
 			new RequestModel(),
-			new HeavyHitterModel()
+			new HeavyHitterModel(),
+			new LatencyModel()
 	));
 	private static final String ENTITY_SCHEMA_CREATE_STMT = "CREATE TABLE %s " +
 			"(id INTEGER PRIMARY KEY GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1)";
@@ -35,6 +35,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.sysds.conf.ConfigurationManager;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedLatencyHistogram;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
@@ -44,6 +45,7 @@ import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.DataO
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.EventStageModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.HeavyHitterModel;
+import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.LatencyModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.RequestModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.StatisticsModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.StatisticsOptions;
@@ -65,6 +67,7 @@ public class StatisticsService {
 		CompletableFuture<Void> dataObjFuture = null;
 		CompletableFuture<Void> requestsFuture = null;
 		CompletableFuture<Void> heavyHittersFuture = null;
+		CompletableFuture<Void> latenciesFuture = null;
 
 		var stats = new StatisticsModel();
 
@@ -114,7 +117,13 @@ public class StatisticsService {
 					.thenAcceptAsync(result -> stats.heavyHitters = result);
 		}
 
-		List<CompletableFuture<Void>> completableFutures = Arrays.asList(utilizationFuture, trafficFuture, eventsFuture, dataObjFuture, requestsFuture, heavyHittersFuture);
+		if (options.latencies) {
+			latenciesFuture = CompletableFuture
+					.supplyAsync(() -> entityRepository.getAllEntitiesByField(Constants.ENTITY_WORKER_ID_COL, workerId, LatencyModel.class))
+					.thenAcceptAsync(result -> stats.latencies = result);
+		}
+
+		List<CompletableFuture<Void>> completableFutures = Arrays.asList(utilizationFuture, trafficFuture, eventsFuture, dataObjFuture, requestsFuture, heavyHittersFuture, latenciesFuture);
 
 		completableFutures.forEach(cf -> {
 			try {
@@ -202,7 +211,26 @@ public class StatisticsService {
 			heavyHitters.add(newHH);
 		}
 
-		return new StatisticsModel(List.of(utilization), traffic, events, dataObjects, requests, heavyHitters);
+		List<LatencyModel> latencies = new ArrayList<>();
+
+		for (var latencyEntry: aggFedStats.workerLatencies.entrySet()) {
+			for (var stage: FederatedLatencyHistogram.Stage.values()) {
+				var histogram = latencyEntry.getValue()[stage.ordinal()];
+				if (histogram.getCount() == 0)
+					continue;
+				// latencies in ms
+				latencies.add(new LatencyModel(workerId,
+					latencyEntry.getKey(),
+					stage.toString(),
+					histogram.getCount(),
+					histogram.getPercentile(0.5) / 1e6,
+					histogram.getPercentile(0.9) / 1e6,
+					histogram.getPercentile(0.99) / 1e6,
+					histogram.getMax() / 1e6));
+			}
+		}
+
+		return new StatisticsModel(List.of(utilization), traffic, events, dataObjects, requests, heavyHitters, latencies);
 	}
 
 	private static void setCoordinatorId(CoordinatorConnectionModel entity) {
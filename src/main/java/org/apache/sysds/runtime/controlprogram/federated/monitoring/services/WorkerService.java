@@ -36,6 +36,7 @@ import org.apache.sysds.conf.DMLConfig;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.controllers.WorkerController;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.DataObjectModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.HeavyHitterModel;
+import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.LatencyModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.RequestModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.StatisticsModel;
 import org.apache.sysds.runtime.controlprogram.federated.monitoring.models.WorkerModel;
@@ -193,6 +194,16 @@ public class WorkerService {
 					}
 				});
 			}
+			if (stats.latencies != null && !stats.latencies.isEmpty()) {
+				CompletableFuture.runAsync(() -> {
+					// histograms are cumulative, i.e., the latest statistics replace the previous ones
+					entityRepository.removeAllEntitiesByField(Constants.ENTITY_WORKER_ID_COL, id, LatencyModel.class);
+
+					for (var latencyEntity : stats.latencies) {
+						entityRepository.createEntity(latencyEntity);
+					}
+				});
+			}
 		} else {
 			cachedWorkers.get(id).setValue(false);
 		}
@@ -26,6 +26,8 @@ import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles.SiteProfile;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedUDF;
 import org.apache.sysds.runtime.controlprogram.paramserv.ParamservUtils;
 import org.apache.sysds.runtime.instructions.cp.Data;
@@ -33,7 +35,9 @@ import org.apache.sysds.runtime.lineage.LineageItem;
 import org.apache.sysds.runtime.matrix.data.MatrixBlock;
 import org.apache.sysds.runtime.meta.DataCharacteristics;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.Future;
 
 /**
@@ -43,6 +47,9 @@ import java.util.concurrent.Future;
  * Therefore, a UDF is sent to manipulate the data locally. In this case the global average number of examples is taken
  * and the worker subsamples or replicates data to match that number of examples. See the other federated schemes.
  *
+ * If all federated sites are profiled (see {@link FederatedSiteProfiles}), the number of examples per worker is scaled
+ * by the relative number of cores of the worker, so heterogeneous workers finish their epochs at similar times.
+ *
  * Then all entries in the federation map of the input matrix are separated into MatrixObjects and returned as a list.
  * Only supports row federated matrices atm.
  */
@@ -54,7 +61,7 @@ public class BalanceToAvgFederatedScheme extends DataPartitionFederatedScheme {
 		BalanceMetrics balanceMetricsBefore = getBalanceMetrics(pFeatures);
 		List<Double> weightingFactors = getWeightingFactors(pFeatures, balanceMetricsBefore);
 
-		int average_num_rows = (int) balanceMetricsBefore._avgRows;
+		int[] target_num_rows = getTargetNumRows(pFeatures, (int) balanceMetricsBefore._avgRows);
 
 		for(int i = 0; i < pFeatures.size(); i++) {
 			// Works, because the map contains a single entry
@@ -62,7 +69,7 @@ public class BalanceToAvgFederatedScheme extends DataPartitionFederatedScheme {
 			FederatedData labelsData = pLabels.get(i).getFedMapping().getFederatedData()[0];
 
 			Future<FederatedResponse> udfResponse = featuresData.executeFederatedOperation(new FederatedRequest(FederatedRequest.RequestType.EXEC_UDF,
-					featuresData.getVarID(), new balanceDataOnFederatedWorker(new long[]{featuresData.getVarID(), labelsData.getVarID()}, seed, average_num_rows)));
+					featuresData.getVarID(), new balanceDataOnFederatedWorker(new long[]{featuresData.getVarID(), labelsData.getVarID()}, seed, target_num_rows[i])));
 
 			try {
 				FederatedResponse response = udfResponse.get();
@@ -73,15 +80,37 @@ public class BalanceToAvgFederatedScheme extends DataPartitionFederatedScheme {
 				throw new DMLRuntimeException("FederatedDataPartitioner BalanceFederatedScheme: executing balance UDF failed" + e.getMessage());
 			}
 
-			DataCharacteristics update = pFeatures.get(i).getDataCharacteristics().setRows(average_num_rows);
+			DataCharacteristics update = pFeatures.get(i).getDataCharacteristics().setRows(target_num_rows[i]);
 			pFeatures.get(i).updateDataCharacteristics(update);
-			update = pLabels.get(i).getDataCharacteristics().setRows(average_num_rows);
+			update = pLabels.get(i).getDataCharacteristics().setRows(target_num_rows[i]);
 			pLabels.get(i).updateDataCharacteristics(update);
 		}
 
 		return new Result(pFeatures, pLabels, pFeatures.size(), getBalanceMetrics(pFeatures), weightingFactors);
 	}
 
+	/**
+	 * Get the number of examples per worker, which is the average number of examples scaled by the relative number of
+	 * cores of the worker if all sites are profiled, and the average number of examples otherwise.
+	 *
+	 * @param pFeatures federated features per worker
+	 * @param average_num_rows average number of examples per worker
+	 * @return number of examples per worker
+	 */
+	private static int[] getTargetNumRows(List<MatrixObject> pFeatures, int average_num_rows) {
+		int[] ret = new int[pFeatures.size()];
+		Arrays.fill(ret, average_num_rows);
+		SiteProfile[] profiles = pFeatures.stream()
+			.map(f -> f.getFedMapping().getSiteProfiles()[0]).toArray(SiteProfile[]::new);
+		if(Arrays.stream(profiles).anyMatch(Objects::isNull))
+			return ret;
+		double total_cores = Arrays.stream(profiles).mapToInt(SiteProfile::getNumCores).sum();
+		for(int i = 0; i < ret.length; i++)
+			ret[i] = (int) Math.max(1, Math.round(
+				(double) average_num_rows * ret.length * profiles[i].getNumCores() / total_cores));
+		return ret;
+	}
+
 	/**
 	 * Balance UDF executed on the federated worker
 	 */
@@ -167,6 +167,16 @@ public abstract class Instruction
 	public String getInstructionString() {
 		return instString;
 	}
+
+	/**
+	 * Replace the instruction string, e.g., after rebinding the operands
+	 * of a reused instruction to other variable names.
+	 *
+	 * @param str new instruction string
+	 */
+	public void setInstructionString(String str) {
+		instString = str;
+	}
 	
 	public String getGraphString() {
 		return null;
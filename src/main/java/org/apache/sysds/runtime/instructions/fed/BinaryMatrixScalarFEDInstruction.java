@@ -21,6 +21,7 @@ package org.apache.sysds.runtime.instructions.fed;
 
 import java.util.concurrent.Future;
 
+import org.apache.sysds.conf.ConfigurationManager;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
@@ -31,6 +32,7 @@ import org.apache.sysds.runtime.instructions.cp.BinaryMatrixScalarCPInstruction;
 import org.apache.sysds.runtime.instructions.cp.CPOperand;
 import org.apache.sysds.runtime.instructions.spark.BinaryMatrixScalarSPInstruction;
 import org.apache.sysds.runtime.matrix.operators.Operator;
+import org.apache.sysds.runtime.meta.DataCharacteristics;
 
 public class BinaryMatrixScalarFEDInstruction extends BinaryFEDInstruction
 {
@@ -74,10 +76,16 @@ public class BinaryMatrixScalarFEDInstruction extends BinaryFEDInstruction
 			ffr = mo.getFedMapping().execute(getTID(), true, fr2);
 		}
 		
-		//derive new fed mapping for output
+		//derive new fed mapping for output (for lazy execution, the nnz are set once the
+		//deferred requests are answered, e.g., after fusion into program fragments)
 		MatrixObject out = ec.getMatrixObject(output);
-		out.getDataCharacteristics().set(mo.getDataCharacteristics())
-			.setNonZeros(FederationUtils.sumNonZeros(ffr));
+		DataCharacteristics dc = out.getDataCharacteristics().set(mo.getDataCharacteristics());
+		if( ConfigurationManager.isFederatedLazyExecution() ) {
+			dc.setNonZeros(-1);
+			FederationUtils.setNonZerosOnCompletion(ffr, dc);
+		}
+		else
+			dc.setNonZeros(FederationUtils.sumNonZeros(ffr));
 		out.setFedMapping(mo.getFedMapping().copyWithNewID(fr2.getID()));
 	}
 }
@@ -31,6 +31,7 @@ import org.apache.sysds.lops.PMMJ;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedReduction;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
@@ -205,6 +206,12 @@ public class MMFEDInstruction extends BinaryFEDInstruction
 	 */
 	private void aggregateLocally(FederationMap fedMap, boolean aggAdd,
 		ExecutionContext ec, FederatedRequest[] frSliced, FederatedRequest... fr) {
+		// reduce large partial results among the federated workers
+		if(aggAdd && FederatedReduction.isEnabled(fedMap,
+			ec.getMatrixObject(output).getDataCharacteristics().getLength())) {
+			ec.setMatrixOutput(output.getName(), FederatedReduction.aggAdd(fedMap, getTID(), frSliced, fr));
+			return;
+		}
 		long callInstID = fr[fr.length - 1].getID();
 		FederatedRequest frG = new FederatedRequest(RequestType.GET_VAR, callInstID);
 		FederatedRequest frC = fedMap.cleanup(getTID(), callInstID);
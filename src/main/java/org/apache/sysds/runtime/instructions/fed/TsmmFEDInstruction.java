@@ -26,6 +26,7 @@ import org.apache.sysds.lops.MMTSJ.MMTSJType;
 import org.apache.sysds.runtime.DMLRuntimeException;
 import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
 import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedReduction;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
 import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
@@ -108,6 +109,12 @@ public class TsmmFEDInstruction extends BinaryFEDInstruction {
 			MatrixBlock[] outBlocks = FederationUtils.getResults(tmp);
 			ec.setMatrixOutput(output.getName(), outBlocks[0]);
 		}
+		else if(FederatedReduction.isEnabled(mo1.getFedMapping(),
+			ec.getMatrixObject(output).getDataCharacteristics().getLength())) {
+			//execute federated operations and reduce among the federated workers
+			MatrixBlock ret = FederatedReduction.aggAdd(mo1.getFedMapping(), getTID(), null, fr1);
+			ec.setMatrixOutput(output.getName(), ret);
+		}
 		else {
 			FederatedRequest fr2 = new FederatedRequest(RequestType.GET_VAR, fr1.getID());
 			FederatedRequest fr3 = mo1.getFedMapping().cleanup(getTID(), fr1.getID());
@@ -24,6 +24,7 @@ import org.apache.sysds.performance.compression.SchemaTest;
 import org.apache.sysds.performance.compression.Serialize;
 import org.apache.sysds.performance.compression.StreamCompress;
 import org.apache.sysds.performance.compression.TransformPerf;
+import org.apache.sysds.performance.federated.FederatedRequestPerf;
 import org.apache.sysds.performance.generators.ConstMatrix;
 import org.apache.sysds.performance.generators.FrameFile;
 import org.apache.sysds.performance.generators.FrameTransformFile;
@@ -110,6 +111,9 @@ public class Main {
 			case 17: 
 				run17(args);
 				break;
+			case 18:
+				FederatedRequestPerf.main(args);
+				break;
 			case 1000:
 				run1000(args);
 				break;
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.performance.federated;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.common.Types.FileFormat;
+import org.apache.sysds.common.Types.ValueType;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedUDF;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.instructions.cp.Data;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.lineage.LineageItem;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.meta.MatrixCharacteristics;
+import org.apache.sysds.runtime.util.DataConverter;
+import org.apache.sysds.runtime.util.HDFSTool;
+import org.apache.sysds.test.AutomatedTestBase;
+import org.apache.sysds.test.TestUtils;
+
+/**
+ * Throughput and latency of the individual federated request types against in-process federated workers on loopback.
+ * Every measured request is sent concurrently to all workers, so the latency is the round-trip time of the slowest
+ * worker as observed by the coordinator, and the throughput is the number of requests per second over all workers.
+ *
+ * Besides the console output, every measurement is appended as a row to a CSV report (with an optional label such as
+ * the commit hash), which allows comparing transport and codec changes across commits.
+ */
+public class FederatedRequestPerf {
+
+	private static final String CSV_HEADER = "label,type,rows,cols,sparsity,workers,compression,repetitions,"
+		+ "requests_per_sec,mean_ms,p50_ms,p99_ms,max_ms";
+	private static final int WARMUP = 10;
+
+	private final int N;
+	private final InetSocketAddress[] addr;
+	private final String compression;
+	private final File tmp;
+	private final PrintWriter report;
+	private final String label;
+
+	public FederatedRequestPerf(int N, InetSocketAddress[] addr, String compression, File tmp, PrintWriter report,
+		String label) {
+		this.N = N;
+		this.addr = addr;
+		this.compression = compression;
+		this.tmp = tmp;
+		this.report = report;
+		this.label = label;
+	}
+
+	public void run(MatrixBlock mb, double sparsity) throws Exception {
+		System.out.println(String.format("%20s rows: %d cols: %d sparsity: %.3f workers: %d compression: %s",
+			getClass().getSimpleName(), mb.getNumRows(), mb.getNumColumns(), sparsity, addr.length, compression));
+
+		// request types without inputs
+		execute(RequestType.NOOP, mb, sparsity, i -> new FederatedRequest(RequestType.NOOP), null);
+
+		// transfer of the matrix to and from the workers, and reads from the local file system
+		final long[] ids = putAll(mb);
+		final long putID = FederationUtils.getNextFedDataID();
+		execute(RequestType.PUT_VAR, mb, sparsity,
+			i -> new FederatedRequest(RequestType.PUT_VAR, null, putID, mb), i -> rmvar(putID));
+		execute(RequestType.GET_VAR, mb, sparsity, i -> new FederatedRequest(RequestType.GET_VAR, ids[i]), null);
+		final String path = writeMatrix(mb);
+		final long readID = FederationUtils.getNextFedDataID();
+		execute(RequestType.READ_VAR, mb, sparsity, i -> new FederatedRequest(RequestType.READ_VAR, readID,
+			new Object[] {path, DataType.MATRIX.toString()}), i -> rmvar(readID));
+
+		// operations on the workers with small outputs
+		final long outID = FederationUtils.getNextFedDataID();
+		execute(RequestType.EXEC_INST, mb, sparsity, i -> new FederatedRequest(RequestType.EXEC_INST, outID,
+			"CP°uak+°" + ids[i] + "·MATRIX·FP64°" + outID + "·SCALAR·FP64°1"), null);
+		execute(RequestType.EXEC_UDF, mb, sparsity,
+			i -> new FederatedRequest(RequestType.EXEC_UDF, -1, new SumUDF(ids[i])), null);
+		rmvar(outID);
+		for(long id : ids)
+			rmvar(id);
+	}
+
+	private void execute(RequestType type, MatrixBlock mb, double sparsity, IntFunction<FederatedRequest> request,
+		IntFunction<?> cleanup) throws Exception {
+		for(int i = 0; i < WARMUP; i++)
+			time(request, cleanup);
+		final double[] times = new double[N];
+		for(int i = 0; i < N; i++)
+			times[i] = time(request, cleanup);
+
+		Arrays.sort(times);
+		final double total = Arrays.stream(times).sum();
+		final double mean = total / N;
+		final double p50 = times[(int) Math.floor(0.50 * (N - 1))];
+		final double p99 = times[(int) Math.ceil(0.99 * (N - 1))];
+		final double max = times[N - 1];
+		final double rps = N * addr.length / (total / 1000);
+		System.out.println(String.format("%35s, %10.1f req/s, %8.3f ms mean, %8.3f ms p50, %8.3f ms p99",
+			type, rps, mean, p50, p99));
+		if(report != null) {
+			report.println(String.format("%s,%s,%d,%d,%f,%d,%s,%d,%f,%f,%f,%f,%f", label, type, mb.getNumRows(),
+				mb.getNumColumns(), sparsity, addr.length, compression, N, rps, mean, p50, p99, max));
+			report.flush();
+		}
+	}
+
+	private double time(IntFunction<FederatedRequest> request, IntFunction<?> cleanup) throws Exception {
+		@SuppressWarnings("unchecked")
+		final Future<FederatedResponse>[] ret = new Future[addr.length];
+		final long t0 = System.nanoTime();
+		for(int i = 0; i < addr.length; i++)
+			ret[i] = FederatedData.executeFederatedOperation(addr[i], request.apply(i));
+		for(Future<FederatedResponse> f : ret)
+			if(!f.get().isSuccessful())
+				throw new RuntimeException("Failed federated request: " + f.get().getErrorMessage());
+		final double time = (System.nanoTime() - t0) / 1e6;
+		if(cleanup != null)
+			cleanup.apply(0);
+		return time;
+	}
+
+	private long[] putAll(MatrixBlock mb) throws Exception {
+		final long[] ids = new long[addr.length];
+		for(int i = 0; i < addr.length; i++) {
+			ids[i] = FederationUtils.getNextFedDataID();
+			FederatedData.executeFederatedOperation(addr[i], new FederatedRequest(RequestType.PUT_VAR, null, ids[i], mb))
+				.get();
+		}
+		return ids;
+	}
+
+	private Object rmvar(long id) {
+		try {
+			for(InetSocketAddress a : addr)
+				FederatedData.executeFederatedOperation(a, new FederatedRequest(RequestType.EXEC_INST, -1,
+					"CP°rmvar°" + id)).get();
+			return null;
+		}
+		catch(Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private String writeMatrix(MatrixBlock mb) throws Exception {
+		final String path = new File(tmp, "X" + FederationUtils.getNextFedDataID()).getAbsolutePath();
+		final MatrixCharacteristics mc = new MatrixCharacteristics(mb.getNumRows(), mb.getNumColumns(),
+			1000, mb.getNonZeros());
+		DataConverter.writeMatrixToHDFS(mb, path, FileFormat.BINARY, mc);
+		HDFSTool.writeMetaDataFile(path + ".mtd", ValueType.FP64, mc, FileFormat.BINARY);
+		return path;
+	}
+
+	private static Thread[] startWorkers(InetSocketAddress[] addr, String compression, String wan, File tmp)
+		throws IOException {
+		final File conf = new File(tmp, "conf_" + compression + ".xml");
+		try(PrintWriter w = new PrintWriter(new FileWriter(conf))) {
+			w.println("<root><sysds.federated.compression>" + compression + "</sysds.federated.compression>"
+				+ "<sysds.federated.wan>" + wan + "</sysds.federated.wan></root>");
+		}
+		final Thread[] workers = new Thread[addr.length];
+		for(int i = 0; i < addr.length; i++) {
+			final int port = AutomatedTestBase.getRandomAvailablePort();
+			workers[i] = AutomatedTestBase.startLocalFedWorkerThread(port,
+				new String[] {"-config", conf.getAbsolutePath()}, 2000);
+			addr[i] = new InetSocketAddress("localhost", port);
+		}
+		return workers;
+	}
+
+	/**
+	 * Run the benchmark for all combinations of the given settings.
+	 *
+	 * @param args [1] repetitions, [2] comma-separated rows, [3] columns, [4] comma-separated sparsities, [5]
+	 *             comma-separated worker counts, [6] comma-separated compression settings, [7] CSV report file, [8]
+	 *             label of the report rows, [9] emulated WAN links (see sysds.federated.wan)
+	 * @throws Exception if the benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		final int N = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		final int[] rows = parseInts(args.length > 2 ? args[2] : "1,100,10000");
+		final int cols = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+		final double[] sparsities = Arrays.stream((args.length > 4 ? args[4] : "1.0,0.01").split(","))
+			.mapToDouble(Double::parseDouble).toArray();
+		final int[] workers = parseInts(args.length > 5 ? args[5] : "1,4");
+		final String[] compressions = (args.length > 6 ? args[6] : "none,adaptive").split(",");
+		final String reportPath = args.length > 7 ? args[7] : "temp/federated_perf.csv";
+		final String label = args.length > 8 ? args[8] : "";
+		final String wan = args.length > 9 ? args[9] : "";
+
+		final File tmp = Files.createTempDirectory("fedperf").toFile();
+		final File reportFile = new File(reportPath);
+		if(reportFile.getAbsoluteFile().getParentFile() != null)
+			reportFile.getAbsoluteFile().getParentFile().mkdirs();
+		final boolean header = !reportFile.exists();
+		try(PrintWriter report = new PrintWriter(new FileWriter(reportFile, true))) {
+			if(header)
+				report.println(CSV_HEADER);
+			for(String compression : compressions) {
+				for(int w : workers) {
+					final InetSocketAddress[] addr = new InetSocketAddress[w];
+					final Thread[] threads = startWorkers(addr, compression, wan, tmp);
+					try {
+						final FederatedRequestPerf perf = new FederatedRequestPerf(N, addr, compression, tmp, report,
+							label);
+						for(int r : rows)
+							for(double sp : sparsities)
+								perf.run(TestUtils.generateTestMatrixBlock(r, cols, 0, 100, sp, 7), sp);
+					}
+					finally {
+						TestUtils.shutdownThreads(threads);
+					}
+				}
+			}
+		}
+		finally {
+			FederatedData.clearWorkGroup();
+			FileUtils.deleteQuietly(tmp);
+		}
+	}
+
+	private static int[] parseInts(String s) {
+		return Arrays.stream(s.split(",")).mapToInt(Integer::parseInt).toArray();
+	}
+
+	/**
+	 * Sum of a matrix on the federated worker, as representative user-defined function with a small output.
+	 */
+	private static class SumUDF extends FederatedUDF {
+		private static final long serialVersionUID = 4937542126391526245L;
+
+		protected SumUDF(long input) {
+			super(new long[] {input});
+		}
+
+		@Override
+		public FederatedResponse execute(ExecutionContext ec, Data... data) {
+			final MatrixBlock mb = ((MatrixObject) data[0]).acquireReadAndRelease();
+			return new FederatedResponse(ResponseType.SUCCESS, new DoubleObject(mb.sum()));
+		}
+
+		@Override
+		public Pair<String, LineageItem> getLineageItem(ExecutionContext ec) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedContent;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedContentStore;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Repeated broadcasts of the same content, which are sent as digest references after the first transfer.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerBroadcastDedup extends FedWorkerBase {
+	private static final String CONF = "src/test/resources/component/federated/bcast_store.xml";
+	private static final String CONF_SMALL = "src/test/resources/component/federated/bcast_store_small.xml";
+
+	private final MatrixBlock mb;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		// content-addressed broadcasts are disabled by default
+		final int port = startWorker(CONF);
+
+		tests.add(new Object[] {port, TestUtils.generateTestMatrixBlock(1000, 10, 0.5, 9.5, 1.0, 7)});
+		tests.add(new Object[] {port, TestUtils.generateTestMatrixBlock(1000, 1000, 0.5, 9.5, 0.01, 7)});
+
+		return tests;
+	}
+
+	public FedWorkerBroadcastDedup(int port, MatrixBlock mb) {
+		super(port);
+		this.mb = mb;
+	}
+
+	@Test
+	public void verifyRepeatedBroadcast() throws Exception {
+		final DMLConfig prev = enable();
+		try {
+			final long refs = FederatedStatistics.getFedContentRefCount();
+			for(int i = 0; i < 5; i++) {
+				final long id = putMatrixBlock(mb);
+				TestUtils.compareMatricesBitAvgDistance(mb, getMatrixBlock(id), 0, 0,
+					"Not equivalent matrix block returned from federated site");
+			}
+			assertTrue(FederatedStatistics.getFedContentRefCount() >= refs + 4);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyBroadcastAfterEviction() throws Exception {
+		// dedicated worker with a store of 1MB
+		final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"),
+			startWorker(CONF_SMALL));
+		final DMLConfig prev = enable();
+		try {
+			final long misses = FederatedStatistics.getFedContentMissCount();
+			FederatedTestUtils.putMatrixBlock(mb, addr);
+			// the worker evicts the content for other content, so the reference misses and the block is re-sent
+			for(int i = 0; i < 16; i++)
+				FederatedTestUtils.putMatrixBlock(TestUtils.generateTestMatrixBlock(100, 100, 0, 1, 1.0, i), addr);
+			final long id = FederatedTestUtils.putMatrixBlock(mb, addr);
+			TestUtils.compareMatricesBitAvgDistance(mb, FederatedTestUtils.getMatrixBlock(id, addr), 0, 0,
+				"Not equivalent matrix block returned from federated site");
+			assertTrue(FederatedStatistics.getFedContentMissCount() > misses);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyStorePerWorker() throws Exception {
+		// dedicated workers in this JVM, where the clear of one worker retains the content of the other
+		final InetSocketAddress addr1 = new InetSocketAddress(InetAddress.getByName("localhost"), startWorker(CONF));
+		final InetSocketAddress addr2 = new InetSocketAddress(InetAddress.getByName("localhost"), startWorker(CONF));
+		final DMLConfig prev = enable();
+		try {
+			FederatedTestUtils.putMatrixBlock(mb, addr1);
+			FederatedTestUtils.putMatrixBlock(mb, addr2);
+			final long misses = FederatedStatistics.getFedContentMissCount();
+			final long refs = FederatedStatistics.getFedContentRefCount();
+			assertTrue(FederatedData.executeFederatedOperation(addr1, new FederatedRequest(RequestType.CLEAR))
+				.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+			final long id = FederatedTestUtils.putMatrixBlock(mb, addr2);
+			TestUtils.compareMatricesBitAvgDistance(mb, FederatedTestUtils.getMatrixBlock(id, addr2), 0, 0,
+				"Not equivalent matrix block returned from federated site");
+			assertEquals(misses, FederatedStatistics.getFedContentMissCount());
+			assertTrue(FederatedStatistics.getFedContentRefCount() > refs);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyStoreCapacity() {
+		final FederatedContentStore store = new FederatedContentStore(1024 * 1024);
+		final MatrixBlock small = TestUtils.generateTestMatrixBlock(100, 100, 0, 1, 1.0, 3);
+		for(int i = 0; i < 20; i++)
+			assertNull(store.resolve(new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, i,
+				new FederatedContent("content" + i, small))}));
+		assertTrue(store.getStoreSize() <= 1024 * 1024);
+		assertTrue(store.getNumStored() < 20);
+		store.clear();
+		assertEquals(0, store.getNumStored());
+		assertEquals(0, store.getStoreSize());
+	}
+
+	@Test
+	public void verifyBroadcastAfterClear() throws Exception {
+		// dedicated worker, because the clear removes all variables of this coordinator
+		final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), startWorker(CONF));
+		final DMLConfig prev = enable();
+		try {
+			final long misses = FederatedStatistics.getFedContentMissCount();
+			FederatedTestUtils.putMatrixBlock(mb, addr);
+			// removing the last execution context releases the stored content
+			final FederatedResponse r = FederatedData
+				.executeFederatedOperation(addr, new FederatedRequest(RequestType.CLEAR)).get(5000, TimeUnit.MILLISECONDS);
+			assertTrue(r.isSuccessful());
+			final long id = FederatedTestUtils.putMatrixBlock(mb, addr);
+			TestUtils.compareMatricesBitAvgDistance(mb, FederatedTestUtils.getMatrixBlock(id, addr), 0, 0,
+				"Not equivalent matrix block returned from federated site");
+			assertTrue(FederatedStatistics.getFedContentMissCount() > misses);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyDisabledByDefault() {
+		assertFalse(new DMLConfig().getIntValue(DMLConfig.FEDERATED_BCAST_STORE) > 0);
+	}
+
+	private static DMLConfig enable() throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		ConfigurationManager.setLocalConfig(new DMLConfig(CONF));
+		return prev;
+	}
+
+	@Test
+	public void verifyUnknownReference() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final long id = FederationUtils.getNextFedDataID();
+			final FederatedRequest fr = new FederatedRequest(RequestType.PUT_VAR, id, new FederatedContent("unknown", null));
+			final FederatedResponse r = FederatedData.executeFederatedOperation(addr, fr).get(5000, TimeUnit.MILLISECONDS);
+			assertFalse(r.isSuccessful());
+			assertTrue(r.getErrorMessage().contains("Missing broadcast content"));
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated request: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Concurrent requests from many coordinator threads to the same federated worker, which exceeds the number of pooled
+ * connections per federated site and thus exercises the reuse of connections.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerConcurrent extends FedWorkerBase {
+
+	private final int threads;
+	private final int rep;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		final int port = startWorker();
+
+		tests.add(new Object[] {port, 1, 50});
+		tests.add(new Object[] {port, 4, 25});
+		tests.add(new Object[] {port, 32, 10});
+
+		return tests;
+	}
+
+	public FedWorkerConcurrent(int port, int threads, int rep) {
+		super(port);
+		this.threads = threads;
+		this.rep = rep;
+	}
+
+	@Test
+	public void verifyConcurrentPutGetScalar() {
+		runConcurrent(seed -> {
+			final Random r = new Random(seed);
+			for(int i = 0; i < rep; i++) {
+				final double v = r.nextDouble();
+				final long id = putDouble(v);
+				assertEquals("values not equivalent", v, getDouble(id), 0.0000001);
+			}
+		});
+	}
+
+	@Test
+	public void verifyConcurrentPutGetMatrixBlock() {
+		runConcurrent(seed -> {
+			final MatrixBlock mb = TestUtils.generateTestMatrixBlock(100, 10, 0.5, 9.5, 1.0, seed);
+			for(int i = 0; i < rep; i++) {
+				final long id = putMatrixBlock(mb);
+				TestUtils.compareMatricesBitAvgDistance(mb, getMatrixBlock(id), 0, 0,
+					"Not equivalent matrix block returned from federated site");
+			}
+		});
+	}
+
+	private interface SeededTask {
+		void run(int seed);
+	}
+
+	private void runConcurrent(SeededTask task) {
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> tasks = new ArrayList<>();
+			for(int t = 0; t < threads; t++) {
+				final int seed = 7 + t;
+				tasks.add(pool.submit(() -> task.run(seed)));
+			}
+			for(Future<?> f : tasks)
+				f.get();
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed concurrent federated requests: " + e.getMessage());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlockFactory;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContextFactory;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedFragment;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequestCoalescer;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.functionobjects.Multiply;
+import org.apache.sysds.runtime.functionobjects.Plus;
+import org.apache.sysds.runtime.instructions.Instruction;
+import org.apache.sysds.runtime.instructions.InstructionParser;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.MultiThreadedOperator;
+import org.apache.sysds.runtime.matrix.operators.RightScalarOperator;
+import org.apache.sysds.runtime.meta.DataCharacteristics;
+import org.apache.sysds.runtime.meta.MatrixCharacteristics;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Program fragments of deferred instructions, where the worker fuses chains of cell-wise operations.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerFragment extends FedWorkerBase {
+
+	private final MatrixBlock mb;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		final int port = startWorker();
+
+		tests.add(new Object[] {port, TestUtils.generateTestMatrixBlock(100, 10, -9.5, 9.5, 1.0, 3)});
+		tests.add(new Object[] {port, TestUtils.generateTestMatrixBlock(100, 10, -9.5, 9.5, 0.1, 4)});
+
+		return tests;
+	}
+
+	public FedWorkerFragment(int port, MatrixBlock mb) {
+		super(port);
+		this.mb = mb;
+	}
+
+	@Test
+	public void verifyFusedChain() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final long fragments = FederatedStatistics.getFedFragmentCount();
+			final long chains = FederatedStatistics.getFedFusedChains();
+
+			// exp(X*0.1+1) with removals of the intermediates
+			final long x = putMatrixBlock(mb);
+			final long t1 = FederationUtils.getNextFedDataID();
+			final long t2 = FederationUtils.getNextFedDataID();
+			final long t3 = FederationUtils.getNextFedDataID();
+			final List<Future<FederatedResponse>> deferred = new ArrayList<>();
+			deferred.add(exec(addr, "CP°*°" + x + "·MATRIX·FP64°0.1·SCALAR·FP64·true°" + t1 + "·MATRIX·FP64"));
+			deferred.add(exec(addr, "CP°+°" + t1 + "·MATRIX·FP64°1·SCALAR·FP64·true°" + t2 + "·MATRIX·FP64"));
+			deferred.add(exec(addr, "CP°rmvar°" + t1));
+			deferred.add(exec(addr, "CP°exp°" + t2 + "·MATRIX·FP64°" + t3 + "·MATRIX·FP64°1"));
+			deferred.add(exec(addr, "CP°rmvar°" + t2));
+
+			final MatrixBlock ret = get(addr, t3);
+			for(Future<FederatedResponse> f : deferred)
+				assertTrue(f.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+			assertEquals(mb.getNumRows() * mb.getNumColumns(), ret.getNonZeros());
+			for(int i = 0; i < mb.getNumRows(); i++)
+				for(int j = 0; j < mb.getNumColumns(); j++)
+					assertEquals(Math.exp(mb.get(i, j) * 0.1 + 1), ret.get(i, j), 1e-10);
+
+			// statistics are shared with concurrently running tests
+			assertTrue(FederatedStatistics.getFedFragmentCount() > fragments);
+			assertTrue(FederatedStatistics.getFedFusedChains() > chains);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifySparseSafeChain() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final long chains = FederatedStatistics.getFedFusedChains();
+
+			// abs(X*-3), which retains the sparsity of the input
+			final long x = putMatrixBlock(mb);
+			final long t1 = FederationUtils.getNextFedDataID();
+			final long t2 = FederationUtils.getNextFedDataID();
+			exec(addr, "CP°*°" + x + "·MATRIX·FP64°-3·SCALAR·FP64·true°" + t1 + "·MATRIX·FP64");
+			exec(addr, "CP°abs°" + t1 + "·MATRIX·FP64°" + t2 + "·MATRIX·FP64°1");
+			exec(addr, "CP°rmvar°" + t1);
+
+			final MatrixBlock ret = get(addr, t2);
+			assertEquals(mb.getNonZeros(), ret.getNonZeros());
+			for(int i = 0; i < mb.getNumRows(); i++)
+				for(int j = 0; j < mb.getNumColumns(); j++)
+					assertEquals(Math.abs(mb.get(i, j) * -3), ret.get(i, j), 1e-10);
+			assertTrue(FederatedStatistics.getFedFusedChains() > chains);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyRetainedIntermediate() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			// intermediates that are not removed are still materialized
+			final long x = putMatrixBlock(mb);
+			final long t1 = FederationUtils.getNextFedDataID();
+			final long t2 = FederationUtils.getNextFedDataID();
+			exec(addr, "CP°+°" + x + "·MATRIX·FP64°2·SCALAR·FP64·true°" + t1 + "·MATRIX·FP64");
+			exec(addr, "CP°*°" + t1 + "·MATRIX·FP64°2·SCALAR·FP64·true°" + t2 + "·MATRIX·FP64");
+
+			final MatrixBlock ret1 = get(addr, t1);
+			final MatrixBlock ret2 = get(addr, t2);
+			for(int i = 0; i < mb.getNumRows(); i++)
+				for(int j = 0; j < mb.getNumColumns(); j++) {
+					assertEquals(mb.get(i, j) + 2, ret1.get(i, j), 1e-10);
+					assertEquals((mb.get(i, j) + 2) * 2, ret2.get(i, j), 1e-10);
+				}
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void verifyFinalOutputNnz() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final long x = putMatrixBlock(mb);
+			final long t1 = FederationUtils.getNextFedDataID();
+			final long t2 = FederationUtils.getNextFedDataID();
+			exec(addr, "CP°*°" + x + "·MATRIX·FP64°-3·SCALAR·FP64·true°" + t1 + "·MATRIX·FP64");
+			final Future<FederatedResponse> last = exec(addr,
+				"CP°+°" + t1 + "·MATRIX·FP64°1·SCALAR·FP64·true°" + t2 + "·MATRIX·FP64");
+			exec(addr, "CP°rmvar°" + t1);
+			// the nnz are set once the deferred requests are answered, without flushing them
+			final DataCharacteristics dc = new MatrixCharacteristics(mb.getNumRows(), mb.getNumColumns(), -1L);
+			FederationUtils.setNonZerosOnCompletion(new Future[] {last}, dc);
+
+			final MatrixBlock ret = get(addr, t2);
+			assertEquals(ret.getNonZeros(), (long) (Long) last.get(5000, TimeUnit.MILLISECONDS).getData()[0]);
+			for(int i = 0; i < 500 && dc.getNonZeros() < 0; i++)
+				Thread.sleep(10); // completion listeners run after the future completed
+			assertEquals(ret.getNonZeros(), dc.getNonZeros());
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyCompressedInput() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			// compressed inputs are processed by the unfused instructions
+			final MatrixBlock in = TestUtils.round(TestUtils.generateTestMatrixBlock(1000, 10, 0, 5, 1.0, 7));
+			final MatrixBlock cmb = CompressedMatrixBlockFactory.compress(in).getLeft();
+			assertTrue(cmb instanceof CompressedMatrixBlock);
+			verifyChain(addr, putMatrixBlock(cmb), in, 2, 1);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyEmptyInput() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final MatrixBlock empty = new MatrixBlock(mb.getNumRows(), mb.getNumColumns(), true);
+			verifyChain(addr, putMatrixBlock(empty), empty, 2, 1);
+			verifyChain(addr, putMatrixBlock(empty), empty, 2, 0);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyMultiplyZeroNaN() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			// X*0 yields zeros for NaN inputs as well, like the unfused operation
+			final MatrixBlock in = new MatrixBlock(mb.getNumRows(), mb.getNumColumns(), false);
+			in.copy(mb);
+			for(int i = 0; i < in.getNumRows(); i += 7)
+				in.set(i, i % in.getNumColumns(), Double.NaN);
+			verifyChain(addr, putMatrixBlock(in), in, 0, 1);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyParallelDenseChain() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final MatrixBlock in = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 1.0, 9);
+			verifyChain(addr, putMatrixBlock(in), in, 3, 1);
+
+			// the worker uses the available cores, so the multi-threaded chain is also executed locally
+			final ExecutionContext ec = ExecutionContextFactory.createContext();
+			ec.setAutoCreateVars(true);
+			ec.setVariable("X", ExecutionContext.createMatrixObject(in));
+			final Instruction[] ins = new Instruction[] {
+				InstructionParser.parseSingleInstruction("CP°*°X·MATRIX·FP64°3·SCALAR·FP64·true°T1·MATRIX·FP64"),
+				InstructionParser.parseSingleInstruction("CP°+°T1·MATRIX·FP64°1·SCALAR·FP64·true°T2·MATRIX·FP64"),
+				InstructionParser.parseSingleInstruction("CP°rmvar°T1")};
+			for(int i = 0; i < 2; i++)
+				((MultiThreadedOperator) ins[i].getOperator()).setNumThreads(4);
+			final int[][] plan = FederatedFragment.plan(ins);
+			assertArrayEquals(new int[][] {{0, 1}, {2}}, plan);
+			FederatedFragment.compile(ins, plan).execute(ec);
+			TestUtils.compareMatrices(expected(in, 3, 1), ec.getMatrixInput("T2"), 1e-10);
+			ec.releaseMatrixInput("T2");
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed federated program fragment: " + e.getMessage());
+		}
+	}
+
+	private static void verifyChain(InetSocketAddress addr, long x, MatrixBlock in, double mult, double add)
+		throws Exception {
+		// X*mult+add with the removal of the intermediate, compared to the unfused local operations
+		final long t1 = FederationUtils.getNextFedDataID();
+		final long t2 = FederationUtils.getNextFedDataID();
+		exec(addr, "CP°*°" + x + "·MATRIX·FP64°" + mult + "·SCALAR·FP64·true°" + t1 + "·MATRIX·FP64");
+		exec(addr, "CP°+°" + t1 + "·MATRIX·FP64°" + add + "·SCALAR·FP64·true°" + t2 + "·MATRIX·FP64");
+		exec(addr, "CP°rmvar°" + t1);
+		final MatrixBlock exp = expected(in, mult, add);
+		final MatrixBlock ret = get(addr, t2);
+		assertEquals(exp.getNonZeros(), ret.getNonZeros());
+		TestUtils.compareMatrices(exp, ret, 1e-10);
+	}
+
+	private static MatrixBlock expected(MatrixBlock in, double mult, double add) {
+		return in.scalarOperations(new RightScalarOperator(Multiply.getMultiplyFnObject(), mult), new MatrixBlock())
+			.scalarOperations(new RightScalarOperator(Plus.getPlusFnObject(), add), new MatrixBlock());
+	}
+
+	private static Future<FederatedResponse> exec(InetSocketAddress addr, String inst) {
+		return FederatedRequestCoalescer.execute(addr, new FederatedRequest(RequestType.EXEC_INST, -1, inst));
+	}
+
+	private static MatrixBlock get(InetSocketAddress addr, long id) throws Exception {
+		// the get request flushes all deferred requests
+		final FederatedResponse r = FederatedRequestCoalescer
+			.execute(addr, new FederatedRequest(RequestType.GET_VAR, id)).get(5000, TimeUnit.MILLISECONDS);
+		assertTrue(r.isSuccessful());
+		return (MatrixBlock) r.getData()[0];
+	}
+}
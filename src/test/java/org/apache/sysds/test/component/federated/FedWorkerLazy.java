@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequestCoalescer;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.instructions.cp.ScalarObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Lazy federated execution, where request batches are deferred and coalesced until a result is needed.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerLazy extends FedWorkerBase {
+
+	private final int steps;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		final int port = startWorker();
+
+		tests.add(new Object[] {port, 1});
+		tests.add(new Object[] {port, 20});
+
+		return tests;
+	}
+
+	public FedWorkerLazy(int port, int steps) {
+		super(port);
+		this.steps = steps;
+	}
+
+	@Test
+	public void verifyDeferredChain() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final List<Future<FederatedResponse>> deferred = new ArrayList<>();
+
+			// put a scalar and increment it in a chain of deferred instructions
+			long id = FederationUtils.getNextFedDataID();
+			deferred.add(FederatedRequestCoalescer.execute(addr,
+				new FederatedRequest(RequestType.PUT_VAR, null, id, new DoubleObject(7))));
+			for(int i = 0; i < steps; i++) {
+				final long out = FederationUtils.getNextFedDataID();
+				deferred.add(FederatedRequestCoalescer.execute(addr, new FederatedRequest(RequestType.EXEC_INST, -1,
+					"CP°+°" + id + "·SCALAR·FP64°1·SCALAR·FP64·true°" + out + "·SCALAR·FP64")));
+				id = out;
+			}
+			for(Future<FederatedResponse> f : deferred)
+				assertFalse(f.isDone());
+
+			// the get request flushes all deferred requests
+			final FederatedResponse r = FederatedRequestCoalescer
+				.execute(addr, new FederatedRequest(RequestType.GET_VAR, id)).get(5000, TimeUnit.MILLISECONDS);
+			assertEquals(7 + steps, ((ScalarObject) r.getData()[0]).getDoubleValue(), 0);
+			for(Future<FederatedResponse> f : deferred)
+				assertTrue(f.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed lazy federated requests: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void verifyConcurrentFlushes() {
+		runConcurrentChains(false);
+	}
+
+	@Test
+	public void verifyConcurrentThreadContexts() {
+		// like parfor workers, every coordinator thread uses its own execution context on the worker
+		runConcurrentChains(true);
+	}
+
+	private void runConcurrentChains(boolean ownContext) {
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			// concurrent coordinator threads defer, flush, and await their own chains
+			final List<Future<Double>> results = new ArrayList<>();
+			for(int t = 0; t < 8; t++) {
+				final double start = t;
+				final long tid = ownContext ? t + 1 : 0;
+				results.add(pool.submit(() -> {
+					long id = FederationUtils.getNextFedDataID();
+					FederatedRequestCoalescer.execute(addr,
+						withTID(new FederatedRequest(RequestType.PUT_VAR, null, id, new DoubleObject(start)), tid));
+					for(int i = 0; i < steps; i++) {
+						final long out = FederationUtils.getNextFedDataID();
+						FederatedRequestCoalescer.execute(addr, withTID(new FederatedRequest(RequestType.EXEC_INST, -1,
+							"CP°+°" + id + "·SCALAR·FP64°1·SCALAR·FP64·true°" + out + "·SCALAR·FP64"), tid));
+						id = out;
+					}
+					final FederatedResponse r = FederatedRequestCoalescer
+						.execute(addr, withTID(new FederatedRequest(RequestType.GET_VAR, id), tid))
+						.get(5000, TimeUnit.MILLISECONDS);
+					return ((ScalarObject) r.getData()[0]).getDoubleValue();
+				}));
+			}
+			for(int t = 0; t < results.size(); t++)
+				assertEquals(t + steps, results.get(t).get(10000, TimeUnit.MILLISECONDS), 0);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed concurrent lazy federated requests: " + e.getMessage());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void verifyDeferredError() {
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			final long id = FederationUtils.getNextFedDataID();
+			final Future<FederatedResponse> put = FederatedRequestCoalescer.execute(addr,
+				new FederatedRequest(RequestType.PUT_VAR, null, id, new DoubleObject(3)));
+			final Future<FederatedResponse> err = FederatedRequestCoalescer.execute(addr,
+				new FederatedRequest(RequestType.EXEC_INST, -1, "CP°+°" + (id + 1000000)
+					+ "·SCALAR·FP64°1·SCALAR·FP64·true°" + (id + 1000001) + "·SCALAR·FP64"));
+
+			// awaiting a deferred response flushes all deferred requests, but only the failed batch reports the error
+			assertFalse(err.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+			assertTrue(put.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+			final FederatedResponse r = FederatedRequestCoalescer
+				.execute(addr, new FederatedRequest(RequestType.GET_VAR, id)).get(5000, TimeUnit.MILLISECONDS);
+			assertEquals(3, ((ScalarObject) r.getData()[0]).getDoubleValue(), 0);
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed lazy federated requests: " + e.getMessage());
+		}
+	}
+
+	private static FederatedRequest withTID(FederatedRequest fr, long tid) {
+		fr.setTID(tid);
+		return fr;
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.caching.MatrixObject.UpdateType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport.LocalMode;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Federated requests to workers of the same JVM over netty local channels, with and without serialization, where
+ * in-place updates of blocks on either side must not affect the other side.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerLocal extends FedWorkerBase {
+
+	private final LocalMode mode;
+	private final MatrixBlock mb;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		final int serialized = startWorker("src/test/resources/component/federated/local_serialized.xml");
+		final int reference = startWorker("src/test/resources/component/federated/local_reference.xml");
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(100, 10, 0.5, 9.5, 1.0, 7);
+
+		tests.add(new Object[] {serialized, LocalMode.SERIALIZED, mb});
+		tests.add(new Object[] {reference, LocalMode.REFERENCE, mb});
+
+		return tests;
+	}
+
+	public FedWorkerLocal(int port, LocalMode mode, MatrixBlock mb) {
+		super(port);
+		this.mode = mode;
+		this.mb = mb;
+	}
+
+	@Test
+	public void verifyLocalTransport() throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		try {
+			setLocalMode(LocalMode.SERIALIZED); // uses the mode of the worker's local channel
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			assertEquals(mode, FederatedTransport.getLocalMode(addr));
+
+			final long id = putMatrixBlock(mb);
+			final MatrixBlock ret = getMatrixBlock(id);
+			TestUtils.compareMatricesBitAvgDistance(mb, ret, 0, 0,
+				"Not equivalent matrix block returned from federated site");
+			// blocks are copied at the variable boundary even without serialization
+			assertNotSame(mode == LocalMode.REFERENCE ? "block not copied" : "block not serialized", mb, ret);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyInPlaceUpdates() throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		try {
+			setLocalMode(LocalMode.SERIALIZED);
+			final MatrixBlock in = new MatrixBlock(mb);
+			final long id = putMatrixBlock(in);
+
+			// in-place updates of the coordinator's block after the put
+			in.set(0, 0, -1);
+			in.leftIndexingOperations(new MatrixBlock(2, 2, -2.0), 1, 2, 1, 2, in, UpdateType.INPLACE);
+			in.denseToSparse(true);
+			final MatrixBlock ret1 = getMatrixBlock(id);
+			TestUtils.compareMatricesBitAvgDistance(mb, ret1, 0, 0,
+				"Worker variable modified by in-place update of the coordinator");
+
+			// in-place updates of the returned block
+			ret1.set(0, 0, -1);
+			ret1.leftIndexingOperations(new MatrixBlock(2, 2, -2.0), 1, 2, 1, 2, ret1, UpdateType.INPLACE);
+			final MatrixBlock ret2 = getMatrixBlock(id);
+			assertNotSame(ret1, ret2);
+			TestUtils.compareMatricesBitAvgDistance(mb, ret2, 0, 0,
+				"Worker variable modified by in-place update of a returned block");
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyDisabledLocalTransport() throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		try {
+			// coordinators without local transport connect over TCP to the same worker
+			setLocalMode(LocalMode.NONE);
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+			assertEquals(LocalMode.NONE, FederatedTransport.getLocalMode(addr));
+
+			final long id = putMatrixBlock(mb);
+			final MatrixBlock ret = getMatrixBlock(id);
+			TestUtils.compareMatricesBitAvgDistance(mb, ret, 0, 0,
+				"Not equivalent matrix block returned from federated site");
+			assertNotSame("block not serialized", mb, ret);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	private static void setLocalMode(LocalMode mode) {
+		final DMLConfig local = new DMLConfig();
+		local.setTextValue(DMLConfig.FEDERATED_LOCAL, mode.name().toLowerCase());
+		ConfigurationManager.setLocalConfig(local);
+	}
+}
@@ -19,6 +19,7 @@
 
 package org.apache.sysds.test.component.federated;
 
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -78,4 +79,18 @@ public class FedWorkerMatrixCompress extends FedWorkerBase {
 			"Not equivalent matrix block returned from federated site");
 	}
 
+	@Test
+	public void verifyCompressedPutStaysCompressed() {
+		final MatrixBlock mbcLocal = CompressedMatrixBlockFactory.compress(mb).getLeft();
+		if(!(mbcLocal instanceof CompressedMatrixBlock))
+			return;
+
+		// compressed blocks are sent and returned in their compressed representation
+		final long id = putMatrixBlock(mbcLocal);
+		final MatrixBlock mbr = getMatrixBlock(id);
+		assertTrue("Federated site did not keep the compressed matrix block", mbr instanceof CompressedMatrixBlock);
+		TestUtils.compareMatricesBitAvgDistance(mbcLocal, mbr, 0, 0,
+			"Not equivalent matrix block returned from federated site");
+	}
+
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedMultiplexer;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.instructions.cp.ScalarObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Many in-flight request batches over multiplexed connections, where responses are matched to their requests by
+ * correlation IDs.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerMultiplex extends FedWorkerBase {
+
+	private final int channels;
+	private final int inflight;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		final int port = startWorker();
+
+		tests.add(new Object[] {port, 1, 1});
+		tests.add(new Object[] {port, 1, 200});
+		tests.add(new Object[] {port, 3, 200});
+
+		return tests;
+	}
+
+	public FedWorkerMultiplex(int port, int channels, int inflight) {
+		super(port);
+		this.channels = channels;
+		this.inflight = inflight;
+	}
+
+	@Test
+	public void verifyInFlightPutGetScalar() {
+		final EventLoopGroup group = new NioEventLoopGroup(2);
+		final FederatedMultiplexer mux = new FederatedMultiplexer(group, channels);
+		try {
+			final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+
+			// issue all put requests without waiting for their responses
+			final long[] ids = new long[inflight];
+			final List<Future<FederatedResponse>> puts = new ArrayList<>();
+			for(int i = 0; i < inflight; i++) {
+				ids[i] = FederationUtils.getNextFedDataID();
+				puts.add(mux.execute(addr, new FederatedRequest(RequestType.PUT_VAR, null, ids[i], new DoubleObject(i))));
+			}
+			for(Future<FederatedResponse> f : puts)
+				assertTrue(f.get(5000, TimeUnit.MILLISECONDS).isSuccessful());
+
+			// issue all get requests and match each response to its request
+			final List<Future<FederatedResponse>> gets = new ArrayList<>();
+			for(int i = 0; i < inflight; i++)
+				gets.add(mux.execute(addr, new FederatedRequest(RequestType.GET_VAR, ids[i])));
+			for(int i = 0; i < inflight; i++) {
+				final FederatedResponse r = gets.get(i).get(5000, TimeUnit.MILLISECONDS);
+				assertEquals("response not matching request", i, ((ScalarObject) r.getData()[0]).getDoubleValue(), 0);
+			}
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+			fail("Failed multiplexed federated requests: " + e.getMessage());
+		}
+		finally {
+			mux.close();
+			group.shutdownGracefully();
+		}
+	}
+}
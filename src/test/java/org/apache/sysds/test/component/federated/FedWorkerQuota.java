@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Memory quota of 1MB per coordinator, which covers read data and the outputs of instructions.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerQuota extends FedWorkerBase {
+
+	private final MatrixBlock mb;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		// dense block slightly below the quota
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(400, 300, 0.5, 9.5, 1.0, 3);
+		tests.add(new Object[] {startWorker("src/test/resources/component/federated/quota.xml"), mb});
+
+		return tests;
+	}
+
+	public FedWorkerQuota(int port, MatrixBlock mb) {
+		super(port);
+		this.mb = mb;
+	}
+
+	@Test
+	public void verifyInstructionBeyondQuota() throws Exception {
+		clear();
+		final long id = putMatrixBlock(mb);
+		final long out = FederationUtils.getNextFedDataID();
+		final FederatedResponse r = execute(new FederatedRequest(RequestType.EXEC_INST, out,
+			"CP°+°" + id + "·MATRIX·FP64°1·SCALAR·FP64·true°" + out + "·MATRIX·FP64"));
+		assertFalse(r.isSuccessful());
+		assertTrue(r.getErrorMessage().contains("Memory quota"));
+		// the rejected output is removed, while the input remains
+		assertFalse(execute(new FederatedRequest(RequestType.GET_VAR, out)).isSuccessful());
+		TestUtils.compareMatricesBitAvgDistance(mb, getMatrixBlock(id), 0, 0,
+			"Not equivalent matrix block returned from federated site");
+	}
+
+	@Test
+	public void verifyReadBeyondQuota() throws Exception {
+		clear();
+		// the file metadata describes 8MB of data, which is rejected before reading the file
+		final File dir = Files.createTempDirectory("fedquota").toFile();
+		final File mtd = new File(dir, "X.csv.mtd");
+		try {
+			Files.writeString(mtd.toPath(), "{\"data_type\": \"matrix\", \"value_type\": \"double\", "
+				+ "\"rows\": 1000, \"cols\": 1000, \"nnz\": 1000000, \"format\": \"csv\"}");
+			final FederatedResponse r = execute(new FederatedRequest(RequestType.READ_VAR,
+				FederationUtils.getNextFedDataID(), new Object[] {new File(dir, "X.csv").getPath(),
+					DataType.MATRIX.toString()}));
+			assertFalse(r.isSuccessful());
+			assertTrue(r.getErrorMessage().contains("Memory quota"));
+		}
+		finally {
+			mtd.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void verifyWithinQuota() throws Exception {
+		clear();
+		final long id = putMatrixBlock(mb);
+		TestUtils.compareMatricesBitAvgDistance(mb, getMatrixBlock(id), 0, 0,
+			"Not equivalent matrix block returned from federated site");
+	}
+
+	private void clear() throws Exception {
+		// remove the data of previous tests
+		assertTrue(execute(new FederatedRequest(RequestType.CLEAR)).isSuccessful());
+	}
+
+	private FederatedResponse execute(FederatedRequest request) throws Exception {
+		final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+		return FederatedData.executeFederatedOperation(addr, request).get(5000, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRange;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedReduction;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederationMap;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.functionobjects.Plus;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.BinaryOperator;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Worker-to-worker reduction of partial results along trees and chains of federated workers.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerReduction extends FedWorkerBase {
+	private static final int NUM_WORKERS = 5;
+	private static int[] ports;
+
+	private final int fanout;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+
+		ports = new int[NUM_WORKERS];
+		for(int i = 0; i < NUM_WORKERS; i++)
+			ports[i] = startWorker();
+
+		tests.add(new Object[] {ports[0], 1});
+		tests.add(new Object[] {ports[0], 2});
+		tests.add(new Object[] {ports[0], 4});
+
+		return tests;
+	}
+
+	public FedWorkerReduction(int port, int fanout) {
+		super(port);
+		this.fanout = fanout;
+	}
+
+	@Test
+	public void verifyReduceAdd() {
+		final FederationMap fedMap = createFederationMap();
+		final long id = FederationUtils.getNextFedDataID();
+		final MatrixBlock[] partials = new MatrixBlock[NUM_WORKERS];
+		final FederatedRequest[] frSliced = new FederatedRequest[NUM_WORKERS];
+		for(int i = 0; i < NUM_WORKERS; i++) {
+			partials[i] = TestUtils.generateTestMatrixBlock(200, 100, -1, 1, 0.7, 7 + i);
+			frSliced[i] = new FederatedRequest(RequestType.PUT_VAR, null, id, partials[i]);
+		}
+
+		final MatrixBlock ret = FederatedReduction.aggAdd(fedMap, 0, fanout, frSliced,
+			new FederatedRequest(RequestType.NOOP, id));
+
+		MatrixBlock expected = partials[0];
+		for(int i = 1; i < NUM_WORKERS; i++)
+			expected = expected.binaryOperations(new BinaryOperator(Plus.getPlusFnObject()), partials[i],
+				new MatrixBlock());
+		TestUtils.compareMatrices(expected, ret, 1e-10);
+		assertEquals(0, FederatedReduction.getNumPending());
+	}
+
+	@Test
+	public void verifyConcurrentReductions() throws Exception {
+		// reductions over differently ordered federation maps of the same workers and coordinator thread
+		final ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			final List<Future<MatrixBlock>> rets = new ArrayList<>();
+			final List<MatrixBlock> expected = new ArrayList<>();
+			for(int t = 0; t < 4; t++) {
+				final FederationMap fedMap = createFederationMap(t % 2 == 1);
+				final long id = FederationUtils.getNextFedDataID();
+				final FederatedRequest[] frSliced = new FederatedRequest[NUM_WORKERS];
+				MatrixBlock sum = null;
+				for(int i = 0; i < NUM_WORKERS; i++) {
+					final MatrixBlock mb = TestUtils.generateTestMatrixBlock(200, 100, -1, 1, 0.7, 31 * t + i);
+					frSliced[i] = new FederatedRequest(RequestType.PUT_VAR, null, id, mb);
+					sum = (sum == null) ? mb : sum.binaryOperations(new BinaryOperator(Plus.getPlusFnObject()), mb,
+						new MatrixBlock());
+				}
+				expected.add(sum);
+				rets.add(pool.submit(() -> FederatedReduction.aggAdd(fedMap, 0, fanout, frSliced,
+					new FederatedRequest(RequestType.NOOP, id))));
+			}
+			for(int t = 0; t < rets.size(); t++)
+				TestUtils.compareMatrices(expected.get(t), rets.get(t).get(30, TimeUnit.SECONDS), 1e-10);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void verifyReduceAddError() {
+		final FederationMap fedMap = createFederationMap();
+		final long id = FederationUtils.getNextFedDataID();
+		final FederatedRequest[] frSliced = new FederatedRequest[NUM_WORKERS];
+		for(int i = 0; i < NUM_WORKERS; i++) {
+			// the last worker misses its partial result
+			final long pid = (i == NUM_WORKERS - 1) ? FederationUtils.getNextFedDataID() : id;
+			frSliced[i] = new FederatedRequest(RequestType.PUT_VAR, null, pid,
+				TestUtils.generateTestMatrixBlock(20, 10, -1, 1, 0.7, 3 + i));
+		}
+		try {
+			FederatedReduction.aggAdd(fedMap, 0, fanout, frSliced, new FederatedRequest(RequestType.NOOP, id));
+			fail("Expected exception of failed federated reduction");
+		}
+		catch(DMLRuntimeException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void verifyBoundedWait() throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		try {
+			// without a federated timeout, the reductions still wait for a bounded time
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_TIMEOUT, "-1");
+			ConfigurationManager.setLocalConfig(local);
+			assertEquals(FederatedReduction.DEFAULT_TIMEOUT, FederatedReduction.getTimeout());
+			local.setTextValue(DMLConfig.FEDERATED_TIMEOUT, "7");
+			assertEquals(7, FederatedReduction.getTimeout());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+		}
+	}
+
+	@Test
+	public void verifyTopology() {
+		final int[] parents = createFederationMap().getReductionTopology(fanout);
+		// complete tree in the order of the worker ports, which are all on the same host
+		final Integer[] order = new Integer[NUM_WORKERS];
+		for(int i = 0; i < NUM_WORKERS; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingInt(i -> ports[i]));
+		assertEquals(-1, parents[order[0]]);
+		for(int j = 1; j < NUM_WORKERS; j++)
+			assertEquals((int) order[(j - 1) / fanout], parents[order[j]]);
+	}
+
+	@Test
+	public void verifyGlobalTopology() {
+		// the topology only depends on the workers, not on their order in the federation map
+		final int[] parents = createFederationMap().getReductionTopology(fanout);
+		final int[] reversed = createFederationMap(true).getReductionTopology(fanout);
+		for(int i = 0; i < NUM_WORKERS; i++) {
+			final int r = NUM_WORKERS - 1 - i;
+			assertEquals(parents[i] < 0 ? -1 : NUM_WORKERS - 1 - parents[i], reversed[r]);
+		}
+		// sub-federations keep the order of parents before children
+		final int[] sub = createFederationMap(true, 0, 2, 4).getReductionTopology(fanout);
+		for(int i = 0; i < sub.length; i++)
+			if(sub[i] >= 0)
+				assertTrue(ports[new int[] {4, 2, 0}[sub[i]]] < ports[new int[] {4, 2, 0}[i]]);
+	}
+
+	private static FederationMap createFederationMap() {
+		return createFederationMap(false);
+	}
+
+	private static FederationMap createFederationMap(boolean reverse, int... workers) {
+		try {
+			if(workers.length == 0)
+				workers = IntStream.range(0, NUM_WORKERS).toArray();
+			final List<Pair<FederatedRange, FederatedData>> fedMap = new ArrayList<>();
+			for(int i = 0; i < workers.length; i++) {
+				final int w = workers[reverse ? workers.length - 1 - i : i];
+				final FederatedRange range = new FederatedRange(new long[] {i * 200, 0}, new long[] {(i + 1) * 200, 100});
+				final FederatedData data = new FederatedData(DataType.MATRIX,
+					new InetSocketAddress(InetAddress.getByName("localhost"), ports[w]), null);
+				fedMap.add(Pair.of(range, data));
+			}
+			return new FederationMap(fedMap);
+		}
+		catch(Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
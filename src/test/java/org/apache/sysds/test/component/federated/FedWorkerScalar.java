@@ -20,11 +20,15 @@
 package org.apache.sysds.test.component.federated;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Random;
 
+import org.apache.sysds.runtime.controlprogram.federated.FederatedLatencyHistogram;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedLatencyHistogram.Stage;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -76,4 +80,23 @@ public class FedWorkerScalar extends FedWorkerBase {
 			assertEquals("values not equivalent", vrInit, vr, 0.0000001);
 		}
 	}
+
+	@Test
+	public void verifyLatencyStatistics() throws InterruptedException {
+		final long id = putDouble(new Random(seed).nextDouble());
+		for(int i = 0; i < rep; i++)
+			getDouble(id);
+		// the latencies are recorded by a listener of the response, i.e., after waiting threads are notified
+		FederatedLatencyHistogram[] h = null;
+		for(int i = 0; i < 500 && (h == null || h[Stage.TOTAL.ordinal()].getCount() < rep); i++) {
+			Thread.sleep(10);
+			h = FederatedStatistics.getFedLatencies().get("GET_VAR");
+		}
+		assertTrue(h != null && h[Stage.TOTAL.ordinal()].getCount() >= rep);
+		assertTrue(h[Stage.SERIALIZE.ordinal()].getMax() > 0);
+		assertTrue(h[Stage.EXECUTE.ordinal()].getMax() > 0);
+		assertTrue(h[Stage.DESERIALIZE.ordinal()].getMax() > 0);
+		assertTrue(FederatedStatistics.displayFedLatencyStats(FederatedStatistics.getFedLatencies())
+			.contains("Fed Latency GET_VAR total"));
+	}
 }
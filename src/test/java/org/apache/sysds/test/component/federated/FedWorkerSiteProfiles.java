@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSiteProfiles.SiteProfile;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Probing of federated sites, and persistence of the measured site profiles.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerSiteProfiles extends FedWorkerBase {
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+		tests.add(new Object[] {startWorker()});
+		return tests;
+	}
+
+	public FedWorkerSiteProfiles(int port) {
+		super(port);
+	}
+
+	@After
+	public void reset() {
+		FederatedSiteProfiles.reset();
+	}
+
+	@Test
+	public void verifyProbe() throws Exception {
+		final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+		assertNull(FederatedSiteProfiles.get(addr));
+		final SiteProfile profile = FederatedSiteProfiles.probe(addr);
+		assertTrue(profile.getLatency() > 0);
+		assertTrue(profile.getUploadBandwidth() > 0);
+		assertTrue(profile.getDownloadBandwidth() > 0);
+		assertTrue(profile.getNumCores() >= 1);
+		assertTrue(profile.getFreeMemory() > 0);
+		assertSame(profile, FederatedSiteProfiles.get(addr));
+		assertEquals(profile.getLatency(), FederatedSiteProfiles.getMeanLatency(-1), 0);
+	}
+
+	@Test
+	public void verifyPersistedProfiles() throws Exception {
+		final InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName("localhost"), port);
+		final File file = File.createTempFile("fedprofiles", ".properties");
+		file.delete();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_PROFILE_CACHE, file.getAbsolutePath());
+			ConfigurationManager.setLocalConfig(local);
+			final SiteProfile profile = FederatedSiteProfiles.probe(addr);
+			assertTrue(file.exists());
+
+			// new session, with profiles from the persisted cache
+			FederatedSiteProfiles.reset();
+			final SiteProfile loaded = FederatedSiteProfiles.get(addr);
+			assertNotNull(loaded);
+			assertEquals(profile.getTimestamp(), loaded.getTimestamp());
+			assertEquals(profile.getNumCores(), loaded.getNumCores());
+			assertEquals(profile.getDownloadBandwidth(), loaded.getDownloadBandwidth(), 0);
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			file.delete();
+		}
+	}
+}
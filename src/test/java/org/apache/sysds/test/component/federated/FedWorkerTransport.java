@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTransport;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+/**
+ * Federated requests over the nio and native epoll transports, and with non-default socket options.
+ */
+@RunWith(value = Parameterized.class)
+public class FedWorkerTransport extends FedWorkerBase {
+	private static final String DIR = "src/test/resources/component/federated/";
+
+	private final String conf;
+	private final boolean epoll;
+	private final MatrixBlock mb;
+
+	@Parameters
+	public static Collection<Object[]> data() {
+		final ArrayList<Object[]> tests = new ArrayList<>();
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(200, 50, 0.5, 9.5, 1.0, 11);
+
+		tests.add(new Object[] {startWorker(DIR + "transport_nio.xml"), "transport_nio.xml", false, mb});
+		// workers with epoll transport fail to start without the native library
+		if(Epoll.isAvailable())
+			tests.add(new Object[] {startWorker(DIR + "transport_epoll.xml"), "transport_epoll.xml", true, mb});
+		tests.add(new Object[] {startWorker(DIR + "transport_buffers.xml"), "transport_buffers.xml",
+			Epoll.isAvailable(), mb});
+
+		return tests;
+	}
+
+	public FedWorkerTransport(int port, String conf, boolean epoll, MatrixBlock mb) {
+		super(port);
+		this.conf = conf;
+		this.epoll = epoll;
+		this.mb = mb;
+	}
+
+	@Test
+	public void verifyRoundTrip() {
+		assumeTrue(!epoll || Epoll.isAvailable());
+		final long id = putMatrixBlock(mb);
+		final MatrixBlock ret = getMatrixBlock(id);
+		TestUtils.compareMatricesBitAvgDistance(mb, ret, 0, 0,
+			"Not equivalent matrix block returned from federated site");
+	}
+
+	@Test
+	public void verifyTransportOptions() throws Exception {
+		assumeTrue(!epoll || Epoll.isAvailable());
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		EventLoopGroup group = null;
+		try {
+			final DMLConfig local = new DMLConfig(DIR + conf);
+			ConfigurationManager.setLocalConfig(local);
+			assertEquals(epoll, FederatedTransport.isEpoll());
+
+			group = FederatedTransport.createEventLoopGroup(1);
+			assertEquals(epoll ? EpollEventLoopGroup.class : NioEventLoopGroup.class, group.getClass());
+
+			final Bootstrap b = FederatedTransport.createBootstrap(group);
+			final Map<ChannelOption<?>, Object> options = b.config().options();
+			assertEquals(local.getBooleanValue(DMLConfig.FEDERATED_TCP_NODELAY), options.get(ChannelOption.TCP_NODELAY));
+			final int sndbuf = local.getIntValue(DMLConfig.FEDERATED_SO_SNDBUF);
+			final int rcvbuf = local.getIntValue(DMLConfig.FEDERATED_SO_RCVBUF);
+			final int low = local.getIntValue(DMLConfig.FEDERATED_WRITE_BUFFER_LOW);
+			final int high = local.getIntValue(DMLConfig.FEDERATED_WRITE_BUFFER_HIGH);
+			if(sndbuf > 0) {
+				assertEquals(sndbuf * 1024, options.get(ChannelOption.SO_SNDBUF));
+				assertEquals(rcvbuf * 1024, options.get(ChannelOption.SO_RCVBUF));
+				final WriteBufferWaterMark wm = (WriteBufferWaterMark) options
+					.get(ChannelOption.WRITE_BUFFER_WATER_MARK);
+				assertEquals(low * 1024, wm.low());
+				assertEquals(high * 1024, wm.high());
+			}
+			else {
+				// operating system and netty defaults
+				assertFalse(options.containsKey(ChannelOption.SO_SNDBUF));
+				assertFalse(options.containsKey(ChannelOption.WRITE_BUFFER_WATER_MARK));
+			}
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+			if(group != null)
+				group.shutdownGracefully();
+		}
+	}
+
+	@Test
+	public void verifySingleWaterMark() throws Exception {
+		// a single configured water mark is combined with netty's default of the other one
+		final WriteBufferWaterMark def = WriteBufferWaterMark.DEFAULT;
+		assertWaterMarks(128, -1, 128 * 1024, 128 * 1024);
+		assertWaterMarks(16, -1, 16 * 1024, def.high());
+		assertWaterMarks(-1, 256, def.low(), 256 * 1024);
+		assertWaterMarks(-1, 8, 8 * 1024, 8 * 1024);
+	}
+
+	private static void assertWaterMarks(int low, int high, int expLow, int expHigh) throws Exception {
+		final DMLConfig prev = ConfigurationManager.getDMLConfig();
+		final EventLoopGroup group = new NioEventLoopGroup(1);
+		try {
+			final DMLConfig local = new DMLConfig(DIR + "transport_nio.xml");
+			local.setTextValue(DMLConfig.FEDERATED_WRITE_BUFFER_LOW, String.valueOf(low));
+			local.setTextValue(DMLConfig.FEDERATED_WRITE_BUFFER_HIGH, String.valueOf(high));
+			ConfigurationManager.setLocalConfig(local);
+			final WriteBufferWaterMark wm = (WriteBufferWaterMark) FederatedTransport.createBootstrap(group).config()
+				.options().get(ChannelOption.WRITE_BUFFER_WATER_MARK);
+			assertEquals(expLow, wm.low());
+			assertEquals(expHigh, wm.high());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(prev);
+			group.shutdownGracefully();
+		}
+	}
+}
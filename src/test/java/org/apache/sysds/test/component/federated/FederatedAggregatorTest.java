@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.hops.fedplanner.FTypes.FType;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedAggregator;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRange;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.controlprogram.federated.FederationMap;
+import org.apache.sysds.runtime.controlprogram.federated.FederationUtils;
+import org.apache.sysds.runtime.functionobjects.Plus;
+import org.apache.sysds.runtime.instructions.InstructionUtils;
+import org.apache.sysds.runtime.instructions.cp.BooleanObject;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.instructions.cp.ScalarObject;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.runtime.matrix.operators.BinaryOperator;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+public class FederatedAggregatorTest {
+
+	@Test
+	public void testAggAddCompletionOrder() throws Exception {
+		final MatrixBlock[] partials = createPartials(4, 10, 10);
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(partials.length);
+		// complete in reverse order from another thread, while the first response is still outstanding
+		final Thread t = new Thread(() -> {
+			for(int i = partials.length - 1; i >= 0; i--) {
+				sleep(20);
+				ffr[i].complete(new FederatedResponse(ResponseType.SUCCESS, partials[i]));
+			}
+		});
+		t.start();
+		final MatrixBlock ret = FederationUtils.aggAdd(ffr);
+		t.join();
+		TestUtils.compareMatrices(sum(partials), ret, 1e-10);
+	}
+
+	@Test
+	public void testAggAddMixedFutures() throws Exception {
+		final MatrixBlock[] partials = createPartials(3, 20, 5);
+		final Promise<FederatedResponse> p = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+		final FutureTask<FederatedResponse> task = new FutureTask<>(
+			() -> new FederatedResponse(ResponseType.SUCCESS, partials[1]));
+		final CompletableFuture<FederatedResponse> cf = CompletableFuture
+			.completedFuture(new FederatedResponse(ResponseType.SUCCESS, partials[2]));
+		@SuppressWarnings("unchecked")
+		final Future<FederatedResponse>[] ffr = new Future[] {p, task, cf};
+		final Thread t = new Thread(() -> {
+			sleep(50);
+			task.run();
+			sleep(50);
+			p.setSuccess(new FederatedResponse(ResponseType.SUCCESS, partials[0]));
+		});
+		t.start();
+		final MatrixBlock ret = FederationUtils.aggAdd(ffr);
+		t.join();
+		TestUtils.compareMatrices(sum(partials), ret, 1e-10);
+	}
+
+	@Test
+	public void testAggAddParallel() {
+		final MatrixBlock[] partials = createPartials(16, 300, 300);
+		final MatrixBlock ret = FederationUtils.aggAdd(createCompletedFutures(partials));
+		TestUtils.compareMatrices(sum(partials), ret, 1e-10);
+	}
+
+	@Test
+	public void testAggAddKeepsPartials() {
+		final MatrixBlock[] partials = createPartials(3, 10, 10);
+		final MatrixBlock first = new MatrixBlock();
+		first.copy(partials[0]);
+		FederatedAggregator.aggregate(createCompletedFutures(partials), new BinaryOperator(Plus.getPlusFnObject()));
+		TestUtils.compareMatrices(first, partials[0], 0);
+	}
+
+	@Test
+	public void testAggMinMaxVector() {
+		final MatrixBlock[] partials = createPartials(5, 50, 1);
+		final MatrixBlock ret = FederationUtils.aggMinMax(createCompletedFutures(partials), true, false,
+			Optional.of(FType.COL));
+		for(int i = 0; i < 50; i++) {
+			double min = Double.MAX_VALUE;
+			for(MatrixBlock mb : partials)
+				min = Math.min(min, mb.get(i, 0));
+			assertEquals(min, ret.get(i, 0), 0);
+		}
+	}
+
+	@Test
+	public void testAggMinMaxScalar() {
+		final DoubleObject[] partials = {new DoubleObject(3), new DoubleObject(-7), new DoubleObject(5)};
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(partials.length);
+		for(int i = 0; i < partials.length; i++)
+			ffr[i].complete(new FederatedResponse(ResponseType.SUCCESS, partials[i]));
+		assertEquals(5, FederationUtils.aggMinMax(ffr, false, true, Optional.empty()).get(0, 0), 0);
+		assertEquals(-7, FederationUtils.aggMinMax(ffr, true, true, Optional.empty()).get(0, 0), 0);
+	}
+
+	@Test
+	public void testAggScalarSumCompletionOrder() throws Exception {
+		final double[] partials = {1e16, 1, 1, -1e16};
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(partials.length);
+		// the last partial completes first, while the first response is still outstanding
+		final Thread t = new Thread(() -> {
+			for(int i = partials.length - 1; i >= 0; i--) {
+				sleep(20);
+				ffr[i].complete(new FederatedResponse(ResponseType.SUCCESS, new DoubleObject(partials[i])));
+			}
+		});
+		t.start();
+		final ScalarObject ret = FederationUtils
+			.aggScalar(InstructionUtils.parseBasicAggregateUnaryOperator("uak+"), ffr, (FederationMap) null);
+		t.join();
+		// kahan summation retains the small partials independent of the completion order
+		assertEquals(2, ret.getDoubleValue(), 0);
+	}
+
+	@Test
+	public void testAggMeanCompletionOrder() throws Exception {
+		final MatrixBlock[] partials = createPartials(3, 1, 20);
+		final long[] rows = {10, 30, 60};
+		final List<Pair<FederatedRange, FederatedData>> ranges = new ArrayList<>();
+		for(int i = 0, begin = 0; i < rows.length; begin += rows[i], i++)
+			ranges.add(Pair.of(new FederatedRange(new long[] {begin, 0}, new long[] {begin + rows[i], 20}),
+				new FederatedData(DataType.MATRIX, null, null)));
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(partials.length);
+		final Thread t = new Thread(() -> {
+			for(int i = partials.length - 1; i >= 0; i--) {
+				sleep(20);
+				ffr[i].complete(new FederatedResponse(ResponseType.SUCCESS, partials[i]));
+			}
+		});
+		t.start();
+		final MatrixBlock ret = FederationUtils.aggMean(ffr, new FederationMap(ranges));
+		t.join();
+		for(int j = 0; j < 20; j++) {
+			double expected = 0;
+			for(int i = 0; i < rows.length; i++)
+				expected += partials[i].get(0, j) * rows[i];
+			assertEquals(expected / 100, ret.get(0, j), 1e-10);
+		}
+	}
+
+	@Test
+	public void testAggBooleanScalar() {
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(3);
+		ffr[0].complete(new FederatedResponse(ResponseType.SUCCESS, new BooleanObject(false)));
+		ffr[1].complete(new FederatedResponse(ResponseType.SUCCESS, new BooleanObject(true)));
+		ffr[2].complete(new FederatedResponse(ResponseType.SUCCESS, new BooleanObject(false)));
+		assertTrue(FederationUtils.aggBooleanScalar(ffr));
+		ffr[1] = CompletableFuture.completedFuture(new FederatedResponse(ResponseType.SUCCESS, new BooleanObject(false)));
+		assertFalse(FederationUtils.aggBooleanScalar(ffr));
+	}
+
+	@Test
+	public void testAggAddError() {
+		final CompletableFuture<FederatedResponse>[] ffr = createFutures(2);
+		ffr[0].complete(new FederatedResponse(ResponseType.SUCCESS, createPartials(1, 2, 2)[0]));
+		ffr[1].complete(new FederatedResponse(ResponseType.ERROR, new DMLRuntimeException("failed partial")));
+		try {
+			FederationUtils.aggAdd(ffr);
+			fail("Expected exception of failed partial result");
+		}
+		catch(DMLRuntimeException ex) {
+			assertTrue(ex.getMessage().contains("failed partial"));
+		}
+	}
+
+	private static MatrixBlock[] createPartials(int n, int rows, int cols) {
+		final MatrixBlock[] ret = new MatrixBlock[n];
+		for(int i = 0; i < n; i++)
+			ret[i] = TestUtils.generateTestMatrixBlock(rows, cols, -1, 1, 0.8, 13 + i);
+		return ret;
+	}
+
+	private static MatrixBlock sum(MatrixBlock[] partials) {
+		MatrixBlock ret = partials[0];
+		for(int i = 1; i < partials.length; i++)
+			ret = ret.binaryOperations(new BinaryOperator(Plus.getPlusFnObject()), partials[i], new MatrixBlock());
+		return ret;
+	}
+
+	private static Future<FederatedResponse>[] createCompletedFutures(MatrixBlock[] partials) {
+		final CompletableFuture<FederatedResponse>[] ret = createFutures(partials.length);
+		for(int i = 0; i < partials.length; i++)
+			ret[i].complete(new FederatedResponse(ResponseType.SUCCESS, partials[i]));
+		return ret;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static CompletableFuture<FederatedResponse>[] createFutures(int n) {
+		final CompletableFuture<FederatedResponse>[] ret = new CompletableFuture[n];
+		for(int i = 0; i < n; i++)
+			ret[i] = new CompletableFuture<>();
+		return ret;
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		}
+		catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedInflightWindow;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+
+public class FederatedInflightWindowTest {
+
+	@Test
+	public void testRequestWindow() throws Exception {
+		final FederatedInflightWindow window = new FederatedInflightWindow(2, 0);
+		final Sender sender = new Sender();
+		final List<Promise<FederatedResponse>> ret = new ArrayList<>();
+		for(int i = 0; i < 5; i++)
+			ret.add(window.execute(createRequest(), sender));
+		assertEquals(2, sender.size());
+		assertEquals(2, window.getNumInflight());
+		assertEquals(3, window.getNumQueued());
+
+		// completed requests free the window for queued requests in FIFO order
+		final FederatedResponse response = new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+		sender.complete(0, response);
+		assertSame(response, ret.get(0).get());
+		for(int i = 1; i < 5; i++) {
+			final int numSent = Math.min(i + 2, 5);
+			waitFor(() -> sender.size() == numSent);
+			sender.complete(i, new FederatedResponse(ResponseType.SUCCESS_EMPTY));
+			assertTrue(ret.get(i).get(10, TimeUnit.SECONDS).isSuccessful());
+		}
+		waitFor(() -> window.getNumInflight() == 0);
+		assertEquals(0, window.getNumQueued());
+	}
+
+	@Test
+	public void testByteWindow() throws Exception {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(400, 400, -1, 1, 1.0, 7);
+		final FederatedInflightWindow window = new FederatedInflightWindow(0, 2 * mb.getExactSerializedSize());
+		final Sender sender = new Sender();
+		for(int i = 0; i < 4; i++)
+			window.execute(new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, i, mb)}, sender);
+		// the request overhead exceeds the window for the second broadcast
+		assertEquals(1, sender.size());
+		assertEquals(3, window.getNumQueued());
+	}
+
+	@Test
+	public void testMemoryPressure() throws Exception {
+		final FederatedInflightWindow window = new FederatedInflightWindow(4, 0);
+		final Sender sender = new Sender();
+		window.execute(createRequest(), sender);
+		final FederatedResponse response = new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+		response.setMemoryPressure(0.95f);
+		sender.complete(0, response);
+		waitFor(() -> window.getNumInflight() == 0);
+		assertEquals(0.95, window.getMemoryPressure(), 1e-6);
+
+		// the window shrinks to a single request under high memory pressure
+		for(int i = 0; i < 3; i++)
+			window.execute(createRequest(), sender);
+		assertEquals(2, sender.size());
+		assertEquals(2, window.getNumQueued());
+		assertFalse(sender.sent.get(1).isDone());
+	}
+
+	private static FederatedRequest[] createRequest() {
+		return new FederatedRequest[] {new FederatedRequest(RequestType.NOOP)};
+	}
+
+	private static void waitFor(BooleanSupplier cond) throws InterruptedException {
+		for(int i = 0; i < 1000 && !cond.getAsBoolean(); i++)
+			Thread.sleep(10);
+		assertTrue(cond.getAsBoolean());
+	}
+
+	private static class Sender implements Function<FederatedRequest[], Promise<FederatedResponse>> {
+		private final List<Promise<FederatedResponse>> sent = new ArrayList<>();
+
+		@Override
+		public synchronized Promise<FederatedResponse> apply(FederatedRequest[] request) {
+			final Promise<FederatedResponse> ret = new DefaultPromise<>(GlobalEventExecutor.INSTANCE);
+			sent.add(ret);
+			return ret;
+		}
+
+		private synchronized int size() {
+			return sent.size();
+		}
+
+		private synchronized void complete(int i, FederatedResponse response) {
+			sent.get(i).setSuccess(response);
+		}
+	}
+}
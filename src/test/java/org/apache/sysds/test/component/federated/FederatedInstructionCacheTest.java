@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedInstructionCache;
+import org.apache.sysds.runtime.instructions.Instruction;
+import org.apache.sysds.runtime.instructions.InstructionParser;
+import org.apache.sysds.runtime.instructions.cp.BinaryCPInstruction;
+import org.apache.sysds.runtime.instructions.cp.ComputationCPInstruction;
+import org.junit.Test;
+
+public class FederatedInstructionCacheTest {
+
+	private static final String MM_PLUS = "CP°+°_mVar1·MATRIX·FP64°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°1";
+	private static final String MM_PLUS2 = "CP°+°_mVar7·MATRIX·FP64°_mVar8·MATRIX·FP64°_mVar9·MATRIX·FP64°1";
+
+	@Test
+	public void testReuseWithRebinding() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		FederatedInstructionCache.Lease lease = fic.acquire(MM_PLUS);
+		final Instruction ins = lease.getInstruction();
+		lease.release();
+
+		lease = fic.acquire(MM_PLUS2);
+		assertSame(ins, lease.getInstruction());
+		final ComputationCPInstruction cins = (ComputationCPInstruction) lease.getInstruction();
+		assertEquals("_mVar7", cins.input1.getName());
+		assertEquals("_mVar8", cins.input2.getName());
+		assertEquals("_mVar9", cins.output.getName());
+		assertEquals(MM_PLUS2, cins.getInstructionString());
+		assertEquals(1, fic.size());
+	}
+
+	@Test
+	public void testConcurrentLeases() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		final FederatedInstructionCache.Lease l1 = fic.acquire(MM_PLUS);
+		final FederatedInstructionCache.Lease l2 = fic.acquire(MM_PLUS2);
+		assertNotSame(l1.getInstruction(), l2.getInstruction());
+		assertEquals("_mVar1", ((BinaryCPInstruction) l1.getInstruction()).input1.getName());
+		assertEquals("_mVar7", ((BinaryCPInstruction) l2.getInstruction()).input1.getName());
+	}
+
+	@Test
+	public void testCopyAfterRelease() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		final FederatedInstructionCache.Lease lease = fic.acquire(MM_PLUS);
+		final Instruction copy = lease.copyInstruction();
+		lease.release();
+		assertNotSame(copy, lease.getInstruction());
+
+		// rebinding the released instance for another request leaves the copy intact
+		assertSame(lease.getInstruction(), fic.acquire(MM_PLUS2).getInstruction());
+		assertEquals("_mVar1", ((ComputationCPInstruction) copy).input1.getName());
+		assertEquals("_mVar3", ((ComputationCPInstruction) copy).output.getName());
+	}
+
+	@Test
+	public void testSameVariableTwice() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		fic.acquire("CP°*°_mVar1·MATRIX·FP64°_mVar1·MATRIX·FP64°_mVar2·MATRIX·FP64°1").release();
+		final ComputationCPInstruction cins = (ComputationCPInstruction) fic
+			.acquire("CP°*°_mVar5·MATRIX·FP64°_mVar5·MATRIX·FP64°_mVar6·MATRIX·FP64°1").getInstruction();
+		assertEquals("_mVar5", cins.input1.getName());
+		assertEquals("_mVar5", cins.input2.getName());
+		assertEquals("_mVar6", cins.output.getName());
+		// a different aliasing of the inputs is a different template
+		final ComputationCPInstruction cins2 = (ComputationCPInstruction) fic
+			.acquire("CP°*°_mVar5·MATRIX·FP64°_mVar6·MATRIX·FP64°_mVar7·MATRIX·FP64°1").getInstruction();
+		assertNotSame(cins, cins2);
+		assertEquals(2, fic.size());
+	}
+
+	@Test
+	public void testLiteralsNotRebound() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		final Instruction ins = fic.acquire("CP°*°_mVar1·MATRIX·FP64°2·SCALAR·FP64·true°_mVar2·MATRIX·FP64°1")
+			.getInstruction();
+		final FederatedInstructionCache.Lease lease = fic
+			.acquire("CP°*°_mVar1·MATRIX·FP64°3·SCALAR·FP64·true°_mVar2·MATRIX·FP64°1");
+		assertNotSame(ins, lease.getInstruction());
+		assertEquals("3", ((ComputationCPInstruction) lease.getInstruction()).input2.getName());
+	}
+
+	@Test
+	public void testUnsupportedNotCached() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		final String rmvar = "CP°rmvar°_mVar1°_mVar2";
+		final FederatedInstructionCache.Lease l1 = fic.acquire(rmvar);
+		l1.release();
+		assertNotSame(l1.getInstruction(), fic.acquire(rmvar).getInstruction());
+	}
+
+	@Test
+	public void testEviction() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(2);
+		fic.acquire("CP°+°_mVar1·MATRIX·FP64°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°1").release();
+		fic.acquire("CP°-°_mVar1·MATRIX·FP64°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°1").release();
+		fic.acquire("CP°*°_mVar1·MATRIX·FP64°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°1").release();
+		assertEquals(2, fic.size());
+	}
+
+	@Test
+	public void testFragmentPlan() {
+		final FederatedInstructionCache fic = new FederatedInstructionCache(16);
+		final int[][] plan = getPlan(fic, 1);
+		// the rmvar of the consumed intermediate precedes the fused chain exp(X*2+1)
+		assertArrayEquals(new int[][] {{2}, {0, 1, 3}, {4}, {5}}, plan);
+		// fragments of the same template share the cached plan
+		assertSame(plan, getPlan(fic, 11));
+	}
+
+	@Test
+	public void testFragmentPlanRetainedIntermediate() {
+		final String[] insts = {"CP°*°_mVar1·MATRIX·FP64°2·SCALAR·FP64·true°_mVar2·MATRIX·FP64",
+			"CP°exp°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°1",
+			"CP°+°_mVar2·MATRIX·FP64°_mVar3·MATRIX·FP64°_mVar4·MATRIX·FP64°1", "CP°rmvar°_mVar2"};
+		assertArrayEquals(new int[][] {{0}, {1}, {2}, {3}},
+			new FederatedInstructionCache(16).getPlan(insts, parse(insts)));
+	}
+
+	private static int[][] getPlan(FederatedInstructionCache fic, int v) {
+		final String[] insts = {
+			"CP°*°_mVar" + v + "·MATRIX·FP64°2·SCALAR·FP64·true°_mVar" + (v + 1) + "·MATRIX·FP64",
+			"CP°+°_mVar" + (v + 1) + "·MATRIX·FP64°1·SCALAR·FP64·true°_mVar" + (v + 2) + "·MATRIX·FP64",
+			"CP°rmvar°_mVar" + (v + 1),
+			"CP°exp°_mVar" + (v + 2) + "·MATRIX·FP64°_mVar" + (v + 3) + "·MATRIX·FP64°1",
+			"CP°rmvar°_mVar" + (v + 2),
+			"CP°+°_mVar" + (v + 3) + "·MATRIX·FP64°_mVar" + v + "·MATRIX·FP64°_mVar" + (v + 4) + "·MATRIX·FP64°1"};
+		return fic.getPlan(insts, parse(insts));
+	}
+
+	private static Instruction[] parse(String[] insts) {
+		final Instruction[] ret = new Instruction[insts.length];
+		for(int i = 0; i < insts.length; i++)
+			ret[i] = InstructionParser.parseSingleInstruction(insts[i]);
+		return ret;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedLatencyHistogram;
+import org.junit.Test;
+
+public class FederatedLatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		final FederatedLatencyHistogram h = new FederatedLatencyHistogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(0.99));
+		assertEquals(0, h.getMean(), 0);
+	}
+
+	@Test
+	public void testPercentiles() {
+		// uniform latencies of 1..10000 us
+		final FederatedLatencyHistogram h = new FederatedLatencyHistogram();
+		for(int i = 1; i <= 10000; i++)
+			h.add(i * 1000L);
+		assertEquals(10000, h.getCount());
+		assertEquals(10000 * 1000L, h.getMax());
+		assertEquals(5000.5 * 1000, h.getMean(), 1e-6);
+		assertPercentile(5000 * 1000L, h.getPercentile(0.5));
+		assertPercentile(9000 * 1000L, h.getPercentile(0.9));
+		assertPercentile(9900 * 1000L, h.getPercentile(0.99));
+		assertEquals(h.getMax(), h.getPercentile(1));
+	}
+
+	@Test
+	public void testSmallAndLargeLatencies() {
+		final FederatedLatencyHistogram h = new FederatedLatencyHistogram();
+		h.add(-5); // clock granularity
+		h.add(3);
+		h.add(Long.MAX_VALUE);
+		assertEquals(0, h.getPercentile(0.1));
+		assertEquals(3, h.getPercentile(0.5));
+		assertEquals(Long.MAX_VALUE, h.getPercentile(1));
+	}
+
+	@Test
+	public void testMerge() {
+		final FederatedLatencyHistogram h1 = new FederatedLatencyHistogram();
+		final FederatedLatencyHistogram h2 = new FederatedLatencyHistogram();
+		for(int i = 0; i < 100; i++) {
+			h1.add(1000);
+			h2.add(1000000);
+		}
+		h1.merge(h2);
+		assertEquals(200, h1.getCount());
+		assertEquals(100, h2.getCount());
+		assertPercentile(1000, h1.getPercentile(0.5));
+		assertPercentile(1000000, h1.getPercentile(0.51));
+	}
+
+	private static void assertPercentile(long expected, long actual) {
+		// upper bound of the bucket with at most 12.5% relative error
+		assertTrue("expected " + expected + " but was " + actual,
+			actual >= expected && actual <= expected * 1.125);
+	}
+}
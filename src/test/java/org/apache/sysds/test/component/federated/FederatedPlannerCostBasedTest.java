@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.sysds.common.Types.AggOp;
+import org.apache.sysds.common.Types.DataType;
+import org.apache.sysds.common.Types.Direction;
+import org.apache.sysds.common.Types.ExecType;
+import org.apache.sysds.common.Types.OpOp2;
+import org.apache.sysds.hops.Hop;
+import org.apache.sysds.hops.LiteralOp;
+import org.apache.sysds.hops.fedplanner.FTypes.FType;
+import org.apache.sysds.hops.fedplanner.FederatedPlannerCostBased;
+import org.apache.sysds.hops.rewrite.HopRewriteUtils;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedData;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRange;
+import org.apache.sysds.runtime.controlprogram.federated.FederationMap;
+import org.apache.sysds.runtime.instructions.fed.FEDInstruction.FederatedOutput;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.junit.Test;
+
+public class FederatedPlannerCostBasedTest {
+
+	@Test
+	public void testFederatedMatrixVector() {
+		// large row-partitioned X and small local v, keep X %*% v federated
+		Hop X = createRead("X", 1000000, 1000);
+		Hop v = createRead("v", 1000, 1);
+		Hop mm = HopRewriteUtils.createMatrixMultiply(X, v);
+		Map<Long, FType> fedHops = plan(Arrays.asList(HopRewriteUtils.createTransientWrite("y", mm)), "X");
+		assertEquals(ExecType.FED, mm.getForcedExecType());
+		assertEquals(FederatedOutput.FOUT, mm.getFederatedOutput());
+		assertEquals(FType.ROW, fedHops.get(mm.getHopID()));
+	}
+
+	@Test
+	public void testFederatedAggregateLocalOutput() {
+		// column sums of a large row-partitioned X are aggregated locally
+		Hop X = createRead("X", 1000000, 100);
+		Hop agg = HopRewriteUtils.createAggUnaryOp(X, AggOp.SUM, Direction.Col);
+		Hop mm = HopRewriteUtils.createMatrixMultiply(agg, createRead("w", 100, 1));
+		Map<Long, FType> fedHops = plan(Arrays.asList(HopRewriteUtils.createTransientWrite("s", mm)), "X");
+		assertEquals(ExecType.FED, agg.getForcedExecType());
+		assertEquals(FederatedOutput.LOUT, agg.getFederatedOutput());
+		assertNull(fedHops.get(agg.getHopID()));
+		assertNotEquals(ExecType.FED, mm.getForcedExecType());
+	}
+
+	@Test
+	public void testLocalOperationOnSmallFederatedInput() {
+		// broadcasting a large local Y is more expensive than fetching the small federated X
+		Hop X = createRead("X", 10, 10);
+		Hop mm = HopRewriteUtils.createMatrixMultiply(X, createRead("Y", 10, 1000000));
+		Map<Long, FType> fedHops = plan(Arrays.asList(HopRewriteUtils.createTransientWrite("Z", mm)), "X");
+		assertNotEquals(ExecType.FED, mm.getForcedExecType());
+		assertNull(fedHops.get(mm.getHopID()));
+	}
+
+	@Test
+	public void testSharedHopSinglePlacement() {
+		// a shared federated hop, whose consumers request different placements
+		Hop X = createRead("X", 1000000, 100);
+		Hop H = HopRewriteUtils.createBinary(X, new LiteralOp(2), OpOp2.MULT);
+		Hop plus = HopRewriteUtils.createBinary(H, createRead("Y", 1000000, 100), OpOp2.PLUS);
+		Hop mm = HopRewriteUtils.createMatrixMultiply(H, createRead("w", 100, 1));
+		List<Hop> roots = Arrays.asList(HopRewriteUtils.createTransientWrite("a", plus),
+			HopRewriteUtils.createTransientWrite("b", mm));
+		Map<Long, FType> fedHops = plan(roots, "X");
+		assertEquals(FType.ROW, fedHops.get(H.getHopID()));
+		assertEquals(ExecType.FED, mm.getForcedExecType());
+		assertFederatedInputs(roots, fedHops);
+	}
+
+	@Test
+	public void testNoFederatedOperationWithoutFederatedInputs() {
+		// the consumers of a shared hop with a local placement are not forced to federated operations
+		Hop X = createRead("X", 1000, 100);
+		Hop H = HopRewriteUtils.createBinary(X, new LiteralOp(2), OpOp2.MULT);
+		List<Hop> roots = new ArrayList<>();
+		for(int i = 0; i < 3; i++)
+			roots.add(HopRewriteUtils.createTransientWrite("a" + i,
+				HopRewriteUtils.createMatrixMultiply(createRead("Y" + i, 10000, 1000), H)));
+		roots.add(HopRewriteUtils.createTransientWrite("b",
+			HopRewriteUtils.createMatrixMultiply(H, createRead("w", 100, 1))));
+		assertFederatedInputs(roots, plan(roots, "X"));
+	}
+
+	@Test
+	public void testSiteProfiles() throws Exception {
+		// a federated matrix-vector product, unless the sites of X have a high latency
+		for(boolean slow : new boolean[] {false, true}) {
+			Hop X = createRead("X", 100000, 100);
+			Hop mm = HopRewriteUtils.createMatrixMultiply(X, createRead("v", 100, 1));
+			TestPlanner planner = new TestPlanner();
+			if(slow)
+				planner.setFederatedSites("X", createFederationMap(SLOW, SLOW));
+			Map<Long, FType> fedHops = plan(planner, Arrays.asList(HopRewriteUtils.createTransientWrite("y", mm)), "X");
+			assertEquals(slow, fedHops.get(mm.getHopID()) == null);
+			assertEquals(slow, mm.getForcedExecType() != ExecType.FED);
+		}
+	}
+
+	private static void assertFederatedInputs(List<Hop> roots, Map<Long, FType> fedHops) {
+		Hop.resetVisitStatus(roots);
+		for(Hop root : roots)
+			rAssertFederatedInputs(root, fedHops);
+	}
+
+	private static void rAssertFederatedInputs(Hop hop, Map<Long, FType> fedHops) {
+		if(hop.isVisited())
+			return;
+		if(hop.getForcedExecType() == ExecType.FED)
+			assertTrue("Federated operation without federated inputs: " + hop.getOpString(),
+				hop.getInput().stream().anyMatch(in -> fedHops.get(in.getHopID()) != null));
+		for(Hop in : hop.getInput())
+			rAssertFederatedInputs(in, fedHops);
+		hop.setVisited();
+	}
+
+	private static FederationMap createFederationMap(InetSocketAddress... sites) {
+		List<Pair<FederatedRange, FederatedData>> fedMap = new ArrayList<>();
+		for(int i = 0; i < sites.length; i++)
+			fedMap.add(Pair.of(new FederatedRange(new long[] {i * 50000, 0}, new long[] {(i + 1) * 50000, 100}),
+				new FederatedData(DataType.MATRIX, sites[i], "X" + i)));
+		return new FederationMap(fedMap);
+	}
+
+	private static Hop createRead(String name, int rows, int cols) {
+		Hop ret = HopRewriteUtils.createTransientRead(name, new MatrixBlock(rows, cols, false));
+		ret.setNnz((long) rows * cols); // dense
+		return ret;
+	}
+
+	private static Map<Long, FType> plan(List<Hop> roots, String fedVar) {
+		return plan(new TestPlanner(), roots, fedVar);
+	}
+
+	private static Map<Long, FType> plan(TestPlanner planner, List<Hop> roots, String fedVar) {
+		Map<Long, FType> fedHops = new HashMap<>();
+		Map<String, FType> fedVars = new HashMap<>();
+		fedVars.put(fedVar, FType.ROW);
+		planner.rewriteHopDag(roots, fedHops, fedVars);
+		return fedHops;
+	}
+
+	private static final InetSocketAddress SLOW = InetSocketAddress.createUnresolved("slowhost", 8001);
+
+	private static class TestPlanner extends FederatedPlannerCostBased {
+		@Override
+		protected void rewriteHopDag(List<Hop> roots, Map<Long, FType> fedHops, Map<String, FType> fedVars) {
+			super.rewriteHopDag(roots, fedHops, fedVars);
+		}
+
+		@Override
+		protected void setFederatedSites(String varName, FederationMap fedMap) {
+			super.setFederatedSites(varName, fedMap);
+		}
+
+		@Override
+		protected double getBandwidth(InetSocketAddress site) {
+			return 125e6; // independent of profiled sites
+		}
+
+		@Override
+		protected double getLatency(InetSocketAddress site) {
+			return SLOW.equals(site) ? 10 : 1e-3;
+		}
+	}
+}
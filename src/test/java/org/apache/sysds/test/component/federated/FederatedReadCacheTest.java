@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.sysds.runtime.controlprogram.caching.CacheableData;
+import org.apache.sysds.runtime.controlprogram.context.ExecutionContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedReadCache;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+
+public class FederatedReadCacheTest {
+
+	@Test
+	public void testHitAndMiss() {
+		FederatedStatistics.reset();
+		final FederatedReadCache frc = new FederatedReadCache(1L << 30);
+		assertNull(frc.get("f1", true));
+		final CacheableData<?> data = matrix(100, 1.0);
+		frc.setData("f1", data);
+		assertSame(data, frc.get("f1", true));
+		assertEquals(data.getDataSize(), frc.getSize());
+		assertEquals(1, FederatedStatistics.getFedReadCacheHits());
+		assertEquals(1, FederatedStatistics.getFedReadCacheMisses());
+	}
+
+	@Test
+	public void testBoundedSize() {
+		FederatedStatistics.reset();
+		final long size = matrix(100, 1.0).getDataSize();
+		final FederatedReadCache frc = new FederatedReadCache(3 * size);
+		for(int i = 0; i < 10; i++) {
+			assertNull(frc.get("f" + i, true));
+			frc.setData("f" + i, matrix(100, 1.0));
+			assertTrue(frc.getSize() <= frc.getBudget());
+		}
+		assertEquals(3, frc.getNumEntries());
+		assertEquals(7, FederatedStatistics.getFedReadCacheEvictions());
+		// the most recently read file is always retained
+		assertTrue(frc.get("f9", false) != null);
+	}
+
+	@Test
+	public void testExceedingBudget() {
+		final FederatedReadCache frc = new FederatedReadCache(1024);
+		final CacheableData<?> data = matrix(100, 1.0);
+		assertNull(frc.get("f1", true));
+		frc.setData("f1", data);
+		assertEquals(0, frc.getNumEntries());
+		assertEquals(0, frc.getSize());
+	}
+
+	@Test
+	public void testRevalidateModifiedFile() throws Exception {
+		FederatedStatistics.reset();
+		final File file = File.createTempFile("fedreadcache", ".csv");
+		try {
+			final String fname = file.getAbsolutePath();
+			final FederatedReadCache frc = new FederatedReadCache(1L << 30);
+			assertNull(frc.get(fname, true));
+			frc.setData(fname, matrix(10, 1.0));
+			assertTrue(frc.get(fname, true) != null);
+
+			// modified file is read again
+			assertTrue(file.setLastModified(file.lastModified() + 10000));
+			assertNull(frc.get(fname, true));
+			assertEquals(1, FederatedStatistics.getFedReadCacheStale());
+			assertEquals(0, frc.getSize());
+			final CacheableData<?> data = matrix(10, 1.0);
+			frc.setData(fname, data);
+			assertSame(data, frc.get(fname, true));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private static CacheableData<?> matrix(int rows, double sparsity) {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(rows, 10, -1, 1, sparsity, 7);
+		return ExecutionContext.createCacheableData(mb);
+	}
+}
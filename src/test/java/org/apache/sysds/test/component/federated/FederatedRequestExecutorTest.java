@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequestExecutor;
+import org.junit.Test;
+
+public class FederatedRequestExecutorTest {
+
+	@Test
+	public void testOrderPerKey() throws Exception {
+		final int keys = 8, tasks = 500;
+		final FederatedRequestExecutor exec = new FederatedRequestExecutor(4);
+		final List<List<Integer>> results = new ArrayList<>();
+		final CountDownLatch done = new CountDownLatch(keys * tasks);
+		for(int k = 0; k < keys; k++)
+			results.add(new ArrayList<>());
+		try {
+			for(int i = 0; i < tasks; i++) {
+				for(int k = 0; k < keys; k++) {
+					final List<Integer> res = results.get(k);
+					final int ix = i;
+					exec.execute(FederatedRequestExecutor.getKey("localhost", 1, k), () -> {
+						res.add(ix);
+						done.countDown();
+					});
+				}
+			}
+			assertTrue(done.await(60, TimeUnit.SECONDS));
+			for(int k = 0; k < keys; k++) {
+				final List<Integer> res = results.get(k);
+				assertEquals(tasks, res.size());
+				for(int i = 0; i < tasks; i++)
+					assertEquals(i, (int) res.get(i));
+			}
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelAcrossKeys() throws Exception {
+		final int keys = 4;
+		final FederatedRequestExecutor exec = new FederatedRequestExecutor(keys);
+		final CountDownLatch started = new CountDownLatch(keys);
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+			// blocking tasks of different keys only complete if executed concurrently
+			for(int k = 0; k < keys; k++) {
+				exec.execute(FederatedRequestExecutor.getKey("localhost", 1, k), () -> {
+					started.countDown();
+					try {
+						release.await();
+					}
+					catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			assertTrue(started.await(60, TimeUnit.SECONDS));
+			release.countDown();
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testFairSharingAcrossTenants() throws Exception {
+		final FederatedRequestExecutor exec = new FederatedRequestExecutor(1);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(21);
+		try {
+			block(exec, release);
+			// a heavy tenant floods the pool with parallel requests, before a light tenant sends one request
+			final String heavy = FederatedRequestExecutor.getTenant("hostA", 1);
+			for(int k = 0; k < 20; k++)
+				exec.execute(heavy, FederatedRequestExecutor.getKey("hostA", 1, k), task("A", order, done, 10));
+			final String light = FederatedRequestExecutor.getTenant("hostB", 1);
+			exec.execute(light, FederatedRequestExecutor.getKey("hostB", 1, 0), task("B", order, done, 0));
+			release.countDown();
+			assertTrue(done.await(60, TimeUnit.SECONDS));
+			assertTrue("Light tenant was starved: " + order, order.indexOf("B") <= 1);
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testWeightedSharingAcrossTenants() throws Exception {
+		final FederatedRequestExecutor exec = new FederatedRequestExecutor(1);
+		exec.setWeights("hostA=3, hostB=1");
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(40);
+		try {
+			block(exec, release);
+			for(int k = 0; k < 20; k++) {
+				exec.execute(FederatedRequestExecutor.getTenant("hostB", 1),
+					FederatedRequestExecutor.getKey("hostB", 1, k), task("B", order, done, 5));
+				exec.execute(FederatedRequestExecutor.getTenant("hostA", 1),
+					FederatedRequestExecutor.getKey("hostA", 1, k), task("A", order, done, 5));
+			}
+			release.countDown();
+			assertTrue(done.await(60, TimeUnit.SECONDS));
+			// the tenant with weight 3 receives about three quarters of the pool while both are active
+			final long numA = order.subList(0, 16).stream().filter(t -> t.equals("A")).count();
+			assertTrue("Unexpected share of weighted tenant: " + order, numA >= 10 && numA < 16);
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+
+	@Test
+	public void testHostOfTenant() {
+		assertEquals("node", FederatedRequestExecutor.getHost(FederatedRequestExecutor.getTenant("node", 7)));
+		assertEquals("node", FederatedRequestExecutor.getHost(FederatedRequestExecutor.getTenant("node", -1)));
+		// a configured host is not a prefix of other hosts
+		assertEquals("node-1", FederatedRequestExecutor.getHost(FederatedRequestExecutor.getTenant("node-1", 7)));
+		assertEquals("node-1", FederatedRequestExecutor.getHost(FederatedRequestExecutor.getTenant("node-1", -1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWeight() {
+		final FederatedRequestExecutor exec = new FederatedRequestExecutor(1);
+		try {
+			exec.setWeight("hostA", 0);
+		}
+		finally {
+			exec.shutdown();
+		}
+	}
+
+	private static void block(FederatedRequestExecutor exec, CountDownLatch release) {
+		exec.execute(FederatedRequestExecutor.getKey("localhost", 1, 0), () -> {
+			try {
+				release.await();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	private static Runnable task(String tenant, List<String> order, CountDownLatch done, long millis) {
+		return () -> {
+			order.add(tenant);
+			try {
+				Thread.sleep(millis);
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			done.countDown();
+		};
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.Span;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
+import org.apache.wink.json4j.JSONArray;
+import org.apache.wink.json4j.JSONObject;
+import org.junit.Test;
+
+public class FederatedTracerTest {
+
+	@Test
+	public void testDisabled() {
+		assertTrue(!FederatedTracer.isEnabled());
+		assertNull(FederatedTracer.getWorker(1234));
+		assertNull(FederatedTracer.beginChild("lineage"));
+		assertNull(FederatedTracer.current());
+	}
+
+	@Test
+	public void testWorkerSpans() throws Exception {
+		final File dir = Files.createTempDirectory("fedtrace").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_TRACE, dir.getAbsolutePath() + File.separator + "trace");
+			ConfigurationManager.setLocalConfig(local);
+			final FederatedTracer tracer = FederatedTracer.getWorker(4321);
+			assertNotNull(tracer);
+
+			// request of a federated instruction at the coordinator
+			final TraceContext parent = new TraceContext(7L, 11L, "ba+*", 3);
+			final FederatedRequest request = new FederatedRequest(RequestType.EXEC_INST, 1,
+				"CP\u00b0ba+*\u00b0_mVar1\u00b7MATRIX\u00b7FP64\u00b0_mVar2\u00b7MATRIX\u00b7FP64\u00b0_mVar3\u00b7MATRIX\u00b7FP64\u00b01");
+			request.setTraceContext(parent);
+
+			final long start = System.nanoTime();
+			tracer.record("queue", parent, start, 1000000);
+			final Span span = FederatedTracer.beginRequest(tracer, request);
+			assertEquals(7L, FederatedTracer.current().getTraceID());
+			FederatedTracer.end(FederatedTracer.beginChild("lineage"));
+			FederatedTracer.end(span);
+			assertNull(FederatedTracer.current());
+			FederatedTracer.closeWorker(4321);
+
+			final File file = new File(dir, "trace_worker_4321.json");
+			final JSONArray events = new JSONArray(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+			// queue, lineage, request, and the process name
+			assertEquals(4, events.size());
+			final JSONObject queue = (JSONObject) events.get(0);
+			final JSONObject lineage = (JSONObject) events.get(1);
+			final JSONObject exec = (JSONObject) events.get(2);
+			assertEquals("queue", queue.getString("name"));
+			assertEquals(1000, queue.getLong("dur"));
+			assertEquals("lineage", lineage.getString("name"));
+			assertEquals("EXEC_INST ba+*", exec.getString("name"));
+			assertEquals(4321, exec.getLong("pid"));
+			assertEquals("M", ((JSONObject) events.get(3)).getString("ph"));
+
+			// all spans belong to the trace, and are children of the coordinator span or the request span
+			for(int i = 0; i < 3; i++) {
+				final JSONObject args = ((JSONObject) events.get(i)).getJSONObject("args");
+				assertEquals("7", args.getString("trace"));
+				assertEquals("ba+*", args.getString("opcode"));
+				assertEquals(3, args.getInt("line"));
+			}
+			assertEquals("b", queue.getJSONObject("args").getString("parent"));
+			assertEquals("b", exec.getJSONObject("args").getString("parent"));
+			assertEquals(exec.getJSONObject("args").getString("span"),
+				lineage.getJSONObject("args").getString("parent"));
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedWanEmulator;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedWanEmulator.Link;
+import org.junit.After;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class FederatedWanEmulatorTest {
+
+	@After
+	public void reset() {
+		FederatedWanEmulator.reset();
+	}
+
+	@Test
+	public void testLatency() throws Exception {
+		final EmbeddedChannel ch = new EmbeddedChannel(new FederatedWanEmulator(new Link(50, 0, 0, 0)));
+		final ChannelFuture f = ch.writeAndFlush(buffer(100, 1));
+		ch.runPendingTasks();
+		assertNull(ch.readOutbound());
+		assertTrue(!f.isDone());
+		Thread.sleep(100);
+		ch.runScheduledPendingTasks();
+		assertTrue(f.isSuccess());
+		final ByteBuf out = ch.readOutbound();
+		assertEquals(100, out.readableBytes());
+		out.release();
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testPacedBandwidthInOrder() throws Exception {
+		// 40 KB at 1.6 Mbit/s (200 KB/s) in bursts of 4 KB take 200 ms
+		final EmbeddedChannel ch = new EmbeddedChannel(new FederatedWanEmulator(new Link(0, 5, 1.6, 4)));
+		final ChannelFuture f1 = ch.writeAndFlush(buffer(20 * 1024, 1));
+		final ChannelFuture f2 = ch.writeAndFlush(buffer(20 * 1024, 2));
+		Thread.sleep(50);
+		ch.runScheduledPendingTasks();
+		assertTrue(!f2.isDone());
+		int bursts = 0;
+		long bytes = 0;
+		final long t0 = System.currentTimeMillis();
+		while(bytes < 40 * 1024 && System.currentTimeMillis() - t0 < 5000) {
+			ch.runScheduledPendingTasks();
+			ByteBuf out;
+			while((out = ch.readOutbound()) != null) {
+				assertTrue(out.readableBytes() <= 4 * 1024);
+				// bytes of the first write precede the bytes of the second write
+				assertEquals((bytes < 20 * 1024) ? 1 : 2, out.getByte(0));
+				bytes += out.readableBytes();
+				bursts++;
+				out.release();
+			}
+			Thread.sleep(5);
+		}
+		assertEquals(40 * 1024, bytes);
+		assertEquals(10, bursts);
+		assertTrue(f1.isSuccess() && f2.isSuccess());
+		ch.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testSiteConfiguration() {
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_WAN, "20/2/100; remote:8001=80/10/50/64");
+			ConfigurationManager.setLocalConfig(local);
+			assertNotNull(FederatedWanEmulator.create("localhost", 8001));
+			assertNotNull(FederatedWanEmulator.create("remote", 8001));
+			local.setTextValue(DMLConfig.FEDERATED_WAN, "remote=80/10");
+			assertNull(FederatedWanEmulator.create("localhost", 8001));
+			assertNotNull(FederatedWanEmulator.create("remote", -1));
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+		}
+	}
+
+	private static ByteBuf buffer(int size, int value) {
+		final ByteBuf ret = Unpooled.buffer(size);
+		for(int i = 0; i < size; i++)
+			ret.writeByte(value);
+		return ret;
+	}
+}
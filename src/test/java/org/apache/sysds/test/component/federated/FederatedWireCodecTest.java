@@ -0,0 +1,740 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysds.test.component.federated;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.sysds.common.Types.ValueType;
+import org.apache.sysds.conf.ConfigurationManager;
+import org.apache.sysds.conf.DMLConfig;
+import org.apache.sysds.runtime.DMLRuntimeException;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlock;
+import org.apache.sysds.runtime.compress.CompressedMatrixBlockFactory;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedCompressor;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedCompressor.Codec;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedMessage;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedRequest.RequestType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedResponse.ResponseType;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedSharedMemory;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedStatistics;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedTracer.TraceContext;
+import org.apache.sysds.runtime.controlprogram.federated.FederatedWireCodec;
+import org.apache.sysds.runtime.frame.data.FrameBlock;
+import org.apache.sysds.runtime.instructions.cp.DoubleObject;
+import org.apache.sysds.runtime.instructions.cp.IntObject;
+import org.apache.sysds.runtime.instructions.cp.StringObject;
+import org.apache.sysds.runtime.matrix.data.MatrixBlock;
+import org.apache.sysds.test.TestUtils;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.ReferenceCountUtil;
+
+public class FederatedWireCodecTest {
+
+	@Test
+	public void testRequestDenseMatrix() throws Exception {
+		testRequestMatrix(TestUtils.generateTestMatrixBlock(100, 50, -1, 1, 1.0, 7));
+	}
+
+	@Test
+	public void testRequestSparseMatrix() throws Exception {
+		testRequestMatrix(TestUtils.generateTestMatrixBlock(100, 50, -1, 1, 0.05, 7));
+	}
+
+	@Test
+	public void testRequestEmptyMatrix() throws Exception {
+		testRequestMatrix(new MatrixBlock(20, 30, true));
+	}
+
+	@Test
+	public void testRequestParams() throws Exception {
+		final ArrayList<String> serialized = new ArrayList<>(Arrays.asList("a", "b"));
+		final FederatedRequest fr = new FederatedRequest(RequestType.EXEC_INST, 7, "instruction äö",
+			3L, 4, 2.5, true, new IntObject(9), new DoubleObject(1.5), new StringObject("str"), null, serialized);
+		fr.setTID(11);
+		final FederatedRequest out = ((FederatedRequest[]) roundTrip(new FederatedRequest[] {fr}))[0];
+		assertEquals(RequestType.EXEC_INST, out.getType());
+		assertEquals(7, out.getID());
+		assertEquals(11, out.getTID());
+		assertEquals(fr.getPID(), out.getPID());
+		assertEquals(fr.getNumParams(), out.getNumParams());
+		assertEquals("instruction äö", out.getParam(0));
+		assertEquals(3L, out.getParam(1));
+		assertEquals(4, out.getParam(2));
+		assertEquals(2.5, out.getParam(3));
+		assertEquals(true, out.getParam(4));
+		assertEquals(9, ((IntObject) out.getParam(5)).getLongValue());
+		assertEquals(1.5, ((DoubleObject) out.getParam(6)).getDoubleValue(), 0);
+		assertEquals("str", ((StringObject) out.getParam(7)).getStringValue());
+		assertNull(out.getParam(8));
+		assertEquals(serialized, out.getParam(9));
+	}
+
+	@Test
+	public void testRequestTraceContext() throws Exception {
+		final FederatedRequest fr = new FederatedRequest(RequestType.EXEC_INST, 7, "instruction");
+		assertNull(((FederatedRequest[]) roundTrip(new FederatedRequest[] {fr}))[0].getTraceContext());
+		fr.setTraceContext(new TraceContext(-5L, 42L, "fedinit", 13));
+		final TraceContext out = ((FederatedRequest[]) roundTrip(new FederatedRequest[] {fr}))[0].getTraceContext();
+		assertEquals(-5L, out.getTraceID());
+		assertEquals(42L, out.getSpanID());
+		assertEquals("fedinit", out.getOpcode());
+		assertEquals(13, out.getLine());
+	}
+
+	@Test
+	public void testResponseFrame() throws Exception {
+		final ValueType[] schema = new ValueType[] {ValueType.FP64, ValueType.STRING, ValueType.INT64};
+		final FrameBlock fb = TestUtils.generateRandomFrameBlock(40, schema, new Random(7));
+		final FederatedResponse out = (FederatedResponse) roundTrip(new FederatedResponse(ResponseType.SUCCESS, fb));
+		assertTrue(out.isSuccessful());
+		TestUtils.compareFrames(fb, (FrameBlock) out.getData()[0], true);
+	}
+
+	@Test
+	public void testResponseError() throws Exception {
+		final FederatedResponse out = (FederatedResponse) roundTrip(
+			new FederatedResponse(ResponseType.ERROR, new DMLRuntimeException("failed")));
+		assertFalse(out.isSuccessful());
+		assertTrue(out.getErrorMessage().contains("failed"));
+	}
+
+	@Test
+	public void testResponseMemoryPressure() throws Exception {
+		final FederatedResponse in = new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+		in.setMemoryPressure(0.8f);
+		assertEquals(0.8f, ((FederatedResponse) roundTrip(in)).getMemoryPressure(), 0);
+	}
+
+	@Test
+	public void testResponseWorkerTimes() throws Exception {
+		final FederatedResponse in = new FederatedResponse(ResponseType.SUCCESS_EMPTY);
+		assertNull(((FederatedResponse) roundTrip(in)).getWorkerTimes());
+		in.setWorkerTimes(1000, 20000, 300000);
+		assertArrayEquals(new long[] {1000, 20000, 300000}, ((FederatedResponse) roundTrip(in)).getWorkerTimes());
+	}
+
+	@Test
+	public void testMultiplexedMessage() throws Exception {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(10, 10, 0, 1, 0.5, 3);
+		final FederatedMessage out = (FederatedMessage) roundTrip(
+			new FederatedMessage(42, new FederatedResponse(ResponseType.SUCCESS, mb)));
+		assertEquals(42, out.getCorrelationID());
+		final FederatedResponse res = (FederatedResponse) out.getPayload();
+		TestUtils.compareMatrices(mb, (MatrixBlock) res.getData()[0], 0);
+	}
+
+	@Test
+	public void testChunkedDenseMatrix() throws Exception {
+		testChunkedMatrix(TestUtils.generateTestMatrixBlock(1000, 30, -1, 1, 1.0, 7));
+	}
+
+	@Test
+	public void testChunkedSparseMatrix() throws Exception {
+		testChunkedMatrix(TestUtils.generateTestMatrixBlock(1000, 300, -1, 1, 0.01, 7));
+	}
+
+	@Test
+	public void testChunkedFrame() throws Exception {
+		final ValueType[] schema = new ValueType[] {ValueType.FP64, ValueType.STRING, ValueType.INT64};
+		final FrameBlock fb = TestUtils.generateRandomFrameBlock(2000, schema, new Random(7));
+		fb.setColumnNames(new String[] {"a", "b", "c"});
+		fb.getColumnMetadata(1).setNumDistinct(17);
+		final EmbeddedChannel sender = new EmbeddedChannel(new ChunkedWriteHandler(),
+			new FederatedWireCodec.Encoder(4096));
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder());
+		assertTrue(sender.writeOutbound(new FederatedResponse(ResponseType.SUCCESS, fb)));
+
+		int frames = 0;
+		for(ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound(), frames++)
+			receiver.writeInbound(frame);
+		assertTrue("Expected chunked transfer but received " + frames + " frames", frames > 2);
+
+		final FederatedResponse out = receiver.readInbound();
+		final FrameBlock ret = (FrameBlock) out.getData()[0];
+		TestUtils.compareFrames(fb, ret, true);
+		assertArrayEquals(fb.getColumnNames(), ret.getColumnNames());
+		assertEquals(17, ret.getColumnMetadata(1).getNumDistinct());
+		assertFalse(sender.finish());
+		assertFalse(receiver.finish());
+	}
+
+	@Test
+	public void testRequestCompressedMatrix() throws Exception {
+		final MatrixBlock mb = TestUtils.round(TestUtils.generateTestMatrixBlock(1000, 10, 0.5, 2.5, 1.0, 1342));
+		final MatrixBlock cmb = CompressedMatrixBlockFactory.compress(mb).getLeft();
+		assertTrue(cmb instanceof CompressedMatrixBlock);
+		final FederatedRequest[] out = (FederatedRequest[]) roundTrip(
+			new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, 3, cmb)});
+		final MatrixBlock ret = (MatrixBlock) out[0].getParam(0);
+		assertTrue(ret instanceof CompressedMatrixBlock);
+		assertEquals(((CompressedMatrixBlock) cmb).getColGroups().size(),
+			((CompressedMatrixBlock) ret).getColGroups().size());
+		TestUtils.compareMatrices(mb, ret, 0);
+	}
+
+	@Test
+	public void testCompressorCodecs() throws Exception {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(200, 100, 0, 1, 0.2, 7);
+		final ByteBuf raw = PooledByteBufAllocator.DEFAULT.directBuffer();
+		FederatedWireCodec.write(raw, new FederatedResponse(ResponseType.SUCCESS, mb));
+		for(Codec codec : new Codec[] {Codec.LZ4, Codec.ZLIB}) {
+			final ByteBuf comp = PooledByteBufAllocator.DEFAULT.directBuffer();
+			final ByteBuf decomp = PooledByteBufAllocator.DEFAULT.heapBuffer();
+			try {
+				assertTrue(FederatedCompressor.compress(codec, raw, raw.readerIndex(), raw.readableBytes(), comp));
+				assertTrue(comp.readableBytes() < raw.readableBytes());
+				FederatedCompressor.decompress(codec, comp, decomp, raw.readableBytes());
+				assertEquals(raw, decomp);
+			}
+			finally {
+				comp.release();
+				decomp.release();
+			}
+		}
+		raw.release();
+	}
+
+	@Test
+	public void testAdaptiveCompressedMatrix() throws Exception {
+		FederatedCompressor.reset();
+		FederatedStatistics.reset();
+		// dense block with many zeros, which is worth compressing under the default bandwidth estimate
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 0.1, 7);
+		mb.sparseToDense();
+		final EmbeddedChannel sender = new EmbeddedChannel(new FederatedWireCodec.Encoder(-1, true));
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder());
+		assertTrue(sender.writeOutbound(new FederatedResponse(ResponseType.SUCCESS, mb)));
+		final ByteBuf frame = sender.readOutbound();
+		assertTrue(frame.readableBytes() < mb.getExactSerializedSize());
+		receiver.writeInbound(frame);
+		final FederatedResponse out = receiver.readInbound();
+		TestUtils.compareMatrices(mb, (MatrixBlock) out.getData()[0], 0);
+		assertTrue(FederatedStatistics.getFedCompressionSavedBytes(Codec.LZ4) > 0);
+		assertFalse(sender.finish());
+		assertFalse(receiver.finish());
+	}
+
+	@Test
+	public void testAdaptiveSmallMessage() throws Exception {
+		FederatedStatistics.reset();
+		final EmbeddedChannel sender = new EmbeddedChannel(new FederatedWireCodec.Encoder(-1, true));
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(10, 10, 0, 1, 1.0, 3);
+		assertTrue(sender.writeOutbound(new FederatedResponse(ResponseType.SUCCESS, mb)));
+		final ByteBuf frame = sender.readOutbound();
+		frame.release();
+		assertEquals(0, FederatedStatistics.getFedCompressionCount(Codec.LZ4));
+		assertEquals(0, FederatedStatistics.getFedCompressionCount(Codec.ZLIB));
+		assertFalse(sender.finish());
+	}
+
+	@Test
+	public void testAdaptiveChunkedMatrix() throws Exception {
+		FederatedCompressor.reset();
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(20000, 10, -1, 1, 0.1, 7);
+		mb.sparseToDense();
+		testChunkedMatrix(mb, new FederatedWireCodec.Encoder(64 * 1024, true));
+	}
+
+	@Test
+	public void testPatchedMemoryPressure() throws Exception {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(50, 20, -1, 1, 1.0, 3);
+		final FederatedResponse first = new FederatedResponse(ResponseType.SUCCESS, mb);
+		first.setMemoryPressure(0.1f);
+		final byte[] cached = encodeFrame(first);
+
+		// a frame reused for a later response carries the current memory pressure
+		final FederatedResponse second = new FederatedResponse(ResponseType.SUCCESS, mb);
+		second.setMemoryPressure(0.9f);
+		final ByteBuf frame = Unpooled.wrappedBuffer(cached);
+		assertTrue(FederatedWireCodec.patchResponse(frame, 0, second));
+		final FederatedResponse out = decodeFrame(frame);
+		assertEquals(0.9f, out.getMemoryPressure(), 0);
+		TestUtils.compareMatrices(mb, (MatrixBlock) out.getData()[0], 0);
+	}
+
+	@Test
+	public void testPatchedWorkerTimes() throws Exception {
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(50, 20, -1, 1, 1.0, 5);
+		final FederatedResponse first = new FederatedResponse(ResponseType.SUCCESS, mb);
+		first.setWorkerTimes(1000, 2000, 3000);
+		final byte[] cached = encodeFrame(first);
+
+		// a frame reused for a later response carries the current stage times of the worker
+		final FederatedResponse second = new FederatedResponse(ResponseType.SUCCESS, mb);
+		second.setWorkerTimes(4000, 5000, 6000);
+		final ByteBuf frame = Unpooled.wrappedBuffer(cached);
+		assertTrue(FederatedWireCodec.patchResponse(frame, 0, second));
+		final FederatedResponse out = decodeFrame(frame);
+		assertArrayEquals(new long[] {4000, 5000, 6000}, out.getWorkerTimes());
+		TestUtils.compareMatrices(mb, (MatrixBlock) out.getData()[0], 0);
+
+		// frames without worker times are not reused for responses with worker times
+		final ByteBuf plain = Unpooled.wrappedBuffer(encodeFrame(new FederatedResponse(ResponseType.SUCCESS, mb)));
+		assertFalse(FederatedWireCodec.patchResponse(plain, 0, second));
+		plain.release();
+	}
+
+	@Test
+	public void testPatchedCompressedFrame() throws Exception {
+		FederatedCompressor.reset();
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 0.1, 7);
+		mb.sparseToDense();
+		final EmbeddedChannel sender = new EmbeddedChannel(new FederatedWireCodec.Encoder(-1, true));
+		assertTrue(sender.writeOutbound(new FederatedResponse(ResponseType.SUCCESS, mb)));
+		final ByteBuf frame = sender.readOutbound();
+		// compressed frames cannot be updated in place
+		assertFalse(FederatedWireCodec.patchResponse(frame, frame.readerIndex(),
+			new FederatedResponse(ResponseType.SUCCESS, mb)));
+		frame.release();
+		assertFalse(sender.finish());
+	}
+
+	private static byte[] encodeFrame(FederatedResponse response) {
+		final EmbeddedChannel sender = new EmbeddedChannel(new FederatedWireCodec.Encoder(-1, false));
+		assertTrue(sender.writeOutbound(response));
+		final ByteBuf frame = sender.readOutbound();
+		final byte[] ret = new byte[frame.readableBytes()];
+		frame.readBytes(ret);
+		frame.release();
+		assertFalse(sender.finish());
+		return ret;
+	}
+
+	private static FederatedResponse decodeFrame(ByteBuf frame) {
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder());
+		receiver.writeInbound(frame);
+		final FederatedResponse ret = receiver.readInbound();
+		assertFalse(receiver.finish());
+		return ret;
+	}
+
+	@Test
+	public void testAdaptiveBandwidthPerHost() throws Exception {
+		final InetSocketAddress slow1 = new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 1}), 8001);
+		final InetSocketAddress slow2 = new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 1}), 8002);
+		final InetSocketAddress fast = new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 2}), 8001);
+		final double bandwidth = FederatedCompressor.getBandwidth(fast);
+		// concurrent observations of a slow link from the connections of one host
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<?>> tasks = new ArrayList<>();
+			for(int i = 0; i < 4; i++)
+				tasks.add(pool.submit(() -> {
+					for(int j = 0; j < 1000; j++)
+						FederatedCompressor.observeTransfer((j % 2 == 0) ? slow1 : slow2, 1024 * 1024, 100_000_000L);
+				}));
+			for(Future<?> f : tasks)
+				f.get();
+		}
+		finally {
+			pool.shutdown();
+		}
+		assertEquals(1024 * 1024 / 1e8, FederatedCompressor.getBandwidth(slow1), 1e-9);
+		assertEquals(FederatedCompressor.getBandwidth(slow1), FederatedCompressor.getBandwidth(slow2), 0);
+		assertEquals(bandwidth, FederatedCompressor.getBandwidth(fast), 0);
+		// the slow link is worth compressing, independent of the other sites
+		final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 0.1, 7);
+		mb.sparseToDense();
+		assertTrue(FederatedCompressor.choose((int) mb.getExactSerializedSize(), 0.1, slow1) != Codec.NONE);
+	}
+
+	@Test
+	public void testRoundTripBandwidth() throws Exception {
+		final InetSocketAddress site = new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 3}), 8001);
+		// round trips of small batches are dominated by the latency
+		final double bandwidth = FederatedCompressor.getBandwidth(site);
+		FederatedCompressor.observeRoundTrip(site, 1024, 100_000_000L);
+		assertEquals(bandwidth, FederatedCompressor.getBandwidth(site), 0);
+		for(int i = 0; i < 200; i++)
+			FederatedCompressor.observeRoundTrip(site, 4 * 1024 * 1024, 100_000_000L);
+		assertEquals(4 * 1024 * 1024 / 1e8, FederatedCompressor.getBandwidth(site), 1e-9);
+	}
+
+	@Test
+	public void testWireSize() throws Exception {
+		final EmbeddedChannel sender = new EmbeddedChannel(new ChunkedWriteHandler(),
+			new FederatedWireCodec.Encoder(4096));
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder());
+		// inlined and chunked blocks, where the wire size covers all frames of the message
+		for(MatrixBlock mb : new MatrixBlock[] {TestUtils.generateTestMatrixBlock(10, 10, 0, 1, 1.0, 3),
+			TestUtils.generateTestMatrixBlock(1000, 30, 0, 1, 1.0, 7)}) {
+			final FederatedRequest[] request = new FederatedRequest[] {
+				new FederatedRequest(RequestType.PUT_VAR, 1, mb)};
+			assertTrue(sender.writeOutbound((Object) request));
+			long size = 0;
+			for(ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound()) {
+				size += frame.readableBytes();
+				receiver.writeInbound(frame);
+			}
+			assertEquals(size, FederatedWireCodec.getWireSize(request));
+			assertEquals(size, FederatedWireCodec.getWireSize(receiver.readInbound()));
+		}
+		assertFalse(sender.finish());
+		assertFalse(receiver.finish());
+	}
+
+	@Test
+	public void testSharedMemoryBlocks() throws Exception {
+		FederatedStatistics.reset();
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			local.setTextValue(DMLConfig.FEDERATED_SHM_THRESHOLD, "16");
+			ConfigurationManager.setLocalConfig(local);
+
+			// large dense, sparse, and frame blocks via shared memory, small blocks inlined
+			final MatrixBlock dense = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 1.0, 7);
+			final MatrixBlock sparse = TestUtils.generateTestMatrixBlock(2000, 100, -1, 1, 0.05, 7);
+			final MatrixBlock small = TestUtils.generateTestMatrixBlock(3, 3, 0, 1, 1.0, 3);
+			final FrameBlock fb = TestUtils.generateRandomFrameBlock(2000,
+				new ValueType[] {ValueType.FP64, ValueType.STRING}, new Random(7));
+			final EmbeddedChannel sender = createSharedSender();
+			final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder(true));
+			// the receiver advertises its shared memory directory
+			sender.writeInbound((ByteBuf) receiver.readOutbound());
+			assertNull(sender.readInbound());
+			final FederatedRequest[] requests = new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, 1, dense),
+				new FederatedRequest(RequestType.PUT_VAR, 2, sparse), new FederatedRequest(RequestType.PUT_VAR, 3, small),
+				new FederatedRequest(RequestType.PUT_VAR, 4, fb)};
+			assertTrue(sender.writeOutbound((Object) requests));
+			final ByteBuf frame = sender.readOutbound();
+			assertTrue(frame.readableBytes() < 4096);
+			assertNull(sender.readOutbound());
+			assertEquals(3, dir.list().length);
+			assertEquals(3, FederatedStatistics.getFedSharedMemoryCount());
+
+			receiver.writeInbound(frame);
+			final FederatedRequest[] out = receiver.readInbound();
+			TestUtils.compareMatrices(dense, (MatrixBlock) out[0].getParam(0), 0);
+			TestUtils.compareMatrices(sparse, (MatrixBlock) out[1].getParam(0), 0);
+			TestUtils.compareMatrices(small, (MatrixBlock) out[2].getParam(0), 0);
+			TestUtils.compareFrames(fb, (FrameBlock) out[3].getParam(0), true);
+			// segments are removed by the receiver
+			assertEquals(0, dir.list().length);
+			assertFalse(sender.finish());
+			assertFalse(receiver.finish());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSharedMemoryNotNegotiated() throws Exception {
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final File other = Files.createTempDirectory("fedother").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			local.setTextValue(DMLConfig.FEDERATED_SHM_THRESHOLD, "16");
+			ConfigurationManager.setLocalConfig(local);
+
+			// without handshake, or with a different directory of the receiver, blocks are sent inline
+			final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 1.0, 7);
+			final EmbeddedChannel sender = createSharedSender();
+			final FederatedRequest[] requests = {new FederatedRequest(RequestType.PUT_VAR, 1, mb)};
+			for(int i = 0; i < 2; i++) {
+				assertTrue(sender.writeOutbound((Object) requests));
+				final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder(false));
+				for(ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound())
+					receiver.writeInbound(frame);
+				final FederatedRequest[] out = receiver.readInbound();
+				TestUtils.compareMatrices(mb, (MatrixBlock) out[0].getParam(0), 0);
+				assertEquals(0, dir.list().length);
+				assertFalse(receiver.finish());
+
+				final DMLConfig remote = new DMLConfig();
+				remote.setTextValue(DMLConfig.FEDERATED_SHM_DIR, other.getAbsolutePath());
+				ConfigurationManager.setLocalConfig(remote);
+				final ByteBuf handshake = handshake();
+				ConfigurationManager.setLocalConfig(local);
+				sender.writeInbound(handshake);
+			}
+			assertFalse(sender.finish());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+			other.delete();
+		}
+	}
+
+	@Test
+	public void testSharedMemoryFailedWrite() throws Exception {
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			local.setTextValue(DMLConfig.FEDERATED_SHM_THRESHOLD, "16");
+			ConfigurationManager.setLocalConfig(local);
+
+			// segments of frames that cannot be sent are deleted
+			final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 1.0, 7);
+			final List<Integer> sizes = new ArrayList<>();
+			final EmbeddedChannel sender = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+				@Override
+				public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+					sizes.add(((ByteBuf) msg).readableBytes());
+					ReferenceCountUtil.release(msg);
+					promise.setFailure(new IOException("Connection reset"));
+				}
+			}, new FederatedWireCodec.Decoder(false), new ChunkedWriteHandler(),
+				new FederatedWireCodec.Encoder(4096, false, true));
+			negotiate(sender);
+			final ChannelFuture f = sender
+				.writeAndFlush(new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, 1, mb)});
+			assertFalse(f.isSuccess());
+			assertEquals(1, sizes.size());
+			assertTrue(sizes.get(0) < 4096);
+			assertEquals(0, dir.list().length);
+			sender.finishAndReleaseAll();
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSharedMemoryExpiry() throws Exception {
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			ConfigurationManager.setLocalConfig(local);
+
+			// segments that are never received expire, while recent segments are retained
+			final FederatedSharedMemory.Segment old = FederatedSharedMemory.allocate(64);
+			final FederatedSharedMemory.Segment recent = FederatedSharedMemory.allocate(64);
+			Files.setLastModifiedTime(Paths.get(old.getPath()),
+				FileTime.fromMillis(System.currentTimeMillis() - 2 * FederatedSharedMemory.EXPIRY));
+			assertEquals(1, FederatedSharedMemory.expire(FederatedSharedMemory.EXPIRY));
+			assertFalse(new File(old.getPath()).exists());
+			assertTrue(new File(recent.getPath()).exists());
+			recent.delete();
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	private static EmbeddedChannel createSharedSender() {
+		// the decoder of the sender receives the handshake of the receiver
+		return new EmbeddedChannel(new FederatedWireCodec.Decoder(false), new ChunkedWriteHandler(),
+			new FederatedWireCodec.Encoder(4096, false, true));
+	}
+
+	private static void negotiate(EmbeddedChannel sender) {
+		sender.writeInbound(handshake());
+	}
+
+	private static ByteBuf handshake() {
+		// handshake of a receiver with the configured shared memory directory
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder(true));
+		final ByteBuf ret = receiver.readOutbound();
+		assertFalse(receiver.finish());
+		return ret;
+	}
+
+	private static void testChunkedMatrix(MatrixBlock mb) throws Exception {
+		testChunkedMatrix(mb, new FederatedWireCodec.Encoder(4096));
+	}
+
+	private static void testChunkedMatrix(MatrixBlock mb, FederatedWireCodec.Encoder encoder) throws Exception {
+		final EmbeddedChannel sender = new EmbeddedChannel(new ChunkedWriteHandler(), encoder);
+		final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder());
+		final MatrixBlock small = TestUtils.generateTestMatrixBlock(3, 3, 0, 1, 1.0, 3);
+		final FederatedMessage msg = new FederatedMessage(5, new FederatedRequest[] {
+			new FederatedRequest(RequestType.PUT_VAR, 1, mb), new FederatedRequest(RequestType.PUT_VAR, 2, small)});
+		assertTrue(sender.writeOutbound(msg));
+
+		int frames = 0;
+		for(ByteBuf frame = sender.readOutbound(); frame != null; frame = sender.readOutbound(), frames++)
+			receiver.writeInbound(frame);
+		assertTrue("Expected chunked transfer but received " + frames + " frames", frames > 2);
+
+		final FederatedMessage out = receiver.readInbound();
+		assertEquals(5, out.getCorrelationID());
+		final FederatedRequest[] requests = (FederatedRequest[]) out.getPayload();
+		final MatrixBlock ret = (MatrixBlock) requests[0].getParam(0);
+		assertEquals(mb.getNonZeros(), ret.getNonZeros());
+		TestUtils.compareMatrices(mb, ret, 0);
+		TestUtils.compareMatrices(small, (MatrixBlock) requests[1].getParam(0), 0);
+		assertNull(receiver.readInbound());
+		assertFalse(sender.finish());
+		assertFalse(receiver.finish());
+	}
+
+	private static void testRequestMatrix(MatrixBlock mb) throws Exception {
+		final FederatedRequest fr = new FederatedRequest(RequestType.PUT_VAR, 3, mb);
+		final FederatedRequest[] out = (FederatedRequest[]) roundTrip(new FederatedRequest[] {fr});
+		assertEquals(1, out.length);
+		final MatrixBlock ret = (MatrixBlock) out[0].getParam(0);
+		assertEquals(mb.getNonZeros(), ret.getNonZeros());
+		assertArrayEquals(new long[] {mb.getNumRows(), mb.getNumColumns()},
+			new long[] {ret.getNumRows(), ret.getNumColumns()});
+		TestUtils.compareMatrices(mb, ret, 0);
+	}
+
+	@Test
+	public void testSharedMemoryRejected() throws Exception {
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			local.setTextValue(DMLConfig.FEDERATED_SHM_THRESHOLD, "16");
+			ConfigurationManager.setLocalConfig(local);
+
+			// segments from sites that are not colocated are rejected and left untouched
+			final MatrixBlock mb = TestUtils.generateTestMatrixBlock(500, 100, -1, 1, 1.0, 7);
+			final EmbeddedChannel sender = createSharedSender();
+			negotiate(sender);
+			final EmbeddedChannel receiver = new EmbeddedChannel(new FederatedWireCodec.Decoder(false));
+			assertNull(receiver.readOutbound());
+			assertTrue(sender.writeOutbound((Object) new FederatedRequest[] {new FederatedRequest(RequestType.PUT_VAR, 1, mb)}));
+			try {
+				receiver.writeInbound((ByteBuf) sender.readOutbound());
+				fail("Expected rejected shared memory segment");
+			}
+			catch(DecoderException ex) {
+				assertTrue(ex.getMessage().contains("Unexpected shared memory segment"));
+			}
+			assertEquals(1, dir.list().length);
+			assertFalse(sender.finish());
+			assertFalse(receiver.finish());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			for(File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testSharedMemoryForgedPath() throws Exception {
+		final File dir = Files.createTempDirectory("fedshm").toFile();
+		final File other = Files.createTempDirectory("fedother").toFile();
+		final File victim = new File(other, "fedshm_victim");
+		final File link = new File(dir, "fedshm_link");
+		final File unprefixed = new File(dir, "victim");
+		final DMLConfig conf = ConfigurationManager.getDMLConfig();
+		try {
+			Files.writeString(victim.toPath(), "victim");
+			Files.writeString(unprefixed.toPath(), "victim");
+			Files.createSymbolicLink(link.toPath(), victim.toPath());
+			final String[] forged = {victim.getAbsolutePath(), dir.getAbsolutePath() + "/../" + other.getName() + "/"
+				+ victim.getName(), link.getAbsolutePath(), unprefixed.getAbsolutePath(), "/etc/passwd"};
+
+			// without a local shared memory directory, all segments are rejected
+			for(String path : forged)
+				assertRejected(path);
+
+			final DMLConfig local = new DMLConfig();
+			local.setTextValue(DMLConfig.FEDERATED_SHM_DIR, dir.getAbsolutePath());
+			ConfigurationManager.setLocalConfig(local);
+			for(String path : forged)
+				assertRejected(path);
+			assertTrue(victim.exists());
+			assertTrue(link.exists());
+			assertTrue(unprefixed.exists());
+		}
+		finally {
+			ConfigurationManager.setLocalConfig(conf);
+			link.delete();
+			unprefixed.delete();
+			victim.delete();
+			dir.delete();
+			other.delete();
+		}
+	}
+
+	private static void assertRejected(String path) {
+		try {
+			FederatedSharedMemory.read(path, 6, in -> in.readableBytes());
+			fail("Expected rejected shared memory segment: " + path);
+		}
+		catch(IOException ex) {
+			assertTrue(ex.getMessage().contains("shared memory"));
+		}
+	}
+
+	private static Object roundTrip(Object msg) throws Exception {
+		final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer();
+		try {
+			FederatedWireCodec.write(buf, msg);
+			final Object ret = FederatedWireCodec.read(buf);
+			assertEquals(0, buf.readableBytes());
+			return ret;
+		}
+		finally {
+			buf.release();
+		}
+	}
+}